@@ -33,6 +33,7 @@ import fr.wseduc.webutils.http.BaseController;
 
 import fr.wseduc.webutils.http.Renders;
 import io.vertx.core.Vertx;
+import org.entcore.common.appregistry.ApplicationUtils;
 import org.entcore.common.http.filter.AdminFilter;
 import org.entcore.common.http.filter.AdmlOfStructure;
 import org.entcore.common.http.filter.ResourceFilter;
@@ -179,7 +180,7 @@ public class AppRegistryController extends BaseController {
 					if (roleName != null && !roleName.trim().isEmpty()) {
 						role.put("name", roleName);
 					}
-					appRegistryService.updateRole(roleId, role, actions, notEmptyResponseHandler(request));
+					appRegistryService.updateRole(roleId, role, actions, authorizationsUpdated(notEmptyResponseHandler(request)));
 				} else {
 					badRequest(request, "invalid.id");
 				}
@@ -193,7 +194,7 @@ public class AppRegistryController extends BaseController {
 	public void deleteRole(final HttpServerRequest request) {
 		String roleId = request.params().get("id");
 		if (roleId != null && !roleId.trim().isEmpty()) {
-			appRegistryService.deleteRole(roleId, defaultResponseHandler(request, 204));
+			appRegistryService.deleteRole(roleId, authorizationsUpdated(defaultResponseHandler(request, 204)));
 		} else {
 			badRequest(request, "invalid.id");
 		}
@@ -251,7 +252,7 @@ public class AppRegistryController extends BaseController {
 	public void addGroupLink(final HttpServerRequest request) {
 		final String groupId = request.params().get("groupId");
 		final String roleId = request.params().get("roleId");
-		appRegistryService.addGroupLink(groupId, roleId, defaultResponseHandler(request));
+		appRegistryService.addGroupLink(groupId, roleId, authorizationsUpdated(defaultResponseHandler(request)));
 	}
 
 	@Delete("/authorize/group/:groupId/role/:roleId")
@@ -260,7 +261,7 @@ public class AppRegistryController extends BaseController {
 	public void removeGroupLink(final HttpServerRequest request) {
 		final String groupId = request.params().get("groupId");
 		final String roleId = request.params().get("roleId");
-		appRegistryService.deleteGroupLink(groupId, roleId, defaultResponseHandler(request, 204));
+		appRegistryService.deleteGroupLink(groupId, roleId, authorizationsUpdated(defaultResponseHandler(request, 204)));
 	}
 
 	@Get("/roles")
@@ -398,6 +399,7 @@ public class AppRegistryController extends BaseController {
 								}
 								final String structureId = event.right().getValue().getString("structureId");
 								sendPatternToCasConfiguration(updateCas, body, addressURL, casType, structureId, inherits, statCasType);
+								ApplicationUtils.publishAuthorizationsUpdated(eb);
 								Renders.renderJson(request, event.right().getValue());
 							}
 						});
@@ -417,7 +419,7 @@ public class AppRegistryController extends BaseController {
 	public void deleteApplication(final HttpServerRequest request) {
 		String id = request.params().get("id");
 		if (id != null && !id.trim().isEmpty()) {
-			appRegistryService.deleteApplication(id, defaultResponseHandler(request, 204));
+			appRegistryService.deleteApplication(id, authorizationsUpdated(defaultResponseHandler(request, 204)));
 		} else {
 			badRequest(request, "invalid.application.id");
 		}
@@ -516,7 +518,7 @@ public class AppRegistryController extends BaseController {
                     return;
                 }
 
-                appRegistryService.massAuthorize(structureId, profiles, roles, defaultResponseHandler(request));
+                appRegistryService.massAuthorize(structureId, profiles, roles, authorizationsUpdated(defaultResponseHandler(request)));
             }
         });
     }
@@ -536,7 +538,7 @@ public class AppRegistryController extends BaseController {
                     badRequest(request);
                     return;
                 }
-                appRegistryService.massUnauthorize(structureId, profiles, roles, defaultResponseHandler(request));
+                appRegistryService.massUnauthorize(structureId, profiles, roles, authorizationsUpdated(defaultResponseHandler(request)));
             }
         });
     }
@@ -675,6 +677,15 @@ public class AppRegistryController extends BaseController {
 		}
 	}
 
+	private Handler<Either<String, JsonObject>> authorizationsUpdated(final Handler<Either<String, JsonObject>> handler) {
+		return event -> {
+			if (event.isRight()) {
+				ApplicationUtils.publishAuthorizationsUpdated(eb);
+			}
+			handler.handle(event);
+		};
+	}
+
 	private void updatedProfileGroupActions(String groupId) {
 		JsonObject message = new JsonObject().put("type", PROFILE_GROUP_ACTIONS_UPDATED);
 		if (groupId != null && !groupId.trim().isEmpty()) {
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import fr.wseduc.webutils.I18n;
+import org.entcore.common.appregistry.ApplicationUtils;
 import org.entcore.common.http.filter.AdminFilter;
 import org.entcore.common.http.filter.ResourceFilter;
 import org.entcore.common.user.UserUtils;
@@ -89,7 +90,7 @@ public class WidgetController extends BaseController {
 	@ResourceFilter(SuperAdminFilter.class)
 	public void deleteWidget(final HttpServerRequest request){
 		final String widgetId = request.params().get("id");
-		service.deleteWidget(widgetId, defaultResponseHandler(request, 201));
+		service.deleteWidget(widgetId, authorizationsUpdated(defaultResponseHandler(request, 201)));
 	}
 
 	@Put("/widget/:id/lock")
@@ -107,7 +108,7 @@ public class WidgetController extends BaseController {
 		final String widgetId = request.params().get("id");
 		final List<String> groupIds = new ArrayList<String>();
 		groupIds.add(request.params().get("groupId"));
-		service.linkWidget(widgetId, groupIds, defaultResponseHandler(request));
+		service.linkWidget(widgetId, groupIds, authorizationsUpdated(defaultResponseHandler(request)));
 	}
 
 	@Delete("/widget/:id/link/:groupId")
@@ -117,7 +118,7 @@ public class WidgetController extends BaseController {
 		final String widgetId = request.params().get("id");
 		final List<String> groupIds = new ArrayList<String>();
 		groupIds.add(request.params().get("groupId"));
-		service.unlinkWidget(widgetId, groupIds, defaultResponseHandler(request));
+		service.unlinkWidget(widgetId, groupIds, authorizationsUpdated(defaultResponseHandler(request)));
 
 	}
 
@@ -128,7 +129,7 @@ public class WidgetController extends BaseController {
 		final String widgetId = request.params().get("id");
 		final List<String> groupIds = new ArrayList<String>();
 		groupIds.add(request.params().get("groupId"));
-		service.setMandatory(widgetId, groupIds, defaultResponseHandler(request));
+		service.setMandatory(widgetId, groupIds, authorizationsUpdated(defaultResponseHandler(request)));
 	}
 
 	@Delete("/widget/:id/mandatory/:groupId")
@@ -138,7 +139,7 @@ public class WidgetController extends BaseController {
 		final String widgetId = request.params().get("id");
 		final List<String> groupIds = new ArrayList<String>();
 		groupIds.add(request.params().get("groupId"));
-		service.removeMandatory(widgetId, groupIds, defaultResponseHandler(request));
+		service.removeMandatory(widgetId, groupIds, authorizationsUpdated(defaultResponseHandler(request)));
 	}
 
 	@Put("/widget/:id/authorize/:structureId")
@@ -148,7 +149,7 @@ public class WidgetController extends BaseController {
 		final String structureId = request.params().get("structureId");
 		List<String> profiles = request.params().getAll("profile");
 
-		service.massAuthorize(widgetId, structureId, profiles, defaultResponseHandler(request));
+		service.massAuthorize(widgetId, structureId, profiles, authorizationsUpdated(defaultResponseHandler(request)));
 	}
 
 	@Delete("/widget/:id/authorize/:structureId")
@@ -158,7 +159,7 @@ public class WidgetController extends BaseController {
 		final String structureId = request.params().get("structureId");
 		List<String> profiles = request.params().getAll("profile");
 
-		service.massUnauthorize(widgetId, structureId, profiles, defaultResponseHandler(request));
+		service.massUnauthorize(widgetId, structureId, profiles, authorizationsUpdated(defaultResponseHandler(request)));
 	}
 
 	@Put("/widget/:id/mandatory/:structureId/mass")
@@ -168,7 +169,7 @@ public class WidgetController extends BaseController {
 		final String structureId = request.params().get("structureId");
 		List<String> profiles = request.params().getAll("profile");
 
-		service.massSetMandatory(widgetId, structureId, profiles, defaultResponseHandler(request));
+		service.massSetMandatory(widgetId, structureId, profiles, authorizationsUpdated(defaultResponseHandler(request)));
 	}
 
 	@Delete("/widget/:id/mandatory/:structureId/mass")
@@ -178,7 +179,7 @@ public class WidgetController extends BaseController {
 		final String structureId = request.params().get("structureId");
 		List<String> profiles = request.params().getAll("profile");
 
-		service.massRemoveMandatory(widgetId, structureId, profiles, defaultResponseHandler(request));
+		service.massRemoveMandatory(widgetId, structureId, profiles, authorizationsUpdated(defaultResponseHandler(request)));
 	}
 
 	@Post("/widget")
@@ -254,4 +255,13 @@ public class WidgetController extends BaseController {
 			handler.handle(new JsonObject().put("status", "error").put("message", "invalid.parameters"));
 		}
 	}
+
+	private Handler<Either<String, JsonObject>> authorizationsUpdated(final Handler<Either<String, JsonObject>> handler) {
+		return event -> {
+			if (event.isRight()) {
+				ApplicationUtils.publishAuthorizationsUpdated(eb);
+			}
+			handler.handle(event);
+		};
+	}
 }
@@ -290,7 +290,7 @@ public class DefaultImportService implements ImportService {
                            String appName = key.substring(key.lastIndexOf(".") + 1).replace("-", "");
 
                            String workflow = config.getJsonObject("publicConf").getJsonObject("apps").getString(appName);
-                           if (user != null && user.getAuthorizedActions().stream().noneMatch(action -> action.getName().equals(workflow))) {
+                           if (user != null && !user.hasAuthorizedAction(workflow)) {
                                return;
                            }
 
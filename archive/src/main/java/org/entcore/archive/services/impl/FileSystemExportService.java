@@ -125,19 +125,26 @@ public class FileSystemExportService implements ExportService {
 										{
 											if (event.succeeded())
 											{
-												final Set<String> g = (user.getGroupsIds() != null) ? new
-														HashSet<>(user.getGroupsIds()) : new HashSet<String>();
+												final Set<String> g = user.getGroupsIdsSet();
 												User.getOldGroups(user.getUserId(), new Handler<JsonArray>()
 												{
 													@Override
 													public void handle(JsonArray objects)
 													{
-														g.addAll(objects.getList());
+														// the current groups set is shared : only the old groups are deduplicated here
+														final Set<String> oldGroups = new LinkedHashSet<>();
+														for (Object o : objects) {
+															if (o != null && !g.contains(o)) {
+																oldGroups.add(o.toString());
+															}
+														}
+														final List<String> groups = new ArrayList<>(g);
+														groups.addAll(oldGroups);
 														JsonObject j = new JsonObject()
 																.put("action", handlerActionName)
 																.put("exportId", exportId)
 																.put("userId", user.getUserId())
-																.put("groups", new fr.wseduc.webutils.collections.JsonArray(new ArrayList<>(g)))
+																.put("groups", new fr.wseduc.webutils.collections.JsonArray(groups))
 																.put("path", exportDirectory)
 																.put("locale", locale)
 																.put("host", request == null || request.headers() == null ? "" : Renders.getScheme(request) + "://" + request.headers().get("Host"))
@@ -29,6 +29,7 @@ import org.entcore.auth.controllers.OpenIdConnectController;
 import org.entcore.auth.controllers.SamlController;
 import org.entcore.auth.oauth.OAuthDataHandlerFactory;
 import org.entcore.auth.security.AuthResourcesProvider;
+import org.entcore.auth.security.PasswordVerifier;
 import org.entcore.auth.security.SamlHelper;
 import org.entcore.auth.security.SamlValidator;
 import org.entcore.auth.services.OpenIdConnectService;
@@ -64,7 +65,9 @@ public class Auth extends BaseServer {
 		setDefaultResourceFilter(new AuthResourcesProvider(new Neo(vertx, eb, null)));
 
 		final EventStore eventStore = EventStoreFactory.getFactory().getEventStore(Auth.class.getSimpleName());
-		final UserAuthAccount userAuthAccount = new DefaultUserAuthAccount(vertx, config, eventStore);
+		final PasswordVerifier passwordVerifier = new PasswordVerifier(vertx,
+				config.getJsonObject("password-verifier", new JsonObject()));
+		final UserAuthAccount userAuthAccount = new DefaultUserAuthAccount(vertx, config, eventStore, passwordVerifier);
 		SafeRedirectionService.getInstance().init(vertx, config.getJsonObject("safeRedirect", new JsonObject()));
 
 		final JsonObject oic = config.getJsonObject("openid-connect");
@@ -75,12 +78,13 @@ public class Auth extends BaseServer {
 		final OAuthDataHandlerFactory oauthDataFactory = new OAuthDataHandlerFactory(
 				openIdConnectService, checkFederatedLogin, config.getInteger("maxRetry", 5), config.getLong("banDelay", 900000L),
 				config.getString("password-event-min-date"), config.getInteger("password-event-sync-default-value", 0),
-				config.getJsonArray("oauth2-pw-client-enable-saml2"), eventStore);
+				config.getJsonArray("oauth2-pw-client-enable-saml2"), eventStore, passwordVerifier);
 
 		AuthController authController = new AuthController();
 		authController.setEventStore(eventStore);
 		authController.setUserAuthAccount(userAuthAccount);
 		authController.setOauthDataFactory(oauthDataFactory);
+		authController.setPasswordVerifier(passwordVerifier);
 		authController.setCheckFederatedLogin(checkFederatedLogin);
 		addController(authController);
 
@@ -106,8 +110,9 @@ public class Auth extends BaseServer {
 							SamlController samlController = new SamlController();
 							JsonObject conf = config;
 
-							vertx.deployVerticle(SamlValidator.class,
-									new DeploymentOptions().setConfig(conf).setWorker(true));
+							vertx.deployVerticle(SamlValidator.class, new DeploymentOptions().setConfig(conf).setWorker(true)
+									.setInstances(config.getInteger("saml-validator-instances",
+											Math.max(1, Runtime.getRuntime().availableProcessors() / 2))));
 							samlController.setEventStore(eventStore);
 							samlController.setUserAuthAccount(userAuthAccount);
 							samlController.setSamlHelper(samlHelper);
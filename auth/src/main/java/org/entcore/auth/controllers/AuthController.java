@@ -97,6 +97,7 @@ import org.entcore.auth.oauth.HttpServerRequestAdapter;
 import org.entcore.auth.oauth.JsonRequestAdapter;
 import org.entcore.auth.oauth.OAuthDataHandler;
 import org.entcore.auth.pojo.SendPasswordDestination;
+import org.entcore.auth.security.PasswordVerifier;
 import org.entcore.auth.users.UserAuthAccount;
 
 import fr.wseduc.webutils.request.CookieHelper;
@@ -111,6 +112,7 @@ import org.vertx.java.core.http.RouteMatcher;
 public class AuthController extends BaseController {
 
 	private DataHandlerFactory oauthDataFactory;
+	private PasswordVerifier passwordVerifier;
 	private Token token;
 	private ProtectedResource protectedResource;
 	private UserAuthAccount userAuthAccount;
@@ -421,7 +423,9 @@ public class AuthController extends BaseController {
 								});
 							}
 						}
-						renderJson(request, new JsonObject(response.getBody()), response.getCode());
+						final JsonObject body = new JsonObject(response.getBody());
+						final int status = overloadedStatus(request, body.getString("error_description"));
+						renderJson(request, body, status > 0 ? status : response.getCode());
 					}
 
 					private void storeLoginEventAndDomain(final HttpServerRequest request, final ClientCredential clientCredential,
@@ -441,6 +445,24 @@ public class AuthController extends BaseController {
 		});
 	}
 
+	/**
+	 * Set the Retry-After header if the password verification was rejected by the admission control.
+	 * @return 503 if the password verifier is saturated, 429 if the client limit is reached, 0 otherwise
+	 */
+	private int overloadedStatus(final HttpServerRequest request, String error) {
+		final int status;
+		if (OAuthDataHandler.AUTH_ERROR_OVERLOADED.equals(error)) {
+			status = 503;
+		} else if (OAuthDataHandler.AUTH_ERROR_TOO_MANY_REQUESTS.equals(error)) {
+			status = 429;
+		} else {
+			return 0;
+		}
+		request.response().putHeader("Retry-After",
+				String.valueOf(passwordVerifier != null ? passwordVerifier.getRetryAfter() : 5));
+		return status;
+	}
+
 	private void loginResult(final HttpServerRequest request, String error, String callBack) {
 		final JsonObject context = new JsonObject();
 		if (callBack != null && !callBack.trim().isEmpty()) {
@@ -574,6 +596,12 @@ public class AuthController extends BaseController {
 								throw new AccessDenied(OAuthDataHandler.AUTH_ERROR_AUTHENTICATION_FAILED);
 							}
 						} catch (AccessDenied e) {
+							final int status = overloadedStatus(request, e.getDescription());
+							if (status > 0) {
+								request.response().setStatusCode(status);
+								loginResult(request, e.getDescription(), c);
+								return;
+							}
 							// try activation with login
 							userAuthAccount.matchActivationCode(login, password, new io.vertx.core.Handler<Boolean>() {
 								@Override
@@ -1604,4 +1632,8 @@ public class AuthController extends BaseController {
 		this.checkFederatedLogin = checkFederatedLogin;
 	}
 
+	public void setPasswordVerifier(PasswordVerifier passwordVerifier) {
+		this.passwordVerifier = passwordVerifier;
+	}
+
 }
@@ -749,7 +749,7 @@ public class SamlController extends AbstractFederateController {
 		getSamlResponse(request, new Handler<String>() {
 			@Override
 			public void handle(final String samlResponse) {
-				samlHelper.validateSamlResponseAndGetAssertion(samlResponse, ar -> {
+				samlHelper.validateSamlResponseAndGetAssertion(samlResponse, true, ar -> {
 					if (ar.succeeded()) {
 						handler.handle(ar.result());
 					} else {
@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import fr.wseduc.webutils.http.Renders;
 import io.vertx.core.http.HttpServerRequest;
 
 import jp.eisbahn.oauth2.server.models.Request;
@@ -54,4 +55,8 @@ public class HttpServerRequestAdapter implements Request {
 		return request.headers().get(name);
 	}
 
+	public String getIp() {
+		return Renders.getIp(request);
+	}
+
 }
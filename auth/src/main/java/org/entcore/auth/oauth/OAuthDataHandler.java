@@ -21,10 +21,7 @@ package org.entcore.auth.oauth;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import fr.wseduc.mongodb.MongoDb;
-import fr.wseduc.webutils.security.BCrypt;
-import fr.wseduc.webutils.security.Md5;
 import fr.wseduc.webutils.security.NTLM;
-import fr.wseduc.webutils.security.Sha256;
 import jp.eisbahn.oauth2.server.async.Handler;
 import jp.eisbahn.oauth2.server.data.DataHandler;
 import jp.eisbahn.oauth2.server.exceptions.OAuthError;
@@ -34,6 +31,7 @@ import jp.eisbahn.oauth2.server.models.AccessToken;
 import jp.eisbahn.oauth2.server.models.AuthInfo;
 import jp.eisbahn.oauth2.server.models.Request;
 
+import org.entcore.auth.security.PasswordVerifier;
 import org.entcore.auth.security.SamlHelper;
 import org.entcore.auth.services.OpenIdConnectService;
 import org.entcore.common.events.EventStore;
@@ -61,6 +59,8 @@ public class OAuthDataHandler extends DataHandler {
 	public static final String AUTH_ERROR_AUTHENTICATION_FAILED = "auth.error.authenticationFailed";
 	public static final String AUTH_ERROR_BLOCKED_USER = "auth.error.blockedUser";
 	public static final String AUTH_ERROR_BLOCKED_PROFILETYPE = "auth.error.blockedProfileType";
+	public static final String AUTH_ERROR_OVERLOADED = "auth.error.overloaded";
+	public static final String AUTH_ERROR_TOO_MANY_REQUESTS = "auth.error.tooManyRequests";
 	private static final String AUTH_ERROR_GLOBAL = "auth.error.global";
 	private static final String AUTH_ERROR_BAN = "auth.error.ban";
 	private static final String LOGIN_BAN_KEY = "logban:";
@@ -81,11 +81,12 @@ public class OAuthDataHandler extends DataHandler {
 	private final int defaultSyncValue;
 	private final JsonArray clientPWSupportSaml2;
 	private final SamlHelper samlHelper;
+	private final PasswordVerifier passwordVerifier;
 
 	public OAuthDataHandler(Request request, Neo4j neo, MongoDb mongo, RedisClient redisClient,
 			OpenIdConnectService openIdConnectService, boolean checkFederatedLogin,
 			int pwMaxRetry, long pwBanDelay, String passwordEventMinDate, int defaultSyncValue,
-			JsonArray clientPWSupportSaml2, EventStore eventStore, SamlHelper samlHelper) {
+			JsonArray clientPWSupportSaml2, EventStore eventStore, SamlHelper samlHelper, PasswordVerifier passwordVerifier) {
 		super(request);
 		this.neo = neo;
 		this.mongo = mongo;
@@ -99,6 +100,7 @@ public class OAuthDataHandler extends DataHandler {
 		this.defaultSyncValue = defaultSyncValue;
 		this.clientPWSupportSaml2 = clientPWSupportSaml2;
 		this.samlHelper = samlHelper;
+		this.passwordVerifier = passwordVerifier;
 	}
 
 	@Override
@@ -234,43 +236,43 @@ public class OAuthDataHandler extends DataHandler {
 				return;
 			}
 
-			String dbPassword = r.getString("otp");
-			if (isNotEmpty(dbPassword) && getOrElse(r.getLong("otpiat"), 0L) + OTP_DELAY >
-					System.currentTimeMillis() && BCrypt.checkpw(password, dbPassword)) {
-				removeOTP(username);
-				incrBanAuthentication(username);
-				handler.handle(new Try<AccessDenied, String>(r.getString("userId")));
-				return;
+			final String otp = r.getString("otp");
+			if (isNotEmpty(otp) && getOrElse(r.getLong("otpiat"), 0L) + OTP_DELAY > System.currentTimeMillis()) {
+				passwordVerifier.verify(getClientIp(), username, password, otp, ar -> {
+					if (isRejected(ar, handler)) {
+						return;
+					}
+					if (ar.succeeded() && Boolean.TRUE.equals(ar.result())) {
+						removeOTP(username);
+						incrBanAuthentication(username);
+						handler.handle(new Try<AccessDenied, String>(r.getString("userId")));
+					} else {
+						checkUserPassword(r, password, username, handler);
+					}
+				});
+			} else {
+				checkUserPassword(r, password, username, handler);
 			}
-			dbPassword = r.getString("password");
-			if (isEmpty(dbPassword)) {
-				incrBanAuthentication(username);
-				handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_AUTHENTICATION_FAILED)));
+		} else {
+			handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_GLOBAL)));
+		}
+	}
+
+	private void checkUserPassword(JsonObject r, String password, String username, Handler<Try<AccessDenied, String>> handler) {
+		final String dbPassword = r.getString("password");
+		if (isEmpty(dbPassword) || dbPassword.trim().isEmpty()) {
+			incrBanAuthentication(username);
+			handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_AUTHENTICATION_FAILED)));
+			return;
+		}
+		passwordVerifier.verify(getClientIp(), username, password, dbPassword, ar -> {
+			if (isRejected(ar, handler)) {
 				return;
 			}
-			boolean success = false;
-			String hash = null;
-			try {
-				switch (dbPassword.length()) {
-					case 32: // md5
-						hash = Md5.hash(password);
-						break;
-					case 64: // sha-256
-						hash = Sha256.hash(password);
-						break;
-					default: // BCrypt
-						success = BCrypt.checkpw(password, dbPassword);
-				}
-				if (!success && hash != null) {
-					success = !dbPassword.trim().isEmpty() && dbPassword.equalsIgnoreCase(hash);
-					if (success) {
-						upgradeOldPassword(username, password);
-					}
+			if (ar.succeeded() && Boolean.TRUE.equals(ar.result())) {
+				if (passwordVerifier.needsRehash(dbPassword)) {
+					upgradeOldPassword(username, password, dbPassword);
 				}
-			} catch (NoSuchAlgorithmException e) {
-				log.error(e.getMessage(), e);
-			}
-			if (success) {
 				if (passwordEventMinDate != null) {
 					final String ll = r.getString("lastLogin");
 					if (ll == null || passwordEventMinDate.compareTo(ll) > 0) {
@@ -296,9 +298,25 @@ public class OAuthDataHandler extends DataHandler {
 				incrBanAuthentication(username);
 				handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_AUTHENTICATION_FAILED)));
 			}
-		} else {
-			handler.handle(new Try<AccessDenied, String>(new AccessDenied(AUTH_ERROR_GLOBAL)));
+		});
+	}
+
+	private boolean isRejected(AsyncResult<Boolean> ar, Handler<Try<AccessDenied, String>> handler) {
+		if (ar.failed() && ar.cause() instanceof PasswordVerifier.RejectedException) {
+			handler.handle(new Try<AccessDenied, String>(new AccessDenied(
+					((PasswordVerifier.RejectedException) ar.cause()).isSaturated() ?
+							AUTH_ERROR_OVERLOADED : AUTH_ERROR_TOO_MANY_REQUESTS)));
+			return true;
 		}
+		if (ar.failed()) {
+			log.error("Error checking password", ar.cause());
+		}
+		return false;
+	}
+
+	private String getClientIp() {
+		return (getRequest() instanceof HttpServerRequestAdapter) ?
+				((HttpServerRequestAdapter) getRequest()).getIp() : null;
 	}
 
 	private void removeOTP(String username) {
@@ -313,19 +331,26 @@ public class OAuthDataHandler extends DataHandler {
 		});
 	}
 
-	private void upgradeOldPassword(final String username, String password) {
+	private void upgradeOldPassword(final String username, String password, String oldPassword) {
+		passwordVerifier.deferRehash(password, hash -> updateOldPassword(username, hash, oldPassword));
+	}
+
+	private void updateOldPassword(final String username, String password, String oldPassword) {
+		final boolean legacy = oldPassword.length() == 32 || oldPassword.length() == 64;
 		String query =
-				"MATCH (u:User {login: {login}}) SET u.password = {password} " +
+				"MATCH (u:User {login: {login}}) WHERE u.password = {oldPassword} SET u.password = {password} " +
 				"RETURN u.id as id, HEAD(u.profiles) as profile ";
 		JsonObject params = new JsonObject()
 				.put("login", username)
-				.put("password", BCrypt.hashpw(password, BCrypt.gensalt()));
+				.put("oldPassword", oldPassword)
+				.put("password", password);
 		neo.execute(query, params, new io.vertx.core.Handler<Message<JsonObject>>() {
 			@Override
 			public void handle(Message<JsonObject> event) {
 				if (!"ok".equals(event.body().getString("status"))) {
 					log.error("Error updating old password for user " + username + " : " + event.body().getString("message"));
-				} else if (event.body().getJsonArray("result") != null && event.body().getJsonArray("result").size() == 1) {
+				} else if (legacy && event.body().getJsonArray("result") != null &&
+						event.body().getJsonArray("result").size() == 1) {
 					// welcome message
 					JsonObject message = new JsonObject()
 							.put("userId", event.body().getJsonArray("result").getJsonObject(0).getString("id"))
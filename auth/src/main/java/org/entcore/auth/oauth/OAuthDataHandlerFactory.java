@@ -26,6 +26,7 @@ import jp.eisbahn.oauth2.server.data.DataHandler;
 import jp.eisbahn.oauth2.server.data.DataHandlerFactory;
 import jp.eisbahn.oauth2.server.models.Request;
 
+import org.entcore.auth.security.PasswordVerifier;
 import org.entcore.auth.security.SamlHelper;
 import org.entcore.auth.services.OpenIdConnectService;
 import org.entcore.common.events.EventStore;
@@ -45,11 +46,13 @@ public class OAuthDataHandlerFactory implements DataHandlerFactory {
 	private final String passwordEventMinDate;
 	private final int defaultSyncValue;
 	private final JsonArray clientPWSupportSaml2;
+	private final PasswordVerifier passwordVerifier;
 	private SamlHelper samlHelper;
 
 	public OAuthDataHandlerFactory(
 			OpenIdConnectService openIdConnectService, boolean cfl, int pwMaxRetry, long pwBanDelay,
-			String passwordEventMinDate, int defaultSyncValue, JsonArray clientPWSupportSaml2, EventStore eventStore) {
+			String passwordEventMinDate, int defaultSyncValue, JsonArray clientPWSupportSaml2, EventStore eventStore,
+			PasswordVerifier passwordVerifier) {
 		this.neo = Neo4j.getInstance();
 		this.mongo = MongoDb.getInstance();
 		this.openIdConnectService = openIdConnectService;
@@ -61,12 +64,14 @@ public class OAuthDataHandlerFactory implements DataHandlerFactory {
 		this.passwordEventMinDate = passwordEventMinDate;
 		this.defaultSyncValue = defaultSyncValue;
 		this.clientPWSupportSaml2 = clientPWSupportSaml2;
+		this.passwordVerifier = passwordVerifier;
 	}
 
 	@Override
 	public DataHandler create(Request request) {
 		return new OAuthDataHandler(request, neo, mongo, redisClient, openIdConnectService, checkFederatedLogin,
-				pwMaxRetry, pwBanDelay, passwordEventMinDate, defaultSyncValue, clientPWSupportSaml2, eventStore, samlHelper);
+				pwMaxRetry, pwBanDelay, passwordEventMinDate, defaultSyncValue, clientPWSupportSaml2, eventStore, samlHelper,
+				passwordVerifier);
 	}
 
 	public void setSamlHelper(SamlHelper samlHelper) {
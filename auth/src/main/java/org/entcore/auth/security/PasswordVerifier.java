@@ -0,0 +1,245 @@
+/* Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ *
+ */
+
+package org.entcore.auth.security;
+
+import fr.wseduc.webutils.security.BCrypt;
+import fr.wseduc.webutils.security.Md5;
+import fr.wseduc.webutils.security.Sha256;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Password hashing and verification on a dedicated bounded worker pool, so that BCrypt never runs on the event loop.
+ * The pool queue is FIFO and its admission is bounded globally (<code>max-pending</code>), by client ip
+ * (<code>max-per-ip</code>) and by login (<code>max-per-login</code>), so a single client cannot monopolize it.
+ * Above these limits the verification fails immediately with a {@link RejectedException} carrying a retry delay.
+ * Upgrading a legacy or weak hash to the current cost is deferred and skipped while the pool is loaded.
+ * Configured by the <code>password-verifier</code> object of the auth config.
+ */
+public class PasswordVerifier {
+
+	private static final Logger log = LoggerFactory.getLogger(PasswordVerifier.class);
+	private final Vertx vertx;
+	private final WorkerExecutor executor;
+	private final int maxPending;
+	private final int maxPerIp;
+	private final int maxPerLogin;
+	private final int retryAfter;
+	private final int cost;
+	private final long rehashDelay;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final Map<String, Integer> pendingByIp = new ConcurrentHashMap<>();
+	private final Map<String, Integer> pendingByLogin = new ConcurrentHashMap<>();
+	private final AtomicLong verified = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong rehashed = new AtomicLong();
+
+	public static class RejectedException extends Exception {
+		private final boolean saturated;
+		private final int retryAfter;
+
+		RejectedException(boolean saturated, int retryAfter) {
+			super(saturated ? "Password verifier saturated." : "Too many concurrent password verifications.");
+			this.saturated = saturated;
+			this.retryAfter = retryAfter;
+		}
+
+		/**
+		 * @return true if the whole pool is saturated (503), false if only the client limit is reached (429)
+		 */
+		public boolean isSaturated() {
+			return saturated;
+		}
+
+		public int getRetryAfter() {
+			return retryAfter;
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	public PasswordVerifier(Vertx vertx, JsonObject config) {
+		this.vertx = vertx;
+		final int poolSize = config.getInteger("pool-size", Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+		this.executor = vertx.createSharedWorkerExecutor("auth-password-verifier", poolSize,
+				config.getLong("max-execute-time-ms", 10000L), TimeUnit.MILLISECONDS);
+		this.maxPending = config.getInteger("max-pending", poolSize * 50);
+		this.maxPerIp = config.getInteger("max-per-ip", 20);
+		this.maxPerLogin = config.getInteger("max-per-login", 3);
+		this.retryAfter = config.getInteger("retry-after-seconds", 5);
+		this.cost = config.getInteger("bcrypt-cost", 10);
+		this.rehashDelay = config.getLong("rehash-delay-ms", 1000L);
+	}
+
+	/**
+	 * Check the password against a BCrypt, sha-256 or md5 hash.
+	 * @param ip client ip, may be null
+	 * @param login user login, may be null
+	 */
+	public void verify(String ip, String login, String password, String hash, Handler<AsyncResult<Boolean>> handler) {
+		if (pending.incrementAndGet() > maxPending) {
+			pending.decrementAndGet();
+			reject(true, handler);
+			return;
+		}
+		if (!acquire(pendingByIp, ip, maxPerIp)) {
+			pending.decrementAndGet();
+			reject(false, handler);
+			return;
+		}
+		if (!acquire(pendingByLogin, login, maxPerLogin)) {
+			release(pendingByIp, ip);
+			pending.decrementAndGet();
+			reject(false, handler);
+			return;
+		}
+		executor.<Boolean>executeBlocking(f -> f.complete(matches(password, hash)), false, ar -> {
+			release(pendingByLogin, login);
+			release(pendingByIp, ip);
+			pending.decrementAndGet();
+			verified.incrementAndGet();
+			handler.handle(ar);
+		});
+	}
+
+	/**
+	 * Hash the password with BCrypt at the current cost.
+	 */
+	public void hash(String password, Handler<AsyncResult<String>> handler) {
+		pending.incrementAndGet();
+		executor.<String>executeBlocking(f -> f.complete(BCrypt.hashpw(password, BCrypt.gensalt(cost))), false, ar -> {
+			pending.decrementAndGet();
+			handler.handle(ar);
+		});
+	}
+
+	/**
+	 * @return true if the hash is a legacy md5 or sha-256 hash, or a BCrypt hash weaker than the current cost
+	 */
+	public boolean needsRehash(String hash) {
+		if (hash == null || hash.length() == 32 || hash.length() == 64) {
+			return true;
+		}
+		if (hash.length() < 7 || hash.charAt(0) != '$' || hash.charAt(3) != '$') {
+			return false;
+		}
+		try {
+			return Integer.parseInt(hash.substring(4, 6)) < cost;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Hash the password later, out of the login critical path. Nothing is done if the pool is loaded.
+	 */
+	public void deferRehash(String password, Handler<String> handler) {
+		vertx.setTimer(rehashDelay, t -> {
+			if (pending.get() > maxPending / 4) {
+				log.debug("Password rehash skipped : password verifier loaded.");
+				return;
+			}
+			hash(password, ar -> {
+				if (ar.succeeded()) {
+					rehashed.incrementAndGet();
+					handler.handle(ar.result());
+				} else {
+					log.error("Error rehashing password", ar.cause());
+				}
+			});
+		});
+	}
+
+	public int getRetryAfter() {
+		return retryAfter;
+	}
+
+	public JsonObject getMetrics() {
+		return new JsonObject()
+				.put("password_verifier_pending", pending.get())
+				.put("password_verifier_verified", verified.get())
+				.put("password_verifier_rejected", rejected.get())
+				.put("password_verifier_rehashed", rehashed.get());
+	}
+
+	public void close() {
+		executor.close();
+	}
+
+	private void reject(boolean saturated, Handler<AsyncResult<Boolean>> handler) {
+		rejected.incrementAndGet();
+		handler.handle(Future.failedFuture(new RejectedException(saturated, retryAfter)));
+	}
+
+	private static boolean acquire(Map<String, Integer> counters, String key, int max) {
+		if (key == null) {
+			return true;
+		}
+		final boolean[] acquired = { false };
+		counters.compute(key, (k, count) -> {
+			final int c = (count != null) ? count : 0;
+			if (c >= max) {
+				return count;
+			}
+			acquired[0] = true;
+			return c + 1;
+		});
+		return acquired[0];
+	}
+
+	private static void release(Map<String, Integer> counters, String key) {
+		if (key == null) {
+			return;
+		}
+		counters.computeIfPresent(key, (k, count) -> count <= 1 ? null : count - 1);
+	}
+
+	private static boolean matches(String password, String hash) {
+		try {
+			switch (hash.length()) {
+				case 32: // md5
+					return hash.equalsIgnoreCase(Md5.hash(password));
+				case 64: // sha-256
+					return hash.equalsIgnoreCase(Sha256.hash(password));
+				default: // BCrypt
+					return BCrypt.checkpw(password, hash);
+			}
+		} catch (Exception e) {
+			log.error("Error checking password", e);
+			return false;
+		}
+	}
+
+}
@@ -50,9 +50,17 @@ public class SamlHelper {
     }
 
     public void validateSamlResponseAndGetAssertion(String samlResponse, Handler<AsyncResult<Assertion>> handler) {
+        validateSamlResponseAndGetAssertion(samlResponse, false, handler);
+    }
+
+    /**
+     * @param checkReplay reject the response if its assertion was already validated
+     */
+    public void validateSamlResponseAndGetAssertion(String samlResponse, boolean checkReplay,
+            Handler<AsyncResult<Assertion>> handler) {
         if (samlResponse != null && samlResponse.contains("EncryptedAssertion")) {
             final JsonObject j = new JsonObject().put("action", "validate-signature-decrypt").put("response",
-                    samlResponse);
+                    samlResponse).put("check-replay", checkReplay);
             vertx.eventBus().request("saml", j, ar -> {
                 if (ar.succeeded()) {
                     final JsonObject event = (JsonObject) ar.result().body();
@@ -72,7 +80,8 @@ public class SamlHelper {
                 }
             });
         } else if (samlResponse != null) {
-            final JsonObject j = new JsonObject().put("action", "validate-signature").put("response", samlResponse);
+            final JsonObject j = new JsonObject().put("action", "validate-signature").put("response", samlResponse)
+                    .put("check-replay", checkReplay);
             vertx.eventBus().request("saml", j, ar -> {
                 if (ar.succeeded()) {
                     final JsonObject event = (JsonObject) ar.result().body();
@@ -0,0 +1,201 @@
+/* Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ *
+ */
+
+package org.entcore.auth.security;
+
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.opensaml.saml2.metadata.EntityDescriptor;
+import org.opensaml.saml2.metadata.provider.FilesystemMetadataProvider;
+import org.opensaml.saml2.metadata.provider.MetadataProviderException;
+import org.opensaml.security.MetadataCredentialResolver;
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.parse.BasicParserPool;
+import org.opensaml.xml.security.keyinfo.KeyInfoCredentialResolver;
+import org.opensaml.xml.signature.SignatureTrustEngine;
+import org.opensaml.xml.signature.impl.ExplicitKeySignatureTrustEngine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Immutable snapshot of the parsed metadata folder and of the signature trust engines built from it.
+ * The current snapshot is shared by all the SamlValidator instances of the JVM and is swapped atomically
+ * when the content of the folder changes, a failed reload keeps the previous snapshot.
+ * The metadata providers of all the snapshots share one timer thread, and the providers of a replaced
+ * snapshot are destroyed after a delay, so the validations still using it can end.
+ */
+final class SamlMetadata {
+
+	private static final Logger log = LoggerFactory.getLogger(SamlMetadata.class);
+	private static final AtomicReference<SamlMetadata> current = new AtomicReference<>();
+	private static final Timer timer = new Timer("saml-metadata", true);
+	private static final long DESTROY_DELAY = 60000L;
+
+	private final String path;
+	private final String fingerprint;
+	private final Map<String, EntityDescriptor> entityDescriptors;
+	private final Map<String, SignatureTrustEngine> signatureTrustEngines;
+	private final List<FilesystemMetadataProvider> providers;
+
+	private SamlMetadata(String path, String fingerprint, Map<String, EntityDescriptor> entityDescriptors,
+			Map<String, SignatureTrustEngine> signatureTrustEngines, List<FilesystemMetadataProvider> providers) {
+		this.path = path;
+		this.fingerprint = fingerprint;
+		this.entityDescriptors = Collections.unmodifiableMap(entityDescriptors);
+		this.signatureTrustEngines = Collections.unmodifiableMap(signatureTrustEngines);
+		this.providers = providers;
+	}
+
+	/**
+	 * @return the current snapshot of the folder, loaded by the first caller
+	 */
+	static SamlMetadata get(String path) throws MetadataProviderException {
+		final SamlMetadata metadata = current.get();
+		if (metadata != null && metadata.path.equals(path)) {
+			return metadata;
+		}
+		synchronized (SamlMetadata.class) {
+			final SamlMetadata m = current.get();
+			if (m != null && m.path.equals(path)) {
+				return m;
+			}
+			final SamlMetadata loaded = load(path, fingerprint(path));
+			current.set(loaded);
+			if (m != null) {
+				m.destroyLater();
+			}
+			return loaded;
+		}
+	}
+
+	/**
+	 * Reload the folder if one of its files was added, removed or modified.
+	 * @return true if a new snapshot was swapped in
+	 */
+	static boolean reloadIfChanged(String path) {
+		final String fingerprint = fingerprint(path);
+		final SamlMetadata metadata = current.get();
+		if (metadata != null && metadata.path.equals(path) && metadata.fingerprint.equals(fingerprint)) {
+			return false;
+		}
+		synchronized (SamlMetadata.class) {
+			final SamlMetadata m = current.get();
+			if (m != null && m.path.equals(path) && m.fingerprint.equals(fingerprint)) {
+				return false;
+			}
+			try {
+				final SamlMetadata loaded = load(path, fingerprint);
+				current.set(loaded);
+				if (m != null) {
+					m.destroyLater();
+				}
+				log.info("Saml metadata reloaded from " + path + " : " + loaded.entityDescriptors.size() + " entities.");
+				return true;
+			} catch (MetadataProviderException | RuntimeException e) {
+				log.error("Error reloading saml metadata from " + path + ", previous metadata kept.", e);
+				return false;
+			}
+		}
+	}
+
+	private static SamlMetadata load(String path, String fingerprint) throws MetadataProviderException {
+		final Map<String, EntityDescriptor> entityDescriptors = new HashMap<>();
+		final Map<String, SignatureTrustEngine> signatureTrustEngines = new HashMap<>();
+		final List<FilesystemMetadataProvider> providers = new ArrayList<>();
+		final KeyInfoCredentialResolver keyInfoCredResolver = Configuration.getGlobalSecurityConfiguration()
+				.getDefaultKeyInfoCredentialResolver();
+		try {
+			for (File file : listFiles(path)) {
+				log.info(file.getPath());
+				final FilesystemMetadataProvider metadataProvider = new FilesystemMetadataProvider(timer, file);
+				providers.add(metadataProvider);
+				metadataProvider.setParserPool(new BasicParserPool());
+				metadataProvider.initialize();
+				final EntityDescriptor entityDescriptor = (EntityDescriptor) metadataProvider.getMetadata();
+				final String entityID = entityDescriptor.getEntityID();
+				entityDescriptors.put(entityID, entityDescriptor);
+				signatureTrustEngines.put(entityID, new ExplicitKeySignatureTrustEngine(
+						new MetadataCredentialResolver(metadataProvider), keyInfoCredResolver));
+			}
+		} catch (MetadataProviderException | RuntimeException e) {
+			destroy(providers);
+			throw e;
+		}
+		return new SamlMetadata(path, fingerprint, entityDescriptors, signatureTrustEngines, providers);
+	}
+
+	private void destroyLater() {
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				destroy(providers);
+			}
+		}, DESTROY_DELAY);
+	}
+
+	private static void destroy(List<FilesystemMetadataProvider> providers) {
+		for (FilesystemMetadataProvider provider : providers) {
+			try {
+				provider.destroy();
+			} catch (RuntimeException e) {
+				log.error("Error destroying saml metadata provider.", e);
+			}
+		}
+	}
+
+	private static File[] listFiles(String path) {
+		final File[] files = new File(path).listFiles(File::isFile);
+		if (files == null) {
+			return new File[0];
+		}
+		Arrays.sort(files);
+		return files;
+	}
+
+	private static String fingerprint(String path) {
+		final StringBuilder sb = new StringBuilder();
+		for (File file : listFiles(path)) {
+			sb.append(file.getName()).append(':').append(file.lastModified()).append(':')
+					.append(file.length()).append(';');
+		}
+		return sb.toString();
+	}
+
+	EntityDescriptor getEntityDescriptor(String entityID) {
+		return entityDescriptors.get(entityID);
+	}
+
+	SignatureTrustEngine getSignatureTrustEngine(String entityID) {
+		return signatureTrustEngines.get(entityID);
+	}
+
+	int size() {
+		return entityDescriptors.size();
+	}
+
+}
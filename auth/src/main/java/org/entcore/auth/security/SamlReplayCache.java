@@ -0,0 +1,99 @@
+/* Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ *
+ */
+
+package org.entcore.auth.security;
+
+import org.joda.time.DateTime;
+import org.opensaml.saml2.core.Assertion;
+import org.opensaml.saml2.core.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ids of the already validated SAML assertions, kept until the end of their validity
+ * (<code>NotOnOrAfter</code> condition, or <code>ttl</code> when there is none).
+ * Shared by the SamlValidator instances of the JVM.
+ */
+final class SamlReplayCache {
+
+	private static final SamlReplayCache instance = new SamlReplayCache();
+	private final Map<String, Long> ids = new ConcurrentHashMap<>();
+	private volatile long ttl = 600000L;
+	private volatile int maxSize = 100000;
+
+	private SamlReplayCache() {}
+
+	static SamlReplayCache getInstance() {
+		return instance;
+	}
+
+	void configure(long ttl, int maxSize) {
+		this.ttl = ttl;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Register the ids of the assertions of the response.
+	 * @param decrypted the decrypted assertion of the response, if any
+	 * @return true if one of the ids was already registered
+	 */
+	boolean isReplayed(Response response, Assertion decrypted) {
+		final long now = System.currentTimeMillis();
+		final List<Assertion> assertions = new ArrayList<>();
+		if (response.getAssertions() != null) {
+			assertions.addAll(response.getAssertions());
+		}
+		if (decrypted != null) {
+			assertions.add(decrypted);
+		}
+		final List<String> keys = new ArrayList<>();
+		long expire = now + ttl;
+		for (Assertion assertion : assertions) {
+			if (assertion.getID() != null) {
+				keys.add("a:" + assertion.getID());
+			}
+			if (assertion.getConditions() != null && assertion.getConditions().getNotOnOrAfter() != null) {
+				final DateTime notOnOrAfter = assertion.getConditions().getNotOnOrAfter();
+				expire = Math.max(expire, notOnOrAfter.getMillis());
+			}
+		}
+		if (keys.isEmpty() && response.getID() != null) {
+			keys.add("r:" + response.getID());
+		}
+		if (ids.size() >= maxSize) {
+			ids.values().removeIf(until -> until < now);
+		}
+		boolean replayed = false;
+		for (String key : keys) {
+			final Long previous = ids.put(key, expire);
+			if (previous != null && previous >= now) {
+				replayed = true;
+			}
+		}
+		return replayed;
+	}
+
+	int size() {
+		return ids.size();
+	}
+
+}
@@ -40,25 +40,20 @@ import org.opensaml.saml2.core.*;
 import org.opensaml.saml2.core.impl.*;
 import org.opensaml.saml2.encryption.Decrypter;
 import org.opensaml.saml2.metadata.*;
-import org.opensaml.saml2.metadata.provider.FilesystemMetadataProvider;
 import org.opensaml.saml2.metadata.provider.MetadataProviderException;
-import org.opensaml.security.MetadataCredentialResolver;
 import org.opensaml.security.MetadataCriteria;
 import org.opensaml.security.SAMLSignatureProfileValidator;
 import org.opensaml.ws.soap.soap11.Body;
 import org.opensaml.ws.soap.soap11.Envelope;
-import org.opensaml.xml.Configuration;
 import org.opensaml.xml.ConfigurationException;
 import org.opensaml.xml.encryption.InlineEncryptedKeyResolver;
 import org.opensaml.xml.io.MarshallingException;
-import org.opensaml.xml.parse.BasicParserPool;
 import org.opensaml.xml.schema.XSString;
 import org.opensaml.xml.schema.impl.XSStringBuilder;
 import org.opensaml.xml.security.CriteriaSet;
 import org.opensaml.xml.security.credential.UsageType;
 import org.opensaml.xml.security.criteria.EntityIDCriteria;
 import org.opensaml.xml.security.criteria.UsageCriteria;
-import org.opensaml.xml.security.keyinfo.KeyInfoCredentialResolver;
 import org.opensaml.xml.security.keyinfo.StaticKeyInfoCredentialResolver;
 import org.opensaml.xml.security.x509.BasicX509Credential;
 import org.opensaml.xml.signature.KeyInfo;
@@ -67,7 +62,6 @@ import org.opensaml.xml.signature.SignatureConstants;
 import org.opensaml.xml.signature.SignatureTrustEngine;
 import org.opensaml.xml.signature.Signer;
 import org.opensaml.xml.signature.X509Data;
-import org.opensaml.xml.signature.impl.ExplicitKeySignatureTrustEngine;
 import org.opensaml.xml.signature.impl.SignatureBuilder;
 import org.opensaml.xml.util.XMLHelper;
 import org.opensaml.xml.validation.ValidationException;
@@ -104,10 +98,13 @@ import static fr.wseduc.webutils.Utils.isNotEmpty;
 
 public class SamlValidator extends BusModBase implements Handler<Message<JsonObject>> {
 
-	private final Map<String, SignatureTrustEngine> signatureTrustEngineMap = new HashMap<>();
-	private final Map<String, EntityDescriptor> entityDescriptorMap = new HashMap<>();
+	private static final AtomicBoolean metadataWatched = new AtomicBoolean(false);
+	private String metadataFolder;
 	private SPSSODescriptor spSSODescriptor;
 	private RSAPrivateKey privateKey;
+	private BasicX509Credential signingCredential;
+	private boolean replayDetection;
+	private boolean metadataWatcher;
 	private String issuer;
 	private SamlVectorService samlVectorService;
 	private Neo4j neo4j;
@@ -142,7 +139,9 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 		}
 
 		try {
-			DefaultBootstrap.bootstrap();
+			synchronized (SamlValidator.class) {
+				DefaultBootstrap.bootstrap();
+			}
 			String path = config.getString("saml-metadata-folder");
 			if (path == null || path.trim().isEmpty()) {
 				logger.error("Metadata folder not found.");
@@ -154,9 +153,16 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 				return;
 			}
 
-			for (String f : vertx.fileSystem().readDirBlocking(path)) {
-				loadSignatureTrustEngine(f);
+			metadataFolder = path;
+			SamlMetadata.get(metadataFolder);
+			final long reloadInterval = config.getLong("saml-metadata-reload-interval", 60000L);
+			if (reloadInterval > 0 && metadataWatched.compareAndSet(false, true)) {
+				metadataWatcher = true;
+				vertx.setPeriodic(reloadInterval, t -> SamlMetadata.reloadIfChanged(metadataFolder));
 			}
+			replayDetection = config.getBoolean("saml-replay-detection", true);
+			SamlReplayCache.getInstance().configure(config.getLong("saml-replay-ttl", 600000L),
+					config.getInteger("saml-replay-max-size", 100000));
 			loadPrivateKey(config.getString("saml-private-key"));
 			vertx.eventBus().localConsumer("saml", this);
 		} catch (ConfigurationException | MetadataProviderException | InvalidKeySpecException
@@ -165,6 +171,14 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 		}
 	}
 
+	@Override
+	public void stop() throws Exception {
+		if (metadataWatcher) {
+			metadataWatched.set(false);
+		}
+		super.stop();
+	}
+
 	private void loadPrivateKey(String path) throws NoSuchAlgorithmException, InvalidKeySpecException {
 		logger.info("loadPrivateKey : " + path);
 		if (path != null && !path.trim().isEmpty() && vertx.fileSystem().existsBlocking(path)) {
@@ -208,15 +222,19 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 				generateSAMLResponse(serviceProvider, authNRequestId, userId, nameid, host, url, message);
 				break;
 			case "validate-signature":
-				sendOK(message, new JsonObject().put("valid", validateSignature(response)));
+				final Response r = SamlUtils.unmarshallResponse(response);
+				sendOK(message, new JsonObject().put("valid", validateSignature(r, null) &&
+						!isReplayed(message, r, null)));
 				break;
 			case "decrypt-assertion":
 				sendOK(message, new JsonObject().put("assertion", decryptAssertion(response)));
 				break;
 			case "validate-signature-decrypt":
 				final JsonObject res = new JsonObject();
-				if (validateSignature(response)) {
-					res.put("valid", true).put("assertion", decryptAssertion(response));
+				final Response encrypted = SamlUtils.unmarshallResponse(response);
+				final Assertion decrypted = decryptAssertion(encrypted);
+				if (validateSignature(encrypted, decrypted) && !isReplayed(message, encrypted, decrypted)) {
+					res.put("valid", true).put("assertion", SamlUtils.marshallAssertion(decrypted));
 				} else {
 					res.put("valid", false).put("assertion", (String) null);
 				}
@@ -450,23 +468,33 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 		return createSignature(false);
 	}
 
+	/**
+	 * The signing credential is built once, from the private key and the public cert specified in file conf
+	 */
+	private BasicX509Credential getSigningCredential() throws Exception {
+		if (signingCredential == null) {
+			// create public key (cert) portion of credential
+			String publicKeyPath = config.getString("saml-public-key");
+			final X509Certificate cer;
+			try (FileInputStream inStream = new FileInputStream(publicKeyPath)) {
+				CertificateFactory cf = CertificateFactory.getInstance("X.509");
+				cer = (X509Certificate) cf.generateCertificate(inStream);
+			}
+
+			// create credential and initialize
+			BasicX509Credential credential = new BasicX509Credential();
+			credential.setEntityCertificate(cer);
+			credential.setPrivateKey(privateKey);
+			signingCredential = credential;
+		}
+		return signingCredential;
+	}
+
 	private Signature createSignature(boolean addKeyInfo) throws Throwable {
 		SignatureBuilder builder = new SignatureBuilder();
 		Signature signature = builder.buildObject();
 
-		// create public key (cert) portion of credential
-		String publicKeyPath = config.getString("saml-public-key");
-		FileInputStream inStream = new FileInputStream(publicKeyPath);
-		CertificateFactory cf = CertificateFactory.getInstance("X.509");
-		X509Certificate cer = (X509Certificate) cf.generateCertificate(inStream);
-		inStream.close();
-
-		// create credential and initialize
-		BasicX509Credential credential = new BasicX509Credential();
-		credential.setEntityCertificate(cer);
-		// credential.setPublicKey(cer.getPublicKey());
-		credential.setPrivateKey(privateKey);
-
+		final BasicX509Credential credential = getSigningCredential();
 		signature.setSigningCredential(credential);
 		signature.setSignatureAlgorithm(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA1);
 		signature.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
@@ -706,7 +734,7 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 	 *
 	 */
 	private SPSSODescriptor getSSODescriptor(String serviceProvider) {
-		EntityDescriptor entityDescriptor = entityDescriptorMap.get(serviceProvider);
+		EntityDescriptor entityDescriptor = getEntityDescriptor(serviceProvider);
 
 		if (entityDescriptor == null) {
 			return null;
@@ -905,7 +933,7 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 
 	private String getAuthnRequestUri(String idp) {
 		String ssoServiceURI = null;
-		EntityDescriptor entityDescriptor = entityDescriptorMap.get(idp);
+		EntityDescriptor entityDescriptor = getEntityDescriptor(idp);
 		if (entityDescriptor != null) {
 			for (SingleSignOnService ssos : entityDescriptor.getIDPSSODescriptor(SAMLConstants.SAML20P_NS)
 					.getSingleSignOnServices()) {
@@ -923,7 +951,7 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 
 	private String getLogoutUri(String idp, String sloBinding) {
 		String sloServiceURI = null;
-		EntityDescriptor entityDescriptor = entityDescriptorMap.get(idp);
+		EntityDescriptor entityDescriptor = getEntityDescriptor(idp);
 		if (entityDescriptor != null) {
 			IDPSSODescriptor idpSSODescriptor = entityDescriptor.getIDPSSODescriptor(SAMLConstants.SAML20P_NS);
 			List<SingleLogoutService> sLogoutServices;
@@ -949,7 +977,13 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 	}
 
 	public boolean validateSignature(String assertion) throws Exception {
-		final Response response = SamlUtils.unmarshallResponse(assertion);
+		return validateSignature(SamlUtils.unmarshallResponse(assertion), null);
+	}
+
+	/**
+	 * @param decrypted the already decrypted assertion of the response, if any
+	 */
+	private boolean validateSignature(Response response, Assertion decrypted) throws Exception {
 		final SAMLSignatureProfileValidator profileValidator = new SAMLSignatureProfileValidator();
 		Signature signature = response.getSignature();
 
@@ -959,7 +993,7 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 					signature = a.getSignature();
 				}
 			} else if (response.getEncryptedAssertions() != null && !response.getEncryptedAssertions().isEmpty()) {
-				Assertion a = decryptAssertion(response);
+				Assertion a = (decrypted != null) ? decrypted : decryptAssertion(response);
 				if (a != null) {
 					signature = a.getSignature();
 				}
@@ -975,6 +1009,10 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 		profileValidator.validate(signature);
 
 		SignatureTrustEngine sigTrustEngine = getSignatureTrustEngine(response);
+		if (sigTrustEngine == null) {
+			logger.error("Unknown issuer : " + SamlUtils.getIssuer(response));
+			return false;
+		}
 		CriteriaSet criteriaSet = new CriteriaSet();
 		criteriaSet.add(new EntityIDCriteria(SamlUtils.getIssuer(response)));
 		criteriaSet.add(new MetadataCriteria(IDPSSODescriptor.DEFAULT_ELEMENT_NAME, SAMLConstants.SAML20P_NS));
@@ -983,19 +1021,27 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 		return sigTrustEngine.validate(signature, criteriaSet);
 	}
 
-	private void loadSignatureTrustEngine(String filePath) throws MetadataProviderException {
-		logger.info(filePath);
-		FilesystemMetadataProvider metadataProvider = new FilesystemMetadataProvider(new File(filePath));
-		metadataProvider.setParserPool(new BasicParserPool());
-		metadataProvider.initialize();
-		MetadataCredentialResolver metadataCredResolver = new MetadataCredentialResolver(metadataProvider);
-		KeyInfoCredentialResolver keyInfoCredResolver = Configuration.getGlobalSecurityConfiguration()
-				.getDefaultKeyInfoCredentialResolver();
-		EntityDescriptor entityDescriptor = (EntityDescriptor) metadataProvider.getMetadata();
-		String entityID = entityDescriptor.getEntityID();
-		entityDescriptorMap.put(entityID, entityDescriptor);
-		signatureTrustEngineMap.put(entityID,
-				new ExplicitKeySignatureTrustEngine(metadataCredResolver, keyInfoCredResolver));
+	private boolean isReplayed(Message<JsonObject> message, Response response, Assertion decrypted) {
+		if (replayDetection && message.body().getBoolean("check-replay", false) &&
+				SamlReplayCache.getInstance().isReplayed(response, decrypted)) {
+			logger.error("Replayed saml assertion from issuer : " + SamlUtils.getIssuer(response));
+			return true;
+		}
+		return false;
+	}
+
+	private EntityDescriptor getEntityDescriptor(String entityID) {
+		final SamlMetadata metadata = getMetadata();
+		return (metadata != null) ? metadata.getEntityDescriptor(entityID) : null;
+	}
+
+	private SamlMetadata getMetadata() {
+		try {
+			return SamlMetadata.get(metadataFolder);
+		} catch (MetadataProviderException e) {
+			logger.error("Error loading saml metadata.", e);
+			return null;
+		}
 	}
 
 	private SignatureTrustEngine getSignatureTrustEngine(Response response) {
@@ -1003,7 +1049,8 @@ public class SamlValidator extends BusModBase implements Handler<Message<JsonObj
 		// IDP Aten urn:fi:ac-paris:ts:1.0
 		String issuer = SamlUtils.getIssuer(response);
 		debug("getSignatureTrustEngine from issuer : " + issuer);
-		return signatureTrustEngineMap.get(issuer);
+		final SamlMetadata metadata = getMetadata();
+		return (metadata != null) ? metadata.getSignatureTrustEngine(issuer) : null;
 	}
 
 	private String decryptAssertion(String response) throws Exception {
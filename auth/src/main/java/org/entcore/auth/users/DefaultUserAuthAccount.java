@@ -31,6 +31,7 @@ import fr.wseduc.webutils.email.EmailSender;
 import fr.wseduc.webutils.security.NTLM;
 
 import org.entcore.auth.pojo.SendPasswordDestination;
+import org.entcore.auth.security.PasswordVerifier;
 import io.vertx.core.shareddata.LocalMap;
 import org.entcore.common.email.EmailFactory;
 import org.entcore.common.events.EventStore;
@@ -53,7 +54,6 @@ import org.entcore.common.validation.StringValidation;
 
 import fr.wseduc.webutils.Server;
 import fr.wseduc.webutils.http.Renders;
-import fr.wseduc.webutils.security.BCrypt;
 
 import static fr.wseduc.webutils.Utils.getOrElse;
 import static fr.wseduc.webutils.Utils.handlerToAsyncHandler;
@@ -77,8 +77,15 @@ public class DefaultUserAuthAccount implements UserAuthAccount {
 	private final EventStore eventStore;
 	private final boolean storePasswordEventEnabled;
 	private final long resetCodeExpireDelay;
+	private final PasswordVerifier passwordVerifier;
 
 	public DefaultUserAuthAccount(Vertx vertx, JsonObject config, EventStore eventStore) {
+		this(vertx, config, eventStore, new PasswordVerifier(vertx,
+				config.getJsonObject("password-verifier", new JsonObject())));
+	}
+
+	public DefaultUserAuthAccount(Vertx vertx, JsonObject config, EventStore eventStore,
+			PasswordVerifier passwordVerifier) {
 		this.eb = Server.getEventBus(vertx);
 		this.neo = new Neo(vertx, eb, null);
 		this.vertx = vertx;
@@ -99,6 +106,7 @@ public class DefaultUserAuthAccount implements UserAuthAccount {
 		this.eventStore = eventStore;
 		this.storePasswordEventEnabled = (config.getString("password-event-min-date") != null);
 		this.resetCodeExpireDelay = getOrElse(config.getLong("reset-code-expire-delay"), 3600000l);
+		this.passwordVerifier = passwordVerifier;
 	}
 
 	@Override
@@ -121,6 +129,20 @@ public class DefaultUserAuthAccount implements UserAuthAccount {
 
 	private void activateAccount(final String loginFieldName, final String login, String activationCode, final String password,
 	 	String email, String phone, final String theme, final Boolean needRevalidateTerms, final HttpServerRequest request, final Handler<Either<String, String>> handler) {
+		passwordVerifier.hash(password, ar -> {
+			if (ar.succeeded()) {
+				activateAccount(loginFieldName, login, activationCode, password, ar.result(), email, phone, theme,
+						needRevalidateTerms, request, handler);
+			} else {
+				log.error("Error hashing password for activation", ar.cause());
+				handler.handle(new Either.Left<String, String>("activation.error"));
+			}
+		});
+	}
+
+	private void activateAccount(final String loginFieldName, final String login, String activationCode, final String password,
+		String hashedPassword, String email, String phone, final String theme, final Boolean needRevalidateTerms,
+		final HttpServerRequest request, final Handler<Either<String, String>> handler) {
 		String query =
 				"MATCH (n:User) " +
 				"WHERE n." + loginFieldName + "={login} AND n.activationCode = {activationCode} AND n.password IS NULL " +
@@ -138,7 +160,7 @@ public class DefaultUserAuthAccount implements UserAuthAccount {
 		Map<String, Object> params = new HashMap<>();
 		params.put("login", login);
 		params.put("activationCode", activationCode);
-		params.put("password", BCrypt.hashpw(password, BCrypt.gensalt()));
+		params.put("password", hashedPassword);
 		params.put("email", email);
 		params.put("phone", phone);
 		params.put("allowActivateDuplicate", allowActivateDuplicateProfiles);
@@ -184,15 +206,20 @@ public class DefaultUserAuthAccount implements UserAuthAccount {
 					neo.send(q, p, new Handler<Message<JsonObject>>() {
 						@Override
 						public void handle(Message<JsonObject> event) {
-							if ("ok".equals(event.body().getString("status")) &&
-									event.body().getJsonObject("result").getJsonObject("0") != null &&
-									BCrypt.checkpw(password, event.body().getJsonObject("result").getJsonObject("0")
-											.getString("password", ""))) {
-								handler.handle(new Either.Right<String, String>(
-										event.body().getJsonObject("result").getJsonObject("0").getString("id")));
-							} else {
+							final JsonObject user = "ok".equals(event.body().getString("status")) ?
+									event.body().getJsonObject("result").getJsonObject("0") : null;
+							if (user == null || user.getString("password", "").isEmpty()) {
 								handler.handle(new Either.Left<String, String>("activation.error"));
+								return;
 							}
+							passwordVerifier.verify(request != null ? Renders.getIp(request) : null, login, password,
+									user.getString("password"), ar -> {
+								if (ar.succeeded() && Boolean.TRUE.equals(ar.result())) {
+									handler.handle(new Either.Right<String, String>(user.getString("id")));
+								} else {
+									handler.handle(new Either.Left<String, String>("activation.error"));
+								}
+							});
 						}
 					});
 				}
@@ -923,21 +950,37 @@ public class DefaultUserAuthAccount implements UserAuthAccount {
 				"SET u.otp = {otp}, u.otpiat = {otpiat} ";
 		final String otp = StringValidation.generateRandomCode(8);
 		final long now = System.currentTimeMillis();
-		final JsonObject params = new JsonObject()
-				.put("id", id)
-				.put("otp", BCrypt.hashpw(otp, BCrypt.gensalt()))
-				.put("otpiat", now);
-		Neo4j.getInstance().execute(query, params, res -> {
-			if ("ok".equals(res.body().getString("status"))) {
-				handler.handle(new Either.Right<>(new JsonObject().put("otp", otp).put("otpiat", now)));
-			} else {
-				handler.handle(new Either.Left<>(res.body().getString("message")));
+		passwordVerifier.hash(otp, ar -> {
+			if (ar.failed()) {
+				handler.handle(new Either.Left<>(ar.cause().getMessage()));
+				return;
 			}
+			final JsonObject params = new JsonObject()
+					.put("id", id)
+					.put("otp", ar.result())
+					.put("otpiat", now);
+			Neo4j.getInstance().execute(query, params, res -> {
+				if ("ok".equals(res.body().getString("status"))) {
+					handler.handle(new Either.Right<>(new JsonObject().put("otp", otp).put("otpiat", now)));
+				} else {
+					handler.handle(new Either.Left<>(res.body().getString("message")));
+				}
+			});
 		});
 	}
 
 	private void updatePassword(final Handler<JsonObject> handler, String query, String password, String login, Map<String, Object> params) {
-		final String pw = BCrypt.hashpw(password, BCrypt.gensalt());
+		passwordVerifier.hash(password, ar -> {
+			if (ar.succeeded()) {
+				updateHashedPassword(handler, query, password, ar.result(), params);
+			} else {
+				log.error("Error hashing password for user " + login, ar.cause());
+				handler.handle(null);
+			}
+		});
+	}
+
+	private void updateHashedPassword(final Handler<JsonObject> handler, String query, String password, String pw, Map<String, Object> params) {
 		params.put("password", pw);
 		neo.send(query, params, res -> {
 			JsonObject r = res.body().getJsonObject("result");
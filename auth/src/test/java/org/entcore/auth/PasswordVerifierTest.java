@@ -0,0 +1,117 @@
+package org.entcore.auth;
+
+import fr.wseduc.webutils.security.BCrypt;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.auth.security.PasswordVerifier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RunWith(VertxUnitRunner.class)
+public class PasswordVerifierTest {
+
+    private static final Logger log = LoggerFactory.getLogger(PasswordVerifierTest.class);
+    private static final int LOGINS = 100;
+    private static final long TICK = 10L;
+
+    private Vertx vertx;
+    private PasswordVerifier verifier;
+    private String hash;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1)
+                .setBlockedThreadCheckInterval(100L).setMaxEventLoopExecuteTime(TimeUnit.MILLISECONDS.toNanos(50L)));
+        verifier = new PasswordVerifier(vertx, new JsonObject().put("pool-size", 4).put("max-pending", LOGINS)
+                .put("max-per-ip", LOGINS).put("max-per-login", 2).put("bcrypt-cost", 10));
+        hash = BCrypt.hashpw("password", BCrypt.gensalt(10));
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        verifier.close();
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testLoginBurstShouldNotBlockEventLoop(TestContext context) {
+        final Async async = context.async();
+        vertx.runOnContext(v -> burst((i, done) -> {
+            done.handle(BCrypt.checkpw("password", hash));
+        }, inlineLag -> burst((i, done) -> verifier.verify("10.0.0." + (i % 50), "user" + i, "password", hash,
+                ar -> done.handle(ar.succeeded() && ar.result())), workerLag -> {
+            log.info(LOGINS + " concurrent logins : max event loop lag with inline BCrypt " + inlineLag +
+                    " ms, with password verifier " + workerLag + " ms, metrics " + verifier.getMetrics().encode());
+            context.assertTrue(workerLag < 50L);
+            context.assertTrue(workerLag < inlineLag);
+            async.complete();
+        })));
+    }
+
+    @Test
+    public void testConcurrentLoginsShouldBeRejected(TestContext context) {
+        final Async async = context.async();
+        final AtomicInteger rejected = new AtomicInteger();
+        final AtomicInteger succeeded = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            verifier.verify("10.0.0.1", "user", "password", hash, ar -> {
+                if (ar.failed()) {
+                    context.assertTrue(ar.cause() instanceof PasswordVerifier.RejectedException);
+                    context.assertFalse(((PasswordVerifier.RejectedException) ar.cause()).isSaturated());
+                    rejected.incrementAndGet();
+                } else {
+                    context.assertTrue(ar.result());
+                    succeeded.incrementAndGet();
+                }
+                if (rejected.get() + succeeded.get() == 5) {
+                    context.assertEquals(3, rejected.get());
+                    context.assertTrue(verifier.needsRehash(BCrypt.hashpw("password", BCrypt.gensalt(4))));
+                    context.assertFalse(verifier.needsRehash(hash));
+                    async.complete();
+                }
+            });
+        }
+    }
+
+    private interface Login {
+        void run(int index, Handler<Boolean> done);
+    }
+
+    /**
+     * Run the logins concurrently and measure the max lag of a periodic timer on the event loop.
+     */
+    private void burst(Login login, Handler<Long> handler) {
+        final AtomicLong maxLag = new AtomicLong();
+        final AtomicLong last = new AtomicLong(System.currentTimeMillis());
+        final long timerId = vertx.setPeriodic(TICK, t -> {
+            final long now = System.currentTimeMillis();
+            maxLag.accumulateAndGet(now - last.getAndSet(now) - TICK, Math::max);
+        });
+        final AtomicInteger remaining = new AtomicInteger(LOGINS);
+        for (int i = 0; i < LOGINS; i++) {
+            final int index = i;
+            vertx.runOnContext(v -> login.run(index, ok -> {
+                if (remaining.decrementAndGet() == 0) {
+                    vertx.setTimer(2 * TICK, t -> {
+                        vertx.cancelTimer(timerId);
+                        handler.handle(maxLag.get());
+                    });
+                }
+            }));
+        }
+    }
+
+}
@@ -0,0 +1,224 @@
+package org.entcore.auth;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.auth.security.SamlUtils;
+import org.entcore.auth.security.SamlValidator;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opensaml.DefaultBootstrap;
+import org.opensaml.common.SAMLVersion;
+import org.opensaml.saml2.core.Assertion;
+import org.opensaml.saml2.core.Issuer;
+import org.opensaml.saml2.core.Response;
+import org.opensaml.xml.Configuration;
+import org.opensaml.xml.security.x509.BasicX509Credential;
+import org.opensaml.xml.signature.Signature;
+import org.opensaml.xml.signature.SignatureConstants;
+import org.opensaml.xml.signature.Signer;
+import org.opensaml.xml.signature.impl.SignatureBuilder;
+import org.opensaml.xml.util.XMLHelper;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validation of locally generated signed assertions, against metadata with the signing key as RSAKeyValue.
+ */
+@RunWith(VertxUnitRunner.class)
+public class SamlValidationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SamlValidationTest.class);
+    private static final String IDP = "urn:test:idp";
+    private static final int ASSERTIONS = 1000;
+
+    private static KeyPair key;
+    private Vertx vertx;
+    private File metadataFolder;
+
+    @BeforeClass
+    public static void bootstrap() throws Exception {
+        DefaultBootstrap.bootstrap();
+        key = generateKey();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        metadataFolder = Files.createTempDirectory("saml-metadata").toFile();
+        writeMetadata("idp.xml", key);
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+        for (File f : metadataFolder.listFiles()) {
+            f.delete();
+        }
+        metadataFolder.delete();
+    }
+
+    @Test
+    public void testValidationThroughput(TestContext context) throws Exception {
+        final List<String> responses1 = signedResponses(key, ASSERTIONS);
+        final List<String> responses4 = signedResponses(key, ASSERTIONS);
+        final Async async = context.async();
+        deploy(context, 1, id1 -> validateAll(context, responses1, rate1 -> vertx.undeploy(id1,
+                context.asyncAssertSuccess(v -> deploy(context, 4, id4 -> validateAll(context, responses4, rate4 -> {
+            log.info("Saml validation of " + ASSERTIONS + " signed assertions : 1 validator " + rate1 +
+                    " assertions/s, 4 validators " + rate4 + " assertions/s");
+            async.complete();
+        })))))));
+    }
+
+    @Test
+    public void testReplayedAssertionShouldBeRejected(TestContext context) throws Exception {
+        final String response = signedResponses(key, 1).get(0);
+        final Async async = context.async();
+        deploy(context, 2, id -> validate(response, true, r1 -> {
+            context.assertTrue(r1.body().getBoolean("valid"));
+            validate(response, false, r2 -> {
+                context.assertTrue(r2.body().getBoolean("valid"));
+                validate(response, true, r3 -> {
+                    context.assertFalse(r3.body().getBoolean("valid"));
+                    async.complete();
+                });
+            });
+        }));
+    }
+
+    @Test
+    public void testMetadataShouldBeReloaded(TestContext context) throws Exception {
+        final KeyPair newKey = generateKey();
+        final String response = signedResponses(newKey, 1).get(0);
+        final Async async = context.async();
+        deploy(context, 2, id -> validate(response, false, r1 -> {
+            context.assertFalse(r1.body().getBoolean("valid"));
+            try {
+                new File(metadataFolder, "idp.xml").delete();
+                writeMetadata("idp-rollover.xml", newKey);
+            } catch (Exception e) {
+                context.fail(e);
+            }
+            vertx.setTimer(500L, t -> validate(response, false, r2 -> {
+                context.assertTrue(r2.body().getBoolean("valid"));
+                async.complete();
+            }));
+        }));
+    }
+
+    private void deploy(TestContext context, int instances, Handler<String> handler) {
+        final JsonObject config = new JsonObject()
+                .put("saml-metadata-folder", metadataFolder.getAbsolutePath())
+                .put("saml-issuer", "urn:test:sp")
+                .put("saml-metadata-reload-interval", 100L);
+        vertx.deployVerticle(SamlValidator.class, new DeploymentOptions().setConfig(config).setWorker(true)
+                .setInstances(instances), context.asyncAssertSuccess(handler));
+    }
+
+    private void validate(String response, boolean checkReplay, Handler<Message<JsonObject>> handler) {
+        vertx.eventBus().<JsonObject>request("saml", new JsonObject().put("action", "validate-signature")
+                .put("response", response).put("check-replay", checkReplay), ar -> handler.handle(ar.result()));
+    }
+
+    private void validateAll(TestContext context, List<String> responses, Handler<Long> handler) {
+        final AtomicInteger remaining = new AtomicInteger(responses.size());
+        final long start = System.currentTimeMillis();
+        for (String response : responses) {
+            validate(response, true, r -> {
+                context.assertEquals("ok", r.body().getString("status"));
+                context.assertTrue(r.body().getBoolean("valid"));
+                if (remaining.decrementAndGet() == 0) {
+                    handler.handle(responses.size() * 1000L / Math.max(1L, System.currentTimeMillis() - start));
+                }
+            });
+        }
+    }
+
+    private static KeyPair generateKey() throws Exception {
+        final KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    private void writeMetadata(String fileName, KeyPair keyPair) throws Exception {
+        final RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+        final String metadata =
+                "<md:EntityDescriptor xmlns:md=\"urn:oasis:names:tc:SAML:2.0:metadata\" " +
+                "xmlns:ds=\"http://www.w3.org/2000/09/xmldsig#\" entityID=\"" + IDP + "\">" +
+                "<md:IDPSSODescriptor protocolSupportEnumeration=\"urn:oasis:names:tc:SAML:2.0:protocol\">" +
+                "<md:KeyDescriptor use=\"signing\"><ds:KeyInfo><ds:KeyValue><ds:RSAKeyValue>" +
+                "<ds:Modulus>" + base64(publicKey.getModulus()) + "</ds:Modulus>" +
+                "<ds:Exponent>" + base64(publicKey.getPublicExponent()) + "</ds:Exponent>" +
+                "</ds:RSAKeyValue></ds:KeyValue></ds:KeyInfo></md:KeyDescriptor>" +
+                "<md:SingleSignOnService Binding=\"urn:oasis:names:tc:SAML:2.0:bindings:HTTP-Redirect\" " +
+                "Location=\"https://idp.test/sso\"/>" +
+                "</md:IDPSSODescriptor></md:EntityDescriptor>";
+        Files.write(new File(metadataFolder, fileName).toPath(), metadata.getBytes("UTF-8"));
+    }
+
+    private static String base64(BigInteger value) {
+        final byte[] bytes = value.toByteArray();
+        return Base64.getEncoder().encodeToString(bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes);
+    }
+
+    private static List<String> signedResponses(KeyPair keyPair, int count) throws Exception {
+        final BasicX509Credential credential = new BasicX509Credential();
+        credential.setPublicKey(keyPair.getPublic());
+        credential.setPrivateKey(keyPair.getPrivate());
+        final List<String> responses = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final String id = UUID.randomUUID().toString();
+            final Assertion assertion = SamlUtils.buildSAMLObjectWithDefaultName(Assertion.class);
+            assertion.setID("_a" + id);
+            assertion.setVersion(SAMLVersion.VERSION_20);
+            assertion.setIssueInstant(new DateTime());
+            assertion.setIssuer(issuer());
+            final Signature signature = new SignatureBuilder().buildObject();
+            signature.setSigningCredential(credential);
+            signature.setSignatureAlgorithm(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA1);
+            signature.setCanonicalizationAlgorithm(SignatureConstants.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+            assertion.setSignature(signature);
+
+            final Response response = SamlUtils.buildSAMLObjectWithDefaultName(Response.class);
+            response.setID("_r" + id);
+            response.setVersion(SAMLVersion.VERSION_20);
+            response.setIssueInstant(new DateTime());
+            response.setIssuer(issuer());
+            response.getAssertions().add(assertion);
+            Configuration.getMarshallerFactory().getMarshaller(response).marshall(response);
+            Signer.signObject(signature);
+            responses.add(XMLHelper.nodeToString(response.getDOM()));
+        }
+        return responses;
+    }
+
+    private static Issuer issuer() throws Exception {
+        final Issuer issuer = SamlUtils.buildSAMLObjectWithDefaultName(Issuer.class);
+        issuer.setValue(IDP);
+        return issuer;
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.http.filter;
+
+import fr.wseduc.webutils.http.Binding;
+import fr.wseduc.webutils.http.HttpMethod;
+import fr.wseduc.webutils.security.ActionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Binding lookup time by number of bindings : the two-pass linear scan that AbstractActionFilter did
+ * before the router (patterns equal to the path, then every regex), and the compiled router.
+ * The looked up paths are spread over all the bindings, as the requests of a module.
+ * Run with : gradle :common:jmh -PjmhIncludes=BindingsRouterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BindingsRouterBenchmark {
+
+	private static final int PATHS = 1024;
+
+	@Param({"10", "100", "1000"})
+	private int size;
+
+	private List<Binding> bindings;
+	private BindingsRouter router;
+	private String[] paths;
+	private int next;
+
+	@Setup
+	public void setup() {
+		bindings = new ArrayList<>(size);
+		final List<String> routePaths = new ArrayList<>(size);
+		for (int i = 0; bindings.size() < size; i++) {
+			// bindings of a controller, as web-utils compiles them (:param segments are named groups)
+			switch (i % 4) {
+				case 0:
+					bindings.add(binding(HttpMethod.GET, "/app" + i + "/list"));
+					routePaths.add("/app" + i + "/list");
+					break;
+				case 1:
+					bindings.add(binding(HttpMethod.GET, "/app" + i + "/(?<id>[^\\/]+)"));
+					routePaths.add("/app" + i + "/a1b2");
+					break;
+				case 2:
+					bindings.add(binding(HttpMethod.GET, "/app" + i + "/(?<id>[^\\/]+)/item/(?<itemId>[^\\/]+)"));
+					routePaths.add("/app" + i + "/a1b2/item/c3d4");
+					break;
+				default:
+					bindings.add(binding(HttpMethod.PUT, "/app" + i + "/(?<id>[^\\/]+)"));
+					routePaths.add("/app" + (i - 2) + "/a1b2");
+			}
+		}
+		final Random random = new Random(42);
+		paths = new String[PATHS];
+		for (int i = 0; i < PATHS; i++) {
+			paths[i] = routePaths.get(random.nextInt(routePaths.size()));
+		}
+		router = new BindingsRouter(bindings, true);
+		router.route("GET", paths[0]);
+	}
+
+	private static Binding binding(HttpMethod method, String pattern) {
+		return new Binding(method, Pattern.compile(pattern), "action", ActionType.RESOURCE);
+	}
+
+	private String nextPath() {
+		return paths[next++ & (PATHS - 1)];
+	}
+
+	@Benchmark
+	public Binding linearScan() {
+		final String path = nextPath();
+		for (Binding binding : bindings) {
+			if ("GET".equals(binding.getMethod().name()) && binding.getUriPattern().toString().equals(path)) {
+				return binding;
+			}
+		}
+		for (Binding binding : bindings) {
+			if ("GET".equals(binding.getMethod().name()) && binding.getUriPattern().matcher(path).matches()) {
+				return binding;
+			}
+		}
+		return null;
+	}
+
+	@Benchmark
+	public Binding router() {
+		return router.route("GET", nextPath());
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.user;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Before / after measures of the session decoding and of the workflow right check of AbstractActionFilter.
+ * The "before" benchmarks are the code that was replaced : a string round trip with a new mapper for each
+ * UserInfos, and a linear scan of the session authorizedActions array. The session instance is the same for
+ * every call, as it is for the filters and the controller of a request.
+ * Run with : gradle :common:jmh -PjmhIncludes=UserInfosBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserInfosBenchmark {
+
+	@Param({"20", "200"})
+	private int actions;
+
+	private JsonObject session;
+	private String lastAction;
+
+	@Setup
+	public void setup() {
+		final JsonArray authorizedActions = new JsonArray();
+		for (int a = 0; a < actions; a++) {
+			authorizedActions.add(new JsonObject().put("name", "org.entcore.app.Controller|action" + a)
+					.put("displayName", "app.action" + a).put("type", "SECURED_ACTION_WORKFLOW"));
+		}
+		final JsonArray groups = new JsonArray();
+		for (int g = 0; g < 30; g++) {
+			groups.add("group-" + g);
+		}
+		session = new JsonObject().put("userId", "u1").put("type", "Teacher").put("cache", new JsonObject())
+				.put("groupsIds", groups).put("structures", new JsonArray().add("s1"))
+				.put("authorizedActions", authorizedActions).put("apps", new JsonArray())
+				.put("sessionMetadata", new JsonObject().put("_id", "session-1").put("userId", "u1"));
+		lastAction = "org.entcore.app.Controller|action" + (actions - 1);
+	}
+
+	@Benchmark
+	public UserInfos sessionToUserInfosBefore() throws IOException {
+		return new ObjectMapper().readValue(session.encode(), UserInfos.class);
+	}
+
+	@Benchmark
+	public UserInfos sessionToUserInfosAfter() {
+		return UserUtils.sessionToUserInfos(session);
+	}
+
+	@Benchmark
+	public boolean workflowActionBefore() {
+		final JsonArray authorizedActions = session.getJsonArray("authorizedActions");
+		if (authorizedActions != null) {
+			for (Object a : authorizedActions) {
+				if (lastAction.equals(((JsonObject) a).getString("name"))) {
+					return true;
+				}
+			}
+		}
+		return session.getJsonObject("functions", new JsonObject()).containsKey("SUPER_ADMIN");
+	}
+
+	@Benchmark
+	public boolean workflowActionAfter() {
+		return UserUtils.isAuthorizedWorkflowAction(session, lastAction);
+	}
+
+}
@@ -27,6 +27,7 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 import static org.entcore.common.appregistry.AppRegistryEvents.APP_REGISTRY_PUBLISH_ADDRESS;
+import static org.entcore.common.appregistry.AppRegistryEvents.AUTHORIZATIONS_UPDATED;
 import static org.entcore.common.appregistry.AppRegistryEvents.IMPORT_SUCCEEDED;
 import static org.entcore.common.appregistry.AppRegistryEvents.USER_GROUP_UPDATED;
 
@@ -97,6 +98,15 @@ public final class ApplicationUtils {
 		eb.send(APP_REGISTRY_BUS_ADDRESS, json, handler);
 	}
 
+	/**
+	 * Publish the update of roles, applications or widgets authorizations.
+	 */
+	public static void publishAuthorizationsUpdated(EventBus eb) {
+		eb.publish(APP_REGISTRY_PUBLISH_ADDRESS,
+				new JsonObject().put("type", AUTHORIZATIONS_UPDATED)
+		);
+	}
+
 	public static void afterImport(EventBus eb) {
 		eb.publish(APP_REGISTRY_PUBLISH_ADDRESS,
 				new JsonObject().put("type", IMPORT_SUCCEEDED)
@@ -17,6 +17,7 @@ import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.http.filter.BindingsRouter;
 import org.entcore.common.http.filter.CsrfFilter;
 import org.entcore.common.user.UserInfos;
 import org.entcore.common.user.UserUtils;
@@ -27,7 +28,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
-import java.util.regex.Matcher;
 
 public class CacheFilter implements Filter {
 
@@ -37,6 +37,7 @@ public class CacheFilter implements Filter {
     private final EventBus eb;
     private Map<String,JsonObject> cacheConfig;
     private final Set<Binding> cachedBindings=new HashSet<>();
+    private final BindingsRouter cachedRouter = new BindingsRouter(cachedBindings);
 
     public CacheFilter(EventBus eb, Set<Binding> bindings, CacheService cacheService) {
         this.eb = eb;
@@ -80,16 +81,7 @@ public class CacheFilter implements Filter {
     }
 
     private Binding requestBinding(HttpServerRequest request) {
-        for (Binding binding: cachedBindings) {
-            if (!request.method().name().equals(binding.getMethod().name())) {
-                continue;
-            }
-            Matcher m = binding.getUriPattern().matcher(request.path());
-            if (m.matches()) {
-                return binding;
-            }
-        }
-        return null;
+        return cachedRouter.route(request);
     }
 
     private void saveToCache(String key, String value, CacheScope cacheScope, Integer ttl, HttpServerRequest request){
@@ -276,6 +268,7 @@ public class CacheFilter implements Filter {
     public void canAccess(final HttpServerRequest request, final Handler<Boolean> handler) {
         if (cacheConfig == null) {
             loadCacheConfig();
+            BindingsRouter.bindingsChanged();
         }
         final Binding binding = requestBinding(request);
         if (binding !=null && cacheConfig.containsKey(binding.getServiceMethod())) {
@@ -1,5 +1,6 @@
 package org.entcore.common.cache;
 
+import fr.wseduc.webutils.DefaultAsyncResult;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
@@ -9,6 +10,7 @@ import org.entcore.common.user.UserInfos;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public interface CacheService {
 
@@ -60,4 +62,38 @@ public interface CacheService {
     void prependToList(String key, String value, Handler<AsyncResult<Long>> handler);
 
     void removeLastFromList(String key, Handler<AsyncResult<String>> handler);
+
+    /**
+     * Prepend the value to each list and keep only its first <code>maxLength</code> elements.
+     * The default implementation sends one prepend (and removal of the last element if needed) per list,
+     * implementations should batch the lists.
+     * @param maxLength maximum length of the lists, no trim if 0 or less
+     */
+    default void prependToLists(List<String> keys, String value, int maxLength, Handler<AsyncResult<Void>> handler) {
+        if (keys.isEmpty()) {
+            handler.handle(new DefaultAsyncResult<>((Void) null));
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(keys.size());
+        final Handler<Throwable> done = err -> {
+            if (err != null) {
+                if (remaining.getAndSet(-1) > 0) {
+                    handler.handle(new DefaultAsyncResult<>(err));
+                }
+            } else if (remaining.decrementAndGet() == 0) {
+                handler.handle(new DefaultAsyncResult<>((Void) null));
+            }
+        };
+        for (String key : keys) {
+            prependToList(key, value, res -> {
+                if (res.failed()) {
+                    done.handle(res.cause());
+                } else if (maxLength > 0 && res.result() > maxLength) {
+                    removeLastFromList(key, resRemove -> done.handle(resRemove.failed() ? resRemove.cause() : null));
+                } else {
+                    done.handle(null);
+                }
+            });
+        }
+    }
 }
@@ -9,15 +9,28 @@ import io.vertx.redis.RedisClient;
 import org.entcore.common.redis.Redis;
 import org.entcore.common.user.UserInfos;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 public class RedisCacheService implements CacheService {
+    // LPUSH then LTRIM of each key in one round trip, ARGV[2] is the max length of the lists (0 to keep all)
+    private static final String PREPEND_TO_LISTS_SCRIPT =
+            "local max = tonumber(ARGV[2]) " +
+            "for i, key in ipairs(KEYS) do " +
+            "redis.call('LPUSH', key, ARGV[1]) " +
+            "if max > 0 then redis.call('LTRIM', key, 0, max - 1) end " +
+            "end " +
+            "return #KEYS";
+    public static final int DEFAULT_LISTS_BATCH_SIZE = 500;
     final String GLOBAL_KEY = "global:";
     final String USER_KEY = "user:";
     final String LANG_KEY = "global:";
     final RedisClient redis;
+    private int listsBatchSize = DEFAULT_LISTS_BATCH_SIZE;
+    private volatile String prependToListsSha;
 
     public RedisCacheService(RedisClient redis) {
         this.redis = redis;
@@ -150,4 +163,66 @@ public class RedisCacheService implements CacheService {
     public void getListLength(String key, Handler<AsyncResult<Long>> handler){
         redis.llen(key, handler);
     }
+
+    public RedisCacheService setListsBatchSize(int listsBatchSize) {
+        this.listsBatchSize = Math.max(1, listsBatchSize);
+        return this;
+    }
+
+    @Override
+    public void prependToLists(List<String> keys, String value, int maxLength, Handler<AsyncResult<Void>> handler) {
+        if (keys.isEmpty()) {
+            handler.handle(new DefaultAsyncResult<>((Void) null));
+            return;
+        }
+        final List<String> args = Arrays.asList(value, String.valueOf(Math.max(0, maxLength)));
+        final AtomicInteger remaining = new AtomicInteger((keys.size() + listsBatchSize - 1) / listsBatchSize);
+        // the batches are sent without waiting for the replies, so they are pipelined on the connection
+        for (int i = 0; i < keys.size(); i += listsBatchSize) {
+            evalPrependToLists(keys.subList(i, Math.min(keys.size(), i + listsBatchSize)), args, res -> {
+                if (res.failed()) {
+                    if (remaining.getAndSet(-1) > 0) {
+                        handler.handle(new DefaultAsyncResult<>(res.cause()));
+                    }
+                } else if (remaining.decrementAndGet() == 0) {
+                    handler.handle(new DefaultAsyncResult<>((Void) null));
+                }
+            });
+        }
+    }
+
+    private void evalPrependToLists(List<String> keys, List<String> args, Handler<AsyncResult<Void>> handler) {
+        final String sha = prependToListsSha;
+        if (sha == null) {
+            redis.scriptLoad(PREPEND_TO_LISTS_SCRIPT, res -> {
+                if (res.succeeded()) {
+                    prependToListsSha = res.result();
+                }
+                evalPrependToLists(keys, args, false, handler);
+            });
+        } else {
+            evalPrependToLists(keys, args, true, handler);
+        }
+    }
+
+    private void evalPrependToLists(List<String> keys, List<String> args, boolean retry, Handler<AsyncResult<Void>> handler) {
+        final String sha = prependToListsSha;
+        if (sha == null) {
+            redis.eval(PREPEND_TO_LISTS_SCRIPT, keys, args, res ->
+                    handler.handle(res.succeeded() ? new DefaultAsyncResult<>((Void) null) : new DefaultAsyncResult<>(res.cause())));
+            return;
+        }
+        redis.evalsha(sha, keys, args, res -> {
+            if (res.succeeded()) {
+                handler.handle(new DefaultAsyncResult<>((Void) null));
+            } else if (retry && res.cause() != null && res.cause().getMessage() != null &&
+                    res.cause().getMessage().startsWith("NOSCRIPT")) {
+                // script cache flushed or server restarted
+                prependToListsSha = null;
+                evalPrependToLists(keys, args, handler);
+            } else {
+                handler.handle(new DefaultAsyncResult<>(res.cause()));
+            }
+        });
+    }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.events.impl;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.user.UserInfos;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Small LRU of the identities resolved by {@link GenericEventStore} for the login and id lookups,
+ * shared by the event stores of the verticle.
+ * Configured by the <code>identity-cache</code> object of the <code>event-store</code> server config
+ * ({enabled, max-size, ttl}). The repository events (users deletion, merge, transition, classes update)
+ * clear the whole cache, the ttl bounds the delay for the other changes.
+ */
+final class EventIdentityCache {
+
+	static final int DEFAULT_MAX_SIZE = 10000;
+	static final long DEFAULT_TTL = 300000L;
+	private static final Logger log = LoggerFactory.getLogger(EventIdentityCache.class);
+	private static final Set<String> REPOSITORY_ACTIONS = new HashSet<>(Arrays.asList(
+			"delete-groups", "delete-users", "merge-users", "transition", "users-classes-update"));
+	private static volatile EventIdentityCache instance;
+
+	private final int maxSize;
+	private final long ttl;
+	private final Map<String, Identity> identities;
+	private long generation;
+
+	static final class Identity {
+		final UserInfos user;
+		final boolean functionsLoaded;
+		final String userAdmin;
+		private final long expire;
+
+		Identity(UserInfos user, boolean functionsLoaded, String userAdmin, long expire) {
+			this.user = user;
+			this.functionsLoaded = functionsLoaded;
+			this.userAdmin = userAdmin;
+			this.expire = expire;
+		}
+	}
+
+	EventIdentityCache(JsonObject config) {
+		this.maxSize = config.getInteger("max-size", DEFAULT_MAX_SIZE);
+		this.ttl = config.getLong("ttl", DEFAULT_TTL);
+		this.identities = new LinkedHashMap<String, Identity>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Identity> eldest) {
+				return size() > EventIdentityCache.this.maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return the cache or null if it isn't enabled
+	 */
+	static EventIdentityCache getInstance(Vertx vertx) {
+		if (instance != null || vertx == null) {
+			return instance;
+		}
+		final String conf = (String) vertx.sharedData().getLocalMap("server").get("event-store");
+		if (conf == null) {
+			return null;
+		}
+		final JsonObject config = new JsonObject(conf).getJsonObject("identity-cache");
+		if (config == null || !config.getBoolean("enabled", false)) {
+			return null;
+		}
+		synchronized (EventIdentityCache.class) {
+			if (instance == null) {
+				final EventIdentityCache cache = new EventIdentityCache(config);
+				vertx.eventBus().<JsonObject>consumer("user.repository", message -> {
+					if (message.body() != null && REPOSITORY_ACTIONS.contains(message.body().getString("action"))) {
+						cache.clear();
+					}
+				});
+				log.info("Event store identity cache enabled with ttl " + cache.ttl + " ms.");
+				instance = cache;
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * @param attr lookup attribute (login, loginAlias or id)
+	 */
+	synchronized Identity get(String attr, String value) {
+		final String key = attr + '|' + value;
+		final Identity identity = identities.get(key);
+		if (identity != null && identity.expire < System.currentTimeMillis()) {
+			identities.remove(key);
+			return null;
+		}
+		return identity;
+	}
+
+	synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * The identity is also indexed by user id. It isn't cached if the cache was cleared since
+	 * the <code>generation</code> was read.
+	 */
+	synchronized void put(String attr, String value, UserInfos user, boolean functionsLoaded, String userAdmin,
+			long generation) {
+		if (generation != this.generation || user == null || user.getUserId() == null) return;
+		final Identity identity = new Identity(user, functionsLoaded, userAdmin, System.currentTimeMillis() + ttl);
+		identities.put(attr + '|' + value, identity);
+		if (!"id".equals(attr)) {
+			identities.put("id|" + user.getUserId(), identity);
+		}
+	}
+
+	synchronized void clear() {
+		generation++;
+		identities.clear();
+	}
+
+}
@@ -25,6 +25,7 @@ import fr.wseduc.webutils.request.CookieHelper;
 import io.vertx.core.AsyncResult;
 import org.entcore.common.events.EventStore;
 import org.entcore.common.neo4j.Neo4j;
+import org.entcore.common.user.DefaultFunctions;
 import org.entcore.common.user.UserInfos;
 import org.entcore.common.user.UserUtils;
 import io.vertx.core.Handler;
@@ -45,6 +46,7 @@ public abstract class GenericEventStore implements EventStore {
 	protected EventBus eventBus;
 	protected Vertx vertx;
 	protected JsonArray userBlacklist;
+	private EventIdentityCache identityCache;
 	protected static final Logger logger = LoggerFactory.getLogger(GenericEventStore.class);
 
 	@Override
@@ -109,9 +111,62 @@ public abstract class GenericEventStore implements EventStore {
 
 	}
 
+	/**
+	 * The identity is taken from the live session of the user, then from the optional identity cache,
+	 * then from the graph. The login of a login event is resolved to the user id with the identity cache
+	 * or with the session of the request.
+	 */
 	private void createAndStoreEvent(final String eventType, final String attr, final String value,
 			final String clientId, final HttpServerRequest request) {
+		final EventIdentityCache cache = identityCache;
+		if (value == null) {
+			loadIdentity(eventType, attr, value, clientId, request, cache);
+			return;
+		}
+		final EventIdentityCache.Identity cached = (cache != null) ? cache.get(attr, value) : null;
+		if ("id".equals(attr) || cached != null) {
+			final String userId = (cached != null) ? cached.user.getUserId() : value;
+			UserUtils.getSessionByUserId(eventBus, userId, false, new Handler<JsonObject>() {
+				@Override
+				public void handle(JsonObject session) {
+					storeSessionEvent(session, userId, cached, eventType, attr, value, clientId, request, cache);
+				}
+			});
+		} else if (request != null) {
+			UserUtils.getSession(eventBus, request, new Handler<JsonObject>() {
+				@Override
+				public void handle(JsonObject session) {
+					final String userId = (session != null && value.equals(session.getString("login"))) ?
+							session.getString("userId") : null;
+					storeSessionEvent(session, userId, null, eventType, attr, value, clientId, request, cache);
+				}
+			});
+		} else {
+			loadIdentity(eventType, attr, value, clientId, request, cache);
+		}
+	}
+
+	private void storeSessionEvent(JsonObject session, String userId, EventIdentityCache.Identity cached,
+			String eventType, String attr, String value, String clientId, HttpServerRequest request,
+			EventIdentityCache cache) {
+		final boolean isLoginEvent = "LOGIN".equals(eventType);
+		final JsonObject identity = (session != null && userId != null && userId.equals(session.getString("userId"))) ?
+				sessionIdentity(session) : null;
+		if (identity != null) {
+			execute(UserUtils.sessionToUserInfos(identity), eventType, request,
+					customAttributes(clientId, isLoginEvent ? userAdmin(session.getJsonObject("functions")) : null));
+		} else if (cached != null && (cached.functionsLoaded || !isLoginEvent)) {
+			execute(cached.user, eventType, request,
+					customAttributes(clientId, isLoginEvent ? cached.userAdmin : null));
+		} else {
+			loadIdentity(eventType, attr, value, clientId, request, cache);
+		}
+	}
+
+	private void loadIdentity(final String eventType, final String attr, final String value,
+			final String clientId, final HttpServerRequest request, final EventIdentityCache cache) {
 		final boolean isLoginEvent = "LOGIN".equals(eventType); // hack for security device change notification
+		final long generation = (cache != null) ? cache.generation() : 0L;
 		final String query = "MATCH (n:User {" + attr + ": {login}}) " + "OPTIONAL MATCH n-[:IN]->(gp:ProfileGroup) "
 				+ "OPTIONAL MATCH gp-[:DEPENDS]->(s:Structure) " + "OPTIONAL MATCH gp-[:DEPENDS]->(c:Class) "
 				+ (isLoginEvent? "OPTIONAL MATCH (n)-[r:HAS_FUNCTION]->(f:Function) " : "")
@@ -123,21 +178,18 @@ public abstract class GenericEventStore implements EventStore {
 			public void handle(Message<JsonObject> event) {
 				JsonArray res = event.body().getJsonArray("result");
 				if ("ok".equals(event.body().getString("status")) && res.size() == 1) {
-					JsonObject customAttributes = null;
-					if (clientId != null) {
-						customAttributes = new JsonObject();
-						customAttributes.put("override-module", clientId);
-					}
+					String userAdmin = null;
 					if (isLoginEvent) { // hack for security device change notification
-						final Object userAdmin = res.getJsonObject(0).remove("useradmin");
-						if (userAdmin != null && !userAdmin.toString().isEmpty()) {
-							if (customAttributes == null) {
-								customAttributes = new JsonObject();
-							}
-							customAttributes.put("useradmin", userAdmin);
+						final Object ua = res.getJsonObject(0).remove("useradmin");
+						if (ua != null && !ua.toString().isEmpty()) {
+							userAdmin = ua.toString();
 						}
 					}
-					execute(UserUtils.sessionToUserInfos(res.getJsonObject(0)), eventType, request, customAttributes);
+					final UserInfos user = UserUtils.sessionToUserInfos(res.getJsonObject(0));
+					if (cache != null) {
+						cache.put(attr, value, user, isLoginEvent, userAdmin, generation);
+					}
+					execute(user, eventType, request, customAttributes(clientId, userAdmin));
 				} else {
 					if ("login".equals(attr)) {
 						createAndStoreEvent(eventType, "loginAlias", value, clientId, request);
@@ -150,6 +202,56 @@ public abstract class GenericEventStore implements EventStore {
 		});
 	}
 
+	/**
+	 * Identity of a session in the shape of the graph query result : the session groups and classes
+	 * are restricted to the profile groups, like the query.
+	 * @return null if the session was generated without the profile groups
+	 */
+	static JsonObject sessionIdentity(JsonObject session) {
+		final JsonArray profileGroupsIds = session.getJsonArray("profileGroupsIds");
+		final JsonArray profileClassesIds = session.getJsonArray("profileClassesIds");
+		if (profileGroupsIds == null || profileClassesIds == null) {
+			return null;
+		}
+		return new JsonObject()
+				.put("userId", session.getString("userId"))
+				.put("type", session.getString("type"))
+				.put("profilGroupsIds", profileGroupsIds.copy())
+				.put("classes", profileClassesIds.copy())
+				.put("structures", session.getJsonArray("structures", new JsonArray()).copy());
+	}
+
+	private static JsonObject customAttributes(String clientId, String userAdmin) {
+		JsonObject customAttributes = null;
+		if (clientId != null) {
+			customAttributes = new JsonObject();
+			customAttributes.put("override-module", clientId);
+		}
+		if (userAdmin != null) {
+			if (customAttributes == null) {
+				customAttributes = new JsonObject();
+			}
+			customAttributes.put("useradmin", userAdmin);
+		}
+		return customAttributes;
+	}
+
+	/**
+	 * Name of the admin function of a session, like the <code>f.name</code> returned by the graph query.
+	 */
+	private static String userAdmin(JsonObject functions) {
+		if (functions == null) {
+			return null;
+		}
+		if (functions.containsKey(DefaultFunctions.SUPER_ADMIN)) {
+			return "SuperAdmin";
+		}
+		if (functions.containsKey(DefaultFunctions.ADMIN_LOCAL)) {
+			return "AdminLocal";
+		}
+		return null;
+	}
+
 	private void execute(UserInfos user, String eventType, HttpServerRequest request, JsonObject customAttributes) {
 		if (user == null || !userBlacklist.contains(user.getUserId())) {
 			storeEvent(generateEvent(eventType, user, request, customAttributes), new Handler<Either<String, Void>>() {
@@ -163,7 +265,7 @@ public abstract class GenericEventStore implements EventStore {
 		}
 	}
 
-	private JsonObject generateEvent(String eventType, UserInfos user, HttpServerRequest request,
+	JsonObject generateEvent(String eventType, UserInfos user, HttpServerRequest request,
 			JsonObject customAttributes) {
 		JsonObject event = new JsonObject();
 		if (customAttributes != null && customAttributes.size() > 0) {
@@ -227,6 +329,7 @@ public abstract class GenericEventStore implements EventStore {
 
 	public void setVertx(Vertx vertx) {
 		this.vertx = vertx;
+		this.identityCache = EventIdentityCache.getInstance(vertx);
 	}
 
 }
@@ -0,0 +1,444 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.events.impl;
+
+import fr.wseduc.webutils.Either;
+import io.reactiverse.pgclient.PgException;
+import io.reactiverse.pgclient.PgPool;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.sql.Sql;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Buffers the events of a {@link PostgresqlEventStore} by table and writes them with multi rows inserts,
+ * when a table queue reaches the batch size or at each flush interval.
+ * When too many events are pending or when Postgres is unavailable, events are appended to a local
+ * journal file named after the writer instance and suffixed with {@code .open} while it is written.
+ * At startup and periodically, the writer rolls its journal over (closes it and removes the suffix) and
+ * replays the closed journals of the module. Open journals of other writers are only replayed when they
+ * weren't modified for journal-stale-after ms (a writer which has stopped).
+ * A batch rejected by Postgres is retried row by row, so an invalid event doesn't reject its batch.
+ */
+public class PostgresqlEventBatchWriter {
+
+	private static final Logger log = LoggerFactory.getLogger(PostgresqlEventBatchWriter.class);
+	private static final Set<PostgresqlEventBatchWriter> writers = ConcurrentHashMap.newKeySet();
+	private static final String JOURNAL = ".journal";
+	private static final String JOURNAL_OPEN = ".journal.open";
+
+	private final Vertx vertx;
+	private final PgPool pgClient;
+	private final String journalDir;
+	private final String journalPrefix;
+	private final String journalNamespace;
+	private final long journalStaleAfter;
+	private final int batchSize;
+	private final int maxPending;
+	private final int maxInflight;
+	private final int maxAttempts;
+	private final Map<String, List<PendingEvent>> queues = new HashMap<>();
+	private int pending = 0;
+	private int inflight = 0;
+	private boolean available = true;
+	private boolean replaying = false;
+	private Future<AsyncFile> journal;
+	private String journalPath;
+	private long journalSequence = 0L;
+	private long batches = 0L;
+	private long batchesRows = 0L;
+	private long flushTime = 0L;
+	private long maxFlushTime = 0L;
+	private long spilled = 0L;
+	private long replayed = 0L;
+	private long dropped = 0L;
+
+	private static final class PendingEvent {
+		private final JsonObject event;
+		private final int attempts;
+		private final Handler<Either<String, Void>> handler;
+
+		private PendingEvent(JsonObject event, int attempts, Handler<Either<String, Void>> handler) {
+			this.event = event;
+			this.attempts = attempts;
+			this.handler = handler;
+		}
+	}
+
+	public PostgresqlEventBatchWriter(Vertx vertx, PgPool pgClient, String module, JsonObject config) {
+		this.vertx = vertx;
+		this.pgClient = pgClient;
+		this.batchSize = config.getInteger("size", 200);
+		this.maxPending = config.getInteger("max-pending", 10000);
+		this.maxInflight = config.getInteger("max-inflight", 2);
+		this.maxAttempts = config.getInteger("max-attempts", 5);
+		this.journalDir = config.getString("journal-path", System.getProperty("java.io.tmpdir"));
+		this.journalPrefix = "events-" + (module != null ? module.replaceAll("[^A-Za-z0-9_-]", "_") : "default") + "-";
+		this.journalNamespace = journalPrefix + UUID.randomUUID().toString() + "-";
+		final long replayInterval = config.getLong("replay-interval", 60000L);
+		this.journalStaleAfter = config.getLong("journal-stale-after", 10 * replayInterval);
+		vertx.setPeriodic(config.getLong("flush-interval", 1000L), h -> flushAll());
+		vertx.setPeriodic(replayInterval, h -> replay());
+		writers.add(this);
+		replay();
+	}
+
+	public void write(String table, JsonObject event, Handler<Either<String, Void>> handler) {
+		write(table, event, 0, handler);
+	}
+
+	private void write(String table, JsonObject event, int attempts, Handler<Either<String, Void>> handler) {
+		final boolean journaled;
+		final boolean flush;
+		synchronized (this) {
+			journaled = pending >= maxPending || (!available && inflight > 0);
+			if (journaled) {
+				spill(table, event, attempts);
+				flush = false;
+			} else {
+				final List<PendingEvent> queue = queues.computeIfAbsent(table, k -> new ArrayList<>());
+				queue.add(new PendingEvent(event, attempts, handler));
+				pending++;
+				flush = queue.size() >= batchSize && inflight < maxInflight;
+			}
+		}
+		if (journaled) {
+			handler.handle(new Either.Right<>(null));
+		} else if (flush) {
+			flush(table);
+		}
+	}
+
+	private void flushAll() {
+		final List<String> tables;
+		synchronized (this) {
+			tables = new ArrayList<>(queues.keySet());
+		}
+		for (String table : tables) {
+			flush(table);
+		}
+	}
+
+	private void flush(String table) {
+		final List<PendingEvent> batch;
+		synchronized (this) {
+			final List<PendingEvent> queue = queues.get(table);
+			if (queue == null || queue.isEmpty() || inflight >= maxInflight) return;
+			final int size = Math.min(batchSize, queue.size());
+			batch = new ArrayList<>(queue.subList(0, size));
+			queue.subList(0, size).clear();
+			pending -= size;
+		}
+		final Map<String, List<PendingEvent>> byColumns = new LinkedHashMap<>();
+		for (PendingEvent e : batch) {
+			byColumns.computeIfAbsent(String.join(",", new TreeSet<>(e.event.fieldNames())),
+					k -> new ArrayList<>()).add(e);
+		}
+		for (List<PendingEvent> rows : byColumns.values()) {
+			insert(table, rows);
+		}
+	}
+
+	private void insert(String table, List<PendingEvent> rows) {
+		final Set<String> columns = new TreeSet<>(rows.get(0).event.fieldNames());
+		final StringBuilder query = new StringBuilder("INSERT INTO ").append(table).append(" (");
+		for (String column : columns) {
+			query.append(Sql.escapeField(column)).append(",");
+		}
+		query.setCharAt(query.length() - 1, ')');
+		query.append(" VALUES ");
+		for (PendingEvent row : rows) {
+			query.append("(");
+			for (String column : columns) {
+				query.append(Sql.escapeValue(row.event.getValue(column))).append(",");
+			}
+			query.setCharAt(query.length() - 1, ')');
+			query.append(",");
+		}
+		query.setLength(query.length() - 1);
+		synchronized (this) {
+			inflight++;
+		}
+		final long start = System.currentTimeMillis();
+		pgClient.query(query.toString(), ar -> {
+			final long time = System.currentTimeMillis() - start;
+			synchronized (this) {
+				inflight--;
+				batches++;
+				batchesRows += rows.size();
+				flushTime += time;
+				maxFlushTime = Math.max(maxFlushTime, time);
+				available = ar.succeeded() || ar.cause() instanceof PgException;
+			}
+			if (ar.succeeded()) {
+				for (PendingEvent row : rows) {
+					row.handler.handle(new Either.Right<>(null));
+				}
+			} else if (ar.cause() instanceof PgException && rows.size() > 1) {
+				log.warn("Error persisting events batch on " + table + ", retry by event : " + ar.cause().getMessage());
+				for (PendingEvent row : rows) {
+					insert(table, Collections.singletonList(row));
+				}
+			} else {
+				for (PendingEvent row : rows) {
+					failed(table, row, ar.cause().getMessage());
+				}
+			}
+			flushFullQueues();
+		});
+	}
+
+	private void flushFullQueues() {
+		final List<String> tables = new ArrayList<>();
+		synchronized (this) {
+			for (Map.Entry<String, List<PendingEvent>> queue : queues.entrySet()) {
+				if (queue.getValue().size() >= batchSize) {
+					tables.add(queue.getKey());
+				}
+			}
+		}
+		for (String table : tables) {
+			flush(table);
+		}
+	}
+
+	private void failed(String table, PendingEvent row, String message) {
+		if (row.attempts + 1 < maxAttempts) {
+			synchronized (this) {
+				spill(table, row.event, row.attempts + 1);
+			}
+			row.handler.handle(new Either.Right<>(null));
+		} else {
+			synchronized (this) {
+				dropped++;
+			}
+			log.error("Error persisting events on postgresql : " + row.event.encode() + " - " + message);
+			row.handler.handle(new Either.Left<>("Error : " + message + ", Event : " + row.event.encode()));
+		}
+	}
+
+	private void spill(String table, JsonObject event, int attempts) {
+		if (journal == null) {
+			final String path = journalDir + File.separator + journalNamespace + (journalSequence++) + JOURNAL_OPEN;
+			final Promise<AsyncFile> promise = Promise.promise();
+			vertx.fileSystem().open(path, new OpenOptions().setAppend(true).setCreate(true), promise);
+			journal = promise.future().onFailure(t -> log.error("Error opening events journal " + path, t));
+			journalPath = path;
+		}
+		spilled++;
+		final Buffer line = Buffer.buffer(new JsonObject().put("table", table).put("event", event)
+				.put("attempts", attempts).encode()).appendString("\n");
+		journal.onSuccess(file -> file.write(line));
+	}
+
+	/**
+	 * Close the current journal and remove its open suffix, so it can be replayed.
+	 * Next spilled events are appended to a new journal.
+	 */
+	private Future<Void> rollover() {
+		final Future<AsyncFile> current;
+		final String path;
+		synchronized (this) {
+			current = journal;
+			path = journalPath;
+			journal = null;
+			journalPath = null;
+		}
+		final Promise<Void> rolled = Promise.promise();
+		if (current == null) {
+			rolled.complete();
+			return rolled.future();
+		}
+		current.onComplete(ar -> {
+			if (ar.failed()) {
+				rolled.complete();
+				return;
+			}
+			ar.result().close(closed -> {
+				if (closed.failed()) {
+					log.error("Error closing events journal " + path, closed.cause());
+					rolled.complete();
+					return;
+				}
+				final String closedPath = path.substring(0, path.length() - JOURNAL_OPEN.length()) + JOURNAL;
+				vertx.fileSystem().move(path, closedPath, moved -> {
+					if (moved.failed()) {
+						log.error("Error closing events journal " + path, moved.cause());
+					}
+					rolled.complete();
+				});
+			});
+		});
+		return rolled.future();
+	}
+
+	private void replay() {
+		final boolean replay;
+		synchronized (this) {
+			if (replaying) return;
+			replay = available && pending <= maxPending / 2;
+			replaying = replay;
+		}
+		final Future<Void> rolled = rollover();
+		if (!replay) return;
+		rolled.onComplete(v -> vertx.fileSystem().readDir(journalDir,
+				Pattern.quote(journalPrefix) + ".*\\.journal(\\.open)?", ar -> {
+			if (ar.succeeded()) {
+				replayFiles(new ArrayList<>(ar.result()));
+			} else {
+				log.error("Error listing events journals in " + journalDir, ar.cause());
+				replayed();
+			}
+		}));
+	}
+
+	private void replayFiles(List<String> files) {
+		if (files.isEmpty()) {
+			replayed();
+			return;
+		}
+		final String file = files.remove(0);
+		if (!file.endsWith(JOURNAL_OPEN)) {
+			replayFile(file, files);
+		} else if (new File(file).getName().startsWith(journalNamespace)) {
+			replayFiles(files);
+		} else {
+			vertx.fileSystem().props(file, props -> {
+				if (props.succeeded() && props.result().lastModifiedTime() < System.currentTimeMillis() - journalStaleAfter) {
+					replayFile(file, files);
+				} else {
+					replayFiles(files);
+				}
+			});
+		}
+	}
+
+	private void replayFile(String file, List<String> files) {
+		// the move claims the journal, another writer replaying the same directory fails to move it
+		final String replayFile = file + ".replay";
+		vertx.fileSystem().move(file, replayFile, moved -> {
+			if (moved.failed()) {
+				replayFiles(files);
+				return;
+			}
+			vertx.fileSystem().readFile(replayFile, read -> {
+				if (read.failed()) {
+					log.error("Error reading events journal " + replayFile, read.cause());
+					replayFiles(files);
+					return;
+				}
+				vertx.fileSystem().delete(replayFile, deleted -> {
+					if (deleted.failed()) {
+						log.error("Error deleting events journal " + replayFile, deleted.cause());
+					}
+				});
+				int count = 0;
+				for (String line : read.result().toString().split("\n")) {
+					if (line.isEmpty()) continue;
+					try {
+						final JsonObject j = new JsonObject(line);
+						write(j.getString("table"), j.getJsonObject("event"), j.getInteger("attempts", 0), e -> {
+							if (e.isLeft()) {
+								log.error("Error replaying event : " + e.left().getValue());
+							}
+						});
+						count++;
+					} catch (RuntimeException e) {
+						log.error("Invalid line in events journal " + replayFile + " : " + line, e);
+					}
+				}
+				synchronized (this) {
+					replayed += count;
+				}
+				log.info("Replayed " + count + " events from journal " + file);
+				replayFiles(files);
+			});
+		});
+	}
+
+	private synchronized void replayed() {
+		replaying = false;
+	}
+
+	public synchronized JsonObject getMetrics() {
+		return new JsonObject()
+				.put("event_store_queue_depth", pending)
+				.put("event_store_inflight_batches", inflight)
+				.put("event_store_batches", batches)
+				.put("event_store_batch_size_avg", batches > 0 ? (double) batchesRows / batches : 0d)
+				.put("event_store_flush_latency_avg_ms", batches > 0 ? (double) flushTime / batches : 0d)
+				.put("event_store_flush_latency_max_ms", maxFlushTime)
+				.put("event_store_spilled_events", spilled)
+				.put("event_store_replayed_events", replayed)
+				.put("event_store_dropped_events", dropped);
+	}
+
+	/**
+	 * @return metrics of all the batch writers of this node
+	 */
+	public static JsonObject metrics() {
+		long depth = 0L, inflight = 0L, batches = 0L, spilled = 0L, replayed = 0L, dropped = 0L, maxLatency = 0L;
+		double rows = 0d, latency = 0d;
+		for (PostgresqlEventBatchWriter writer : writers) {
+			final JsonObject m = writer.getMetrics();
+			final long b = m.getLong("event_store_batches");
+			depth += m.getLong("event_store_queue_depth");
+			inflight += m.getLong("event_store_inflight_batches");
+			batches += b;
+			rows += m.getDouble("event_store_batch_size_avg") * b;
+			latency += m.getDouble("event_store_flush_latency_avg_ms") * b;
+			maxLatency = Math.max(maxLatency, m.getLong("event_store_flush_latency_max_ms"));
+			spilled += m.getLong("event_store_spilled_events");
+			replayed += m.getLong("event_store_replayed_events");
+			dropped += m.getLong("event_store_dropped_events");
+		}
+		return new JsonObject()
+				.put("event_store_queue_depth", depth)
+				.put("event_store_inflight_batches", inflight)
+				.put("event_store_batches", batches)
+				.put("event_store_batch_size_avg", batches > 0 ? rows / batches : 0d)
+				.put("event_store_flush_latency_avg_ms", batches > 0 ? latency / batches : 0d)
+				.put("event_store_flush_latency_max_ms", maxLatency)
+				.put("event_store_spilled_events", spilled)
+				.put("event_store_replayed_events", replayed)
+				.put("event_store_dropped_events", dropped);
+	}
+
+}
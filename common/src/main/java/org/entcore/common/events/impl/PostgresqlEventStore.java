@@ -50,6 +50,7 @@ public class PostgresqlEventStore extends GenericEventStore {
 	private String platform;
 	private PgPool pgClient;
 	private Set<String> knownEvents;
+	private PostgresqlEventBatchWriter batchWriter;
 	private final AtomicInteger retryInitKnownEvents = new AtomicInteger(MAX_RETRY);
 
 	public void init() {
@@ -85,6 +86,10 @@ public class PostgresqlEventStore extends GenericEventStore {
 						.setTrustAll(SslMode.ALLOW.equals(sslMode) || SslMode.PREFER.equals(sslMode) || SslMode.REQUIRE.equals(sslMode));
 				}
 				pgClient = PgClient.pool(vertx, options);
+				final JsonObject batchConfig = eventStoreConfig.getJsonObject("batch");
+				if (batchConfig != null) {
+					batchWriter = new PostgresqlEventBatchWriter(vertx, pgClient, module, batchConfig);
+				}
 				listKnownEvents(ar -> {
 					if (ar.succeeded()) {
 						knownEvents = ar.result();
@@ -194,6 +199,10 @@ public class PostgresqlEventStore extends GenericEventStore {
 				e.put("ip", ip.substring(0, idxComma));
 			}
 		}
+		if (batchWriter != null) {
+			batchWriter.write(tableName, e, handler);
+			return;
+		}
 		final String query = Sql.insertQuery(tableName, e);
 		pgClient.query(query, ar -> {
 			if (ar.succeeded()) {
@@ -67,7 +67,7 @@ public class FolderExporter {
 		}
 	}
 
-	private void buildMapping(List<JsonObject> rows, FolderExporterContext context) {
+	protected void buildMapping(List<JsonObject> rows, FolderExporterContext context) {
 		for (JsonObject row : rows) {
 			context.namesByIds.put(row.getString("_id"), cleanName(row));
 		}
@@ -125,6 +125,28 @@ public class FolderExporter {
 		return name.replaceAll("/", "_").replaceAll("\\\\", "_").trim();
 	}
 
+	protected JsonObject buildNames(List<JsonObject> docs, FolderExporterContext context) {
+		JsonObject nameByFileId = new JsonObject();
+		Map<String, Integer> nameCount = new HashMap<>();
+		for (JsonObject doc : docs) {
+			String fileId = DocumentHelper.getFileId(doc);
+			String name = cleanName(doc);
+			Integer count = nameCount.merge(name, 1, Integer::sum) - 1;
+			// if name already exists ... add suffix
+			if (count > 0) {
+				if (name.contains(".")) {
+					name = name.substring(0, name.indexOf(".")) + "_" + count + name.substring(name.indexOf("."));
+				} else {
+					name = name + "_" + count;
+				}
+			}
+			name = StringUtils.replaceForbiddenCharacters(name);
+			nameByFileId.put(fileId, name);
+			context.namesByIds.put(fileId,name);
+		}
+		return nameByFileId;
+	}
+
 	private CompositeFuture copyFiles(FolderExporterContext context) {
 		@SuppressWarnings("rawtypes")
 		List<Future> futures = new ArrayList<>();
@@ -133,24 +155,7 @@ public class FolderExporter {
 			futures.add(future);
 			List<JsonObject> docs = context.docByFolders.get(folderPath);
 			//
-			JsonObject nameByFileId = new JsonObject();
-			Map<String, Integer> nameCount = new HashMap<>();
-			for (JsonObject doc : docs) {
-				String fileId = DocumentHelper.getFileId(doc);
-				String name = cleanName(doc);
-				Integer count = nameCount.merge(name, 1, Integer::sum) - 1;
-				// if name already exists ... add suffix
-				if (count > 0) {
-					if (name.contains(".")) {
-						name = name.substring(0, name.indexOf(".")) + "_" + count + name.substring(name.indexOf("."));
-					} else {
-						name = name + "_" + count;
-					}
-				}
-				name = StringUtils.replaceForbiddenCharacters(name);
-				nameByFileId.put(fileId, name);
-				context.namesByIds.put(fileId,name);
-			}
+			JsonObject nameByFileId = buildNames(docs, context);
 			//
 			String[] ids = nameByFileId.fieldNames().stream().toArray(String[]::new);
 			storage.writeToFileSystem(ids, folderPath, nameByFileId, res -> {
@@ -22,6 +22,8 @@ public interface FolderManager {
 	String FOLDER_TYPE = "folder";
 	String FILE_TYPE = "file";
 	void setAllowDuplicate(boolean allowDuplicate);
+	default void setStreamingZip(boolean streamingZip) {
+	}
 	static FolderManager mongoManager(String collection, Storage sto, Vertx vertx, ShareService shareService, String imageResizerAddress, boolean useOldQueryChildren) {
 		return new FolderManagerMongoImpl(collection, sto, vertx, vertx.fileSystem(), vertx.eventBus(), shareService, imageResizerAddress, useOldQueryChildren);
 	}
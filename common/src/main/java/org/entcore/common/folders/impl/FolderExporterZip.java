@@ -1,22 +1,31 @@
 package org.entcore.common.folders.impl;
 
+import java.io.File;
 import java.nio.file.Paths;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.zip.Deflater;
 
 import org.entcore.common.folders.FolderExporter;
 import org.entcore.common.storage.Storage;
+import org.entcore.common.utils.StringUtils;
 import org.entcore.common.utils.Zip;
+import org.entcore.common.utils.ZipStreamWriter;
 
 import io.vertx.core.Future;
 import io.vertx.core.file.FileSystem;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
 class FolderExporterZip extends FolderExporter {
+	private static final Logger log = LoggerFactory.getLogger(FolderExporterZip.class);
+
 	static class ZipContext extends FolderExporterContext {
 		final String zipFullPath;
 		final String zipName;
@@ -45,12 +54,19 @@ class FolderExporterZip extends FolderExporter {
 		return future;
 	}
 
+	private final boolean streaming;
+
 	public FolderExporterZip(Storage storage, FileSystem fs) {
-		super(storage, fs);
+		this(storage, fs, true, false);
 	}
 
 	public FolderExporterZip(Storage storage, FileSystem fs, boolean throwErrors) {
+		this(storage, fs, throwErrors, false);
+	}
+
+	public FolderExporterZip(Storage storage, FileSystem fs, boolean throwErrors, boolean streaming) {
 		super(storage, fs, throwErrors);
+		this.streaming = streaming;
 	}
 
 	public Future<ZipContext> exportToZip(Optional<JsonObject> root, List<JsonObject> rows) {
@@ -65,18 +81,82 @@ class FolderExporterZip extends FolderExporter {
 		}).map(res -> context);
 	}
 
-	public Future<Void> sendZip(HttpServerRequest req, ZipContext context) {
-		Future<Void> future = Future.future();
-		final HttpServerResponse resp = req.response();
+	private static void putHeaders(HttpServerResponse resp, ZipContext context) {
 		resp.putHeader("Content-Disposition", "attachment; filename=\"" + context.zipName + "\"");
 		resp.putHeader("Content-Type", "application/octet-stream");
 		resp.putHeader("Content-Description", "File Transfer");
 		resp.putHeader("Content-Transfer-Encoding", "binary");
+	}
+
+	public Future<Void> sendZip(HttpServerRequest req, ZipContext context) {
+		Future<Void> future = Future.future();
+		final HttpServerResponse resp = req.response();
+		putHeaders(resp, context);
 		resp.sendFile(context.zipFullPath, future.completer());
 		return future;
 	}
 
+	private Future<Void> addEntry(ZipStreamWriter zip, ZipContext context, String fileId, String name, int level) {
+		Future<Void> future = Future.future();
+		storage.readStreamFile(fileId, stream -> {
+			if (stream != null) {
+				zip.addEntry(name, stream, level).setHandler(future);
+			} else if (throwErrors) {
+				future.fail("Failed to read file : " + fileId);
+			} else {
+				context.errors.add(new JsonObject().put("status", "error").put("message", "file.not.found")
+						.put("fileId", fileId));
+				log.error("Failed to export file : " + name + " - " + fileId);
+				future.complete();
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Write the zip entries to the response while the files are read from the storage : no copy in a temporary
+	 * folder and the first bytes are sent as soon as the first file is read.
+	 */
+	public Future<ZipContext> streamZip(Optional<JsonObject> root, List<JsonObject> rows, HttpServerRequest req) {
+		String baseName = root.isPresent() ? root.get().getString("name", "archive") : "archive";
+		// entries paths are relative to the root folder
+		ZipContext context = new ZipContext("", File.separator, baseName);
+		this.buildMapping(rows, context);
+		final HttpServerResponse resp = req.response();
+		putHeaders(resp, context);
+		resp.setChunked(true);
+		final ZipStreamWriter zip = new ZipStreamWriter(resp);
+		resp.closeHandler(v -> zip.abort());
+		Future<Void> entries = Future.succeededFuture();
+		for (String folderPath : context.docByFolders.keySet()) {
+			List<JsonObject> docs = context.docByFolders.get(folderPath);
+			JsonObject nameByFileId = this.buildNames(docs, context);
+			String folder = Paths.get(context.basePath).relativize(Paths.get(folderPath)).toString()
+					.replace(File.separatorChar, '/');
+			Set<String> added = new HashSet<>();
+			for (JsonObject doc : docs) {
+				String fileId = DocumentHelper.getFileId(doc);
+				if (StringUtils.isEmpty(fileId) || !added.add(fileId)) {
+					continue;
+				}
+				String name = (folder.isEmpty() ? "" : folder + "/") + nameByFileId.getString(fileId);
+				int level = ZipStreamWriter.compressionLevel(DocumentHelper.getContentType(doc));
+				entries = entries.compose(v -> this.addEntry(zip, context, fileId, name, level));
+			}
+		}
+		return entries.compose(v -> zip.end()).recover(e -> {
+			log.error("Failed to stream zip : " + context.zipName, e);
+			zip.abort();
+			// the archive is truncated : the client must not receive a valid end of response
+			req.connection().close();
+			return Future.failedFuture(e);
+		}).map(context);
+	}
+
 	public Future<ZipContext> exportAndSendZip(JsonObject root, List<JsonObject> rows, HttpServerRequest req, boolean clean) {
+		if (streaming && storage.isReadStreamSupported()) {
+			return this.streamZip(Optional.ofNullable(root), rows, req);
+		}
 		return this.exportToZip(Optional.ofNullable(root), rows).compose(res -> {
 			return this.sendZip(req, res).map((r)->res);
 		}).compose(res->{
@@ -89,6 +169,9 @@ class FolderExporterZip extends FolderExporter {
 	}
 
 	public Future<ZipContext> exportAndSendZip(List<JsonObject> rows, HttpServerRequest req, boolean clean) {
+		if (streaming && storage.isReadStreamSupported()) {
+			return this.streamZip(Optional.empty(), rows, req);
+		}
 		return this.exportToZip(Optional.empty(), rows).compose(res -> {
 			return this.sendZip(req, res).map((r)->res);
 		}).compose(res->{
@@ -89,6 +89,7 @@ public class FolderManagerMongoImpl implements FolderManager {
 
 	protected final String imageResizerAddress;
 	protected boolean allowDuplicate = false;
+	protected boolean streamingZip = false;
 	protected final FolderImporterZip zipImporter;
 	public FolderManagerMongoImpl(String collection, Storage sto, Vertx vertx, FileSystem fs, EventBus eb, ShareService shareService, String imageResizerAddress, boolean useOldChildrenQuery)
 	{
@@ -107,6 +108,10 @@ public class FolderManagerMongoImpl implements FolderManager {
 		this.allowDuplicate = allowDuplicate;
 	}
 
+	public void setStreamingZip(boolean streamingZip) {
+		this.streamingZip = streamingZip;
+	}
+
 	protected Future<Boolean> isDuplicate(Optional<String> parentId, JsonObject file, String type){
 		final String name = DocumentHelper.getName(file);
 		final String id = DocumentHelper.getId(file);
@@ -504,9 +509,9 @@ public class FolderManagerMongoImpl implements FolderManager {
 					future.setHandler(result -> {
 						if (result.succeeded()) {
 							List<JsonObject> rows = result.result();
-							FolderExporterZip zipBuilder = new FolderExporterZip(storage, fileSystem, false);
+							FolderExporterZip zipBuilder = new FolderExporterZip(storage, fileSystem, false, streamingZip);
 							zipBuilder.exportAndSendZip(bodyRoot, rows, request, true).setHandler(zipEvent -> {
-								if (zipEvent.failed()) {
+								if (zipEvent.failed() && !request.response().headWritten()) {
 									request.response().setStatusCode(500).end();
 								}
 							});
@@ -548,9 +553,9 @@ public class FolderManagerMongoImpl implements FolderManager {
 					return;
 				}
 				// download multiple files
-				FolderExporterZip zipBuilder = new FolderExporterZip(storage, fileSystem, false);
+				FolderExporterZip zipBuilder = new FolderExporterZip(storage, fileSystem, false, streamingZip);
 				zipBuilder.exportAndSendZip(all, request, true).setHandler(zipEvent -> {
-					if (zipEvent.failed()) {
+					if (zipEvent.failed() && !request.response().headWritten()) {
 						request.response().setStatusCode(500).end();
 					}
 				});
@@ -78,6 +78,10 @@ public class FolderManagerWithQuota implements FolderManager {
 	public void setAllowDuplicate(boolean allowDuplicate){
 		this.folderManager.setAllowDuplicate(allowDuplicate);
 	}
+
+	public void setStreamingZip(boolean streamingZip){
+		this.folderManager.setStreamingZip(streamingZip);
+	}
 	
 	public Future<Long> computFreeSpace(final UserInfos userInfos) {
 		Future<Long> future = Future.future();
@@ -104,6 +104,9 @@ public abstract class BaseServer extends Server {
 
 		Config.getInstance().setConfig(config);
 
+		UserUtils.initSessionNearCache(vertx);
+		AuthorizationDecisionCache.init(vertx);
+
 		if (node != null) {
 			initModulesHelpers(node);
 		}
@@ -177,6 +180,7 @@ public abstract class BaseServer extends Server {
 	protected Server addController(BaseController controller) {
 		controller.setAccessLogger(accessLogger);
 		super.addController(controller);
+		BindingsRouter.bindingsChanged();
 		if (config.getJsonObject("override-theme") != null) {
 			controller.addHookRenderProcess(new OverrideThemeHookRender(getEventBus(vertx), config.getJsonObject("override-theme")));
 		}
@@ -228,6 +232,7 @@ public abstract class BaseServer extends Server {
 		if (config.getBoolean("sql", false)) {
 			Sql.getInstance().init(getEventBus(vertx), node +
 					config.getString("sql-address", "sql.persistor"));
+			Sql.getInstance().initDirect(vertx, config);
 			schema = config.getString("db-schema", getPathPrefix(config).replaceAll("/", ""));
 			DB.loadScripts(schema, vertx, FileResolver.absolutePath(config.getString("init-scripts", "sql")));
 		}
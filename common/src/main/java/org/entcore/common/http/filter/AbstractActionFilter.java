@@ -28,7 +28,6 @@ import org.entcore.common.user.UserInfos;
 import org.entcore.common.user.UserUtils;
 import io.vertx.core.Handler;
 import io.vertx.core.http.HttpServerRequest;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
 import java.io.UnsupportedEncodingException;
@@ -36,7 +35,6 @@ import java.net.URLEncoder;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
 
 import static fr.wseduc.webutils.Utils.getOrElse;
 import static org.entcore.common.utils.StringUtils.isEmpty;
@@ -48,10 +46,12 @@ public abstract class AbstractActionFilter implements Filter {
 	protected static final List<String> authorizationTypes = Arrays.asList("Basic", "Bearer");
 	protected final Set<Binding> bindings;
 	protected final ResourcesProvider provider;
+	private final BindingsRouter router;
 
 	public AbstractActionFilter(Set<Binding> bindings, ResourcesProvider provider) {
 		this.bindings = bindings;
 		this.provider = provider;
+		this.router = new BindingsRouter(bindings, true);
 	}
 
 	protected void userIsAuthorized(HttpServerRequest request, JsonObject session,
@@ -97,46 +97,11 @@ public abstract class AbstractActionFilter implements Filter {
 
 	private void authorizeWorkflowAction(JsonObject session, Binding binding,
 										 Handler<Boolean> handler) {
-		JsonArray actions = session.getJsonArray("authorizedActions");
-		if (binding != null && binding.getServiceMethod() != null
-				&& actions != null && actions.size() > 0) {
-			for (Object a: actions) {
-				JsonObject action = (JsonObject) a;
-				if (binding.getServiceMethod().equals(action.getString("name"))) {
-					handler.handle(true);
-					return;
-				}
-			}
-		}
-		if (session.getJsonObject("functions", new JsonObject()).containsKey("SUPER_ADMIN")) {
-			handler.handle(true);
-			return;
-		}
-		handler.handle(false);
+		handler.handle(UserUtils.isAuthorizedWorkflowAction(session, (binding != null) ? binding.getServiceMethod() : null));
 	}
 
 	private Binding requestBinding(HttpServerRequest request) {
-		//check first if a route exact match
-		for (Binding binding: bindings) {
-			if (!request.method().name().equals(binding.getMethod().name())) {
-				continue;
-			}
-			final String uri = binding.getUriPattern().toString();
-			if (uri.equals(request.path())) {
-				return binding;
-			}
-		}
-		//then check if route regex match
-		for (Binding binding: bindings) {
-			if (!request.method().name().equals(binding.getMethod().name())) {
-				continue;
-			}
-			Matcher m = binding.getUriPattern().matcher(request.path());
-			if (m.matches()) {
-				return binding;
-			}
-		}
-		return null;
+		return router.route(request);
 	}
 
 	protected void clientIsAuthorizedByScope(SecureHttpServerRequest request, Handler<Boolean> handler) {
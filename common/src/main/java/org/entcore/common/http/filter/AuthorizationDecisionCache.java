@@ -0,0 +1,263 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.http.filter;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded local cache of the share and owner authorization decisions, keyed by
+ * (resource table or collection, resourceId, userId, sharedMethod).
+ * Share services publish on {@link #INVALIDATION_ADDRESS} when the shares of a resource change, and the
+ * repository events publish it once their shares, owners or resources deletions are done.
+ * The repository events (users or groups deletion, merge, transition) also clear the whole cache when received.
+ * A decision is not cached if an invalidation was received while its query was running.
+ * The ttl bounds the delay for the other changes (group membership of a user).
+ */
+public class AuthorizationDecisionCache {
+
+	public static final String INVALIDATION_ADDRESS = "wse.authorization.invalidate";
+	public static final long DEFAULT_TTL = 10000L;
+	public static final int DEFAULT_MAX_SIZE = 50000;
+	private static final Logger log = LoggerFactory.getLogger(AuthorizationDecisionCache.class);
+	private static final Set<String> REPOSITORY_ACTIONS = new HashSet<>(Arrays.asList(
+			"delete-groups", "delete-users", "remove-share-groups", "merge-users", "transition"));
+	private static volatile AuthorizationDecisionCache instance;
+
+	private final long ttl;
+	private final int maxSize;
+	private final Map<String, Entry> decisions;
+	private final Map<String, Set<String>> resourceKeys = new HashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	private final AtomicLong queries = new AtomicLong();
+	private final AtomicLong queriesTime = new AtomicLong();
+	private long evictions;
+	private long generation;
+
+	private static final class Entry {
+		private final boolean authorized;
+		private final String resourceId;
+		private final long expire;
+
+		private Entry(boolean authorized, String resourceId, long expire) {
+			this.authorized = authorized;
+			this.resourceId = resourceId;
+			this.expire = expire;
+		}
+	}
+
+	public AuthorizationDecisionCache(JsonObject config) {
+		this.ttl = config.getLong("ttl", DEFAULT_TTL);
+		this.maxSize = config.getInteger("max-size", DEFAULT_MAX_SIZE);
+		this.decisions = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > AuthorizationDecisionCache.this.maxSize) {
+					evictions++;
+					unindex(eldest.getValue().resourceId, eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public static void init(Vertx vertx) {
+		if (instance != null) {
+			return;
+		}
+		final String conf = (String) vertx.sharedData().getLocalMap("server").get("authorizationCache");
+		if (conf == null) {
+			return;
+		}
+		final JsonObject config = new JsonObject(conf);
+		if (config.getBoolean("enabled", false)) {
+			synchronized (AuthorizationDecisionCache.class) {
+				if (instance == null) {
+					final AuthorizationDecisionCache cache = new AuthorizationDecisionCache(config);
+					cache.listenInvalidations(vertx.eventBus());
+					instance = cache;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the cache or null if it isn't enabled
+	 */
+	public static AuthorizationDecisionCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Publish the invalidation of the decisions on resources. It is published even if the cache
+	 * isn't enabled on this node.
+	 */
+	public static void invalidate(EventBus eb, String... resourceIds) {
+		if (eb == null || resourceIds == null || resourceIds.length == 0) return;
+		final JsonArray ids = new JsonArray();
+		for (String resourceId : resourceIds) {
+			if (resourceId != null) {
+				ids.add(resourceId);
+			}
+		}
+		eb.publish(INVALIDATION_ADDRESS, new JsonObject().put("resourceIds", ids));
+	}
+
+	/**
+	 * Publish the invalidation of all the decisions, e.g. after the shares of deleted groups were removed
+	 * from all the resources of a collection.
+	 */
+	public static void invalidateAll(EventBus eb) {
+		if (eb == null) return;
+		eb.publish(INVALIDATION_ADDRESS, new JsonObject());
+	}
+
+	public static JsonObject metrics() {
+		final AuthorizationDecisionCache cache = instance;
+		return (cache != null) ? cache.getMetrics() : new JsonObject();
+	}
+
+	public void listenInvalidations(EventBus eb) {
+		eb.<JsonObject>consumer(INVALIDATION_ADDRESS, message -> {
+			final JsonObject body = message.body();
+			if (body != null) {
+				invalidate(body.getJsonArray("resourceIds"));
+			}
+		});
+		eb.<JsonObject>consumer("user.repository", message -> {
+			if (message.body() != null && REPOSITORY_ACTIONS.contains(message.body().getString("action"))) {
+				invalidate(null);
+			}
+		});
+		log.info("Authorization decision cache enabled with ttl " + ttl + " ms.");
+	}
+
+	public Boolean get(String resourceType, String resourceId, String userId, String sharedMethod) {
+		final String key = key(resourceType, resourceId, userId, sharedMethod);
+		final Entry entry;
+		synchronized (this) {
+			entry = decisions.get(key);
+			if (entry != null && entry.expire < System.currentTimeMillis()) {
+				decisions.remove(key);
+				unindex(resourceId, key);
+				misses.incrementAndGet();
+				return null;
+			}
+		}
+		if (entry != null) {
+			hits.incrementAndGet();
+			return entry.authorized;
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	public synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * @param generation value of {@link #generation()} read before the authorization query
+	 * @param queryTime duration of the authorization query, used to compute the saved time
+	 */
+	public void put(String resourceType, String resourceId, String userId, String sharedMethod,
+			boolean authorized, long generation, long queryTime) {
+		queries.incrementAndGet();
+		queriesTime.addAndGet(queryTime);
+		final String key = key(resourceType, resourceId, userId, sharedMethod);
+		final Entry entry = new Entry(authorized, resourceId, System.currentTimeMillis() + ttl);
+		synchronized (this) {
+			if (generation != this.generation) return;
+			decisions.put(key, entry);
+			resourceKeys.computeIfAbsent(resourceId, k -> new HashSet<>()).add(key);
+		}
+	}
+
+	/**
+	 * @param resourceIds ids of the resources, all decisions are removed if null
+	 */
+	public synchronized void invalidate(JsonArray resourceIds) {
+		invalidations.incrementAndGet();
+		generation++;
+		if (resourceIds == null) {
+			decisions.clear();
+			resourceKeys.clear();
+			return;
+		}
+		for (Object resourceId : resourceIds) {
+			final Set<String> keys = resourceKeys.remove(String.valueOf(resourceId));
+			if (keys != null) {
+				for (String key : keys) {
+					decisions.remove(key);
+				}
+			}
+		}
+	}
+
+	public JsonObject getMetrics() {
+		final long h = hits.get();
+		final long m = misses.get();
+		final long q = queries.get();
+		final long size;
+		final long e;
+		synchronized (this) {
+			size = decisions.size();
+			e = evictions;
+		}
+		return new JsonObject()
+				.put("authorization_cache_hits", h)
+				.put("authorization_cache_misses", m)
+				.put("authorization_cache_hit_ratio", (h + m) > 0 ? (double) h / (h + m) : 0d)
+				.put("authorization_cache_invalidations", invalidations.get())
+				.put("authorization_cache_evictions", e)
+				.put("authorization_cache_size", size)
+				.put("authorization_cache_saved_query_time_ms", q > 0 ? h * queriesTime.get() / q : 0L);
+	}
+
+	private static String key(String resourceType, String resourceId, String userId, String sharedMethod) {
+		return resourceType + '|' + resourceId + '|' + userId + '|' + sharedMethod;
+	}
+
+	private void unindex(String resourceId, String key) {
+		final Set<String> keys = resourceKeys.get(resourceId);
+		if (keys != null) {
+			keys.remove(key);
+			if (keys.isEmpty()) {
+				resourceKeys.remove(resourceId);
+			}
+		}
+	}
+
+}
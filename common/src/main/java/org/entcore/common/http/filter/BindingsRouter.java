@@ -0,0 +1,221 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.http.filter;
+
+import fr.wseduc.webutils.http.Binding;
+import io.vertx.core.http.HttpServerRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the binding of a request without testing every binding regex.
+ * Bindings are compiled by http method into an exact path map, then a segment trie for
+ * patterns made of literal segments and <code>:param</code> segments. Other regex patterns
+ * are tested in a fallback list. The result is the one of a linear scan of the bindings : the first
+ * binding (in the collection order) whose pattern matches, optionally after a first pass on the patterns
+ * equal to the path.
+ * The bindings collection may be filled after the filter creation (controllers are added after
+ * filters), so routes are compiled on first lookup and recompiled after {@link #bindingsChanged()}.
+ */
+public class BindingsRouter {
+
+	private static final Pattern PARAM_SEGMENT = Pattern.compile(
+			"\\((?:\\?<[A-Za-z][A-Za-z0-9_]*>)?\\[\\^\\\\?/\\]\\+\\)");
+	private static final String PARAM_PLACEHOLDER = "\u0000";
+	private static final String REGEX_CHARS = "\\.[]{}()*+?^$|";
+	private static final AtomicLong version = new AtomicLong();
+
+	private final Collection<Binding> bindings;
+	private final boolean exactFirst;
+	private volatile Routes routes;
+
+	private static final class Indexed {
+		private final Binding binding;
+		private final int index;
+
+		private Indexed(Binding binding, int index) {
+			this.binding = binding;
+			this.index = index;
+		}
+	}
+
+	private static final class Node {
+		private final Map<String, Node> literals = new HashMap<>();
+		private Node param;
+		private Indexed binding;
+	}
+
+	private static final class MethodRoutes {
+		private final Map<String, Indexed> exact = new HashMap<>();
+		private final Node trie = new Node();
+		private final List<Indexed> fallback = new ArrayList<>();
+	}
+
+	private static final class Routes {
+		private final Map<String, MethodRoutes> byMethod = new HashMap<>();
+		private final long version;
+
+		private Routes(long version) {
+			this.version = version;
+		}
+	}
+
+	public BindingsRouter(Collection<Binding> bindings) {
+		this(bindings, false);
+	}
+
+	/**
+	 * @param exactFirst if true, a binding whose pattern string is equal to the path is returned before
+	 *                   the bindings matched by regex
+	 */
+	public BindingsRouter(Collection<Binding> bindings, boolean exactFirst) {
+		this.bindings = bindings;
+		this.exactFirst = exactFirst;
+	}
+
+	/**
+	 * Must be called after bindings are added to or removed from a collection given to a router.
+	 */
+	public static void bindingsChanged() {
+		version.incrementAndGet();
+	}
+
+	public Binding route(HttpServerRequest request) {
+		return route(request.method().name(), request.path());
+	}
+
+	public Binding route(String method, String path) {
+		if (method == null || path == null) {
+			return null;
+		}
+		final MethodRoutes methodRoutes = compiled().byMethod.get(method);
+		if (methodRoutes == null) {
+			return null;
+		}
+		if (exactFirst) {
+			final Indexed exact = methodRoutes.exact.get(path);
+			if (exact != null) {
+				return exact.binding;
+			}
+		}
+		Indexed best = match(methodRoutes.trie, path, 0);
+		for (Indexed b : methodRoutes.fallback) {
+			if (best != null && b.index > best.index) {
+				break;
+			}
+			if (b.binding.getUriPattern().matcher(path).matches()) {
+				best = b;
+				break;
+			}
+		}
+		return (best != null) ? best.binding : null;
+	}
+
+	private Routes compiled() {
+		final long v = version.get();
+		Routes r = routes;
+		if (r == null || r.version != v) {
+			r = compile(v);
+			routes = r;
+		}
+		return r;
+	}
+
+	private Routes compile(long v) {
+		final List<Binding> snapshot = new ArrayList<>(bindings);
+		final Routes r = new Routes(v);
+		for (int i = 0; i < snapshot.size(); i++) {
+			final Binding binding = snapshot.get(i);
+			if (binding == null || binding.getMethod() == null || binding.getUriPattern() == null) continue;
+			final MethodRoutes methodRoutes = r.byMethod.computeIfAbsent(binding.getMethod().name(), k -> new MethodRoutes());
+			final String pattern = binding.getUriPattern().pattern();
+			final Indexed indexed = new Indexed(binding, i);
+			methodRoutes.exact.putIfAbsent(pattern, indexed);
+			if (!insert(methodRoutes.trie, pattern, indexed)) {
+				methodRoutes.fallback.add(indexed);
+			}
+		}
+		return r;
+	}
+
+	private static boolean insert(Node root, String pattern, Indexed binding) {
+		final String[] segments = PARAM_SEGMENT.matcher(pattern).replaceAll(PARAM_PLACEHOLDER).split("/", -1);
+		for (String segment : segments) {
+			if (!PARAM_PLACEHOLDER.equals(segment) && !isLiteral(segment)) {
+				return false;
+			}
+		}
+		Node node = root;
+		for (String segment : segments) {
+			if (PARAM_PLACEHOLDER.equals(segment)) {
+				if (node.param == null) {
+					node.param = new Node();
+				}
+				node = node.param;
+			} else {
+				node = node.literals.computeIfAbsent(segment, k -> new Node());
+			}
+		}
+		if (node.binding == null) {
+			node.binding = binding;
+		}
+		return true;
+	}
+
+	private static boolean isLiteral(String segment) {
+		for (int i = 0; i < segment.length(); i++) {
+			final char c = segment.charAt(i);
+			if (c == PARAM_PLACEHOLDER.charAt(0) || REGEX_CHARS.indexOf(c) >= 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the matching binding with the lowest index (a path can match a literal and a param segment)
+	 */
+	private static Indexed match(Node node, String path, int start) {
+		int end = path.indexOf('/', start);
+		final boolean last = end < 0;
+		if (last) {
+			end = path.length();
+		}
+		Indexed best = null;
+		final Node literal = node.literals.get(path.substring(start, end));
+		if (literal != null) {
+			best = last ? literal.binding : match(literal, path, end + 1);
+		}
+		if (node.param != null && end > start) {
+			final Indexed b = last ? node.param.binding : match(node.param, path, end + 1);
+			if (b != null && (best == null || b.index < best.index)) {
+				best = b;
+			}
+		}
+		return best;
+	}
+
+}
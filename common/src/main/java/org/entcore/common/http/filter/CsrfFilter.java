@@ -41,7 +41,6 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
 
 import static fr.wseduc.webutils.Utils.isEmpty;
 
@@ -52,6 +51,7 @@ public class CsrfFilter implements Filter {
 	private final EventBus eb;
 	private final Set<Binding> bindings;
 	private Set<Binding> ignoreBinding;
+	private BindingsRouter ignoreRouter;
 
 	public CsrfFilter(EventBus eb, Set<Binding> bindings) {
 		this.eb = eb;
@@ -60,6 +60,7 @@ public class CsrfFilter implements Filter {
 
 	private void loadIgnoredMethods() {
 		ignoreBinding = new HashSet<>();
+		ignoreRouter = new BindingsRouter(ignoreBinding);
 		InputStream is = CsrfFilter.class.getClassLoader().getResourceAsStream(IgnoreCsrf.class.getSimpleName() + ".json");
 		if (is != null) {
 			BufferedReader r = null;
@@ -95,6 +96,7 @@ public class CsrfFilter implements Filter {
 	public void canAccess(final HttpServerRequest request, final Handler<Boolean> handler) {
 		if (ignoreBinding == null) {
 			loadIgnoredMethods();
+			BindingsRouter.bindingsChanged();
 		}
 		if (request instanceof SecureHttpServerRequest && securedMethods.contains(request.method().name()) &&
 				isEmpty(((SecureHttpServerRequest) request).getAttribute("client_id")) && !ignore(request)) {
@@ -127,18 +129,7 @@ public class CsrfFilter implements Filter {
 	}
 
 	protected boolean ignore(HttpServerRequest request) {
-		if (!ignoreBinding.isEmpty()) {
-			for (Binding binding : ignoreBinding) {
-				if (!request.method().name().equals(binding.getMethod().name())) {
-					continue;
-				}
-				Matcher m = binding.getUriPattern().matcher(request.path());
-				if (m.matches()) {
-					return true;
-				}
-			}
-		}
-		return false;
+		return !ignoreBinding.isEmpty() && ignoreRouter.route(request) != null;
 	}
 
 }
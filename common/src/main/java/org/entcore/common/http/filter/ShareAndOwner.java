@@ -21,12 +21,14 @@ package org.entcore.common.http.filter;
 
 import com.mongodb.DBObject;
 import com.mongodb.QueryBuilder;
+import fr.wseduc.mongodb.MongoDb;
 import fr.wseduc.mongodb.MongoQueryBuilder;
 import fr.wseduc.webutils.http.Binding;
 import org.entcore.common.mongodb.MongoDbConf;
 import org.entcore.common.user.UserInfos;
 import io.vertx.core.Handler;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -39,8 +41,16 @@ public class ShareAndOwner implements ResourcesProvider {
 	public void authorize(HttpServerRequest request, Binding binding, UserInfos user, Handler<Boolean> handler) {
 		String id = request.params().get(conf.getResourceIdLabel());
 		if (id != null && !id.trim().isEmpty()) {
-			List<DBObject> groups = new ArrayList<>();
 			String sharedMethod = binding.getServiceMethod().replaceAll("\\.", "-");
+			final AuthorizationDecisionCache cache = AuthorizationDecisionCache.getInstance();
+			if (cache != null) {
+				final Boolean authorized = cache.get(conf.getCollection(), id, user.getUserId(), sharedMethod);
+				if (authorized != null) {
+					handler.handle(authorized);
+					return;
+				}
+			}
+			List<DBObject> groups = new ArrayList<>();
 			groups.add(QueryBuilder.start("userId").is(user.getUserId())
 					.put(sharedMethod).is(true).get());
 			for (String gpId: user.getGroupsIds()) {
@@ -52,7 +62,25 @@ public class ShareAndOwner implements ResourcesProvider {
 					QueryBuilder.start("shared").elemMatch(
 							new QueryBuilder().or(groups.toArray(new DBObject[groups.size()])).get()).get()
 			);
-			MongoAppFilter.executeCountQuery(request, conf.getCollection(), MongoQueryBuilder.build(query), 1, handler);
+			if (cache == null) {
+				MongoAppFilter.executeCountQuery(request, conf.getCollection(), MongoQueryBuilder.build(query), 1, handler);
+				return;
+			}
+			final long generation = cache.generation();
+			final long start = System.currentTimeMillis();
+			request.pause();
+			MongoDb.getInstance().count(conf.getCollection(), MongoQueryBuilder.build(query), event -> {
+				request.resume();
+				final JsonObject res = event.body();
+				if (res != null && "ok".equals(res.getString("status"))) {
+					final boolean authorized = 1 == res.getInteger("count");
+					cache.put(conf.getCollection(), id, user.getUserId(), sharedMethod, authorized, generation,
+							System.currentTimeMillis() - start);
+					handler.handle(authorized);
+				} else {
+					handler.handle(false);
+				}
+			});
 		} else {
 			handler.handle(false);
 		}
@@ -20,6 +20,7 @@
 package org.entcore.common.http.filter.sql;
 
 import fr.wseduc.webutils.http.Binding;
+import org.entcore.common.http.filter.AuthorizationDecisionCache;
 import org.entcore.common.http.filter.ResourcesProvider;
 import org.entcore.common.sql.Sql;
 import org.entcore.common.sql.SqlConf;
@@ -43,8 +44,19 @@ public class ShareAndOwner implements ResourcesProvider {
 		SqlConf conf = SqlConfs.getConf(binding.getServiceMethod().substring(0, binding.getServiceMethod().indexOf('|')));
 		String id = request.params().get(conf.getResourceIdLabel());
 		if (id != null && !id.trim().isEmpty()) {
+			final String sharedMethod = binding.getServiceMethod().replaceAll("\\.", "-");
+			final String resourceType = conf.getSchema() + conf.getTable();
+			final AuthorizationDecisionCache cache = AuthorizationDecisionCache.getInstance();
+			if (cache != null) {
+				final Boolean authorized = cache.get(resourceType, id, user.getUserId(), sharedMethod);
+				if (authorized != null) {
+					handler.handle(authorized);
+					return;
+				}
+			}
+			final long generation = (cache != null) ? cache.generation() : 0L;
+			final long start = System.currentTimeMillis();
 			request.pause();
-			String sharedMethod = binding.getServiceMethod().replaceAll("\\.", "-");
 			List<String> gu = new ArrayList<>();
 			gu.add(user.getUserId());
 			if (user.getGroupsIds() != null) {
@@ -63,6 +75,10 @@ public class ShareAndOwner implements ResourcesProvider {
 				public void handle(Message<JsonObject> message) {
 					request.resume();
 					Long count = SqlResult.countResult(message);
+					if (cache != null && count != null) {
+						cache.put(resourceType, id, user.getUserId(), sharedMethod, count > 0, generation,
+								System.currentTimeMillis() - start);
+					}
 					handler.handle(count != null && count > 0);
 				}
 			});
@@ -29,6 +29,12 @@ public interface GraphDatabase {
 
 	void execute(String query, JsonObject params, Handler<JsonObject> handler);
 
+	/**
+	 * @param consistencyKey key of the caller (for example a user id) : its reads are sent to the master
+	 * for a short time after its writes (read-your-writes). May be null.
+	 */
+	void execute(String query, JsonObject params, String consistencyKey, Handler<JsonObject> handler);
+
 	void executeBatch(JsonArray queries, Handler<JsonObject> handler);
 
 	void executeTransaction(JsonArray statements, Integer transactionId,
@@ -38,6 +44,21 @@ public interface GraphDatabase {
 							boolean commit, boolean allowRetry, boolean forceReadOnly,
 							Handler<JsonObject> handler);
 
+	/**
+	 * @param rowHandler receives the rows as they are decoded, they aren't kept in the results
+	 */
+	void executeTransaction(JsonArray statements, Integer transactionId,
+							boolean commit, boolean allowRetry, boolean forceReadOnly,
+							Handler<JsonObject> rowHandler, Handler<JsonObject> handler);
+
+	void executeTransaction(JsonArray statements, Integer transactionId,
+							boolean commit, String consistencyKey, Handler<JsonObject> handler);
+
+	/**
+	 * Send the reads of the caller to the master for a short time, after a write done by another way.
+	 */
+	void pinReadsToMaster(String consistencyKey);
+
 	void resetTransactionTimeout(int transactionId, Handler<JsonObject> handler);
 
 	void rollbackTransaction(int transactionId, Handler<JsonObject> handler);
@@ -93,6 +93,14 @@ public class Neo4j {
 		database.execute(query, params, resultHandler(handler));
 	}
 
+	/**
+	 * @param consistencyKey key of the caller (for example the user id) : after its writes, its reads
+	 * are sent to the master during the <code>read-your-writes-ms</code> window of the read routing.
+	 */
+	public void execute(String query, JsonObject params, String consistencyKey, Handler<Message<JsonObject>> handler) {
+		database.execute(query, params, consistencyKey, resultHandler(handler));
+	}
+
 	public void execute(String query, Map<String,Object> params, Handler<Message<JsonObject>> handler) {
 		execute(query, params != null ? new JsonObject(params) : null, handler);
 	}
@@ -141,6 +149,30 @@ public class Neo4j {
 		database.executeTransaction(statements, transactionId, commit, allowRetry, forceReadOnly, resultHandler(handler));
 	}
 
+	public void executeTransaction(JsonArray statements, Integer transactionId, boolean commit,
+			String consistencyKey, Handler<Message<JsonObject>> handler) {
+		database.executeTransaction(statements, transactionId, commit, consistencyKey, resultHandler(handler));
+	}
+
+	public void pinReadsToMaster(String consistencyKey) {
+		database.pinReadsToMaster(consistencyKey);
+	}
+
+	/**
+	 * Execute a read query and pass the rows to <code>rowHandler</code> as they are decoded,
+	 * for large reads which don't need to keep all the rows in memory.
+	 * The result message has an empty result array.
+	 */
+	public void executeStream(String query, JsonObject params, Handler<JsonObject> rowHandler,
+			Handler<Message<JsonObject>> handler) {
+		final JsonObject statement = new JsonObject().put("statement", query);
+		if (params != null) {
+			statement.put("parameters", params);
+		}
+		database.executeTransaction(new fr.wseduc.webutils.collections.JsonArray().add(statement), null, true,
+				false, true, rowHandler, resultHandler(handler));
+	}
+
 	public void resetTransactionTimeout(int transactionId, Handler<Message<JsonObject>> handler) {
 		database.resetTransactionTimeout(transactionId, resultHandler(handler));
 	}
@@ -0,0 +1,166 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.neo4j;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency aware routing of the read requests between the slaves.
+ * Each node keeps an EWMA of its response time and error rate, a read goes to the best of two random
+ * healthy slaves (power of two choices). A slave whose latency is an outlier compared to the other slaves,
+ * or whose error rate is too high, is ejected for <code>ejection-ms</code> then readmitted with fresh stats.
+ * The last healthy slave is never ejected.
+ * Reads of a consistency key (for example a user id) go to the master during <code>read-your-writes-ms</code>
+ * after a write of the same key, so that users see their own writes despite the slaves lag.
+ * Configured by the <code>read-routing</code> object of the neo4j config.
+ */
+class Neo4jReadRouter {
+    private static final Logger log = LoggerFactory.getLogger(Neo4jReadRouter.class);
+    private final double alpha;
+    private final double outlierRatio;
+    private final long outlierMinLatency;
+    private final double maxErrorRate;
+    private final int minSamples;
+    private final long ejectionDuration;
+    private final long readYourWritesDuration;
+    private final int maxPins;
+    private final Map<String, Long> pins = new ConcurrentHashMap<>();
+    private final AtomicLong ejections = new AtomicLong();
+    private final AtomicLong pinnedReads = new AtomicLong();
+
+    Neo4jReadRouter(JsonObject config) {
+        this.alpha = config.getDouble("ewma-alpha", 0.2);
+        this.outlierRatio = config.getDouble("outlier-ratio", 3.0);
+        this.outlierMinLatency = config.getLong("outlier-min-latency-ms", 50L);
+        this.maxErrorRate = config.getDouble("max-error-rate", 0.5);
+        this.minSamples = config.getInteger("min-samples", 20);
+        this.ejectionDuration = config.getLong("ejection-ms", 30000L);
+        this.readYourWritesDuration = config.getLong("read-your-writes-ms", 5000L);
+        this.maxPins = config.getInteger("max-pins", 100000);
+    }
+
+    /**
+     * @param slaves available slaves, not empty
+     */
+    Neo4jRestClientNode select(List<Neo4jRestClientNode> slaves) {
+        final long now = System.currentTimeMillis();
+        final List<Neo4jRestClientNode> healthy = new ArrayList<>(slaves.size());
+        for (Neo4jRestClientNode node : slaves) {
+            if (node.readmitIfEjectionExpired(now)) {
+                log.warn("Neo4j node readmitted for reads (" + node.getUrl() + ")");
+            }
+            if (!node.isEjected()) {
+                healthy.add(node);
+            }
+        }
+        final List<Neo4jRestClientNode> candidates = healthy.isEmpty() ? slaves : healthy;
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int i = random.nextInt(candidates.size());
+        int j = random.nextInt(candidates.size() - 1);
+        if (j >= i) {
+            j++;
+        }
+        final Neo4jRestClientNode a = candidates.get(i);
+        final Neo4jRestClientNode b = candidates.get(j);
+        return a.getRoutingScore() <= b.getRoutingScore() ? a : b;
+    }
+
+    /**
+     * Update the stats of the node after a response or a connection error and eject it if it is an outlier.
+     * @param slaves the slaves the node is compared to
+     */
+    void record(Neo4jRestClientNode node, List<Neo4jRestClientNode> slaves, long latency, boolean error) {
+        node.updateRoutingStats(alpha, latency, error);
+        if (!node.isSlave() || node.isEjected() || node.getRoutingSamples() < minSamples) {
+            return;
+        }
+        final List<Double> peersLatencies = new ArrayList<>();
+        int healthy = 0;
+        for (Neo4jRestClientNode peer : slaves) {
+            if (peer.isEjected() || !peer.isSlaveAvailable()) continue;
+            healthy++;
+            if (peer != node && peer.getRoutingSamples() >= minSamples) {
+                peersLatencies.add(peer.getEwmaLatency());
+            }
+        }
+        if (healthy <= 1) {
+            return;
+        }
+        String reason = null;
+        if (node.getEwmaErrorRate() > maxErrorRate) {
+            reason = "error rate " + String.format("%.2f", node.getEwmaErrorRate());
+        } else if (!peersLatencies.isEmpty() && node.getEwmaLatency() > outlierMinLatency) {
+            Collections.sort(peersLatencies);
+            final double median = peersLatencies.get(peersLatencies.size() / 2);
+            if (node.getEwmaLatency() > outlierRatio * median) {
+                reason = "latency " + Math.round(node.getEwmaLatency()) + " ms (median " + Math.round(median) + " ms)";
+            }
+        }
+        if (reason != null && node.eject(System.currentTimeMillis() + ejectionDuration)) {
+            ejections.incrementAndGet();
+            log.warn("Neo4j node ejected from reads (" + node.getUrl() + ") : " + reason);
+        }
+    }
+
+    void pin(String consistencyKey) {
+        if (consistencyKey == null || readYourWritesDuration <= 0) return;
+        final long now = System.currentTimeMillis();
+        if (pins.size() >= maxPins) {
+            pins.values().removeIf(until -> until < now);
+        }
+        pins.put(consistencyKey, now + readYourWritesDuration);
+    }
+
+    boolean isPinned(String consistencyKey) {
+        if (consistencyKey == null) return false;
+        final Long until = pins.get(consistencyKey);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            pins.remove(consistencyKey, until);
+            return false;
+        }
+        pinnedReads.incrementAndGet();
+        return true;
+    }
+
+    JsonObject getMetrics(List<Neo4jRestClientNode> nodes) {
+        return new JsonObject()
+                .put("neo4j_read_ejected", nodes.stream().filter(Neo4jRestClientNode::isEjected).count())
+                .put("neo4j_read_ejections", ejections.get())
+                .put("neo4j_read_pinned_to_master", pinnedReads.get())
+                .put("neo4j_read_pins", pins.size());
+    }
+
+}
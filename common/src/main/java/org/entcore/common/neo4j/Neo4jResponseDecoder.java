@@ -0,0 +1,275 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.neo4j;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Incremental decoder of the Neo4j REST responses, fed with the HTTP body chunks.
+ * Rows are built from the token stream with the same shape as the former
+ * <code>transformJson</code> output (one JsonObject by row keyed by columns), without keeping
+ * the body, its String copy and the intermediate parsed tree. The <code>meta</code> and
+ * <code>graph</code> data of the transactional endpoint are skipped.
+ * If a row handler is set, rows are passed to it and not kept in the result.
+ */
+public class Neo4jResponseDecoder {
+
+	private static final JsonFactory factory = new JsonFactory();
+
+	private enum Kind { ROOT, RESULTS, RESULT, DATA, DATA_ELEMENT, ROW, VALUE, SKIP }
+
+	private static final class Frame {
+		private final Kind kind;
+		private final JsonObject object;
+		private final JsonArray array;
+		private String field;
+		private JsonArray columns;
+		private JsonArray rows;
+
+		private Frame(Kind kind, JsonObject object, JsonArray array) {
+			this.kind = kind;
+			this.object = object;
+			this.array = array;
+		}
+	}
+
+	private final JsonParser parser;
+	private final ByteArrayFeeder feeder;
+	private final Handler<JsonObject> rowHandler;
+	private final Deque<Frame> stack = new ArrayDeque<>();
+	private final JsonArray results = new fr.wseduc.webutils.collections.JsonArray();
+	private JsonObject root;
+	private JsonArray rootRows;
+	private int skipDepth = 0;
+	private long rowsCount = 0;
+
+	public Neo4jResponseDecoder() {
+		this(null);
+	}
+
+	public Neo4jResponseDecoder(Handler<JsonObject> rowHandler) {
+		this.rowHandler = rowHandler;
+		try {
+			this.parser = factory.createNonBlockingByteArrayParser();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+	}
+
+	public void feed(Buffer chunk) throws IOException {
+		final byte[] bytes = chunk.getBytes();
+		feeder.feedInput(bytes, 0, bytes.length);
+		consume();
+	}
+
+	public void end() throws IOException {
+		feeder.endOfInput();
+		consume();
+		if (root == null || !stack.isEmpty()) {
+			throw new IOException("Incomplete Neo4j response.");
+		}
+	}
+
+	/**
+	 * @return the response of the transactional endpoint : <code>results</code> contains
+	 * an array of rows by statement (empty arrays if a row handler is set)
+	 */
+	public JsonObject transactionResult() {
+		if (root != null) {
+			root.put("results", results);
+		}
+		return root;
+	}
+
+	/**
+	 * @return the rows of the legacy cypher endpoint response
+	 */
+	public JsonArray cypherResult() {
+		return rootRows != null ? rootRows : new fr.wseduc.webutils.collections.JsonArray();
+	}
+
+	public long rowsCount() {
+		return rowsCount;
+	}
+
+	private void consume() throws IOException {
+		JsonToken token;
+		while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+			if (skipDepth > 0) {
+				if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+					skipDepth++;
+				} else if (token == JsonToken.END_OBJECT || token == JsonToken.END_ARRAY) {
+					skipDepth--;
+				}
+				continue;
+			}
+			switch (token) {
+				case FIELD_NAME:
+					stack.peek().field = parser.getCurrentName();
+					break;
+				case START_OBJECT:
+				case START_ARRAY:
+					start(token == JsonToken.START_OBJECT);
+					break;
+				case END_OBJECT:
+				case END_ARRAY:
+					end(stack.pop());
+					break;
+				default:
+					value(scalar(token));
+			}
+		}
+	}
+
+	private void start(boolean object) {
+		final Frame parent = stack.peek();
+		if (parent == null) {
+			root = new JsonObject();
+			stack.push(new Frame(Kind.ROOT, root, null));
+			return;
+		}
+		final Kind kind;
+		switch (parent.kind) {
+			case ROOT:
+				kind = !object && "results".equals(parent.field) ? Kind.RESULTS :
+						!object && "data".equals(parent.field) ? Kind.DATA : Kind.VALUE;
+				break;
+			case RESULTS:
+				kind = Kind.RESULT;
+				break;
+			case RESULT:
+				kind = !object && "data".equals(parent.field) ? Kind.DATA :
+						"columns".equals(parent.field) ? Kind.VALUE : Kind.SKIP;
+				break;
+			case DATA:
+				kind = object ? Kind.DATA_ELEMENT : Kind.ROW;
+				break;
+			case DATA_ELEMENT:
+				kind = !object && "row".equals(parent.field) ? Kind.ROW : Kind.SKIP;
+				break;
+			default:
+				kind = Kind.VALUE;
+		}
+		if (kind == Kind.SKIP) {
+			skipDepth = 1;
+			return;
+		}
+		final Frame frame = object ? new Frame(kind, new JsonObject(), null) : new Frame(kind, null, new JsonArray());
+		if (kind == Kind.RESULT) {
+			frame.rows = new fr.wseduc.webutils.collections.JsonArray();
+		} else if (kind == Kind.DATA) {
+			frame.columns = (parent.kind == Kind.ROOT) ? parent.object.getJsonArray("columns") : parent.columns;
+			frame.rows = (parent.kind == Kind.ROOT) ? (rootRows = new fr.wseduc.webutils.collections.JsonArray()) : parent.rows;
+		} else if (kind == Kind.DATA_ELEMENT || kind == Kind.ROW) {
+			frame.columns = parent.columns;
+			frame.rows = parent.rows;
+		}
+		stack.push(frame);
+	}
+
+	private void end(Frame frame) {
+		final Frame parent = stack.peek();
+		switch (frame.kind) {
+			case RESULT:
+				results.add(frame.rows);
+				break;
+			case ROW:
+				row(frame.columns, frame.array, frame.rows);
+				break;
+			case VALUE:
+				value(frame.object != null ? frame.object : frame.array);
+				if (parent != null && parent.kind == Kind.RESULT && "columns".equals(parent.field)) {
+					parent.columns = frame.array;
+				}
+				break;
+			default:
+		}
+	}
+
+	private void row(JsonArray columns, JsonArray values, JsonArray rows) {
+		if (columns == null) return;
+		final JsonObject row = new fr.wseduc.webutils.collections.JsonObject();
+		for (int j = 0; j < values.size() && j < columns.size(); j++) {
+			row.put(columns.getString(j), values.getValue(j));
+		}
+		rowsCount++;
+		if (rowHandler != null) {
+			rowHandler.handle(row);
+		} else if (rows != null) {
+			rows.add(row);
+		}
+	}
+
+	private void value(Object value) {
+		final Frame parent = stack.peek();
+		if (parent == null) return;
+		switch (parent.kind) {
+			case ROOT:
+			case VALUE:
+				if (parent.object != null) {
+					parent.object.put(parent.field, value);
+				} else {
+					parent.array.add(value);
+				}
+				break;
+			case ROW:
+				parent.array.add(value);
+				break;
+			default:
+		}
+	}
+
+	private Object scalar(JsonToken token) throws IOException {
+		switch (token) {
+			case VALUE_STRING:
+				return parser.getText();
+			case VALUE_NUMBER_INT:
+				switch (parser.getNumberType()) {
+					case INT:
+						return parser.getIntValue();
+					case LONG:
+						return parser.getLongValue();
+					default:
+						return parser.getNumberValue();
+				}
+			case VALUE_NUMBER_FLOAT:
+				return parser.getDoubleValue();
+			case VALUE_TRUE:
+				return Boolean.TRUE;
+			case VALUE_FALSE:
+				return Boolean.FALSE;
+			default:
+				return null;
+		}
+	}
+
+}
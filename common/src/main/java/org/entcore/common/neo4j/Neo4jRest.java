@@ -35,7 +35,7 @@ import org.entcore.common.utils.StringUtils;
 
 import java.net.URI;
 import java.util.Base64;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 
 public class Neo4jRest implements GraphDatabase {
@@ -89,7 +89,8 @@ public class Neo4jRest implements GraphDatabase {
 		final long count = this.nodeManager.getClients().size();
 		final long down = this.nodeManager.getClients().stream().filter(e->!e.isAvailable()).count();
 		final long up = this.nodeManager.getClients().stream().filter(e->e.isAvailable()).count();
-		return new JsonObject().put("neo4j_instance_up", up).put("neo4j_instance_down", down).put("neo4j_instance_total", count);
+		return new JsonObject().put("neo4j_instance_up", up).put("neo4j_instance_down", down).put("neo4j_instance_total", count)
+				.mergeIn(this.nodeManager.getReadRoutingMetrics());
 	}
 
 	private HttpClientRequest prepareRequest(final HttpClientRequest request){
@@ -129,6 +130,11 @@ public class Neo4jRest implements GraphDatabase {
 
 	@Override
 	public void execute(String query, JsonObject p, final Handler<JsonObject> handler) {
+		execute(query, p, null, handler);
+	}
+
+	@Override
+	public void execute(String query, JsonObject p, String consistencyKey, final Handler<JsonObject> handler) {
 		JsonObject params = p;
 		if (params == null) {
 			params = new JsonObject();
@@ -138,22 +144,22 @@ public class Neo4jRest implements GraphDatabase {
 				.put("params", params);
 		logger.debug(body.encode());
 		try {
-			sendRequest("/cypher", body, true, new Handler<HttpClientResponse>() {
+			sendRequest("/cypher", body, true, false, consistencyKey, 3, new Handler<HttpClientResponse>() {
 
 				@Override
 				public void handle(final HttpClientResponse resp) {
+					if (resp.statusCode() == 200) {
+						decode(resp, null, decoder -> handler.handle(new JsonObject().put("result", decoder.cypherResult())),
+								handler);
+						return;
+					}
 					resp.bodyHandler(new Handler<Buffer>() {
 
 						@Override
 						public void handle(Buffer b) {
 							logger.debug(b.toString());
 							if (resp.statusCode() != 404 && resp.statusCode() != 500) {
-								JsonObject json = new JsonObject(b.toString("UTF-8"));
-								if (resp.statusCode() == 200) {
-									handler.handle(new JsonObject().put("result", transformJson(json)));
-								} else {
-									handler.handle(json);
-								}
+								handler.handle(new JsonObject(b.toString("UTF-8")));
 							} else {
 								handler.handle(new JsonObject().put("message",
 										resp.statusMessage() + " : " + b.toString()));
@@ -228,6 +234,25 @@ public class Neo4jRest implements GraphDatabase {
 	public void executeTransaction(final JsonArray statements, final Integer transactionId,
 			final boolean commit, final boolean allowRetry, final boolean forceReadOnly,
 			final Handler<JsonObject> handler) {
+		executeTransaction(statements, transactionId, commit, allowRetry, forceReadOnly, null, handler);
+	}
+
+	@Override
+	public void executeTransaction(final JsonArray statements, final Integer transactionId,
+			final boolean commit, final boolean allowRetry, final boolean forceReadOnly,
+			final Handler<JsonObject> rowHandler, final Handler<JsonObject> handler) {
+		executeTransaction(statements, transactionId, commit, allowRetry, forceReadOnly, null, rowHandler, handler);
+	}
+
+	@Override
+	public void executeTransaction(JsonArray statements, Integer transactionId, boolean commit,
+			String consistencyKey, Handler<JsonObject> handler) {
+		executeTransaction(statements, transactionId, commit, true, false, consistencyKey, null, handler);
+	}
+
+	private void executeTransaction(final JsonArray statements, final Integer transactionId,
+			final boolean commit, final boolean allowRetry, final boolean forceReadOnly, final String consistencyKey,
+			final Handler<JsonObject> rowHandler, final Handler<JsonObject> handler) {
 		// if (ignoreEmptyStateError && !commit && statements.isEmpty()) {
 		// 	logger.warn("Ignore empty transaction call without commit. Transaction id : " + transactionId);
 		// 	handler.handle(new JsonObject().put("results", new JsonArray()));
@@ -241,62 +266,50 @@ public class Neo4jRest implements GraphDatabase {
 			uri += "/commit";
 		}
 		try {
-			sendRequest(uri, new JsonObject().put("statements", statements), false, forceReadOnly,
+			sendRequest(uri, new JsonObject().put("statements", statements), false, forceReadOnly, consistencyKey, 3,
 					new Handler<HttpClientResponse>() {
 				@Override
 				public void handle(final HttpClientResponse resp) {
-					resp.bodyHandler(new Handler<Buffer>() {
-
-						@Override
-						public void handle(Buffer b) {
-							logger.debug(b.toString());
-							if (resp.statusCode() != 404 && resp.statusCode() != 500) {
-								JsonObject json = new JsonObject(b.toString("UTF-8"));
-								JsonArray results = json.getJsonArray("results");
-								if (json.getJsonArray("errors", new fr.wseduc.webutils.collections.JsonArray()).size() == 0 &&
-										results != null) {
-									JsonArray out = new fr.wseduc.webutils.collections.JsonArray();
-									for (Object o : results) {
-										if (!(o instanceof JsonObject)) continue;
-										out.add(transformJson((JsonObject) o));
-									}
-									json.put("results", out);
-									String commit = json.getString("commit");
-									if (commit != null) {
-										String[] c = commit.split("/");
-										if (c.length > 2) {
-											json.put("transactionId", Integer.parseInt(c[c.length - 2]));
-										}
+					if (resp.statusCode() != 404 && resp.statusCode() != 500) {
+						decode(resp, rowHandler, decoder -> {
+							final JsonObject json = decoder.transactionResult();
+							if (json.getJsonArray("errors", new fr.wseduc.webutils.collections.JsonArray()).size() == 0) {
+								String commit = json.getString("commit");
+								if (commit != null) {
+									String[] c = commit.split("/");
+									if (c.length > 2) {
+										json.put("transactionId", Integer.parseInt(c[c.length - 2]));
 									}
-									json.remove("errors");
-									handler.handle(json);
-								} else {
-									if (transactionId == null && commit && allowRetry && json.getJsonArray("errors") != null && json.getJsonArray("errors").size() > 0) {
-										JsonArray errors = json.getJsonArray("errors");
-										for (Object o : errors) {
-											if (!(o instanceof JsonObject)) continue;
-											switch (((JsonObject) o).getString("code", "")) {
-												case "Neo.TransientError.Transaction.ConstraintsChanged":
-												case "Neo.TransientError.Transaction.DeadlockDetected":
-												case "Neo.TransientError.Transaction.InstanceStateChanged":
-												case "Neo.TransientError.Schema.SchemaModifiedConcurrently":
-													executeTransaction(statements, transactionId, commit, false, handler);
-													if (logger.isDebugEnabled()) {
-														logger.debug("Retry transaction : " + statements.encode());
-													}
-													return;
-											}
+								}
+								json.remove("errors");
+								handler.handle(json);
+							} else {
+								if (transactionId == null && commit && allowRetry) {
+									JsonArray errors = json.getJsonArray("errors");
+									for (Object o : errors) {
+										if (!(o instanceof JsonObject)) continue;
+										switch (((JsonObject) o).getString("code", "")) {
+											case "Neo.TransientError.Transaction.ConstraintsChanged":
+											case "Neo.TransientError.Transaction.DeadlockDetected":
+											case "Neo.TransientError.Transaction.InstanceStateChanged":
+											case "Neo.TransientError.Schema.SchemaModifiedConcurrently":
+												executeTransaction(statements, transactionId, commit, false, false, consistencyKey,
+														rowHandler, handler);
+												if (logger.isDebugEnabled()) {
+													logger.debug("Retry transaction : " + statements.encode());
+												}
+												return;
 										}
 									}
-									handler.handle(new JsonObject().put("message",
-											json.getJsonArray("errors", new fr.wseduc.webutils.collections.JsonArray()).encode()));
 								}
-							} else {
 								handler.handle(new JsonObject().put("message",
-										resp.statusMessage() + " : " + b.toString()));
+										json.getJsonArray("errors", new fr.wseduc.webutils.collections.JsonArray()).encode()));
 							}
-						}
-					});
+						}, handler);
+					} else {
+						resp.bodyHandler(b -> handler.handle(new JsonObject().put("message",
+								resp.statusMessage() + " : " + b.toString())));
+					}
 				}
 			});
 		} catch (Neo4jConnectionException e) {
@@ -304,6 +317,43 @@ public class Neo4jRest implements GraphDatabase {
 		}
 	}
 
+	/**
+	 * Decode the response body chunk by chunk.
+	 * @param errorHandler receives a message if the body isn't a valid Neo4j response
+	 */
+	private void decode(final HttpClientResponse resp, final Handler<JsonObject> rowHandler,
+			final Handler<Neo4jResponseDecoder> handler, final Handler<JsonObject> errorHandler) {
+		final Neo4jResponseDecoder decoder = new Neo4jResponseDecoder(rowHandler);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		resp.handler(chunk -> {
+			if (failed.get()) return;
+			try {
+				decoder.feed(chunk);
+			} catch (Exception e) {
+				failed.set(true);
+				logger.error("Error decoding Neo4j response", e);
+				errorHandler.handle(new JsonObject().put("message", "Invalid Neo4j response : " + e.getMessage()));
+			}
+		});
+		resp.exceptionHandler(e -> {
+			if (failed.compareAndSet(false, true)) {
+				logger.error("Error reading Neo4j response", e);
+				errorHandler.handle(new JsonObject().put("message", "Error reading Neo4j response : " + e.getMessage()));
+			}
+		});
+		resp.endHandler(v -> {
+			if (failed.get()) return;
+			try {
+				decoder.end();
+			} catch (Exception e) {
+				logger.error("Error decoding Neo4j response", e);
+				errorHandler.handle(new JsonObject().put("message", "Invalid Neo4j response : " + e.getMessage()));
+				return;
+			}
+			handler.handle(decoder);
+		});
+	}
+
 	@Override
 	public void resetTransactionTimeout(int transactionId, Handler<JsonObject> handler) {
 		executeTransaction(new fr.wseduc.webutils.collections.JsonArray(), transactionId, false, handler);
@@ -435,27 +485,46 @@ public class Neo4jRest implements GraphDatabase {
 
 	private void sendRequest(String path, Object body, boolean checkReadOnly, boolean forceReadOnly,
 			final Handler<HttpClientResponse> handler) throws Neo4jConnectionException {
-		sendRequest(path, body, checkReadOnly, forceReadOnly, 3, handler);
+		sendRequest(path, body, checkReadOnly, forceReadOnly, null, 3, handler);
 	}
 
-	private void sendRequest(String path, Object body, boolean checkReadOnly, boolean forceReadOnly, int retry,
-			final Handler<HttpClientResponse> handler) throws Neo4jConnectionException {
-		HttpClient client = null;
+	/**
+	 * @param consistencyKey key of the caller (for example a user id) : its reads go to the master
+	 * for a short time after its writes. May be null.
+	 */
+	private void sendRequest(String path, Object body, boolean checkReadOnly, boolean forceReadOnly,
+			String consistencyKey, int retry, final Handler<HttpClientResponse> handler)
+			throws Neo4jConnectionException {
+		Neo4jRestClientNode node = null;
 		if (forceReadOnly && ro) {
-			client = nodeManager.getSlaveClient();
+			node = nodeManager.getReadNode(consistencyKey);
 		} else if (checkReadOnly && ro) {
 			String query = ((JsonObject) body).getString("query");
-			if (query != null) {
-				Matcher m = writingClausesPattern.matcher(query);
-				if (!m.find()) {
-					client = nodeManager.getSlaveClient();
-				}
+			if (query != null && !isWriting(query)) {
+				node = nodeManager.getReadNode(consistencyKey);
 			}
 		}
-		if (client == null) {
-			client = nodeManager.getMasterClient();
+		final boolean pinAfterWrite;
+		if (node == null) {
+			node = nodeManager.getMasterNode();
+			pinAfterWrite = consistencyKey != null && isWriting(body);
+		} else {
+			pinAfterWrite = false;
 		}
-		HttpClientRequest req = client.post(basePath + path, handler);
+		final Neo4jRestClientNode n = node;
+		final long start = System.currentTimeMillis();
+		final AtomicBoolean ended = new AtomicBoolean(false);
+		n.requestStarted();
+		HttpClientRequest req = n.getHttpClient().post(basePath + path, resp -> {
+			if (ended.compareAndSet(false, true)) {
+				n.requestEnded();
+				nodeManager.recordResponse(n, System.currentTimeMillis() - start, resp.statusCode() >= 500);
+			}
+			if (pinAfterWrite && resp.statusCode() < 400) {
+				nodeManager.pinReadsToMaster(consistencyKey);
+			}
+			handler.handle(resp);
+		});
 		req.headers()
 				.add("Content-Type", "application/json")
 				.add("Accept", "application/json; charset=UTF-8");
@@ -463,11 +532,15 @@ public class Neo4jRest implements GraphDatabase {
 		final String b = Json.encode(body);
 
 		req.exceptionHandler(event -> {
+			if (ended.compareAndSet(false, true)) {
+				n.requestEnded();
+				nodeManager.recordResponse(n, System.currentTimeMillis() - start, true);
+			}
 			logger.error("Neo4j error in request : " + path + " - " + b + ": " + event.getMessage(), event);
 			if (ignoreEmptyStateError && EMPTY_STATEMENTS_STRING.equals(b) && retry > 0) {
 				logger.warn("Retry sendRequest with empty statements.");
 				try {
-					sendRequest(path, body, checkReadOnly, forceReadOnly, (retry - 1), handler);
+					sendRequest(path, body, checkReadOnly, forceReadOnly, consistencyKey, (retry - 1), handler);
 				} catch (Neo4jConnectionException e) {
 					logger.error("Error when try retry sendRequest call.", e);
 				}
@@ -477,4 +550,37 @@ public class Neo4jRest implements GraphDatabase {
 		req.end(b);
 	}
 
+	private boolean isWriting(String query) {
+		return writingClausesPattern.matcher(query).find();
+	}
+
+	private boolean isWriting(Object body) {
+		if (!(body instanceof JsonObject)) {
+			return true;
+		}
+		final String query = ((JsonObject) body).getString("query");
+		if (query != null) {
+			return isWriting(query);
+		}
+		final JsonArray statements = ((JsonObject) body).getJsonArray("statements");
+		if (statements == null) {
+			return true;
+		}
+		for (Object o : statements) {
+			if (o instanceof JsonObject && isWriting(((JsonObject) o).getString("statement", ""))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void pinReadsToMaster(String consistencyKey) {
+		nodeManager.pinReadsToMaster(consistencyKey);
+	}
+
+	Neo4jRestClientNodeManager getNodeManager() {
+		return nodeManager;
+	}
+
 }
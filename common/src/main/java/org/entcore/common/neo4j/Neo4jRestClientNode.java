@@ -16,6 +16,7 @@ import java.net.URISyntaxException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Neo4jRestClientNode {
     public enum Type {
@@ -32,6 +33,11 @@ public class Neo4jRestClientNode {
     private LocalDateTime notAvailableFrom;
     private LocalDateTime notReadableFrom;
     private String moduleName = "";
+    private final AtomicInteger inflight = new AtomicInteger();
+    private double ewmaLatency;
+    private double ewmaErrorRate;
+    private long routingSamples;
+    private long ejectedUntil;
 
     Neo4jRestClientNode(final String url, final HttpClient httpClient, final long banDurationSecond) {
         this.url = url;
@@ -168,6 +174,71 @@ public class Neo4jRestClientNode {
         this.httpClient.close();
     }
 
+    void requestStarted() {
+        inflight.incrementAndGet();
+    }
+
+    void requestEnded() {
+        inflight.decrementAndGet();
+    }
+
+    synchronized void updateRoutingStats(double alpha, long latency, boolean error) {
+        if (routingSamples == 0) {
+            ewmaLatency = latency;
+            ewmaErrorRate = error ? 1.0 : 0.0;
+        } else {
+            ewmaLatency += alpha * (latency - ewmaLatency);
+            ewmaErrorRate += alpha * ((error ? 1.0 : 0.0) - ewmaErrorRate);
+        }
+        routingSamples++;
+    }
+
+    /**
+     * @return the expected cost of a read on this node : latency weighted by the pending requests and errors
+     */
+    synchronized double getRoutingScore() {
+        return (ewmaLatency + 1.0) * (1 + inflight.get()) * (1.0 + 10.0 * ewmaErrorRate);
+    }
+
+    synchronized double getEwmaLatency() {
+        return ewmaLatency;
+    }
+
+    synchronized double getEwmaErrorRate() {
+        return ewmaErrorRate;
+    }
+
+    synchronized long getRoutingSamples() {
+        return routingSamples;
+    }
+
+    synchronized boolean isEjected() {
+        return ejectedUntil > 0;
+    }
+
+    synchronized boolean eject(long until) {
+        if (ejectedUntil > 0) {
+            return false;
+        }
+        ejectedUntil = until;
+        return true;
+    }
+
+    /**
+     * Readmit the node with fresh stats when its ejection is over.
+     * @return true if the node was readmitted
+     */
+    synchronized boolean readmitIfEjectionExpired(long now) {
+        if (ejectedUntil == 0 || ejectedUntil > now) {
+            return false;
+        }
+        ejectedUntil = 0;
+        routingSamples = 0;
+        ewmaLatency = 0;
+        ewmaErrorRate = 0;
+        return true;
+    }
+
     public Type getType() {
         return type;
     }
@@ -16,6 +16,7 @@ public class Neo4jRestClientNodeManager {
     private final Random random = new Random();
     private final Neo4jRestClientCheck checker;
     private final List<Neo4jRestClientNode> clients = new ArrayList<>();
+    private final Neo4jReadRouter readRouter;
 
     public Neo4jRestClientNodeManager(URI[] uris, Vertx vertx, long checkDelay, int poolSize, boolean keepAlive, String authorizationHeader, JsonObject neo4jConfig) {
         this(uris, vertx, checkDelay, poolSize, keepAlive, authorizationHeader, neo4jConfig, true);
@@ -32,6 +33,9 @@ public class Neo4jRestClientNodeManager {
             final HttpClient httpClient = vertx.createHttpClient(options);
             clients.add(new Neo4jRestClientNode(uri.toString(), httpClient, banDurationSeconds));
         }
+        final JsonObject readRouting = neo4jConfig.getJsonObject("read-routing");
+        this.readRouter = (readRouting != null && readRouting.getBoolean("enabled", false)) ?
+                new Neo4jReadRouter(readRouting) : null;
         this.checker = Neo4jRestClientCheck.create(this, vertx, authorizationHeader, checkDelay, neo4jConfig);
         if (autoStart) {
             this.checker.start(this);
@@ -107,6 +111,8 @@ public class Neo4jRestClientNodeManager {
             final List<Neo4jRestClientNode> slaves = clients.stream().filter(c -> c.isSlaveAvailable()).collect(Collectors.toList());
             if (slaves.isEmpty()) {
                 return getMasterNode();
+            } else if (readRouter != null) {
+                return readRouter.select(slaves);
             } else {
                 final Neo4jRestClientNode item = slaves.get(random.nextInt(slaves.size()));
                 return item;
@@ -118,6 +124,37 @@ public class Neo4jRestClientNodeManager {
         }
     }
 
+    /**
+     * @param consistencyKey key of the caller (for example a user id), may be null
+     * @return the master if the caller wrote recently, else a slave
+     */
+    public Neo4jRestClientNode getReadNode(String consistencyKey) throws Neo4jConnectionException {
+        if (readRouter != null && readRouter.isPinned(consistencyKey)) {
+            return getMasterNode();
+        }
+        return getSlaveNode();
+    }
+
+    /**
+     * Pin the reads of the caller to the master for the read-your-writes window.
+     */
+    public void pinReadsToMaster(String consistencyKey) {
+        if (readRouter != null) {
+            readRouter.pin(consistencyKey);
+        }
+    }
+
+    public void recordResponse(Neo4jRestClientNode node, long latency, boolean error) {
+        if (readRouter != null) {
+            readRouter.record(node, clients.stream().filter(c -> c.isSlaveAvailable()).collect(Collectors.toList()),
+                    latency, error);
+        }
+    }
+
+    public JsonObject getReadRoutingMetrics() {
+        return readRouter != null ? readRouter.getMetrics(clients) : new JsonObject();
+    }
+
     public void close() {
         this.checker.stop(this);
         for (Neo4jRestClientNode client : clients) {
@@ -19,6 +19,7 @@ import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import org.entcore.common.folders.FolderExporter;
 import org.entcore.common.folders.FolderExporter.FolderExporterContext;
+import org.entcore.common.http.filter.AuthorizationDecisionCache;
 import org.entcore.common.storage.StorageFactory;
 import org.entcore.common.user.RepositoryEvents;
 import org.entcore.common.utils.Config;
@@ -27,6 +28,7 @@ import org.entcore.common.utils.StringUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -63,6 +65,24 @@ public abstract class AbstractRepositoryEvents implements RepositoryEvents {
 		}
 	}
 
+	/**
+	 * Invalidate the cached share and owner authorization decisions of the resources whose shares or owner
+	 * were removed, or which were deleted. Without resource ids, all the decisions are invalidated.
+	 */
+	protected void invalidateAuthorizations(String... resourceIds) {
+		if (eb == null) {
+			final AuthorizationDecisionCache cache = AuthorizationDecisionCache.getInstance();
+			if (cache != null) {
+				cache.invalidate(resourceIds != null && resourceIds.length > 0 ?
+						new JsonArray(Arrays.asList(resourceIds)) : null);
+			}
+		} else if (resourceIds != null && resourceIds.length > 0) {
+			AuthorizationDecisionCache.invalidate(eb, resourceIds);
+		} else {
+			AuthorizationDecisionCache.invalidateAll(eb);
+		}
+	}
+
 	protected void createExportDirectory(String exportPath, String locale, final Handler<String> handler) {
 		this.vertx.eventBus().send("portal", new JsonObject().put("action","getI18n").put("acceptLanguage",locale), json -> {
 			if (json.succeeded()) {
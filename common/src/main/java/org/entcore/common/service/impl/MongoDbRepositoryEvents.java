@@ -128,6 +128,8 @@ public class MongoDbRepositoryEvents extends AbstractRepositoryEvents {
 				if (!"ok".equals(event.body().getString("status"))) {
 					log.error("Error deleting groups in collection " + collection +
 							" : " + event.body().getString("message"));
+				} else {
+					invalidateAuthorizations();
 				}
 			}
 		});
@@ -181,8 +183,11 @@ public class MongoDbRepositoryEvents extends AbstractRepositoryEvents {
 						if (!"ok".equals(event.body().getString("status"))) {
 							log.error("Error deleting users shared in collection " + collection +
 									" : " + event.body().getString("message"));
-						} else if (managerRight != null && !managerRight.trim().isEmpty()) {
-							removeObjects(collection);
+						} else {
+							invalidateAuthorizations();
+							if (managerRight != null && !managerRight.trim().isEmpty()) {
+								removeObjects(collection);
+							}
 						}
 					}
 				});
@@ -219,7 +224,10 @@ public class MongoDbRepositoryEvents extends AbstractRepositoryEvents {
 							if (!"ok".equals(event.body().getString("status"))) {
 								log.error("Error deleting objects in collection " + collection +
 										" : " + event.body().getString("message"));
-							} else if (revisionsCollection != null && !revisionsCollection.trim().isEmpty() &&
+								return;
+							}
+							invalidateAuthorizations(objectIds);
+							if (revisionsCollection != null && !revisionsCollection.trim().isEmpty() &&
 									revisionIdAttribute != null && !revisionIdAttribute.trim().isEmpty()) {
 								JsonObject criteria = MongoQueryBuilder.build(
 										QueryBuilder.start(revisionIdAttribute).in(objectIds));
@@ -28,6 +28,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.entcore.common.http.filter.AuthorizationDecisionCache;
 import org.entcore.common.share.ShareInfosQuery;
 
 import com.mongodb.QueryBuilder;
@@ -347,6 +348,7 @@ public class MongoDbShareService extends GenericShareService {
 					mongo.update(collection, q, updateQuery.build(), new Handler<Message<JsonObject>>() {
 						@Override
 						public void handle(Message<JsonObject> res) {
+							AuthorizationDecisionCache.invalidate(eb, resourceId);
 							if (notifyTimeline.get()) {
 								JsonObject notify = new JsonObject();
 								notify.put(shareIdAttr, groupShareId);
@@ -409,6 +411,7 @@ public class MongoDbShareService extends GenericShareService {
 						new JsonObject().put("shared", res.right().getValue().getJsonArray("shared")));
 				final JsonObject keys = new JsonObject().put("shared", 1);
 				mongo.findAndModify(collection, query, update, null, keys, mongoRes -> {
+					AuthorizationDecisionCache.invalidate(eb, resourceId);
 					if ("ok".equals(mongoRes.body().getString("status"))) {
 						JsonArray oldShared = getOrElse(mongoRes.body().getJsonObject("result"), new JsonObject())
 								.getJsonArray("shared");
@@ -463,6 +466,7 @@ public class MongoDbShareService extends GenericShareService {
 					mongo.update(collection, q, updateQuery.build(), new Handler<Message<JsonObject>>() {
 						@Override
 						public void handle(Message<JsonObject> res) {
+							AuthorizationDecisionCache.invalidate(eb, resourceId);
 							handler.handle(Utils.validResult(res));
 						}
 					});
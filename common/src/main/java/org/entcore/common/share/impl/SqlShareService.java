@@ -22,6 +22,7 @@ package org.entcore.common.share.impl;
 import java.util.*;
 
 import io.vertx.core.Future;
+import org.entcore.common.http.filter.AuthorizationDecisionCache;
 import org.entcore.common.share.ShareInfosQuery;
 import org.entcore.common.sql.Sql;
 import org.entcore.common.sql.SqlResult;
@@ -235,6 +236,7 @@ public class SqlShareService extends GenericShareService {
 				s.insert(shareTable, new JsonArray().add("member_id").add("resource_id").add("action"),
 						res.right().getValue().getJsonArray("shared"));
 				sql.transaction(s.build(), SqlResult.validResultHandler(0, old -> {
+					AuthorizationDecisionCache.invalidate(eb, resourceId);
 					if (old.isRight()) {
 						JsonArray oldMembers = old.right().getValue();
 						JsonArray members = res.right().getValue().getJsonArray("notify-members");
@@ -266,7 +268,10 @@ public class SqlShareService extends GenericShareService {
 		}
 		String query = "DELETE FROM " + shareTable + " WHERE " + actionFilter + "resource_id = ? AND member_id = ?";
 		values.add(Sql.parseId(resourceId)).add(userId);
-		sql.prepared(query, values, SqlResult.validUniqueResultHandler(handler));
+		sql.prepared(query, values, SqlResult.validUniqueResultHandler(res -> {
+			AuthorizationDecisionCache.invalidate(eb, resourceId);
+			handler.handle(res);
+		}));
 	}
 
 	public void groupShare(String userId, String groupShareId, String resourceId, List<String> actions,
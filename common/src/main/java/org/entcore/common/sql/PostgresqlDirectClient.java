@@ -0,0 +1,466 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.sql;
+
+import io.reactiverse.pgclient.PgClient;
+import io.reactiverse.pgclient.PgPool;
+import io.reactiverse.pgclient.PgPoolOptions;
+import io.reactiverse.pgclient.PgRowSet;
+import io.reactiverse.pgclient.PgTransaction;
+import io.reactiverse.pgclient.Row;
+import io.reactiverse.pgclient.SslMode;
+import io.reactiverse.pgclient.Tuple;
+import io.reactiverse.pgclient.data.Json;
+import io.reactiverse.pgclient.data.Numeric;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Direct PostgreSQL backend of {@link Sql}, on a reactive pg pool with prepared statements cache and pipelining,
+ * instead of the event bus hop to mod-postgresql. The actions and the result messages have the mod-postgresql
+ * format (<code>status</code>, <code>fields</code>, <code>results</code>, <code>rows</code>, <code>jsonb_fields</code>).
+ * Statements that can't be run the same way (several commands in one statement, parameters that the pg client
+ * can't coerce to the parameter type) are reported as unsupported, and remembered, so that the caller sends
+ * them to mod-postgresql.
+ */
+final class PostgresqlDirectClient {
+
+	private static final Logger log = LoggerFactory.getLogger(PostgresqlDirectClient.class);
+	private static final int MAX_FALLBACK_STATEMENTS = 1000;
+
+	private final PgPool pool;
+	private final Set<String> fallbackStatements = ConcurrentHashMap.newKeySet();
+
+	private static final class Statement {
+		private final String sql;
+		private final Tuple values;
+
+		private Statement(String sql, Tuple values) {
+			this.sql = sql;
+			this.values = values;
+		}
+	}
+
+	private static final class UnsupportedStatementException extends Exception {
+		private UnsupportedStatementException(String message) {
+			super(message, null, false, false);
+		}
+	}
+
+	PostgresqlDirectClient(Vertx vertx, JsonObject config) {
+		final SslMode sslMode = SslMode.valueOf(config.getString("ssl-mode", "DISABLE"));
+		final PgPoolOptions options = new PgPoolOptions()
+				.setPort(config.getInteger("port", 5432))
+				.setHost(config.getString("host"))
+				.setDatabase(config.getString("database"))
+				.setUser(config.getString("user"))
+				.setPassword(config.getString("password"))
+				.setMaxSize(config.getInteger("pool-size", 10));
+		options.setCachePreparedStatements(config.getBoolean("cache-prepared-statements", true));
+		options.setPipeliningLimit(config.getInteger("pipelining-limit", 256));
+		if (!SslMode.DISABLE.equals(sslMode)) {
+			options
+					.setSslMode(sslMode)
+					.setTrustAll(SslMode.ALLOW.equals(sslMode) || SslMode.PREFER.equals(sslMode) || SslMode.REQUIRE.equals(sslMode));
+		}
+		this.pool = PgClient.pool(vertx, options);
+	}
+
+	/**
+	 * @param command mod-postgresql command (prepared, raw, insert, upsert, select or transaction)
+	 * @param unsupported called instead of the handler if the command must be sent to mod-postgresql
+	 */
+	void send(JsonObject command, Handler<JsonObject> handler, Handler<Void> unsupported) {
+		if ("transaction".equals(command.getString("action"))) {
+			transaction(command.getJsonArray("statements", new JsonArray()), handler, unsupported);
+			return;
+		}
+		final Statement statement;
+		try {
+			statement = statement(command);
+		} catch (UnsupportedStatementException e) {
+			unsupported.handle(null);
+			return;
+		}
+		execute(pool, statement, ar -> {
+			if (ar.succeeded()) {
+				handler.handle(result(ar.result()).put("status", "ok"));
+			} else if (isCoercionError(ar.cause())) {
+				fallback(statement, ar.cause());
+				unsupported.handle(null);
+			} else {
+				handler.handle(error(ar.cause()));
+			}
+		});
+	}
+
+	private void transaction(JsonArray commands, Handler<JsonObject> handler, Handler<Void> unsupported) {
+		final List<Statement> statements = new ArrayList<>(commands.size());
+		try {
+			for (Object o : commands) {
+				if (!(o instanceof JsonObject)) continue;
+				statements.add(statement((JsonObject) o));
+			}
+		} catch (UnsupportedStatementException e) {
+			unsupported.handle(null);
+			return;
+		}
+		pool.begin(ar -> {
+			if (ar.failed()) {
+				handler.handle(error(ar.cause()));
+				return;
+			}
+			executeInTransaction(ar.result(), statements, 0, new fr.wseduc.webutils.collections.JsonArray(),
+					new fr.wseduc.webutils.collections.JsonArray(), handler, unsupported);
+		});
+	}
+
+	private void executeInTransaction(PgTransaction tx, List<Statement> statements, int index, JsonArray results,
+			JsonArray jsonbFields, Handler<JsonObject> handler, Handler<Void> unsupported) {
+		if (index >= statements.size()) {
+			tx.commit(ar -> {
+				if (ar.succeeded()) {
+					handler.handle(new JsonObject().put("status", "ok").put("results", results)
+							.put("jsonb_fields", jsonbFields));
+				} else {
+					handler.handle(error(ar.cause()));
+				}
+			});
+			return;
+		}
+		final Statement statement = statements.get(index);
+		execute(tx, statement, ar -> {
+			if (ar.succeeded()) {
+				final JsonObject result = result(ar.result());
+				for (Object field : result.getJsonArray("jsonb_fields")) {
+					if (!jsonbFields.contains(field)) {
+						jsonbFields.add(field);
+					}
+				}
+				results.add(result);
+				executeInTransaction(tx, statements, index + 1, results, jsonbFields, handler, unsupported);
+			} else {
+				tx.rollback(r -> {
+					if (isCoercionError(ar.cause())) {
+						fallback(statement, ar.cause());
+						unsupported.handle(null);
+					} else {
+						handler.handle(error(ar.cause()));
+					}
+				});
+			}
+		});
+	}
+
+	private void execute(PgClient client, Statement statement, Handler<AsyncResult<PgRowSet>> handler) {
+		if (statement.values == null) {
+			client.query(statement.sql, handler);
+		} else {
+			client.preparedQuery(statement.sql, statement.values, handler);
+		}
+	}
+
+	private void fallback(Statement statement, Throwable cause) {
+		if (fallbackStatements.size() < MAX_FALLBACK_STATEMENTS && fallbackStatements.add(statement.sql)) {
+			log.warn("Sql statement sent to mod-postgresql : " + cause.getMessage() + " - " + statement.sql);
+		}
+	}
+
+	private static boolean isCoercionError(Throwable cause) {
+		return cause != null && cause.getMessage() != null && cause.getMessage().contains("cannot be coerced");
+	}
+
+	private static JsonObject error(Throwable cause) {
+		log.error("Sql direct error", cause);
+		return new JsonObject().put("status", "error").put("message", cause.getMessage());
+	}
+
+	private Statement statement(JsonObject command) throws UnsupportedStatementException {
+		final Statement statement;
+		switch (command.getString("action", "")) {
+			case "prepared":
+				statement = new Statement(toNativePlaceholders(command.getString("statement"), true),
+						tuple(command.getJsonArray("values")));
+				break;
+			case "raw":
+				statement = new Statement(toNativePlaceholders(command.getString("command"), false), null);
+				break;
+			case "insert":
+				statement = insert(command, false);
+				break;
+			case "upsert":
+				statement = insert(command, true);
+				break;
+			case "select":
+				statement = new Statement("SELECT " + fields(command.getJsonArray("fields")) + " FROM " +
+						command.getString("table"), null);
+				break;
+			default:
+				throw new UnsupportedStatementException("Unknown action.");
+		}
+		if (fallbackStatements.contains(statement.sql)) {
+			throw new UnsupportedStatementException("Statement sent to mod-postgresql.");
+		}
+		return statement;
+	}
+
+	private static Statement insert(JsonObject command, boolean upsert) throws UnsupportedStatementException {
+		final JsonArray fields = command.getJsonArray("fields", new JsonArray());
+		final JsonArray values = command.getJsonArray("values", new JsonArray());
+		final StringBuilder sb = new StringBuilder("INSERT INTO ").append(command.getString("table"))
+				.append(" (").append(fields(fields)).append(") VALUES ");
+		final Tuple tuple = Tuple.tuple();
+		for (Object row : values) {
+			if (!(row instanceof JsonArray)) continue;
+			sb.append('(');
+			for (Object value : (JsonArray) row) {
+				tuple.addValue(value(value));
+				sb.append('$').append(tuple.size()).append(',');
+			}
+			sb.setCharAt(sb.length() - 1, ')');
+			sb.append(',');
+		}
+		sb.deleteCharAt(sb.length() - 1);
+		if (upsert) {
+			final JsonArray conflictFields = command.getJsonArray("conflictFields");
+			final JsonArray updateFields = command.getJsonArray("updateFields");
+			if (conflictFields != null && !conflictFields.isEmpty()) {
+				sb.append(" ON CONFLICT (").append(fields(conflictFields)).append(')');
+			} else {
+				sb.append(" ON CONFLICT");
+			}
+			if (updateFields != null && !updateFields.isEmpty()) {
+				sb.append(" DO UPDATE SET ");
+				for (Object f : updateFields) {
+					final String field = Sql.escapeField(f.toString());
+					sb.append(field).append(" = EXCLUDED.").append(field).append(',');
+				}
+				sb.deleteCharAt(sb.length() - 1);
+			} else {
+				sb.append(" DO NOTHING");
+			}
+		}
+		final String returning = command.getString("returning");
+		if (returning != null && !returning.trim().isEmpty()) {
+			sb.append(" RETURNING ").append(returning);
+		}
+		return new Statement(sb.toString(), tuple);
+	}
+
+	private static String fields(JsonArray fields) {
+		if (fields == null || fields.isEmpty()) {
+			return "*";
+		}
+		final StringBuilder sb = new StringBuilder();
+		for (Object f : fields) {
+			sb.append(Sql.escapeField(f.toString())).append(',');
+		}
+		return sb.deleteCharAt(sb.length() - 1).toString();
+	}
+
+	private static Tuple tuple(JsonArray values) {
+		final Tuple tuple = Tuple.tuple();
+		if (values != null) {
+			for (Object value : values) {
+				tuple.addValue(value(value));
+			}
+		}
+		return tuple;
+	}
+
+	private static Object value(Object value) {
+		if (value instanceof JsonObject) {
+			return Json.create(value);
+		} else if (value instanceof JsonArray) {
+			return Json.create(value);
+		}
+		return value;
+	}
+
+	/**
+	 * Replace the JDBC placeholders (<code>?</code>, <code>??</code> for the <code>?</code> operator)
+	 * by the native ones, outside the literals, quoted identifiers and comments.
+	 * @param prepared false for the raw commands, which have no placeholders
+	 * @throws UnsupportedStatementException if the statement contains several commands
+	 */
+	static String toNativePlaceholders(String sql, boolean prepared) throws UnsupportedStatementException {
+		if (sql == null || sql.trim().isEmpty()) {
+			throw new UnsupportedStatementException("Empty statement.");
+		}
+		final StringBuilder sb = new StringBuilder(sql.length() + 16);
+		final int length = sql.length();
+		int index = 0;
+		int i = 0;
+		while (i < length) {
+			final char c = sql.charAt(i);
+			if (c == '\'' || c == '"') {
+				final int end = closing(sql, i + 1, c);
+				sb.append(sql, i, end);
+				i = end;
+			} else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				final int end = sql.indexOf('\n', i);
+				final int e = end < 0 ? length : end;
+				sb.append(sql, i, e);
+				i = e;
+			} else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				final int end = sql.indexOf("*/", i + 2);
+				final int e = end < 0 ? length : end + 2;
+				sb.append(sql, i, e);
+				i = e;
+			} else if (c == '$' && i + 1 < length && sql.charAt(i + 1) == '$') {
+				final int end = sql.indexOf("$$", i + 2);
+				final int e = end < 0 ? length : end + 2;
+				sb.append(sql, i, e);
+				i = e;
+			} else if (c == '?' && prepared) {
+				if (i + 1 < length && sql.charAt(i + 1) == '?') {
+					sb.append('?');
+					i += 2;
+				} else {
+					sb.append('$').append(++index);
+					i++;
+				}
+			} else if (c == ';') {
+				if (!sql.substring(i + 1).trim().isEmpty()) {
+					throw new UnsupportedStatementException("Multiple commands.");
+				}
+				i = length;
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		return sb.toString();
+	}
+
+	private static int closing(String sql, int from, char quote) {
+		int i = from;
+		while (i < sql.length()) {
+			if (sql.charAt(i) == quote) {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return sql.length();
+	}
+
+	private static JsonObject result(PgRowSet rows) {
+		final JsonArray fields = new fr.wseduc.webutils.collections.JsonArray();
+		final JsonArray results = new fr.wseduc.webutils.collections.JsonArray();
+		final JsonArray jsonbFields = new fr.wseduc.webutils.collections.JsonArray();
+		final List<String> columns = rows.columnsNames();
+		if (columns != null) {
+			for (String column : columns) {
+				fields.add(column);
+			}
+			for (Row row : rows) {
+				final JsonArray r = new fr.wseduc.webutils.collections.JsonArray();
+				for (int i = 0; i < columns.size(); i++) {
+					final Object value = row.getValue(i);
+					if (value instanceof Json && !jsonbFields.contains(columns.get(i))) {
+						jsonbFields.add(columns.get(i));
+					}
+					r.add(toJson(value));
+				}
+				results.add(r);
+			}
+		}
+		return new JsonObject().put("fields", fields).put("results", results).put("rows", rows.rowCount())
+				.put("jsonb_fields", jsonbFields);
+	}
+
+	/**
+	 * Convert a pg client value to the JSON value returned by mod-postgresql (JDBC <code>toString</code>
+	 * of the temporal types, json as string).
+	 */
+	private static Object toJson(Object value) {
+		if (value == null || value instanceof String || value instanceof Boolean || value instanceof Integer ||
+				value instanceof Long || value instanceof Double) {
+			return value;
+		} else if (value instanceof Short) {
+			return ((Short) value).intValue();
+		} else if (value instanceof Float) {
+			return ((Float) value).doubleValue();
+		} else if (value instanceof Numeric) {
+			final BigDecimal decimal = ((Numeric) value).bigDecimalValue();
+			if (decimal == null) {
+				return ((Numeric) value).doubleValue();
+			}
+			try {
+				return decimal.longValueExact();
+			} catch (ArithmeticException e) {
+				return decimal.doubleValue();
+			}
+		} else if (value instanceof Json) {
+			final Object json = ((Json) value).value();
+			if (json instanceof JsonObject) {
+				return ((JsonObject) json).encode();
+			} else if (json instanceof JsonArray) {
+				return ((JsonArray) json).encode();
+			}
+			return io.vertx.core.json.Json.encode(json);
+		} else if (value instanceof LocalDateTime) {
+			return Timestamp.valueOf((LocalDateTime) value).toString();
+		} else if (value instanceof OffsetDateTime) {
+			return Timestamp.from(((OffsetDateTime) value).toInstant()).toString();
+		} else if (value instanceof LocalDate) {
+			return value.toString();
+		} else if (value instanceof LocalTime) {
+			return Time.valueOf((LocalTime) value).toString();
+		} else if (value instanceof UUID) {
+			return value.toString();
+		} else if (value.getClass().isArray()) {
+			final JsonArray array = new fr.wseduc.webutils.collections.JsonArray();
+			for (int i = 0; i < Array.getLength(value); i++) {
+				array.add(toJson(Array.get(value, i)));
+			}
+			return array;
+		}
+		return value.toString();
+	}
+
+	void close() {
+		pool.close();
+	}
+
+}
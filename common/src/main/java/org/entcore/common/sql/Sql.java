@@ -19,7 +19,12 @@
 
 package org.entcore.common.sql;
 
+import fr.wseduc.webutils.eventbus.ResultMessage;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 import org.entcore.common.bus.ErrorMessage;
 import io.vertx.core.Handler;
 import io.vertx.core.eventbus.EventBus;
@@ -34,8 +39,10 @@ import static fr.wseduc.webutils.Utils.handlerToAsyncHandler;
 
 public class Sql {
 
+	private static final Logger log = LoggerFactory.getLogger(Sql.class);
 	private String address;
 	private EventBus eb;
+	private PostgresqlDirectClient direct;
 
 	private Sql() {}
 
@@ -52,6 +59,43 @@ public class Sql {
 		this.eb = eb;
 	}
 
+	/**
+	 * Send the statements directly to PostgreSQL instead of mod-postgresql if the <code>sql-direct</code>
+	 * module config or the <code>sqlDirect</code> server config is enabled.
+	 * The pool is shared by the verticles of the module.
+	 */
+	public synchronized void initDirect(Vertx vertx, JsonObject config) {
+		if (direct != null) {
+			return;
+		}
+		JsonObject directConfig = config.getJsonObject("sql-direct");
+		if (directConfig == null) {
+			final String conf = (String) vertx.sharedData().getLocalMap("server").get("sqlDirect");
+			directConfig = (conf != null) ? new JsonObject(conf) : null;
+		}
+		if (directConfig != null && directConfig.getBoolean("enabled", false)) {
+			direct = new PostgresqlDirectClient(vertx, directConfig);
+			log.info("Sql direct PostgreSQL client enabled.");
+		}
+	}
+
+	private void send(JsonObject j, DeliveryOptions deliveryOptions, Handler<Message<JsonObject>> handler) {
+		final PostgresqlDirectClient d = direct;
+		if (d == null) {
+			eb.send(address, j, deliveryOptions, handlerToAsyncHandler(handler));
+			return;
+		}
+		final Context context = Vertx.currentContext();
+		d.send(j, res -> {
+			if (handler == null) return;
+			if (context != null && context != Vertx.currentContext()) {
+				context.runOnContext(v -> handler.handle(new ResultMessage(res)));
+			} else {
+				handler.handle(new ResultMessage(res));
+			}
+		}, v -> eb.send(address, j, deliveryOptions, handlerToAsyncHandler(handler)));
+	}
+
 	public void prepared(String query, JsonArray values, Handler<Message<JsonObject>> handler) {
 		prepared(query, values, new DeliveryOptions(), handler);
 	}
@@ -61,14 +105,14 @@ public class Sql {
 				.put("action", "prepared")
 				.put("statement", query)
 				.put("values", values);
-		eb.send(address, j, deliveryOptions, handlerToAsyncHandler(handler));
+		send(j, deliveryOptions, handler);
 	}
 
 	public void raw(String query, Handler<Message<JsonObject>> handler) {
 		JsonObject j = new JsonObject()
 				.put("action", "raw")
 				.put("command", query);
-		eb.send(address, j, handlerToAsyncHandler(handler));
+		send(j, new DeliveryOptions(), handler);
 	}
 
 	public void insert(String table, JsonObject params, Handler<Message<JsonObject>> handler) {
@@ -103,7 +147,7 @@ public class Sql {
 		if (returning != null && !returning.trim().isEmpty()) {
 			j.put("returning", returning);
 		}
-		eb.send(address, j, handlerToAsyncHandler(handler));
+		send(j, new DeliveryOptions(), handler);
 	}
 
 	public void upsert(String table, JsonArray fields, JsonArray values, JsonArray conflictFields,
@@ -119,7 +163,7 @@ public class Sql {
 		if (returning != null && !returning.trim().isEmpty()) {
 			j.put("returning", returning);
 		}
-		eb.send(address, j, handlerToAsyncHandler(handler));
+		send(j, new DeliveryOptions(), handler);
 	}
 
 	public void select(String table, JsonArray fields, Handler<Message<JsonObject>> handler) {
@@ -127,7 +171,7 @@ public class Sql {
 				.put("action", "select")
 				.put("table", table)
 				.put("fields", fields);
-		eb.send(address, j, handlerToAsyncHandler(handler));
+		send(j, new DeliveryOptions(), handler);
 	}
 
 	public void transaction(JsonArray statements, Handler<Message<JsonObject>> handler) {
@@ -138,7 +182,7 @@ public class Sql {
 		JsonObject j = new JsonObject()
 				.put("action", "transaction")
 				.put("statements", statements);
-		eb.send(address, j, deliveryOptions, handlerToAsyncHandler(handler));
+		send(j, deliveryOptions, handler);
 	}
 
 	public static String upsert(String table, String updateQuery, String insertQuery) {
@@ -50,6 +50,10 @@ public interface Storage {
 
 	void readStreamFile(String id, Handler<ReadStream<Buffer>> handler);
 
+	default boolean isReadStreamSupported() {
+		return false;
+	}
+
 	void sendFile(String id, String downloadName, HttpServerRequest request, boolean inline, JsonObject metadata);
 
 	void sendFile(String id, String downloadName, HttpServerRequest request, boolean inline, JsonObject metadata,
@@ -40,6 +40,7 @@ public class StorageFactory {
 	private JsonObject swift;
 	private JsonObject fs;
 	private String gridfsAddress;
+	private boolean chunkedUpload;
 
 	public StorageFactory(Vertx vertx) {
 		this(vertx, null);
@@ -68,6 +69,7 @@ public class StorageFactory {
 		} else if (config != null && config.getString("gridfs-address") != null) {
 			this.gridfsAddress = config.getString("gridfs-address");
 		}
+		this.chunkedUpload = config != null && config.getBoolean("gridfs-chunked-upload", false);
 
 		if (applicationStorage != null) {
 			applicationStorage.setVertx(vertx);
@@ -126,6 +128,7 @@ public class StorageFactory {
 			}
 		} else {
 			storage = new GridfsStorage(vertx, Server.getEventBus(vertx), gridfsAddress);
+			((GridfsStorage) storage).setChunkedUpload(chunkedUpload);
 		}
 		return storage;
 	}
@@ -362,6 +362,11 @@ public class FileStorage implements Storage {
 		});
 	}
 
+	@Override
+	public boolean isReadStreamSupported() {
+		return true;
+	}
+
 	/**
 	 * Allows the user to get a document from their workspace
 	 * Same as readFile but returns a ReadStream<Buffer> rather than a buffer
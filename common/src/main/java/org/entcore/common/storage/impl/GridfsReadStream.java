@@ -0,0 +1,124 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.storage.impl;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * Read a GridFS file chunk by chunk : the next chunk is only requested when the previous one has been handled
+ * and the stream is not paused.
+ */
+class GridfsReadStream implements ReadStream<Buffer> {
+
+	private final String id;
+	private final int chunks;
+	private final EventBus eb;
+	private final String gridfsAddress;
+	private Handler<Buffer> handler;
+	private Handler<Void> endHandler;
+	private Handler<Throwable> exceptionHandler;
+	private long demand = Long.MAX_VALUE;
+	private int next = 0;
+	private boolean reading = false;
+	private boolean ended = false;
+
+	GridfsReadStream(String id, int chunks, EventBus eb, String gridfsAddress) {
+		this.id = id;
+		this.chunks = chunks;
+		this.eb = eb;
+		this.gridfsAddress = gridfsAddress;
+	}
+
+	private void read() {
+		if (reading || ended || demand == 0L || handler == null) {
+			return;
+		}
+		if (next >= chunks) {
+			ended = true;
+			if (endHandler != null) {
+				endHandler.handle(null);
+			}
+			return;
+		}
+		reading = true;
+		GridfsStorage.getChunk(id, next, eb, gridfsAddress, chunk -> {
+			reading = false;
+			if (chunk == null || chunk.data == null) {
+				ended = true;
+				if (exceptionHandler != null) {
+					exceptionHandler.handle(new RuntimeException("Error reading chunk " + next + " of file " + id));
+				}
+				return;
+			}
+			next++;
+			if (demand != Long.MAX_VALUE) {
+				demand--;
+			}
+			if (handler != null) {
+				handler.handle(chunk.data);
+			}
+			read();
+		});
+	}
+
+	@Override
+	public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+		this.exceptionHandler = handler;
+		return this;
+	}
+
+	@Override
+	public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+		this.handler = handler;
+		read();
+		return this;
+	}
+
+	@Override
+	public ReadStream<Buffer> pause() {
+		demand = 0L;
+		return this;
+	}
+
+	@Override
+	public ReadStream<Buffer> resume() {
+		return fetch(Long.MAX_VALUE);
+	}
+
+	@Override
+	public ReadStream<Buffer> fetch(long amount) {
+		demand += amount;
+		if (demand < 0L) {
+			demand = Long.MAX_VALUE;
+		}
+		read();
+		return this;
+	}
+
+	@Override
+	public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+		this.endHandler = endHandler;
+		return this;
+	}
+
+}
@@ -27,7 +27,6 @@ import fr.wseduc.webutils.http.ETag;
 import io.vertx.core.file.OpenOptions;
 import io.vertx.core.http.HttpServerFileUpload;
 import io.vertx.core.streams.ReadStream;
-import org.apache.commons.lang3.NotImplementedException;
 import org.entcore.common.storage.BucketStats;
 import org.entcore.common.storage.FileStats;
 import org.entcore.common.storage.Storage;
@@ -53,6 +52,7 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.UUID;
 
 import static fr.wseduc.webutils.Utils.handlerToAsyncHandler;
 
@@ -65,6 +65,7 @@ public class GridfsStorage implements Storage {
 	private final Vertx vertx;
 	private final MongoDb mongoDb = MongoDb.getInstance();
 	private static final Logger log = LoggerFactory.getLogger(GridfsStorage.class);
+	private boolean chunkedUpload = false;
 
 	@Override
 	public void fileStats(String id, Handler<AsyncResult<FileStats>> handler) {
@@ -109,8 +110,16 @@ public class GridfsStorage implements Storage {
 		writeUploadFile(request, null, handler);
 	}
 
+	public void setChunkedUpload(boolean chunkedUpload) {
+		this.chunkedUpload = chunkedUpload;
+	}
+
 	@Override
 	public void writeUploadFile(HttpServerRequest request, Long maxSize, Handler<JsonObject> handler) {
+		if (chunkedUpload) {
+			writeChunkedUploadFile(request, maxSize, handler);
+			return;
+		}
 		request.setExpectMultipart(true);
 		request.uploadHandler(new Handler<HttpServerFileUpload>() {
 			@Override
@@ -133,6 +142,98 @@ public class GridfsStorage implements Storage {
 		});
 	}
 
+	/**
+	 * The upload is written to a temporary file, the request being paused while the file write queue is full,
+	 * then saved by chunks of BUFFER_SIZE : the heap used doesn't depend on the size of the uploaded files.
+	 */
+	private void writeChunkedUploadFile(final HttpServerRequest request, final Long maxSize, final Handler<JsonObject> handler) {
+		request.setExpectMultipart(true);
+		request.uploadHandler(new Handler<HttpServerFileUpload>() {
+			@Override
+			public void handle(final HttpServerFileUpload upload) {
+				upload.pause();
+				final String id = UUID.randomUUID().toString();
+				final String path = Paths.get(System.getProperty("java.io.tmpdir"), "upload-" + id).toString();
+				vertx.fileSystem().open(path, new OpenOptions(), new Handler<AsyncResult<AsyncFile>>() {
+					@Override
+					public void handle(AsyncResult<AsyncFile> ar) {
+						if (ar.failed()) {
+							log.error(ar.cause().getMessage(), ar.cause());
+							handler.handle(new JsonObject().put("status", "error")
+									.put("message", ar.cause().getMessage()));
+							upload.handler(null);
+							upload.resume();
+							return;
+						}
+						final AsyncFile file = ar.result();
+						final long[] size = new long[1];
+						final boolean[] aborted = new boolean[1];
+						final Handler<String> abort = new Handler<String>() {
+							@Override
+							public void handle(String message) {
+								if (aborted[0]) {
+									return;
+								}
+								aborted[0] = true;
+								file.close(closed -> vertx.fileSystem().delete(path, deleted -> {}));
+								handler.handle(new JsonObject().put("status", "error").put("message", message));
+							}
+						};
+						upload.handler(new Handler<Buffer>() {
+							@Override
+							public void handle(Buffer chunk) {
+								if (aborted[0]) {
+									return;
+								}
+								size[0] += chunk.length();
+								if (maxSize != null && maxSize < size[0]) {
+									abort.handle("file.too.large");
+									return;
+								}
+								file.write(chunk);
+								if (file.writeQueueFull()) {
+									upload.pause();
+									file.drainHandler(v -> upload.resume());
+								}
+							}
+						});
+						upload.exceptionHandler(e -> {
+							log.error("Upload error : " + e.getMessage(), e);
+							abort.handle(e.getMessage());
+						});
+						request.exceptionHandler(e -> abort.handle(e.getMessage()));
+						upload.endHandler(new Handler<Void>() {
+							@Override
+							public void handle(Void end) {
+								if (aborted[0]) {
+									return;
+								}
+								final JsonObject metadata = metadata(upload);
+								file.close(closed -> {
+									if (closed.failed()) {
+										abort.handle(closed.cause().getMessage());
+										return;
+									}
+									writeFsFile(id, path, upload.filename(), upload.contentType(), res -> {
+										vertx.fileSystem().delete(path, deleted -> {});
+										if ("ok".equals(res.getString("status"))) {
+											handler.handle(res.put("_id", id).put("metadata", metadata));
+										} else {
+											// remove the chunks already saved
+											removeFiles(new JsonArray().add(id), removed -> {});
+											handler.handle(res);
+										}
+									});
+								});
+							}
+						});
+						upload.resume();
+					}
+				});
+			}
+		});
+	}
+
 	@Override
 	public void writeBuffer(Buffer buff, String contentType, String filename, Handler<JsonObject> handler) {
 		writeBuffer(null, buff, contentType, filename, handler);
@@ -203,7 +304,11 @@ public class GridfsStorage implements Storage {
 		}
 		final String filename = filePath.contains(File.separator) ?
 				filePath.substring(filePath.lastIndexOf(File.separator) + 1) : filePath;
-		final String contentType = getContentType(filePath);
+		writeFsFile(id, filePath, filename, getContentType(filePath), handler);
+	}
+
+	private void writeFsFile(final String id, final String filePath, final String filename, final String contentType,
+			final Handler<JsonObject> handler) {
 		vertx.fileSystem().props(filePath, new Handler<AsyncResult<FileProps>>() {
 			@Override
 			public void handle(AsyncResult<FileProps> event) {
@@ -214,7 +319,8 @@ public class GridfsStorage implements Storage {
 						public void handle(AsyncResult<AsyncFile> event) {
 							if (event.succeeded()) {
 								final AsyncFile asyncFile = event.result();
-								int nbChunks = (int) Math.ceil(fileSize/BUFFER_SIZE);
+								// number of chunks after the first one
+								int nbChunks = (int) ((fileSize - 1) / BUFFER_SIZE);
 								final Handler[] handlers = new Handler[nbChunks +1];
 
 								handlers[handlers.length - 1] = new Handler<AsyncResult<Buffer>>() {
@@ -337,9 +443,36 @@ public class GridfsStorage implements Storage {
 		}
 	}
 
+	@Override
+	public boolean isReadStreamSupported() {
+		return true;
+	}
+
 	@Override
 	public void readStreamFile(String id, Handler<ReadStream<Buffer>> handler) {
-		throw new NotImplementedException("Error. Not Implemented exception");
+		JsonObject find = new JsonObject();
+		find.put("action", "countChunks");
+		find.put("files_id", id);
+		byte [] header;
+		try {
+			header = find.toString().getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			log.error(e.getMessage(), e);
+			handler.handle(null);
+			return;
+		}
+		Buffer buf = Buffer.buffer(header);
+		buf.appendInt(header.length);
+		eb.send(gridfsAddress, buf, new Handler<AsyncResult<Message<Object>>>() {
+			@Override
+			public void handle(AsyncResult<Message<Object>> res) {
+				if (res.succeeded() && res.result().body() instanceof Long && (Long) res.result().body() > 0L) {
+					handler.handle(new GridfsReadStream(id, ((Long) res.result().body()).intValue(), eb, gridfsAddress));
+				} else {
+					handler.handle(null);
+				}
+			}
+		});
 	}
 
 	@Override
@@ -640,9 +773,9 @@ public class GridfsStorage implements Storage {
 		return null;
 	}
 
-	private static class Chunk {
+	static class Chunk {
 		private final int n;
-		private final Buffer data;
+		final Buffer data;
 
 		private Chunk(int n, Buffer data) {
 			this.n = n;
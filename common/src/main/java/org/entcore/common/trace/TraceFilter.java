@@ -15,6 +15,7 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.http.filter.BindingsRouter;
 import org.entcore.common.http.filter.Trace;
 import org.entcore.common.user.UserInfos;
 import org.entcore.common.user.UserUtils;
@@ -25,7 +26,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
-import java.util.regex.Matcher;
 
 public class TraceFilter implements Filter {
 
@@ -33,6 +33,7 @@ public class TraceFilter implements Filter {
     private final EventBus eb;
     private final Set<Binding> bindings;
     private Set<Binding> tracedBinding;
+    private BindingsRouter tracedRouter;
     HashMap<String, JsonObject> actions = new HashMap<>();
     private static final List<String> bodyMethods = Arrays.asList("POST", "PUT");
 
@@ -45,6 +46,7 @@ public class TraceFilter implements Filter {
 
     private void loadTracedMethods() {
         tracedBinding = new HashSet<>();
+        tracedRouter = new BindingsRouter(tracedBinding);
         InputStream is = TraceFilter.class.getClassLoader().getResourceAsStream(Trace.class.getSimpleName() + ".json");
         if (is != null) {
             BufferedReader r = null;
@@ -84,6 +86,7 @@ public class TraceFilter implements Filter {
         JsonObject entry = MongoDb.now();
         if (tracedBinding == null) {
             loadTracedMethods();
+            BindingsRouter.bindingsChanged();
         }
 
         if (request instanceof SecureHttpServerRequest && trace(request)) {
@@ -166,30 +169,12 @@ public class TraceFilter implements Filter {
     }
 
     private String getRequestServiceMethod(HttpServerRequest request) {
-        for (Binding binding : tracedBinding) {
-            if (!request.method().name().equals(binding.getMethod().name())) {
-                continue;
-            }
-            Matcher m = binding.getUriPattern().matcher(request.path());
-            if (m.matches()) {
-                return binding.getServiceMethod();
-            }
-        }
-
-        return "";
+        final Binding binding = tracedRouter.route(request);
+        return (binding != null) ? binding.getServiceMethod() : "";
     }
 
     private boolean trace(HttpServerRequest request) {
-        if (!tracedBinding.isEmpty()) {
-            for (Binding binding : tracedBinding) {
-                if (!request.method().name().equals(binding.getMethod().name())) {
-                    continue;
-                }
-                Matcher m = binding.getUriPattern().matcher(request.path());
-                if (m.matches()) return true;
-            }
-        }
-        return false;
+        return !tracedBinding.isEmpty() && tracedRouter.route(request) != null;
     }
 
     @Override
@@ -0,0 +1,245 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.user;
+
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded local cache of decoded sessions, used by {@link UserUtils} to avoid the
+ * <code>wse.session</code> round trip on each request.
+ * Entries are keyed by oneSessionId (action <code>find</code>) and by userId (action <code>findByUserId</code>).
+ * The session store publishes on {@link #INVALIDATION_ADDRESS} each time a session is created, dropped or its
+ * cache attributes change. The ttl is only a backstop for missed messages.
+ * Only the sessions of the session store are cached : the infos generated for a disconnected user
+ * (<code>allowDisconnectedUser</code>) have no <code>sessionMetadata</code> and are never cached, so a
+ * cached entry is a valid answer whatever the value of this flag.
+ */
+public class SessionNearCache {
+
+	public static final String INVALIDATION_ADDRESS = "wse.session.invalidate";
+	public static final long DEFAULT_TTL = 30000L;
+	public static final int DEFAULT_MAX_SIZE = 10000;
+	private static final Logger log = LoggerFactory.getLogger(SessionNearCache.class);
+
+	private final long ttl;
+	private final LruMap bySessionId;
+	private final LruMap byUserId;
+	private final Map<String, Set<String>> userSessions = new HashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+	private long generation;
+
+	private static final class Entry {
+		private final JsonObject session;
+		private final String userId;
+		private final long expire;
+
+		private Entry(JsonObject session, String userId, long expire) {
+			this.session = session;
+			this.userId = userId;
+			this.expire = expire;
+		}
+	}
+
+	private final class LruMap extends LinkedHashMap<String, Entry> {
+		private final int maxSize;
+		private final boolean indexed;
+		private long evictions;
+
+		private LruMap(int maxSize, boolean indexed) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+			this.indexed = indexed;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+			if (size() > maxSize) {
+				evictions++;
+				if (indexed) {
+					unindex(eldest.getValue().userId, eldest.getKey());
+				}
+				return true;
+			}
+			return false;
+		}
+	}
+
+	public SessionNearCache(JsonObject config) {
+		this.ttl = config.getLong("ttl", DEFAULT_TTL);
+		final int maxSize = config.getInteger("max-size", DEFAULT_MAX_SIZE);
+		this.bySessionId = new LruMap(maxSize, true);
+		this.byUserId = new LruMap(maxSize, false);
+	}
+
+	public void listenInvalidations(EventBus eb) {
+		eb.<JsonObject>consumer(INVALIDATION_ADDRESS, message -> {
+			final JsonObject body = message.body();
+			if (body != null) {
+				invalidate(body.getString("sessionId"), body.getString("userId"));
+			}
+		});
+		log.info("Session near cache enabled with ttl " + ttl + " ms.");
+	}
+
+	/**
+	 * @param findSession the <code>wse.session</code> query (action find or findByUserId)
+	 * @return a copy of the cached session or null
+	 */
+	public JsonObject get(JsonObject findSession) {
+		final String action = findSession.getString("action");
+		final Entry entry;
+		synchronized (this) {
+			if ("find".equals(action)) {
+				entry = valid(bySessionId, findSession.getString("sessionId"));
+			} else if ("findByUserId".equals(action)) {
+				entry = valid(byUserId, findSession.getString("userId"));
+			} else {
+				entry = null;
+			}
+		}
+		if (entry != null) {
+			hits.incrementAndGet();
+			return entry.session.copy();
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	public synchronized long generation() {
+		return generation;
+	}
+
+	/**
+	 * @param generation value of {@link #generation()} read before querying the session store,
+	 *                   the session is not cached if an invalidation was received meanwhile
+	 */
+	public void put(JsonObject findSession, JsonObject session, long generation) {
+		if (session == null || session.getJsonObject("sessionMetadata") == null) return;
+		final String userId = session.getString("userId");
+		final Entry entry = new Entry(session.copy(), userId, System.currentTimeMillis() + ttl);
+		final String action = findSession.getString("action");
+		synchronized (this) {
+			if (generation != this.generation) return;
+			if ("find".equals(action)) {
+				final String sessionId = findSession.getString("sessionId");
+				if (sessionId == null) return;
+				bySessionId.put(sessionId, entry);
+				if (userId != null) {
+					userSessions.computeIfAbsent(userId, k -> new HashSet<>()).add(sessionId);
+				}
+			} else if ("findByUserId".equals(action) && userId != null) {
+				byUserId.put(userId, entry);
+			}
+		}
+	}
+
+	/**
+	 * Remove cached entries of a session and of its user. If sessionId is null,
+	 * every session of the user is removed.
+	 */
+	public synchronized void invalidate(String sessionId, String userId) {
+		invalidations.incrementAndGet();
+		generation++;
+		String uId = userId;
+		if (sessionId != null) {
+			final Entry e = bySessionId.remove(sessionId);
+			if (e != null && uId == null) {
+				uId = e.userId;
+			}
+			if (e != null) {
+				unindex(e.userId, sessionId);
+			}
+		}
+		if (uId != null) {
+			byUserId.remove(uId);
+			if (sessionId == null) {
+				final Set<String> sessionIds = userSessions.remove(uId);
+				if (sessionIds != null) {
+					for (String sId : sessionIds) {
+						bySessionId.remove(sId);
+					}
+				}
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		generation++;
+		bySessionId.clear();
+		byUserId.clear();
+		userSessions.clear();
+	}
+
+	public JsonObject getMetrics() {
+		final long h = hits.get();
+		final long m = misses.get();
+		final long size;
+		final long evictions;
+		synchronized (this) {
+			size = bySessionId.size() + byUserId.size();
+			evictions = bySessionId.evictions + byUserId.evictions;
+		}
+		return new JsonObject()
+				.put("session_cache_hits", h)
+				.put("session_cache_misses", m)
+				.put("session_cache_hit_ratio", (h + m) > 0 ? (double) h / (h + m) : 0d)
+				.put("session_cache_invalidations", invalidations.get())
+				.put("session_cache_evictions", evictions)
+				.put("session_cache_size", size);
+	}
+
+	private Entry valid(LruMap map, String key) {
+		if (key == null) return null;
+		final Entry entry = map.get(key);
+		if (entry == null) return null;
+		if (entry.expire < System.currentTimeMillis()) {
+			map.remove(key);
+			if (map.indexed) {
+				unindex(entry.userId, key);
+			}
+			return null;
+		}
+		return entry;
+	}
+
+	private void unindex(String userId, String sessionId) {
+		if (userId == null) return;
+		final Set<String> sessionIds = userSessions.get(userId);
+		if (sessionIds != null) {
+			sessionIds.remove(sessionId);
+			if (sessionIds.isEmpty()) {
+				userSessions.remove(userId);
+			}
+		}
+	}
+
+}
@@ -21,14 +21,19 @@ package org.entcore.common.user;
 
 import com.fasterxml.jackson.annotation.JsonAnyGetter;
 import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-public class UserInfos {
+public class UserInfos implements Cloneable {
 
-	public static class Action {
+	public static class Action implements Cloneable {
 		private String name;
 		private String displayName;
 		private String type;
@@ -57,9 +62,17 @@ public class UserInfos {
 			this.type = type;
 		}
 
+		@Override
+		protected Action clone() {
+			try {
+				return (Action) super.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
 	}
 
-	public static class Child {
+	public static class Child implements Cloneable {
 		private String firstName;
 		private String lastName;
 
@@ -78,9 +91,18 @@ public class UserInfos {
 		public void setLastName(String lastName) {
 			this.lastName = lastName;
 		}
+
+		@Override
+		protected Child clone() {
+			try {
+				return (Child) super.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
 	}
 
-	public static class Application {
+	public static class Application implements Cloneable {
 		private String name;
 		private String address;
 		private String icon;
@@ -167,9 +189,18 @@ public class UserInfos {
 		public void setIsExternal(boolean isExternal) {
 			this.isExternal = isExternal;
 		}
+
+		@Override
+		protected Application clone() {
+			try {
+				return (Application) super.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
 	}
 
-	public static class Widget {
+	public static class Widget implements Cloneable {
 		private String id;
 		private String name;
 		private String path;
@@ -220,9 +251,18 @@ public class UserInfos {
 		public void setMandatory(boolean mandatory) {
 			this.mandatory = mandatory;
 		}
+
+		@Override
+		protected Widget clone() {
+			try {
+				return (Widget) super.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
 	}
 
-	public static class Function {
+	public static class Function implements Cloneable {
 		private String code;
 		private String functionName;
 		private List<String> scope;
@@ -268,6 +308,15 @@ public class UserInfos {
 		public void setStructureExternalIds(List<String> structureExternalIds) {
 			this.structureExternalIds = structureExternalIds;
 		}
+
+		@Override
+		protected Function clone() {
+			try {
+				return (Function) super.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
 	}
 	private Boolean hasApp;
 	private String userId;
@@ -294,6 +343,10 @@ public class UserInfos {
 	private Boolean federated;
 	private List<Widget> widgets;
 	private Map<String, Object> otherProperties = new HashMap<>();
+	private Set<String> authorizedActionsNames;
+	private int authorizedActionsIndexedSize;
+	private Set<String> groupsIdsIndex;
+	private int groupsIdsIndexedSize;
 
 	public Map<String, Child> getChildren() { return children; }
 
@@ -365,6 +418,38 @@ public class UserInfos {
 
 	public void setAuthorizedActions(List<Action> authorizedActions) {
 		this.authorizedActions = authorizedActions;
+		this.authorizedActionsNames = null;
+	}
+
+	/**
+	 * Constant time check of an authorized action name (the index is built on first call,
+	 * or when the session snapshot is decoded, and is shared by the copies).
+	 */
+	public boolean hasAuthorizedAction(String actionName) {
+		if (actionName == null || authorizedActions == null) {
+			return false;
+		}
+		Set<String> names = authorizedActionsNames;
+		if (names == null || authorizedActionsIndexedSize != authorizedActions.size()) {
+			names = indexAuthorizedActions();
+		}
+		return names.contains(actionName);
+	}
+
+	Set<String> indexAuthorizedActions() {
+		if (authorizedActions == null) {
+			return null;
+		}
+		final Set<String> names = new HashSet<>(authorizedActions.size() * 2);
+		for (Action action : authorizedActions) {
+			if (action != null && action.getName() != null) {
+				names.add(action.getName());
+			}
+		}
+		// never modified once built : the clones of this instance share it
+		authorizedActionsNames = Collections.unmodifiableSet(names);
+		authorizedActionsIndexedSize = authorizedActions.size();
+		return authorizedActionsNames;
 	}
 
 	public String getFirstName() {
@@ -462,10 +547,45 @@ public class UserInfos {
 	@Deprecated
 	public void setProfilGroupsIds(List<String> profilGroupsIds) {
 		this.groupsIds = profilGroupsIds;
+		this.groupsIdsIndex = null;
 	}
 
 	public void setGroupsIds(List<String> groupsIds) {
 		this.groupsIds = groupsIds;
+		this.groupsIdsIndex = null;
+	}
+
+	/**
+	 * Constant time check of a group membership (the index is built on first call,
+	 * or when the session snapshot is decoded, and is shared by the copies).
+	 */
+	public boolean isInGroup(String groupId) {
+		return groupId != null && getGroupsIdsSet().contains(groupId);
+	}
+
+	/**
+	 * Unmodifiable set of the groups ids, to look up the groups without building a set on each request.
+	 */
+	@JsonIgnore
+	public Set<String> getGroupsIdsSet() {
+		if (groupsIds == null) {
+			return Collections.emptySet();
+		}
+		final Set<String> index = groupsIdsIndex;
+		if (index == null || groupsIdsIndexedSize != groupsIds.size()) {
+			return indexGroupsIds();
+		}
+		return index;
+	}
+
+	Set<String> indexGroupsIds() {
+		if (groupsIds == null) {
+			return null;
+		}
+		// never modified once built : the clones of this instance share it
+		groupsIdsIndex = Collections.unmodifiableSet(new HashSet<>(groupsIds));
+		groupsIdsIndexedSize = groupsIds.size();
+		return groupsIdsIndex;
 	}
 
 	public List<String> getClasses() {
@@ -533,7 +653,91 @@ public class UserInfos {
 		return otherProperties;
 	}
 
-	public static class Subject {
+	@Override
+	protected UserInfos clone() {
+		try {
+			return (UserInfos) super.clone();
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Copy of the user infos. The instance is cloned, so every field is copied, including the authorized
+	 * actions and groups indexes, then the lists, the maps and the nested objects are copied, so the copy can be modified
+	 * without changing the original. The values of cache and otherProperties are not copied.
+	 */
+	UserInfos copy() {
+		final UserInfos u = clone();
+		u.classNames = copyList(classNames);
+		u.realClassNames = copyList(realClassNames);
+		u.structureNames = copyList(structureNames);
+		u.uai = copyList(uai);
+		u.childrenIds = copyList(childrenIds);
+		if (children != null) {
+			u.children = new HashMap<>();
+			for (Map.Entry<String, Child> e : children.entrySet()) {
+				u.children.put(e.getKey(), (e.getValue() != null) ? e.getValue().clone() : null);
+			}
+		}
+		if (authorizedActions != null) {
+			u.authorizedActions = new ArrayList<>(authorizedActions.size());
+			for (Action a : authorizedActions) {
+				u.authorizedActions.add((a != null) ? a.clone() : null);
+			}
+		}
+		if (apps != null) {
+			u.apps = new ArrayList<>(apps.size());
+			for (Application a : apps) {
+				final Application app = (a != null) ? a.clone() : null;
+				if (app != null) {
+					app.scope = copyList(a.scope);
+				}
+				u.apps.add(app);
+			}
+		}
+		u.groupsIds = copyList(groupsIds);
+		u.classes = copyList(classes);
+		u.structures = copyList(structures);
+		u.cache = (cache != null) ? new HashMap<>(cache) : null;
+		if (widgets != null) {
+			u.widgets = new ArrayList<>(widgets.size());
+			for (Widget w : widgets) {
+				u.widgets.add((w != null) ? w.clone() : null);
+			}
+		}
+		u.otherProperties = new HashMap<>(otherProperties);
+		if (functions != null) {
+			u.functions = new HashMap<>();
+			for (Map.Entry<String, Function> e : functions.entrySet()) {
+				final Function f = e.getValue();
+				final Function function = (f != null) ? f.clone() : null;
+				if (function != null) {
+					function.scope = copyList(f.scope);
+					function.structureExternalIds = copyList(f.structureExternalIds);
+					if (f.subjects != null) {
+						function.subjects = new HashMap<>();
+						for (Map.Entry<String, Subject> se : f.subjects.entrySet()) {
+							final Subject subject = (se.getValue() != null) ? se.getValue().clone() : null;
+							if (subject != null) {
+								subject.scope = copyList(se.getValue().scope);
+								subject.structureExternalIds = copyList(se.getValue().structureExternalIds);
+							}
+							function.subjects.put(se.getKey(), subject);
+						}
+					}
+				}
+				u.functions.put(e.getKey(), function);
+			}
+		}
+		return u;
+	}
+
+	private static List<String> copyList(List<String> list) {
+		return (list != null) ? new ArrayList<>(list) : null;
+	}
+
+	public static class Subject implements Cloneable {
 		private String subjectCode;
 		private String subjectName;
 		private List<String> scope;
@@ -570,6 +774,15 @@ public class UserInfos {
 		public void setStructureExternalIds(List<String> structureExternalIds) {
 			this.structureExternalIds = structureExternalIds;
 		}
+
+		@Override
+		protected Subject clone() {
+			try {
+				return (Subject) super.clone();
+			} catch (CloneNotSupportedException e) {
+				throw new IllegalStateException(e);
+			}
+		}
 	}
 
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.user;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Decodes sessions into {@link UserInfos} without the encode / parse string round trip and keeps
+ * the decoded snapshot of the last session instance of each session id. A session object lives as
+ * long as its request (SecureHttpServerRequest keeps it), so the filters and the controller of a same
+ * request decode it once. {@link #get} returns a copy of the snapshot, which the caller can modify, and
+ * the copies share the authorized actions index of the snapshot. The read only checks of the filters use
+ * the snapshot itself.
+ */
+final class UserInfosSnapshots {
+
+	private static final Logger log = LoggerFactory.getLogger(UserInfosSnapshots.class);
+	private static final int DEFAULT_MAX_SIZE = 1024;
+	private static final ObjectMapper mapper = new ObjectMapper().registerModule(new SimpleModule()
+			.addSerializer(JsonObject.class, new JsonSerializer<JsonObject>() {
+				@Override
+				public void serialize(JsonObject value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+					gen.writeObject(value.getMap());
+				}
+			})
+			.addSerializer(JsonArray.class, new JsonSerializer<JsonArray>() {
+				@Override
+				public void serialize(JsonArray value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+					gen.writeObject(value.getList());
+				}
+			}));
+
+	private final ConcurrentMap<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+	private final int maxSize;
+
+	private static final class Snapshot {
+		private final WeakReference<JsonObject> session;
+		private final UserInfos user;
+
+		private Snapshot(JsonObject session, UserInfos user) {
+			this.session = new WeakReference<>(session);
+			this.user = user;
+		}
+	}
+
+	UserInfosSnapshots() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	UserInfosSnapshots(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	UserInfos get(JsonObject session) {
+		final UserInfos user = snapshot(session);
+		return (user != null) ? user.copy() : null;
+	}
+
+	/**
+	 * Shared snapshot of the session, with its authorized actions index : it must only be read.
+	 */
+	UserInfos snapshot(JsonObject session) {
+		final JsonObject metadata = session.getJsonObject("sessionMetadata");
+		final String sessionId = (metadata != null) ? metadata.getString("_id") : null;
+		if (sessionId != null) {
+			final Snapshot snapshot = snapshots.get(sessionId);
+			if (snapshot != null && snapshot.session.get() == session) {
+				return snapshot.user;
+			}
+		}
+		final UserInfos user = decode(session);
+		if (user == null) {
+			return null;
+		}
+		user.indexAuthorizedActions();
+		user.indexGroupsIds();
+		if (sessionId == null) {
+			return user;
+		}
+		if (snapshots.size() >= maxSize) {
+			snapshots.values().removeIf(s -> s.session.get() == null);
+			if (snapshots.size() >= maxSize) {
+				snapshots.clear();
+			}
+		}
+		snapshots.put(sessionId, new Snapshot(session, user));
+		return user;
+	}
+
+	int size() {
+		return snapshots.size();
+	}
+
+	static UserInfos decode(JsonObject session) {
+		try {
+			return mapper.convertValue(session, UserInfos.class);
+		} catch (IllegalArgumentException e) {
+			log.error("Error decoding session to UserInfos", e);
+			return null;
+		}
+	}
+
+}
@@ -19,8 +19,6 @@
 
 package org.entcore.common.user;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import fr.wseduc.webutils.I18n;
 import fr.wseduc.webutils.Utils;
 import fr.wseduc.webutils.http.Renders;
@@ -40,7 +38,6 @@ import io.vertx.core.logging.LoggerFactory;
 
 import org.entcore.common.neo4j.Neo4j;
 
-import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -61,6 +58,8 @@ public class UserUtils {
 	private static final I18n i18n = I18n.getInstance();
 	private static final long JWT_TOKEN_EXPIRATION_TIME = 600L;
 	private static final long LOG_SESSION_DELAY = 500L;
+	private static volatile SessionNearCache sessionNearCache;
+	private static final UserInfosSnapshots userInfosSnapshots = new UserInfosSnapshots();
 
 	private static void findUsers(final EventBus eb, HttpServerRequest request,
 								  final JsonObject query, final Handler<JsonArray> handler) {
@@ -464,6 +463,22 @@ public class UserUtils {
 
 	private static void findSession(EventBus eb, final HttpServerRequest request, JsonObject findSession, final boolean paused,
 			final Handler<JsonObject> handler) {
+		final SessionNearCache nearCache = sessionNearCache;
+		if (nearCache != null) {
+			final JsonObject cachedSession = nearCache.get(findSession);
+			if (cachedSession != null) {
+				touchSession(eb, cachedSession);
+				if (request != null && !paused) {
+					request.resume();
+				}
+				if (request instanceof SecureHttpServerRequest) {
+					((SecureHttpServerRequest) request).setSession(cachedSession);
+				}
+				handler.handle(cachedSession);
+				return;
+			}
+		}
+		final long nearCacheGeneration = (nearCache != null) ? nearCache.generation() : 0L;
 		final long startSessionTime = System.currentTimeMillis();
 		eb.send(SESSION_ADDRESS, findSession, new Handler<AsyncResult<Message<JsonObject>>>() {
 
@@ -476,14 +491,20 @@ public class UserUtils {
 						request.resume();
 					}
 					if ("ok".equals(message.result().body().getString("status")) && session != null) {
+						if (nearCache != null) {
+							nearCache.put(findSession, session, nearCacheGeneration);
+						}
 						if (request instanceof SecureHttpServerRequest) {
 							((SecureHttpServerRequest) request).setSession(session);
 						}
 						handler.handle(session);
 					} else {
 						handler.handle(null);
-						final String key = findSession.getString("sessionId", "user="+findSession.getString("userId"));
-						log.warn("Could not found session: "+ key + " error: " + body.getString("error") + " message: " + body.getString("message"));
+						// a missing session is expected when disconnected users aren't allowed
+						if (!Boolean.FALSE.equals(findSession.getBoolean("allowDisconnectedUser"))) {
+							final String key = findSession.getString("sessionId", "user="+findSession.getString("userId"));
+							log.warn("Could not found session: "+ key + " error: " + body.getString("error") + " message: " + body.getString("message"));
+						}
 					}
 				} else {
 					handler.handle(null);
@@ -498,11 +519,60 @@ public class UserUtils {
 		});
 	}
 
+	/**
+	 * Refresh the last activity of a session served by the near cache, like the <code>find</code> action does.
+	 */
+	private static void touchSession(EventBus eb, JsonObject session) {
+		final JsonObject metadata = session.getJsonObject("sessionMetadata");
+		if (metadata == null || metadata.getString("_id") == null) {
+			return;
+		}
+		eb.send(SESSION_ADDRESS, new JsonObject()
+				.put("action", "touch")
+				.put("sessionId", metadata.getString("_id"))
+				.put("userId", session.getString("userId"))
+				.put("secureLocation", metadata.getBoolean("secureLocation", false)));
+	}
+
+	public static void initSessionNearCache(Vertx vertx) {
+		if (sessionNearCache != null) {
+			return;
+		}
+		final String conf = (String) vertx.sharedData().getLocalMap("server").get("sessionNearCache");
+		if (conf == null) {
+			return;
+		}
+		final JsonObject config = new JsonObject(conf);
+		if (config.getBoolean("enabled", false)) {
+			synchronized (UserUtils.class) {
+				if (sessionNearCache == null) {
+					final SessionNearCache nearCache = new SessionNearCache(config);
+					nearCache.listenInvalidations(vertx.eventBus());
+					sessionNearCache = nearCache;
+				}
+			}
+		}
+	}
+
+	public static JsonObject getSessionNearCacheMetrics() {
+		final SessionNearCache nearCache = sessionNearCache;
+		return (nearCache != null) ? nearCache.getMetrics() : new JsonObject();
+	}
+
 	public static void getSessionByUserId(EventBus eb, final String userId, final Handler<JsonObject> handler) {
+		getSessionByUserId(eb, userId, true, handler);
+	}
+
+	/**
+	 * @param allowDisconnectedUser if false, only the sessions of the session store are returned,
+	 * the session infos of a disconnected user aren't generated from the graph
+	 */
+	public static void getSessionByUserId(EventBus eb, final String userId, boolean allowDisconnectedUser,
+			final Handler<JsonObject> handler) {
 		JsonObject findSession = new JsonObject()
 				.put("action", "findByUserId")
 				.put("userId", userId)
-				.put("allowDisconnectedUser", true);
+				.put("allowDisconnectedUser", allowDisconnectedUser);
 		findSession(eb, null, findSession, handler);
 	}
 
@@ -517,13 +587,19 @@ public class UserUtils {
 		if (session == null) {
 			return null;
 		}
-		ObjectMapper mapper = new ObjectMapper();
-		try {
-			return mapper.readValue(session.encode(), UserInfos.class);
-		} catch (IOException e) {
-			e.printStackTrace();
-			return null;
+		return userInfosSnapshots.get(session);
+	}
+
+	/**
+	 * Workflow right check on the decoded snapshot of the session, without copying the user infos.
+	 * @return true if the action is in the authorized actions of the session or if the user is super admin
+	 */
+	public static boolean isAuthorizedWorkflowAction(JsonObject session, String serviceMethod) {
+		if (session == null) {
+			return false;
 		}
+		final UserInfos user = userInfosSnapshots.snapshot(session);
+		return user != null && (user.hasAuthorizedAction(serviceMethod) || user.isSuperAdmin());
 	}
 
 	public static void getUserInfos(EventBus eb, HttpServerRequest request,
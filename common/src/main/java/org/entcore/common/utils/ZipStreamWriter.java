@@ -0,0 +1,192 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.common.utils;
+
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.core.streams.WriteStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Write a zip archive to a write stream (e.g. an http response) entry by entry, without temporary file.
+ * Each entry is read from its source stream, which is paused while the write queue is full.
+ * Entries must be added one after the other (when the future of the previous entry is completed).
+ */
+public class ZipStreamWriter {
+
+	private static final Set<String> COMPRESSIBLE_TYPES = new HashSet<>(Arrays.asList(
+			"application/javascript", "application/rtf", "application/msword", "application/vnd.ms-excel",
+			"application/vnd.ms-powerpoint", "application/postscript", "application/x-tar", "application/sql",
+			"image/bmp", "image/tiff", "audio/wav", "audio/x-wav"));
+
+	private final WriteStream<Buffer> out;
+	private final BufferOutputStream buffer = new BufferOutputStream();
+	private final ZipOutputStream zip = new ZipOutputStream(buffer);
+	private ReadStream<Buffer> current;
+	private Future<Void> currentFuture;
+	private boolean aborted = false;
+
+	public ZipStreamWriter(WriteStream<Buffer> out) {
+		this.out = out;
+	}
+
+	/**
+	 * Compression level of a file : the already compressed formats (images, videos, archives, office
+	 * documents...) are stored without compression, the other ones with the fastest compression.
+	 */
+	public static int compressionLevel(String contentType) {
+		if (contentType == null) {
+			return Deflater.NO_COMPRESSION;
+		}
+		String type = contentType.toLowerCase();
+		if (type.contains(";")) {
+			type = type.substring(0, type.indexOf(";")).trim();
+		}
+		if (type.startsWith("text/") || type.endsWith("/xml") || type.endsWith("+xml") || type.endsWith("/json") ||
+				type.endsWith("+json") || COMPRESSIBLE_TYPES.contains(type)) {
+			return Deflater.BEST_SPEED;
+		}
+		return Deflater.NO_COMPRESSION;
+	}
+
+	public Future<Void> addEntry(String name, ReadStream<Buffer> source, int level) {
+		final Future<Void> future = Future.future();
+		if (aborted) {
+			close(source);
+			future.fail("zip.aborted");
+			return future;
+		}
+		try {
+			zip.setLevel(level);
+			zip.putNextEntry(new ZipEntry(name));
+			flush();
+		} catch (IOException | RuntimeException e) {
+			close(source);
+			future.fail(e);
+			return future;
+		}
+		current = source;
+		currentFuture = future;
+		source.exceptionHandler(e -> {
+			close(source);
+			future.tryFail(e);
+		});
+		source.handler(chunk -> {
+			try {
+				zip.write(chunk.getBytes());
+				flush();
+				if (out.writeQueueFull()) {
+					source.pause();
+					out.drainHandler(v -> source.resume());
+				}
+			} catch (IOException | RuntimeException e) {
+				close(source);
+				future.tryFail(e);
+			}
+		});
+		source.endHandler(v -> {
+			close(source);
+			try {
+				zip.closeEntry();
+				flush();
+				future.tryComplete();
+			} catch (IOException | RuntimeException e) {
+				future.tryFail(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Write the central directory and end the write stream.
+	 */
+	public Future<Void> end() {
+		try {
+			zip.finish();
+			flush();
+			out.end();
+			return Future.succeededFuture();
+		} catch (IOException | RuntimeException e) {
+			return Future.failedFuture(e);
+		}
+	}
+
+	/**
+	 * Stop the entry being written (e.g. when the client has closed the connection).
+	 */
+	public void abort() {
+		aborted = true;
+		if (current != null) {
+			close(current);
+		}
+		if (currentFuture != null) {
+			currentFuture.tryFail("zip.aborted");
+		}
+	}
+
+	private void flush() {
+		final Buffer b = buffer.take();
+		if (b.length() > 0) {
+			out.write(b);
+		}
+	}
+
+	private void close(ReadStream<Buffer> source) {
+		if (current == source) {
+			current = null;
+		}
+		if (source instanceof AsyncFile) {
+			((AsyncFile) source).close();
+		} else {
+			source.pause();
+		}
+	}
+
+	private static class BufferOutputStream extends OutputStream {
+		private Buffer buffer = Buffer.buffer();
+
+		@Override
+		public void write(int b) {
+			buffer.appendByte((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			buffer.appendBytes(b, off, len);
+		}
+
+		private Buffer take() {
+			final Buffer b = buffer;
+			buffer = Buffer.buffer();
+			return b;
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ */
+
+package org.entcore.common.events;
+
+import io.reactiverse.pgclient.PgPool;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.events.impl.PostgresqlEventBatchWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@RunWith(VertxUnitRunner.class)
+public class PostgresqlEventBatchWriterTest {
+
+    private static final Pattern EVENT_ID = Pattern.compile("'(evt-\\d+)'");
+    private static final int EVENTS = 1000;
+
+    private Vertx vertx;
+    private File journalDir;
+    private final AtomicBoolean down = new AtomicBoolean(true);
+    private final Map<String, AtomicInteger> inserted = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        journalDir = Files.createTempDirectory("events-journal").toFile();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+        final File[] files = journalDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        journalDir.delete();
+    }
+
+    @SuppressWarnings("unchecked")
+    private PgPool pool() {
+        return (PgPool) Proxy.newProxyInstance(PgPool.class.getClassLoader(), new Class<?>[]{PgPool.class},
+                (proxy, method, args) -> {
+                    if (!"query".equals(method.getName()) || args == null || args.length != 2) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    final String query = (String) args[0];
+                    final Handler<AsyncResult<Object>> handler = (Handler<AsyncResult<Object>>) args[1];
+                    vertx.runOnContext(v -> {
+                        if (down.get()) {
+                            handler.handle(Future.failedFuture(new VertxException("Connection refused")));
+                            return;
+                        }
+                        final Matcher m = EVENT_ID.matcher(query);
+                        while (m.find()) {
+                            inserted.computeIfAbsent(m.group(1), k -> new AtomicInteger()).incrementAndGet();
+                        }
+                        handler.handle(Future.succeededFuture());
+                    });
+                    return proxy;
+                });
+    }
+
+    @Test
+    public void testSpilledEventsShouldBeReplayedOnceUnderConcurrentWrites(TestContext context) {
+        final JsonObject config = new JsonObject()
+                .put("size", 10)
+                .put("max-pending", 15)
+                .put("max-attempts", 1000)
+                .put("flush-interval", 10L)
+                .put("replay-interval", 30L)
+                .put("journal-path", journalDir.getAbsolutePath());
+        final PgPool pool = pool();
+        // two writers of the same module share the journal directory, like two instances on a node
+        final PostgresqlEventBatchWriter[] writers = new PostgresqlEventBatchWriter[] {
+                new PostgresqlEventBatchWriter(vertx, pool, "test", config),
+                new PostgresqlEventBatchWriter(vertx, pool, "test", config)
+        };
+        final AtomicInteger sent = new AtomicInteger();
+        final Async async = context.async();
+        vertx.setPeriodic(5L, producer -> {
+            for (int i = 0; i < 20; i++) {
+                final int id = sent.getAndIncrement();
+                writers[id % 2].write("events.test_events", new JsonObject().put("id", "evt-" + id),
+                        e -> context.assertTrue(e.isRight()));
+            }
+            if (sent.get() >= EVENTS / 2) {
+                down.set(false);
+            }
+            if (sent.get() >= EVENTS) {
+                vertx.cancelTimer(producer);
+            }
+        });
+        vertx.setPeriodic(50L, check -> {
+            if (inserted.size() < EVENTS) return;
+            vertx.cancelTimer(check);
+            vertx.setTimer(200L, t -> verify(context, writers, async));
+        });
+    }
+
+    private void verify(TestContext context, PostgresqlEventBatchWriter[] writers, Async async) {
+        for (int i = 0; i < EVENTS; i++) {
+            final AtomicInteger count = inserted.get("evt-" + i);
+            context.assertNotNull(count, "evt-" + i + " lost");
+            context.assertEquals(1, count.get(), "evt-" + i + " replayed twice");
+        }
+        final long spilled = writers[0].getMetrics().getLong("event_store_spilled_events") +
+                writers[1].getMetrics().getLong("event_store_spilled_events");
+        context.assertTrue(spilled > 0L);
+        async.complete();
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.entcore.common.events.impl;
+
+import fr.wseduc.webutils.Either;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.user.UserInfos;
+import org.entcore.common.user.UserUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class GenericEventStoreTest {
+
+    private final GenericEventStore store = new GenericEventStore() {
+        @Override
+        protected void storeEvent(JsonObject event, Handler<Either<String, Void>> handler) {
+            handler.handle(new Either.Right<>(null));
+        }
+    };
+
+    /**
+     * Row returned by the graph query of the event store for the user.
+     */
+    private JsonObject graphIdentity() {
+        return new JsonObject().put("userId", "u1").put("type", "Teacher")
+                .put("profilGroupsIds", new JsonArray().add("pg-structure").add("pg-class"))
+                .put("classes", new JsonArray().add("c1"))
+                .put("structures", new JsonArray().add("s1"));
+    }
+
+    /**
+     * Session of the same user : groupsIds and classes also hold a manual group and its class.
+     */
+    private JsonObject session() {
+        return new JsonObject().put("userId", "u1").put("type", "Teacher").put("login", "jean.dupont")
+                .put("groupsIds", new JsonArray().add("pg-structure").add("pg-class").add("manual"))
+                .put("profileGroupsIds", new JsonArray().add("pg-structure").add("pg-class"))
+                .put("classes", new JsonArray().add("c1").add("c2"))
+                .put("profileClassesIds", new JsonArray().add("c1"))
+                .put("structures", new JsonArray().add("s1"))
+                .put("functions", new JsonObject())
+                .put("sessionMetadata", new JsonObject().put("_id", "session1").put("userId", "u1"));
+    }
+
+    private JsonObject event(UserInfos user) {
+        store.setModule("Auth");
+        final JsonObject event = store.generateEvent("LOGIN", user, null, null);
+        event.remove("date");
+        return event;
+    }
+
+    @Test
+    public void testSessionAndCachedEventsShouldBeIdenticalToGraphEvent(TestContext context) {
+        final UserInfos graphUser = UserUtils.sessionToUserInfos(graphIdentity());
+        final JsonObject expected = event(graphUser);
+        context.assertEquals(new JsonArray().add("pg-structure").add("pg-class").getList(),
+                expected.getJsonArray("groups").getList());
+
+        final JsonObject identity = GenericEventStore.sessionIdentity(session());
+        context.assertNotNull(identity);
+        context.assertEquals(expected, event(UserUtils.sessionToUserInfos(identity)));
+
+        final EventIdentityCache cache = new EventIdentityCache(new JsonObject());
+        cache.put("login", "jean.dupont", graphUser, true, null, cache.generation());
+        context.assertEquals(expected, event(cache.get("login", "jean.dupont").user));
+        context.assertEquals(expected, event(cache.get("id", "u1").user));
+    }
+
+    @Test
+    public void testIdEventShouldUseSessionWithoutIdentityCache(TestContext context) {
+        final Vertx vertx = Vertx.vertx();
+        final Async async = context.async();
+        final JsonObject expected = event(UserUtils.sessionToUserInfos(graphIdentity()));
+        final GenericEventStore sessionStore = new GenericEventStore() {
+            @Override
+            protected void storeEvent(JsonObject event, Handler<Either<String, Void>> handler) {
+                event.remove("date");
+                context.assertEquals(expected, event);
+                handler.handle(new Either.Right<>(null));
+                vertx.close(context.asyncAssertSuccess(v -> async.complete()));
+            }
+        };
+        vertx.eventBus().<JsonObject>consumer("event.blacklist", message -> message.reply(new JsonArray()));
+        vertx.eventBus().<JsonObject>consumer("wse.session", message -> {
+            context.assertEquals("findByUserId", message.body().getString("action"));
+            message.reply(new JsonObject().put("status", "ok").put("session", session()));
+        });
+        // the graph isn't initialized : the event must come from the session
+        sessionStore.setModule("Auth");
+        sessionStore.setEventBus(vertx.eventBus());
+        sessionStore.userBlacklist = new JsonArray();
+        sessionStore.createAndStoreEventByUserId("LOGIN", "u1", null);
+    }
+
+    @Test
+    public void testSessionWithoutProfileGroupsShouldNotBeUsed(TestContext context) {
+        final JsonObject session = session();
+        session.remove("profileGroupsIds");
+        context.assertNull(GenericEventStore.sessionIdentity(session));
+        session.put("profileGroupsIds", new JsonArray()).remove("profileClassesIds");
+        context.assertNull(GenericEventStore.sessionIdentity(session));
+    }
+
+}
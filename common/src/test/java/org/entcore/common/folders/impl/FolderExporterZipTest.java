@@ -0,0 +1,210 @@
+package org.entcore.common.folders.impl;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.storage.Storage;
+import org.entcore.common.storage.impl.FileStorage;
+import org.entcore.common.utils.Zip;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Time to first byte, temporary disk usage and throughput of a folder download : copy in a temporary folder
+ * then zip, compared to the zip entries streamed to the response.
+ */
+@RunWith(VertxUnitRunner.class)
+public class FolderExporterZipTest {
+    private static final Logger log = LoggerFactory.getLogger(FolderExporterZipTest.class);
+    private static final int PHOTOS = 10;
+    private static final int PHOTO_SIZE = 4 * 1024 * 1024;
+    private static final int NOTES = 20;
+    private static final int NOTE_SIZE = 1024 * 1024;
+    private static Vertx vertx;
+    private static Storage storage;
+    private static HttpServer server;
+    private static Path storagePath;
+    private static final List<JsonObject> rows = new ArrayList<>();
+    private static final Map<String, Long> expectedSizes = new HashMap<>();
+    private static volatile Future<Long> diskUsage;
+
+    @BeforeClass
+    public static void setUp(TestContext context) throws Exception {
+        vertx = Vertx.vertx();
+        storagePath = Files.createTempDirectory("storage");
+        storage = new FileStorage(vertx, storagePath.toString(), false);
+        // zip worker : zip the folder content
+        vertx.eventBus().<JsonObject>consumer("test.zip", message -> vertx.<Void>executeBlocking(blocking -> {
+            final Path folder = Paths.get(message.body().getString("path"));
+            try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(message.body().getString("zipFile")));
+                 Stream<Path> files = Files.walk(folder)) {
+                zip.setLevel(message.body().getInteger("level"));
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    zip.putNextEntry(new ZipEntry(folder.relativize(file).toString().replace(File.separatorChar, '/')));
+                    Files.copy(file, zip);
+                    zip.closeEntry();
+                }
+                blocking.complete();
+            } catch (Exception e) {
+                blocking.fail(e);
+            }
+        }, res -> message.reply(new JsonObject().put("status", res.succeeded() ? "ok" : "error"))));
+        Zip.getInstance().init(vertx.eventBus(), "test.zip");
+
+        rows.add(new JsonObject().put("_id", "root").put("eType", "folder").put("name", "Classe"));
+        rows.add(new JsonObject().put("_id", "photos").put("eType", "folder").put("name", "Photos").put("eParent", "root"));
+        final Random random = new Random(24);
+        final StringBuilder text = new StringBuilder();
+        while (text.length() < NOTE_SIZE) {
+            text.append("Compte rendu de la sortie scolaire du ").append(text.length()).append(" mai.\n");
+        }
+        final Async async = context.async(PHOTOS + NOTES);
+        for (int i = 0; i < PHOTOS + NOTES; i++) {
+            final boolean photo = i < PHOTOS;
+            final byte[] bytes = photo ? new byte[PHOTO_SIZE] : text.substring(0, NOTE_SIZE).getBytes();
+            if (photo) {
+                random.nextBytes(bytes);
+            }
+            final String name = photo ? "photo-" + i + ".jpg" : "note-" + i + ".txt";
+            final String contentType = photo ? "image/jpeg" : "text/plain";
+            final String fileId = "file-" + i;
+            rows.add(new JsonObject().put("_id", "doc-" + i).put("eType", "file").put("name", name).put("file", fileId)
+                    .put("eParent", photo ? "photos" : "root")
+                    .put("metadata", new JsonObject().put("content-type", contentType).put("size", bytes.length)));
+            expectedSizes.put(photo ? "Classe/Photos/" + name : "Classe/" + name, (long) bytes.length);
+            storage.writeBuffer(fileId, Buffer.buffer(bytes), contentType, name, res -> {
+                context.assertEquals("ok", res.getString("status"));
+                async.countDown();
+            });
+        }
+
+        final Async listen = context.async();
+        server = vertx.createHttpServer().requestHandler(req -> {
+            final FolderExporterZip exporter = new FolderExporterZip(storage, vertx.fileSystem(), false,
+                    "/stream".equals(req.path()));
+            final JsonObject root = rows.get(0);
+            exporter.exportAndSendZip(root, rows, req, false).setHandler(res -> {
+                context.assertTrue(res.succeeded());
+                final String rootBase = res.result().rootBase;
+                if (rootBase.isEmpty()) {
+                    diskUsage.complete(0L);
+                } else {
+                    try (Stream<Path> files = Files.walk(Paths.get(rootBase))) {
+                        diskUsage.complete(files.filter(Files::isRegularFile).mapToLong(f -> f.toFile().length()).sum());
+                    } catch (Exception e) {
+                        diskUsage.fail(e);
+                    }
+                    exporter.removeZip(res.result());
+                }
+            });
+        }).listen(0, context.asyncAssertSuccess(s -> listen.complete()));
+    }
+
+    @AfterClass
+    public static void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private Future<Buffer> download(String path, long[] times, long[] disk) {
+        final Future<Buffer> future = Future.future();
+        diskUsage = Future.future();
+        final HttpClient client = vertx.createHttpClient();
+        final long start = System.currentTimeMillis();
+        client.getNow(server.actualPort(), "localhost", path, resp -> {
+            final Buffer body = Buffer.buffer();
+            resp.handler(chunk -> {
+                if (body.length() == 0) {
+                    times[0] = System.currentTimeMillis() - start;
+                }
+                body.appendBuffer(chunk);
+            });
+            resp.endHandler(v -> {
+                times[1] = System.currentTimeMillis() - start;
+                client.close();
+                diskUsage.map(usage -> disk[0] = usage).map(body).setHandler(future);
+            });
+            resp.exceptionHandler(future::tryFail);
+        });
+        return future;
+    }
+
+    private void assertZip(TestContext context, Buffer body, boolean compressedText) throws Exception {
+        final Map<String, Long> sizes = new HashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(body.getBytes()))) {
+            final byte[] buf = new byte[8192];
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                long size = 0;
+                int read;
+                while ((read = zip.read(buf)) > 0) {
+                    size += read;
+                }
+                sizes.put(entry.getName(), size);
+                if (compressedText && entry.getName().endsWith(".txt")) {
+                    context.assertTrue(entry.getCompressedSize() < size / 2, entry.getName());
+                }
+            }
+        }
+        context.assertEquals(expectedSizes, sizes);
+    }
+
+    @Test
+    public void testStreamedZipShouldContainSameFilesWithoutTemporaryCopy(TestContext context) {
+        final Async async = context.async();
+        final long[] tmpTimes = new long[2];
+        final long[] streamTimes = new long[2];
+        final long[] tmpDisk = new long[1];
+        final long[] streamDisk = new long[1];
+        download("/tmp", tmpTimes, tmpDisk).compose(tmp -> {
+            try {
+                assertZip(context, tmp, false);
+            } catch (Exception e) {
+                return Future.failedFuture(e);
+            }
+            return download("/stream", streamTimes, streamDisk).map(stream -> {
+                try {
+                    assertZip(context, stream, true);
+                } catch (Exception e) {
+                    context.fail(e);
+                }
+                final long total = expectedSizes.values().stream().mapToLong(Long::longValue).sum();
+                log.info("Folder of " + (PHOTOS + NOTES) + " files (" + total / (1024 * 1024) + " MB) : " +
+                        "temporary copy ttfb " + tmpTimes[0] + " ms, disk " + tmpDisk[0] / (1024 * 1024) + " MB, " +
+                        (tmp.length() / 1024) / Math.max(1L, tmpTimes[1]) + " MB/s ; " +
+                        "streamed ttfb " + streamTimes[0] + " ms, disk " + streamDisk[0] / (1024 * 1024) + " MB, " +
+                        (stream.length() / 1024) / Math.max(1L, streamTimes[1]) + " MB/s");
+                context.assertEquals(0L, streamDisk[0]);
+                context.assertTrue(tmpDisk[0] > 0L);
+                context.assertTrue(stream.length() < tmp.length());
+                return null;
+            });
+        }).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+}
@@ -0,0 +1,77 @@
+package org.entcore.common.http.filter;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class AuthorizationDecisionCacheTest {
+
+    private static final String METHOD = "org-entcore-blog-controllers-PostController|list";
+
+    @Test
+    public void testCacheShouldReturnDecisionUntilResourceInvalidation(TestContext context) {
+        final AuthorizationDecisionCache cache = new AuthorizationDecisionCache(new JsonObject());
+        context.assertNull(cache.get("blogs", "r1", "u1", METHOD));
+        cache.put("blogs", "r1", "u1", METHOD, true, cache.generation(), 12L);
+        cache.put("blogs", "r2", "u1", METHOD, false, cache.generation(), 8L);
+        context.assertTrue(cache.get("blogs", "r1", "u1", METHOD));
+        context.assertFalse(cache.get("blogs", "r2", "u1", METHOD));
+        context.assertNull(cache.get("posts", "r1", "u1", METHOD));
+        cache.invalidate(new JsonArray().add("r1"));
+        context.assertNull(cache.get("blogs", "r1", "u1", METHOD));
+        context.assertFalse(cache.get("blogs", "r2", "u1", METHOD));
+        final JsonObject metrics = cache.getMetrics();
+        context.assertEquals(2L, metrics.getLong("authorization_cache_hits"));
+        context.assertEquals(20L, metrics.getLong("authorization_cache_saved_query_time_ms"));
+    }
+
+    @Test
+    public void testCacheShouldIgnoreDecisionQueriedBeforeInvalidation(TestContext context) {
+        final AuthorizationDecisionCache cache = new AuthorizationDecisionCache(new JsonObject());
+        final long generation = cache.generation();
+        cache.invalidate(new JsonArray().add("r1"));
+        cache.put("blogs", "r1", "u1", METHOD, true, generation, 10L);
+        context.assertNull(cache.get("blogs", "r1", "u1", METHOD));
+    }
+
+    @Test
+    public void testCacheShouldExpireAndEvictDecisions(TestContext context) throws Exception {
+        final AuthorizationDecisionCache cache = new AuthorizationDecisionCache(
+                new JsonObject().put("ttl", 1L).put("max-size", 1));
+        cache.put("blogs", "r1", "u1", METHOD, true, cache.generation(), 1L);
+        cache.put("blogs", "r2", "u1", METHOD, true, cache.generation(), 1L);
+        context.assertEquals(1L, cache.getMetrics().getLong("authorization_cache_evictions"));
+        Thread.sleep(5L);
+        context.assertNull(cache.get("blogs", "r2", "u1", METHOD));
+        context.assertEquals(0L, cache.getMetrics().getLong("authorization_cache_size"));
+    }
+
+    @Test
+    public void testPublishedInvalidationsShouldReachListeningCache(TestContext context) {
+        final Vertx vertx = Vertx.vertx();
+        final EventBus eb = vertx.eventBus();
+        final AuthorizationDecisionCache cache = new AuthorizationDecisionCache(new JsonObject());
+        cache.listenInvalidations(eb);
+        cache.put("blogs", "r1", "u1", METHOD, true, cache.generation(), 1L);
+        cache.put("blogs", "r2", "u1", METHOD, true, cache.generation(), 1L);
+        final Async async = context.async();
+        AuthorizationDecisionCache.invalidate(eb, "r1");
+        vertx.setTimer(50L, t1 -> {
+            context.assertNull(cache.get("blogs", "r1", "u1", METHOD));
+            context.assertTrue(cache.get("blogs", "r2", "u1", METHOD));
+            AuthorizationDecisionCache.invalidateAll(eb);
+            vertx.setTimer(50L, t2 -> {
+                context.assertNull(cache.get("blogs", "r2", "u1", METHOD));
+                vertx.close(context.asyncAssertSuccess(v -> async.complete()));
+            });
+        });
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.entcore.common.http.filter;
+
+import fr.wseduc.webutils.http.Binding;
+import fr.wseduc.webutils.http.HttpMethod;
+import fr.wseduc.webutils.security.ActionType;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@RunWith(VertxUnitRunner.class)
+public class BindingsRouterTest {
+
+    private static final List<String> PATHS = Arrays.asList(
+            "/blog", "/blog/", "/blog/list/all", "/blog/counter", "/blog/b1", "/blog/b1/", "/blog/b1/comments",
+            "/blog/b1/post/p1", "/blog/b1/post/p1/comment", "/blog/list/post/p2", "/blog/pub/a/b/c",
+            "/workspace/documents", "/workspace/document/d1", "/workspace/document/archive/d1",
+            "/workspace/document/archive", "/workspace/folder/f1/copy", "/conversation/message/12ab-34",
+            "/conversation/message/xyz", "/auth/login.html", "/auth/loginXhtml", "/unknown", "", "//");
+
+    /**
+     * Binding of a route as web-utils builds it : the :param segments are replaced by named groups.
+     */
+    private static Binding binding(HttpMethod method, String path, String serviceMethod) {
+        final Matcher m = Pattern.compile(":([A-Za-z][A-Za-z0-9_]*)").matcher(path);
+        final StringBuffer sb = new StringBuffer();
+        while (m.find()) {
+            m.appendReplacement(sb, "(?<$1>[^\\\\/]+)");
+        }
+        m.appendTail(sb);
+        return new Binding(method, Pattern.compile(sb.toString()), serviceMethod, ActionType.RESOURCE);
+    }
+
+    private static Binding regexBinding(HttpMethod method, String regex, String serviceMethod) {
+        return new Binding(method, Pattern.compile(regex), serviceMethod, ActionType.RESOURCE);
+    }
+
+    private static List<Binding> bindings() {
+        return new ArrayList<>(Arrays.asList(
+                binding(HttpMethod.GET, "/blog/list/all", "list"),
+                binding(HttpMethod.GET, "/blog/counter", "counter"),
+                binding(HttpMethod.GET, "/blog/:id", "get"),
+                binding(HttpMethod.PUT, "/blog/:id", "update"),
+                binding(HttpMethod.GET, "/blog/:id/comments", "comments"),
+                binding(HttpMethod.GET, "/blog/:blogId/post/:postId", "post"),
+                binding(HttpMethod.GET, "/blog/list/post/:postId", "listPost"),
+                regexBinding(HttpMethod.GET, "/blog/pub/(.*)", "pub"),
+                binding(HttpMethod.GET, "/workspace/documents", "documents"),
+                binding(HttpMethod.GET, "/workspace/document/:id", "document"),
+                binding(HttpMethod.GET, "/workspace/document/archive/:id", "archive"),
+                regexBinding(HttpMethod.GET, "/workspace/folder/([^/]+)/copy", "copy"),
+                regexBinding(HttpMethod.GET, "/conversation/message/(?<id>[0-9a-f-]+)", "message"),
+                regexBinding(HttpMethod.GET, "/auth/login.html", "login")));
+    }
+
+    /**
+     * Linear scan of the filters before the router.
+     */
+    private static Binding linear(Collection<Binding> bindings, String method, String path, boolean exactFirst) {
+        if (exactFirst) {
+            for (Binding binding : bindings) {
+                if (method.equals(binding.getMethod().name()) && binding.getUriPattern().toString().equals(path)) {
+                    return binding;
+                }
+            }
+        }
+        for (Binding binding : bindings) {
+            if (method.equals(binding.getMethod().name()) && binding.getUriPattern().matcher(path).matches()) {
+                return binding;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testRouterShouldMatchParamSegmentsOfWebUtilsBindings(TestContext context) {
+        final Set<Binding> bindings = new LinkedHashSet<>(bindings());
+        final BindingsRouter router = new BindingsRouter(bindings, true);
+        context.assertEquals("get", router.route("GET", "/blog/b1").getServiceMethod());
+        context.assertEquals("update", router.route("PUT", "/blog/b1").getServiceMethod());
+        context.assertEquals("post", router.route("GET", "/blog/b1/post/p1").getServiceMethod());
+        context.assertEquals("document", router.route("GET", "/workspace/document/d1").getServiceMethod());
+        context.assertEquals("copy", router.route("GET", "/workspace/folder/f1/copy").getServiceMethod());
+        context.assertEquals("message", router.route("GET", "/conversation/message/12ab-34").getServiceMethod());
+        context.assertNull(router.route("GET", "/conversation/message/xyz"));
+        context.assertNull(router.route("GET", "/blog/"));
+        context.assertNull(router.route("DELETE", "/blog/b1"));
+        // "." of a pattern is a regex wildcard
+        context.assertEquals("login", router.route("GET", "/auth/loginXhtml").getServiceMethod());
+    }
+
+    @Test
+    public void testRouterShouldReturnSameBindingsAsLinearScan(TestContext context) {
+        final Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            final List<Binding> ordered = bindings();
+            Collections.shuffle(ordered, random);
+            final Set<Binding> bindings = new LinkedHashSet<>(ordered);
+            for (boolean exactFirst : new boolean[] { true, false }) {
+                final BindingsRouter router = new BindingsRouter(bindings, exactFirst);
+                for (String method : Arrays.asList("GET", "PUT", "POST")) {
+                    for (String path : PATHS) {
+                        context.assertTrue(linear(bindings, method, path, exactFirst) ==
+                                router.route(method, path), method + " " + path + " exactFirst " + exactFirst);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRouterShouldRecompileWhenBindingsChange(TestContext context) {
+        final Set<Binding> bindings = new HashSet<>();
+        final BindingsRouter router = new BindingsRouter(bindings);
+        context.assertNull(router.route("GET", "/blog/b1"));
+        final Binding get = binding(HttpMethod.GET, "/blog/:id", "get");
+        bindings.add(get);
+        BindingsRouter.bindingsChanged();
+        context.assertEquals("get", router.route("GET", "/blog/b1").getServiceMethod());
+        // same size, other binding
+        bindings.remove(get);
+        bindings.add(binding(HttpMethod.GET, "/blog/:id", "other"));
+        BindingsRouter.bindingsChanged();
+        context.assertEquals("other", router.route("GET", "/blog/b1").getServiceMethod());
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.entcore.common.neo4j;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Simulated cluster of local HTTP stubs : one master and three slaves, one of them slow.
+ */
+@RunWith(VertxUnitRunner.class)
+public class Neo4jReadRoutingTest {
+
+    private static final Logger log = LoggerFactory.getLogger(Neo4jReadRoutingTest.class);
+    private static final long[] LATENCIES = { 1L, 2L, 2L, 80L };
+    private static final int READS = 600;
+    private static final int CONCURRENCY = 8;
+
+    private Vertx vertx;
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final AtomicInteger[] hits = new AtomicInteger[LATENCIES.length];
+    private URI[] uris;
+
+    @Before
+    public void setUp(TestContext context) {
+        vertx = Vertx.vertx();
+        uris = new URI[LATENCIES.length];
+        final List<Future> started = new ArrayList<>();
+        for (int i = 0; i < LATENCIES.length; i++) {
+            final int index = i;
+            hits[i] = new AtomicInteger();
+            final Promise<HttpServer> promise = Promise.promise();
+            started.add(promise.future());
+            final HttpServer server = vertx.createHttpServer().requestHandler(req -> req.bodyHandler(b -> {
+                hits[index].incrementAndGet();
+                vertx.setTimer(LATENCIES[index], t -> req.response()
+                        .putHeader("Content-Type", "application/json")
+                        .end("{\"columns\":[\"node\"],\"data\":[[" + index + "]]}"));
+            }));
+            servers.add(server);
+            server.listen(0, "localhost", promise);
+        }
+        final Async async = context.async();
+        CompositeFuture.all(started).setHandler(ar -> {
+            context.assertTrue(ar.succeeded());
+            for (int i = 0; i < servers.size(); i++) {
+                uris[i] = URI.create("http://localhost:" + servers.get(i).actualPort() + "/db/data");
+            }
+            async.complete();
+        });
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private Neo4jRest cluster(boolean routing) {
+        final JsonObject config = new JsonObject()
+                .put("healthcheck-enable", false)
+                .put("readcheck-enable", false)
+                .put("read-routing", new JsonObject().put("enabled", routing).put("min-samples", 10)
+                        .put("outlier-min-latency-ms", 20L).put("read-your-writes-ms", 1000L));
+        final Neo4jRest rest = new Neo4jRest(uris, true, vertx, 60000L, 16, true, config);
+        final List<Neo4jRestClientNode> nodes = rest.getNodeManager().getClients();
+        nodes.get(0).setMaster().setReadable(true);
+        for (int i = 1; i < nodes.size(); i++) {
+            nodes.get(i).setSlave().setReadable(true);
+        }
+        return rest;
+    }
+
+    @Test
+    public void testRoutingShouldReduceTailLatency(TestContext context) {
+        final Async async = context.async();
+        final Neo4jRest random = cluster(false);
+        reads(random, READS, randomLatencies -> {
+            final int slowRandom = hits[3].getAndSet(0);
+            final Neo4jRest routed = cluster(true);
+            reads(routed, READS, routedLatencies -> {
+                final int slowRouted = hits[3].get();
+                log.info("Neo4j reads on 3 slaves (1 slow) : random p50 " + percentile(randomLatencies, 50) +
+                        " ms p99 " + percentile(randomLatencies, 99) + " ms slow node " + slowRandom +
+                        " reads, routed p50 " + percentile(routedLatencies, 50) + " ms p99 " +
+                        percentile(routedLatencies, 99) + " ms slow node " + slowRouted + " reads, metrics " +
+                        routed.getMetrics().encode());
+                context.assertTrue(slowRouted < slowRandom / 4);
+                context.assertTrue(percentile(routedLatencies, 95) < percentile(randomLatencies, 95));
+                context.assertEquals(1L, routed.getMetrics().getLong("neo4j_read_ejected"));
+                context.assertEquals(0, hits[0].get());
+                random.close();
+                routed.close();
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testReadsShouldFollowWritesToMaster(TestContext context) {
+        final Async async = context.async();
+        final Neo4jRest rest = cluster(true);
+        rest.execute("MATCH (u:User {id:{id}}) RETURN u.login", new JsonObject(), "user1", r1 -> {
+            context.assertEquals(0, hits[0].get());
+            rest.execute("MATCH (u:User {id:{id}}) SET u.login = 'l'", new JsonObject(), "user1", w -> {
+                context.assertEquals(1, hits[0].get());
+                rest.execute("MATCH (u:User {id:{id}}) RETURN u.login", new JsonObject(), "user1", r2 -> {
+                    context.assertEquals(2, hits[0].get());
+                    rest.execute("MATCH (u:User {id:{id}}) RETURN u.login", new JsonObject(), "user2", r3 -> {
+                        context.assertEquals(2, hits[0].get());
+                        context.assertEquals(1L, rest.getMetrics().getLong("neo4j_read_pinned_to_master"));
+                        rest.close();
+                        async.complete();
+                    });
+                });
+            });
+        });
+    }
+
+    private void reads(Neo4jRest rest, int count, Handler<List<Long>> handler) {
+        final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger sent = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            vertx.runOnContext(v -> next(rest, count, sent, done, latencies, handler));
+        }
+    }
+
+    private void next(Neo4jRest rest, int count, AtomicInteger sent, AtomicInteger done, List<Long> latencies,
+            Handler<List<Long>> handler) {
+        if (sent.getAndIncrement() >= count) return;
+        final long start = System.currentTimeMillis();
+        rest.execute("MATCH (n:User) RETURN count(n)", new JsonObject(), r -> {
+            latencies.add(System.currentTimeMillis() - start);
+            if (done.incrementAndGet() == count) {
+                handler.handle(latencies);
+            } else {
+                next(rest, count, sent, done, latencies, handler);
+            }
+        });
+    }
+
+    private static long percentile(List<Long> values, int percentile) {
+        final List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+    }
+
+}
@@ -0,0 +1,106 @@
+package org.entcore.common.neo4j;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+@RunWith(VertxUnitRunner.class)
+public class Neo4jResponseDecoderTest {
+
+    private static final Logger log = LoggerFactory.getLogger(Neo4jResponseDecoderTest.class);
+    private static final int CHUNK_SIZE = 8192;
+
+    @Test
+    public void testDecodeTransactionResponseByChunks(TestContext context) throws Exception {
+        final int rows = 100000;
+        final Buffer body = transactionResponse(rows);
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        System.gc();
+        final long streamStart = memory.getHeapMemoryUsage().getUsed();
+        final Neo4jResponseDecoder decoder = new Neo4jResponseDecoder();
+        for (int i = 0; i < body.length(); i += CHUNK_SIZE) {
+            decoder.feed(body.getBuffer(i, Math.min(i + CHUNK_SIZE, body.length())));
+        }
+        decoder.end();
+        final JsonObject streamed = decoder.transactionResult();
+        final long streamHeap = memory.getHeapMemoryUsage().getUsed() - streamStart;
+
+        System.gc();
+        final long treeStart = memory.getHeapMemoryUsage().getUsed();
+        final JsonObject json = new JsonObject(body.toString("UTF-8"));
+        final JsonArray expected = new JsonArray();
+        for (Object o : json.getJsonArray("results")) {
+            expected.add(transform((JsonObject) o));
+        }
+        final long treeHeap = memory.getHeapMemoryUsage().getUsed() - treeStart;
+
+        log.info("Neo4j response of " + rows + " rows (" + body.length() + " bytes) : streaming decoder " +
+                (streamHeap >> 10) + " KB, string and tree " + (treeHeap >> 10) + " KB");
+        context.assertEquals((long) rows, decoder.rowsCount());
+        context.assertEquals("http://localhost:7474/db/data/transaction/42/commit", streamed.getString("commit"));
+        context.assertEquals(0, streamed.getJsonArray("errors").size());
+        context.assertEquals(expected.encode(), streamed.getJsonArray("results").encode());
+    }
+
+    @Test
+    public void testRowHandlerAndCypherResponse(TestContext context) throws Exception {
+        final int[] count = { 0 };
+        final Neo4jResponseDecoder decoder = new Neo4jResponseDecoder(row -> {
+            context.assertEquals("u" + count[0], row.getString("id"));
+            count[0]++;
+        });
+        final Buffer body = transactionResponse(1000);
+        for (int i = 0; i < body.length(); i += 17) {
+            decoder.feed(body.getBuffer(i, Math.min(i + 17, body.length())));
+        }
+        decoder.end();
+        context.assertEquals(1000, count[0]);
+        context.assertEquals(0, decoder.transactionResult().getJsonArray("results").getJsonArray(0).size());
+
+        final Neo4jResponseDecoder cypher = new Neo4jResponseDecoder();
+        cypher.feed(Buffer.buffer("{\"columns\":[\"id\",\"n\"],\"data\":[[\"a\",1],[\"b\",{\"x\":[1,2]}]]}"));
+        cypher.end();
+        final JsonArray result = cypher.cypherResult();
+        context.assertEquals(2, result.size());
+        context.assertEquals("b", result.getJsonObject(1).getString("id"));
+        context.assertEquals(2, result.getJsonObject(1).getJsonObject("n").getJsonArray("x").getInteger(1));
+    }
+
+    private static Buffer transactionResponse(int rows) {
+        final StringBuilder sb = new StringBuilder("{\"commit\":\"http://localhost:7474/db/data/transaction/42/commit\",")
+                .append("\"results\":[{\"columns\":[\"id\",\"login\",\"profiles\",\"score\",\"active\"],\"data\":[");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"row\":[\"u").append(i).append("\",\"user.").append(i)
+                    .append("\",[\"Student\"],").append(i * 0.5).append(',').append(i % 2 == 0)
+                    .append("],\"meta\":[null,null,null,null,null]}");
+        }
+        sb.append("]},{\"columns\":[\"count\"],\"data\":[{\"row\":[").append(rows).append("]}]}],\"errors\":[]}");
+        return Buffer.buffer(sb.toString());
+    }
+
+    private static JsonArray transform(JsonObject json) {
+        final JsonArray columns = json.getJsonArray("columns");
+        final JsonArray out = new JsonArray();
+        for (Object r : json.getJsonArray("data")) {
+            final JsonArray row = ((JsonObject) r).getJsonArray("row");
+            final JsonObject obj = new JsonObject();
+            for (int j = 0; j < row.size(); j++) {
+                obj.put(columns.getString(j), row.getValue(j));
+            }
+            out.add(obj);
+        }
+        return out;
+    }
+
+}
@@ -0,0 +1,176 @@
+package org.entcore.common.sql;
+
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Compare the results of the direct client with the mod-postgresql ones.
+ */
+@RunWith(VertxUnitRunner.class)
+public class PostgresqlDirectClientTest {
+    @ClassRule
+    public static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer("postgres:9.5");
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresqlDirectClientTest.class);
+    private static final String ADDRESS = "sql.persistor";
+    private static Vertx vertx;
+    private static PostgresqlDirectClient direct;
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        vertx = Vertx.vertx();
+        final JsonObject persistorConfig = new JsonObject().put("address", ADDRESS)
+                .put("url", postgreSQLContainer.getJdbcUrl()).put("username", postgreSQLContainer.getUsername())
+                .put("password", postgreSQLContainer.getPassword());
+        direct = new PostgresqlDirectClient(vertx, new JsonObject()
+                .put("host", postgreSQLContainer.getContainerIpAddress())
+                .put("port", postgreSQLContainer.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT))
+                .put("database", postgreSQLContainer.getDatabaseName())
+                .put("user", postgreSQLContainer.getUsername())
+                .put("password", postgreSQLContainer.getPassword()));
+        final Async async = context.async();
+        vertx.deployVerticle(fr.wseduc.sql.SqlPersistor.class.getName(), new DeploymentOptions()
+                .setConfig(persistorConfig).setWorker(true), context.asyncAssertSuccess(id -> {
+            final JsonArray statements = new SqlStatementsBuilder()
+                    .raw("CREATE SCHEMA test")
+                    .raw("CREATE TABLE test.items (id serial PRIMARY KEY, name VARCHAR(64), score NUMERIC, " +
+                            "data JSONB, tags VARCHAR(16)[], active BOOLEAN, created TIMESTAMP)")
+                    .raw("INSERT INTO test.items (name, score, data, tags, active, created) VALUES " +
+                            "('first', 12, '{\"k\":\"v\",\"n\":[1,2]}', '{a,b}', true, '2022-01-10 08:30:00'), " +
+                            "('second', 1.5, '[1]', '{}', false, '2022-01-11 18:00:00.125'), " +
+                            "('third', NULL, NULL, NULL, NULL, NULL)")
+                    .build();
+            vertx.eventBus().<JsonObject>send(ADDRESS, new JsonObject().put("action", "transaction")
+                    .put("statements", statements), context.asyncAssertSuccess(r -> {
+                context.assertEquals("ok", r.body().getString("status"));
+                async.complete();
+            }));
+        }));
+    }
+
+    @AfterClass
+    public static void tearDown(TestContext context) {
+        direct.close();
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testPreparedResultsShouldMatchEventBus(TestContext context) {
+        compare(context, prepared("SELECT id, name, score, data, tags, active, created FROM test.items " +
+                "WHERE id IN " + Sql.listPrepared(new Object[] { 1, 2, 3 }) + " ORDER BY id",
+                new JsonArray().add(1).add(2).add(3)));
+        compare(context, prepared("SELECT name FROM test.items WHERE data ?? ? AND name <> '?'",
+                new JsonArray().add("k")));
+        compare(context, prepared("UPDATE test.items SET name = ? WHERE id = ?", new JsonArray().add("third").add(3)));
+        compare(context, prepared("SELECT * FROM test.missing", new JsonArray()));
+        compare(context, new JsonObject().put("action", "select").put("table", "test.items")
+                .put("fields", new JsonArray().add("id").add("name")));
+    }
+
+    @Test
+    public void testTransactionResultsShouldMatchEventBus(TestContext context) {
+        final JsonArray failing = new SqlStatementsBuilder()
+                .prepared("SELECT count(*) as nb FROM test.items WHERE active = ?", new JsonArray().add(false))
+                .insert("test.items", new JsonObject().put("name", "fourth"), "name")
+                .raw("NOT_A_COMMAND")
+                .build();
+        compare(context, new JsonObject().put("action", "transaction").put("statements", failing));
+        final JsonArray selects = new SqlStatementsBuilder()
+                .prepared("SELECT count(*) as nb FROM test.items WHERE active = ?", new JsonArray().add(false))
+                .raw("SELECT name, data FROM test.items WHERE name <> 'fourth' ORDER BY id")
+                .build();
+        compare(context, new JsonObject().put("action", "transaction").put("statements", selects));
+    }
+
+    @Test
+    public void testMultipleCommandsShouldBeUnsupported(TestContext context) {
+        final Async async = context.async();
+        direct.send(prepared(Sql.upsert("test.items", "UPDATE test.items SET name = ? WHERE id = ?",
+                "INSERT INTO test.items (id, name) SELECT ?, ?"), new JsonArray().add("x").add(1).add(1).add("x")),
+                r -> context.fail("Multiple commands must be sent to mod-postgresql."), v -> async.complete());
+    }
+
+    @Test
+    public void testPerQueryOverhead(TestContext context) {
+        final int count = 2000;
+        final JsonObject query = prepared("SELECT id, name FROM test.items WHERE id = ?", new JsonArray().add(1));
+        final Async async = context.async();
+        final long start = System.currentTimeMillis();
+        sequence(0, count, (i, next) -> vertx.eventBus().<JsonObject>send(ADDRESS, query, r -> next.handle(null)), v -> {
+            final long eventBus = System.currentTimeMillis() - start;
+            final long directStart = System.currentTimeMillis();
+            sequence(0, count, (i, next) -> direct.send(query, r -> next.handle(null), u -> context.fail()), v2 -> {
+                final long directTime = System.currentTimeMillis() - directStart;
+                log.info("Sql " + count + " sequential prepared queries : mod-postgresql " + eventBus + " ms (" +
+                        (eventBus * 1000 / count) + " us/query), direct " + directTime + " ms (" +
+                        (directTime * 1000 / count) + " us/query)");
+                async.complete();
+            });
+        });
+    }
+
+    private static JsonObject prepared(String statement, JsonArray values) {
+        return new JsonObject().put("action", "prepared").put("statement", statement).put("values", values);
+    }
+
+    private void compare(TestContext context, JsonObject command) {
+        final Async async = context.async();
+        vertx.eventBus().<JsonObject>send(ADDRESS, command, context.asyncAssertSuccess(expected ->
+            direct.send(command, actual -> {
+                assertSameResult(context, expected.body(), actual);
+                if ("ok".equals(expected.body().getString("status")) && expected.body().containsKey("fields")) {
+                    final Message<JsonObject> actualMessage = new fr.wseduc.webutils.eventbus.ResultMessage(actual);
+                    context.assertEquals(SqlResult.validResult(expected).right().getValue().encode(),
+                            SqlResult.validResult(actualMessage).right().getValue().encode());
+                }
+                async.complete();
+            }, v -> context.fail("Unsupported command : " + command.encode()))));
+    }
+
+    private static void assertSameResult(TestContext context, JsonObject expected, JsonObject actual) {
+        context.assertEquals(expected.getString("status"), actual.getString("status"), actual.encode());
+        if (!"ok".equals(expected.getString("status"))) {
+            return;
+        }
+        final JsonArray expectedResults = expected.getJsonArray("results");
+        if (expected.containsKey("fields")) {
+            context.assertEquals(expected.getJsonArray("fields").encode(), actual.getJsonArray("fields").encode());
+            context.assertEquals(expectedResults.encode(), actual.getJsonArray("results").encode());
+            context.assertEquals(expected.getInteger("rows"), actual.getInteger("rows"));
+        } else {
+            context.assertEquals(expectedResults.size(), actual.getJsonArray("results").size());
+            for (int i = 0; i < expectedResults.size(); i++) {
+                assertSameResult(context, expectedResults.getJsonObject(i).copy().put("status", "ok"),
+                        actual.getJsonArray("results").getJsonObject(i).copy().put("status", "ok"));
+            }
+        }
+    }
+
+    private interface Step {
+        void run(int index, Handler<Void> next);
+    }
+
+    private static void sequence(int index, int count, Step step, Handler<Void> done) {
+        if (index >= count) {
+            done.handle(null);
+            return;
+        }
+        step.run(index, v -> sequence(index + 1, count, step, done));
+    }
+
+}
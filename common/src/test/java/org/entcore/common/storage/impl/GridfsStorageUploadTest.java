@@ -0,0 +1,169 @@
+package org.entcore.common.storage.impl;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Heap used by concurrent large uploads saved by chunks. The gridfs persistor is replaced by a consumer which
+ * checks and drops the chunks.
+ */
+@RunWith(VertxUnitRunner.class)
+public class GridfsStorageUploadTest {
+    private static final Logger log = LoggerFactory.getLogger(GridfsStorageUploadTest.class);
+    private static final String BOUNDARY = "----upload-boundary";
+    private static final int UPLOADS = 4;
+    private static final long UPLOAD_SIZE = 256L * 1024 * 1024;
+    private static Vertx vertx;
+    private static GridfsStorage storage;
+    private static HttpServer server;
+    private static final Map<String, Long> received = new ConcurrentHashMap<>();
+    private static final Map<String, Long> lengths = new ConcurrentHashMap<>();
+    private static final Map<String, Integer> nextChunk = new ConcurrentHashMap<>();
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        vertx = Vertx.vertx();
+        storage = new GridfsStorage(vertx, vertx.eventBus(), "test.gridfs");
+        storage.setChunkedUpload(true);
+        vertx.eventBus().<Buffer>consumer("test.gridfs", message -> {
+            final Buffer body = message.body();
+            final int headerLength = body.getInt(body.length() - 4);
+            final JsonObject header = new JsonObject(body.getString(body.length() - 4 - headerLength, body.length() - 4));
+            final int dataLength = body.length() - 4 - headerLength;
+            if ("saveChunk".equals(header.getString("action"))) {
+                final String id = header.getString("_id");
+                final int n = header.getInteger("n");
+                if (dataLength > GridfsStorage.BUFFER_SIZE || n != nextChunk.getOrDefault(id, 0)) {
+                    message.reply(new JsonObject().put("status", "error").put("message", "invalid.chunk"));
+                    return;
+                }
+                nextChunk.put(id, n + 1);
+                received.merge(id, (long) dataLength, Long::sum);
+                lengths.put(id, header.getLong("length"));
+            }
+            message.reply(new JsonObject().put("status", "ok"));
+        });
+        final Async async = context.async();
+        server = vertx.createHttpServer().requestHandler(req -> {
+            final Long maxSize = req.getHeader("X-Max-Size") != null ? Long.valueOf(req.getHeader("X-Max-Size")) : null;
+            storage.writeUploadFile(req, maxSize, res -> req.response().end(res.encode()));
+        }).listen(0, context.asyncAssertSuccess(s -> async.complete()));
+    }
+
+    @AfterClass
+    public static void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private Future<JsonObject> upload(long size, Long maxSize) {
+        final Future<JsonObject> future = Future.future();
+        final HttpClient client = vertx.createHttpClient();
+        final HttpClientRequest request = client.post(server.actualPort(), "localhost", "/upload", resp ->
+                resp.bodyHandler(body -> {
+                    client.close();
+                    future.complete(body.toJsonObject());
+                }));
+        request.setChunked(true);
+        request.putHeader("Content-Type", "multipart/form-data; boundary=" + BOUNDARY);
+        if (maxSize != null) {
+            request.putHeader("X-Max-Size", maxSize.toString());
+        }
+        request.exceptionHandler(future::tryFail);
+        request.write("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"video.mp4\"\r\n" +
+                "Content-Type: video/mp4\r\n\r\n");
+        final byte[] bytes = new byte[64 * 1024];
+        new Random(25).nextBytes(bytes);
+        final Buffer data = Buffer.buffer(bytes);
+        writeData(request, data, size);
+        return future;
+    }
+
+    private void writeData(HttpClientRequest request, Buffer data, long remaining) {
+        long left = remaining;
+        while (left > 0) {
+            if (request.writeQueueFull()) {
+                final long next = left;
+                request.drainHandler(v -> writeData(request, data, next));
+                return;
+            }
+            request.write(left >= data.length() ? data : data.getBuffer(0, (int) left));
+            left -= data.length();
+        }
+        request.end("\r\n--" + BOUNDARY + "--\r\n");
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Test
+    public void testConcurrentUploadsShouldBeSavedByChunksWithFlatHeap(TestContext context) {
+        final Async async = context.async();
+        System.gc();
+        final long baseline = usedHeap();
+        final AtomicLong peak = new AtomicLong(baseline);
+        final long timer = vertx.setPeriodic(20L, t -> peak.accumulateAndGet(usedHeap(), Math::max));
+        @SuppressWarnings("rawtypes")
+        final List<Future> uploads = new ArrayList<>();
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < UPLOADS; i++) {
+            uploads.add(upload(UPLOAD_SIZE, null));
+        }
+        CompositeFuture.all(uploads).setHandler(context.asyncAssertSuccess(all -> {
+            vertx.cancelTimer(timer);
+            final long time = System.currentTimeMillis() - start;
+            log.info(UPLOADS + " concurrent uploads of " + UPLOAD_SIZE / (1024 * 1024) + " MB in " + time +
+                    " ms : peak heap increase " + (peak.get() - baseline) / (1024 * 1024) + " MB");
+            for (int i = 0; i < UPLOADS; i++) {
+                final JsonObject res = all.resultAt(i);
+                context.assertEquals("ok", res.getString("status"));
+                final String id = res.getString("_id");
+                context.assertEquals(UPLOAD_SIZE, received.get(id));
+                context.assertEquals(UPLOAD_SIZE, lengths.get(id));
+                context.assertEquals(UPLOAD_SIZE, res.getJsonObject("metadata").getLong("size"));
+                context.assertEquals("video/mp4", res.getJsonObject("metadata").getString("content-type"));
+                context.assertFalse(new File(System.getProperty("java.io.tmpdir"), "upload-" + id).exists());
+            }
+            // the uploads are not kept in memory
+            context.assertTrue(peak.get() - baseline < UPLOAD_SIZE);
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testUploadShouldStopWhenMaxSizeIsExceeded(TestContext context) {
+        final Async async = context.async();
+        final int saved = received.size();
+        upload(8L * 1024 * 1024, 1024L * 1024).setHandler(context.asyncAssertSuccess(res -> {
+            context.assertEquals("error", res.getString("status"));
+            context.assertEquals("file.too.large", res.getString("message"));
+            context.assertEquals(saved, received.size());
+            async.complete();
+        }));
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.entcore.common.user;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class SessionNearCacheTest {
+
+    private static JsonObject find(String sessionId) {
+        return new JsonObject().put("action", "find").put("sessionId", sessionId);
+    }
+
+    private static JsonObject findByUserId(String userId) {
+        return new JsonObject().put("action", "findByUserId").put("userId", userId);
+    }
+
+    private static JsonObject session(String userId) {
+        return new JsonObject().put("userId", userId).put("cache", new JsonObject())
+                .put("sessionMetadata", new JsonObject().put("_id", "session-" + userId).put("userId", userId));
+    }
+
+    @Test
+    public void testNearCacheShouldReturnCopyOfCachedSession(TestContext context) {
+        final SessionNearCache cache = new SessionNearCache(new JsonObject());
+        context.assertNull(cache.get(find("s1")));
+        cache.put(find("s1"), session("u1"), cache.generation());
+        final JsonObject s = cache.get(find("s1"));
+        context.assertEquals("u1", s.getString("userId"));
+        s.put("userId", "modified");
+        context.assertEquals("u1", cache.get(find("s1")).getString("userId"));
+        context.assertEquals(2L, cache.getMetrics().getLong("session_cache_hits"));
+        context.assertEquals(1L, cache.getMetrics().getLong("session_cache_misses"));
+    }
+
+    @Test
+    public void testNearCacheShouldInvalidateAllSessionsOfUser(TestContext context) {
+        final SessionNearCache cache = new SessionNearCache(new JsonObject());
+        cache.put(find("s1"), session("u1"), cache.generation());
+        cache.put(find("s2"), session("u1"), cache.generation());
+        cache.put(find("s3"), session("u2"), cache.generation());
+        cache.put(findByUserId("u1"), session("u1"), cache.generation());
+        cache.invalidate(null, "u1");
+        context.assertNull(cache.get(find("s1")));
+        context.assertNull(cache.get(find("s2")));
+        context.assertNull(cache.get(findByUserId("u1")));
+        context.assertNotNull(cache.get(find("s3")));
+    }
+
+    @Test
+    public void testNearCacheShouldNotCacheDisconnectedUserInfos(TestContext context) {
+        final SessionNearCache cache = new SessionNearCache(new JsonObject());
+        final JsonObject disconnected = findByUserId("u1").put("allowDisconnectedUser", true);
+        cache.put(disconnected, new JsonObject().put("userId", "u1").put("cache", new JsonObject()), cache.generation());
+        context.assertNull(cache.get(disconnected));
+        context.assertNull(cache.get(findByUserId("u1").put("allowDisconnectedUser", false)));
+        cache.put(disconnected, session("u1"), cache.generation());
+        context.assertNotNull(cache.get(findByUserId("u1").put("allowDisconnectedUser", false)));
+    }
+
+    @Test
+    public void testNearCacheShouldInvalidateUserEntryWhenSessionIsCreated(TestContext context) {
+        final SessionNearCache cache = new SessionNearCache(new JsonObject());
+        cache.put(find("s1"), session("u1"), cache.generation());
+        cache.put(findByUserId("u1"), session("u1"), cache.generation());
+        // message published by the session store when the session s2 of u1 is created
+        cache.invalidate("s2", "u1");
+        context.assertNull(cache.get(findByUserId("u1")));
+        context.assertNotNull(cache.get(find("s1")));
+    }
+
+    @Test
+    public void testNearCacheShouldIgnoreStalePutAfterInvalidation(TestContext context) {
+        final SessionNearCache cache = new SessionNearCache(new JsonObject());
+        final long generation = cache.generation();
+        cache.invalidate("s1", "u1");
+        cache.put(find("s1"), session("u1"), generation);
+        context.assertNull(cache.get(find("s1")));
+    }
+
+    @Test
+    public void testNearCacheShouldExpireAndEvictEntries(TestContext context) throws Exception {
+        final SessionNearCache cache = new SessionNearCache(new JsonObject().put("ttl", 1L).put("max-size", 2));
+        cache.put(find("s1"), session("u1"), cache.generation());
+        Thread.sleep(5L);
+        context.assertNull(cache.get(find("s1")));
+        final SessionNearCache lru = new SessionNearCache(new JsonObject().put("max-size", 2));
+        lru.put(find("s1"), session("u1"), lru.generation());
+        lru.put(find("s2"), session("u2"), lru.generation());
+        lru.put(find("s3"), session("u3"), lru.generation());
+        context.assertNull(lru.get(find("s1")));
+        context.assertEquals(1L, lru.getMetrics().getLong("session_cache_evictions"));
+    }
+
+}
@@ -0,0 +1,142 @@
+package org.entcore.common.user;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+
+@RunWith(VertxUnitRunner.class)
+public class UserInfosSnapshotsTest {
+
+    private JsonObject session() {
+        final JsonArray actions = new JsonArray();
+        for (int i = 0; i < 200; i++) {
+            actions.add(new JsonObject().put("name", "org.entcore.app.Controller|action" + i)
+                    .put("displayName", "app.action" + i).put("type", "SECURED_ACTION_WORKFLOW"));
+        }
+        return new JsonObject().put("userId", "u1").put("type", "Teacher").put("cache", new JsonObject())
+                .put("groupsIds", new JsonArray().add("g1").add("g2")).put("structures", new JsonArray().add("s1"))
+                .put("functions", new JsonObject().put("ADMIN_LOCAL", new JsonObject().put("code", "ADMIN_LOCAL")
+                        .put("scope", new JsonArray().add("s1"))))
+                .put("authorizedActions", actions).put("apps", new JsonArray()).put("unknownProperty", "value")
+                .put("sessionMetadata", new JsonObject().put("_id", "s1").put("userId", "u1"));
+    }
+
+    @Test
+    public void testSessionToUserInfosShouldDecodeSession(TestContext context) {
+        final UserInfos user = UserInfosSnapshots.decode(session());
+        context.assertEquals("u1", user.getUserId());
+        context.assertEquals(200, user.getAuthorizedActions().size());
+        context.assertEquals("s1", user.getFunctions().get("ADMIN_LOCAL").getScope().get(0));
+        context.assertEquals("value", user.getOtherProperties().get("unknownProperty"));
+        context.assertFalse(user.isSuperAdmin());
+    }
+
+    @Test
+    public void testUserInfosShouldIndexActions(TestContext context) {
+        final UserInfos user = UserInfosSnapshots.decode(session());
+        context.assertTrue(user.hasAuthorizedAction("org.entcore.app.Controller|action199"));
+        context.assertFalse(user.hasAuthorizedAction("org.entcore.app.Controller|action200"));
+        final UserInfos.Action action = new UserInfos.Action();
+        action.setName("org.entcore.app.Controller|action200");
+        user.getAuthorizedActions().add(action);
+        context.assertTrue(user.hasAuthorizedAction("org.entcore.app.Controller|action200"));
+    }
+
+    @Test
+    public void testSnapshotCopiesShouldShareActionsIndex(TestContext context) throws Exception {
+        final UserInfosSnapshots snapshots = new UserInfosSnapshots(2);
+        final JsonObject session = session();
+        final UserInfos snapshot = snapshots.snapshot(session);
+        final UserInfos copy = snapshots.get(session);
+        final Field index = UserInfos.class.getDeclaredField("authorizedActionsNames");
+        index.setAccessible(true);
+        context.assertNotNull(index.get(snapshot));
+        context.assertTrue(index.get(snapshot) == index.get(copy));
+        context.assertTrue(copy.hasAuthorizedAction("org.entcore.app.Controller|action0"));
+        context.assertTrue(snapshot.getGroupsIdsSet() == copy.getGroupsIdsSet());
+        context.assertTrue(copy.isInGroup(copy.getGroupsIds().get(0)));
+        context.assertFalse(copy.isInGroup("unknown"));
+        context.assertTrue(UserUtils.isAuthorizedWorkflowAction(session, "org.entcore.app.Controller|action0"));
+        context.assertFalse(UserUtils.isAuthorizedWorkflowAction(session, "org.entcore.app.Controller|action200"));
+    }
+
+    @Test
+    public void testCopyShouldKeepEveryField(TestContext context) throws Exception {
+        final UserInfos user = UserInfosSnapshots.decode(session().put("children", new JsonObject()
+                .put("c1", new JsonObject().put("firstName", "f"))).put("federated", true));
+        user.indexAuthorizedActions();
+        user.indexGroupsIds();
+        final UserInfos copy = user.copy();
+        context.assertEquals(JsonObject.mapFrom(user), JsonObject.mapFrom(copy));
+        for (Field field : UserInfos.class.getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
+            field.setAccessible(true);
+            final Object value = field.get(user);
+            if (value == null) {
+                context.assertNull(field.get(copy), field.getName());
+            } else if ("authorizedActionsNames".equals(field.getName()) || "groupsIdsIndex".equals(field.getName())) {
+                context.assertTrue(value == field.get(copy), "index is not shared with the copy");
+            } else if (value instanceof Collection || value instanceof Map) {
+                context.assertFalse(value == field.get(copy), field.getName() + " is shared with the copy");
+            } else {
+                context.assertEquals(value, field.get(copy), field.getName());
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotsShouldBeCopies(TestContext context) {
+        final UserInfosSnapshots snapshots = new UserInfosSnapshots(2);
+        final JsonObject session = session();
+        final UserInfos first = snapshots.get(session);
+        first.getGroupsIds().add("g3");
+        first.getAuthorizedActions().get(0).setName("modified");
+        first.getFunctions().get("ADMIN_LOCAL").getScope().add("s2");
+        first.setType("Student");
+        final UserInfos second = snapshots.get(session);
+        context.assertFalse(first == second);
+        context.assertEquals("Teacher", second.getType());
+        context.assertFalse(second.getGroupsIds().contains("g3"));
+        context.assertTrue(first.isInGroup("g3"));
+        context.assertFalse(second.isInGroup("g3"));
+        context.assertEquals(1, second.getFunctions().get("ADMIN_LOCAL").getScope().size());
+        context.assertEquals("org.entcore.app.Controller|action0", second.getAuthorizedActions().get(0).getName());
+        context.assertTrue(second.hasAuthorizedAction("org.entcore.app.Controller|action0"));
+    }
+
+    @Test
+    public void testSnapshotsShouldBeKeyedBySessionId(TestContext context) {
+        final UserInfosSnapshots snapshots = new UserInfosSnapshots(2);
+        final JsonObject session = session();
+        snapshots.get(session);
+        snapshots.get(session);
+        context.assertEquals(1, snapshots.size());
+        // new instance of the same session (e.g. after a cache attribute update) replaces the snapshot
+        final JsonObject updated = session().put("type", "Personnel");
+        context.assertEquals("Personnel", snapshots.get(updated).getType());
+        context.assertEquals(1, snapshots.size());
+        for (int i = 2; i < 5; i++) {
+            final JsonObject other = session();
+            other.getJsonObject("sessionMetadata").put("_id", "s" + i);
+            context.assertEquals("u1", snapshots.get(other).getUserId());
+            context.assertTrue(snapshots.size() <= 2);
+        }
+        // infos of a disconnected user (no session metadata) are not kept
+        final JsonObject disconnected = session();
+        disconnected.remove("sessionMetadata");
+        final UserInfosSnapshots empty = new UserInfosSnapshots(2);
+        context.assertEquals("u1", empty.get(disconnected).getUserId());
+        context.assertEquals(0, empty.size());
+    }
+
+}
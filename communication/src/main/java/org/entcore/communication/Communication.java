@@ -19,10 +19,12 @@
 
 package org.entcore.communication;
 
+import io.vertx.core.json.JsonObject;
 import org.entcore.common.http.BaseServer;
 import org.entcore.communication.controllers.CommunicationController;
 import org.entcore.communication.filters.CommunicationFilter;
 import org.entcore.communication.services.impl.DefaultCommunicationService;
+import org.entcore.communication.services.impl.GraphCommunicationService;
 import org.entcore.communication.services.impl.XpCommunicationService;
 
 public class Communication extends BaseServer {
@@ -31,7 +33,10 @@ public class Communication extends BaseServer {
 	public void start() throws Exception {
 		super.start();
 		CommunicationController communicationController = new CommunicationController();
-		if (config.getBoolean("xp-com-rules", false)) {
+		if (config.getJsonObject("communication-graph", new JsonObject()).getBoolean("enabled", false)) {
+			communicationController.setCommunicationService(new GraphCommunicationService(vertx,
+					config.getJsonObject("communication-graph"), config.getBoolean("xp-com-rules", false)));
+		} else if (config.getBoolean("xp-com-rules", false)) {
 			communicationController.setCommunicationService(new XpCommunicationService());
 		} else {
 			communicationController.setCommunicationService(new DefaultCommunicationService());
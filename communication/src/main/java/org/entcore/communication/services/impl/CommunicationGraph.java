@@ -0,0 +1,406 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.communication.services.impl;
+
+import io.vertx.core.json.JsonArray;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In memory copy of the COMMUNIQUE, COMMUNIQUE_DIRECT and DEPENDS relationships between users and groups,
+ * and of the communiqueWith property of the groups.
+ * Nodes are indexed by int and relationships are stored in int adjacency arrays.
+ * Node properties (blocked, nbUsers, names...) are not kept : the graph only resolves the ids
+ * reachable with the same paths as the visibility Cypher queries of {@link DefaultCommunicationService}
+ * and {@link XpCommunicationService}.
+ * Not thread safe, it must be used from the verticle context.
+ */
+public class CommunicationGraph {
+
+	private static final byte GROUP = 1;
+	private static final byte USER = 2;
+	private static final byte USERS_NOT_INCOMING = 4;
+	private static final byte LOADED = 8;
+	private static final byte USERS_BOTH = 16;
+
+	private final Map<String, Integer> index = new HashMap<>();
+	private String[] ids = new String[1024];
+	private byte[] flags = new byte[1024];
+	private int[] marks = new int[1024];
+	private int mark = 0;
+	private int size = 0;
+	private final Adjacency communique = new Adjacency();
+	private final Adjacency communiqueDirect = new Adjacency();
+	private final Adjacency communiqueWith = new Adjacency();
+	private final Adjacency depends = new Adjacency();
+	private final Adjacency dependents = new Adjacency();
+
+	private final class Adjacency {
+		private int[][] edges = new int[1024][];
+		private int[] sizes = new int[1024];
+		private long count = 0;
+
+		private void grow(int capacity) {
+			edges = Arrays.copyOf(edges, capacity);
+			sizes = Arrays.copyOf(sizes, capacity);
+		}
+
+		private boolean add(int from, int to) {
+			final int s = sizes[from];
+			int[] e = edges[from];
+			for (int i = 0; i < s; i++) {
+				if (e[i] == to) return false;
+			}
+			if (e == null) {
+				e = edges[from] = new int[4];
+			} else if (s == e.length) {
+				e = edges[from] = Arrays.copyOf(e, s * 2);
+			}
+			e[s] = to;
+			sizes[from] = s + 1;
+			count++;
+			return true;
+		}
+
+		private boolean remove(int from, int to) {
+			final int s = sizes[from];
+			final int[] e = edges[from];
+			for (int i = 0; i < s; i++) {
+				if (e[i] == to) {
+					e[i] = e[s - 1];
+					sizes[from] = s - 1;
+					count--;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private int[] clear(int from) {
+			final int[] old = Arrays.copyOf(edges[from] != null ? edges[from] : new int[0], sizes[from]);
+			count -= sizes[from];
+			sizes[from] = 0;
+			return old;
+		}
+	}
+
+	private int node(String id) {
+		final Integer idx = index.get(id);
+		if (idx != null) {
+			return idx;
+		}
+		if (size == ids.length) {
+			final int capacity = size * 2;
+			ids = Arrays.copyOf(ids, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			marks = Arrays.copyOf(marks, capacity);
+			communique.grow(capacity);
+			communiqueDirect.grow(capacity);
+			communiqueWith.grow(capacity);
+			depends.grow(capacity);
+			dependents.grow(capacity);
+		}
+		ids[size] = id;
+		index.put(id, size);
+		return size++;
+	}
+
+	public void setNode(String id, boolean group, String users, JsonArray communiqueIds,
+			JsonArray communiqueDirectIds, JsonArray dependsIds) {
+		setNode(id, group, users, communiqueIds, communiqueDirectIds, dependsIds, null);
+	}
+
+	/**
+	 * Replace a node and its outgoing relationships.
+	 * @param users value of the group <code>users</code> property
+	 * @param communiqueWithIds value of the group <code>communiqueWith</code> property
+	 */
+	public void setNode(String id, boolean group, String users, JsonArray communiqueIds,
+			JsonArray communiqueDirectIds, JsonArray dependsIds, JsonArray communiqueWithIds) {
+		if (id == null) return;
+		final int n = node(id);
+		byte f = (byte) (LOADED | (group ? GROUP : USER));
+		if (users != null && !"INCOMING".equals(users)) {
+			f |= USERS_NOT_INCOMING;
+		}
+		if ("BOTH".equals(users)) {
+			f |= USERS_BOTH;
+		}
+		flags[n] = f;
+		clearRelationships(n);
+		addAll(communique, n, communiqueIds);
+		addAll(communiqueDirect, n, communiqueDirectIds);
+		addAll(communiqueWith, n, communiqueWithIds);
+		if (dependsIds != null) {
+			for (Object o : dependsIds) {
+				if (!(o instanceof String)) continue;
+				final int d = node((String) o);
+				if (depends.add(n, d)) {
+					dependents.add(d, n);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Remove a deleted user or group : the node is kept in the index but is no longer visible and
+	 * its relationships are not followed anymore.
+	 */
+	public void removeNode(String id) {
+		final Integer idx = index.get(id);
+		if (idx == null) return;
+		flags[idx] = 0;
+		clearRelationships(idx);
+		for (int d : dependents.clear(idx)) {
+			depends.remove(d, idx);
+		}
+	}
+
+	private void clearRelationships(int n) {
+		communique.clear(n);
+		communiqueDirect.clear(n);
+		communiqueWith.clear(n);
+		for (int d : depends.clear(n)) {
+			dependents.remove(d, n);
+		}
+	}
+
+	private boolean loaded(int n) {
+		return (flags[n] & LOADED) != 0;
+	}
+
+	private void addAll(Adjacency adjacency, int from, JsonArray toIds) {
+		if (toIds == null) return;
+		for (Object o : toIds) {
+			if (o instanceof String) {
+				adjacency.add(from, node((String) o));
+			}
+		}
+	}
+
+	/**
+	 * Link added between two groups : COMMUNIQUE relationship and communiqueWith property.
+	 */
+	public void addLink(String fromId, String toId) {
+		if (fromId == null || toId == null) return;
+		final int from = node(fromId);
+		final int to = node(toId);
+		communique.add(from, to);
+		communiqueWith.add(from, to);
+	}
+
+	public void removeLink(String fromId, String toId) {
+		final Integer from = index.get(fromId);
+		final Integer to = index.get(toId);
+		if (from != null && to != null) {
+			communique.remove(from, to);
+			communiqueWith.remove(from, to);
+		}
+	}
+
+	/**
+	 * Ids matched by <code>p=(n:User)-[:COMMUNIQUE*0..2]->ipg-[:COMMUNIQUE*0..1]->g<-[:DEPENDS*0..1]-m</code>
+	 * with the length conditions of {@link DefaultCommunicationService#visibleUsers}, plus the
+	 * <code>COMMUNIQUE_DIRECT</code> relationships if <code>direct</code> is true.
+	 * @return visible ids split in users (index 0) and groups (index 1), or null if the user isn't loaded
+	 */
+	public List<List<String>> visibleUsers(String userId, boolean itSelf, boolean myGroup, boolean direct) {
+		final Integer idx = index.get(userId);
+		if (idx == null || (flags[idx] & LOADED) == 0) {
+			return null;
+		}
+		final int n = idx;
+		final Visibles visibles = new Visibles(itSelf ? -1 : n);
+		final int[] c1 = communique.edges[n];
+		for (int i = 0; i < communique.sizes[n]; i++) {
+			final int a = c1[i];
+			if (!loaded(a)) continue;
+			if (myGroup && (flags[a] & USERS_NOT_INCOMING) != 0) {
+				visibles.add(a);
+			}
+			final int[] da = dependents.edges[a];
+			for (int j = 0; j < dependents.sizes[a]; j++) {
+				visibles.add(da[j]);
+			}
+			final int[] c2 = communique.edges[a];
+			for (int j = 0; j < communique.sizes[a]; j++) {
+				final int b = c2[j];
+				if (!loaded(b)) continue;
+				visibles.add(b);
+				if ((flags[b] & GROUP) != 0) {
+					final int[] c3 = communique.edges[b];
+					for (int k = 0; k < communique.sizes[b]; k++) {
+						if ((flags[c3[k]] & USER) != 0) {
+							visibles.add(c3[k]);
+						}
+					}
+				}
+				if ((flags[a] & GROUP) != 0 || (flags[b] & GROUP) != 0) {
+					final int[] db = dependents.edges[b];
+					for (int k = 0; k < dependents.sizes[b]; k++) {
+						visibles.add(db[k]);
+					}
+				}
+			}
+		}
+		if (direct) {
+			final int[] cd = communiqueDirect.edges[n];
+			for (int i = 0; i < communiqueDirect.sizes[n]; i++) {
+				visibles.add(cd[i]);
+			}
+		}
+		return visibles.result();
+	}
+
+	/**
+	 * Ids matched by the visibleUsers query of {@link XpCommunicationService} : the groups listed in the
+	 * <code>communiqueWith</code> property of the user groups (and the user groups with <code>users = 'BOTH'</code>
+	 * if <code>myGroup</code> is true), then <code>p=(g:Group)<-[:DEPENDS*0..1]-cg-[:COMMUNIQUE*0..1]->m</code>
+	 * with <code>length(p) < 1 OR (length(p) < 2 AND g.id <> cg.id) OR (length(p) < 2 AND m:User)</code>,
+	 * plus the <code>COMMUNIQUE_DIRECT</code> relationships if <code>direct</code> is true.
+	 * @return visible ids split in users (index 0) and groups (index 1), or null if the user isn't loaded
+	 */
+	public List<List<String>> xpVisibleUsers(String userId, boolean itSelf, boolean myGroup, boolean direct) {
+		final Integer idx = index.get(userId);
+		if (idx == null || (flags[idx] & LOADED) == 0) {
+			return null;
+		}
+		final int n = idx;
+		final Visibles visibles = new Visibles(itSelf ? -1 : n);
+		final int[] c1 = communique.edges[n];
+		for (int i = 0; i < communique.sizes[n]; i++) {
+			final int a = c1[i];
+			if (!loaded(a) || (flags[a] & GROUP) == 0) continue;
+			final int[] cw = communiqueWith.edges[a];
+			for (int j = 0; j < communiqueWith.sizes[a]; j++) {
+				addCommunicationGroup(visibles, cw[j]);
+			}
+			if (myGroup && (flags[a] & USERS_BOTH) != 0) {
+				addCommunicationGroup(visibles, a);
+			}
+		}
+		if (direct) {
+			final int[] cd = communiqueDirect.edges[n];
+			for (int i = 0; i < communiqueDirect.sizes[n]; i++) {
+				visibles.add(cd[i]);
+			}
+		}
+		return visibles.result();
+	}
+
+	private void addCommunicationGroup(Visibles visibles, int g) {
+		if (!loaded(g) || (flags[g] & GROUP) == 0) return;
+		visibles.add(g);
+		final int[] dg = dependents.edges[g];
+		for (int i = 0; i < dependents.sizes[g]; i++) {
+			visibles.add(dg[i]);
+		}
+		final int[] cg = communique.edges[g];
+		for (int i = 0; i < communique.sizes[g]; i++) {
+			if ((flags[cg[i]] & USER) != 0) {
+				visibles.add(cg[i]);
+			}
+		}
+	}
+
+	/**
+	 * Group ids matched by <code>p=(n:User)-[:COMMUNIQUE*1..2]->l<-[:DEPENDS*0..1]-(gp:Group)</code>
+	 * with <code>length(p) > 1 OR gp.users <> 'INCOMING'</code>.
+	 * @return visible group ids or null if the user isn't loaded
+	 */
+	public List<String> visibleProfilsGroups(String userId) {
+		final Integer idx = index.get(userId);
+		if (idx == null || (flags[idx] & LOADED) == 0) {
+			return null;
+		}
+		final int n = idx;
+		final Visibles visibles = new Visibles(-1);
+		final int[] c1 = communique.edges[n];
+		for (int i = 0; i < communique.sizes[n]; i++) {
+			final int a = c1[i];
+			if (!loaded(a)) continue;
+			if ((flags[a] & USERS_NOT_INCOMING) != 0) {
+				visibles.addGroup(a);
+			}
+			final int[] da = dependents.edges[a];
+			for (int j = 0; j < dependents.sizes[a]; j++) {
+				visibles.addGroup(da[j]);
+			}
+			final int[] c2 = communique.edges[a];
+			for (int j = 0; j < communique.sizes[a]; j++) {
+				final int b = c2[j];
+				if (!loaded(b)) continue;
+				visibles.addGroup(b);
+				final int[] db = dependents.edges[b];
+				for (int k = 0; k < dependents.sizes[b]; k++) {
+					visibles.addGroup(db[k]);
+				}
+			}
+		}
+		return visibles.result().get(1);
+	}
+
+	private final class Visibles {
+		private final int excluded;
+		private final List<String> users = new ArrayList<>();
+		private final List<String> groups = new ArrayList<>();
+
+		private Visibles(int excluded) {
+			this.excluded = excluded;
+			if (++mark == 0) {
+				Arrays.fill(marks, 0);
+				mark = 1;
+			}
+		}
+
+		private void add(int m) {
+			if (m == excluded || marks[m] == mark) return;
+			marks[m] = mark;
+			if ((flags[m] & GROUP) != 0) {
+				groups.add(ids[m]);
+			} else if ((flags[m] & USER) != 0) {
+				users.add(ids[m]);
+			}
+		}
+
+		private void addGroup(int m) {
+			if ((flags[m] & GROUP) != 0) {
+				add(m);
+			}
+		}
+
+		private List<List<String>> result() {
+			return Arrays.asList(users, groups);
+		}
+	}
+
+	public int nodes() {
+		return size;
+	}
+
+	public long relationships() {
+		return communique.count + communiqueDirect.count + depends.count;
+	}
+
+}
@@ -0,0 +1,601 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.communication.services.impl;
+
+import fr.wseduc.webutils.Either;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+import static org.entcore.common.neo4j.Neo4jResult.validResultHandler;
+
+/**
+ * Communication service resolving visible users and groups with an in memory {@link CommunicationGraph}
+ * instead of the variable length Cypher traversals. The visible ids are then projected with an
+ * indexed lookup, so preFilter, expectedTypes and customReturn keep their Cypher semantics.
+ * With <code>xp-com-rules</code>, visible users are resolved with the paths of {@link XpCommunicationService}.
+ * The graph is loaded at startup and updated incrementally : links and group rules are applied after each
+ * change, the nodes of a structure are reloaded after its default rules are applied or after its transition,
+ * and the deleted or merged users and groups of the feeder repository events are removed. Large default rules
+ * changes (more than <code>max-refresh-structures</code> structures) and the periodic refresh reload the whole graph.
+ * Until it is loaded, or if a preFilter uses the path variables, queries fall back to Cypher.
+ * With a <code>verify-rate</code> greater than 0, this ratio of queries is also run with Cypher and
+ * differences are logged.
+ */
+public class GraphCommunicationService extends DefaultCommunicationService {
+
+	private static final String NODE_RELATIONSHIPS =
+			"OPTIONAL MATCH n-[:COMMUNIQUE]->(c) " +
+			"WITH n, COLLECT(c.id) as communique " +
+			"OPTIONAL MATCH n-[:COMMUNIQUE_DIRECT]->(cd) " +
+			"WITH n, communique, COLLECT(cd.id) as communiqueDirect " +
+			"OPTIONAL MATCH n-[:DEPENDS]->(d:Group) " +
+			"RETURN n.id as id, n:Group as isGroup, n.users as users, n.communiqueWith as communiqueWith, " +
+			"communique, communiqueDirect, COLLECT(d.id) as depends " +
+			"ORDER BY id ";
+	private static final String GROUP_NODES =
+			"MATCH (g:Group {id : {groupId}}) " +
+			"OPTIONAL MATCH g<-[:IN]-(u:User) " +
+			"OPTIONAL MATCH u<-[:RELATED]-(s:User) " +
+			"WITH [g] + COLLECT(DISTINCT u) + COLLECT(DISTINCT s) as nodes " +
+			"UNWIND nodes as n " +
+			"WITH DISTINCT n " +
+			NODE_RELATIONSHIPS;
+	private static final String USERS_NODES =
+			"MATCH (u:User) " +
+			"WHERE u.id IN {userIds} " +
+			"OPTIONAL MATCH u<-[:RELATED]-(s:User) " +
+			"WITH COLLECT(DISTINCT u) + COLLECT(DISTINCT s) as nodes " +
+			"UNWIND nodes as n " +
+			"WITH DISTINCT n " +
+			NODE_RELATIONSHIPS;
+	private static final String STRUCTURE_NODES =
+			"MATCH (s:Structure {id : {structureId}})<-[:DEPENDS|BELONGS*1..2]-(g:Group) " +
+			"WITH DISTINCT g " +
+			"OPTIONAL MATCH g<-[:IN]-(u:User) " +
+			"WITH COLLECT(g) + COLLECT(DISTINCT u) as nodes " +
+			"UNWIND nodes as n " +
+			"WITH DISTINCT n " +
+			NODE_RELATIONSHIPS;
+	private static final Pattern PATH_VARIABLES = Pattern.compile("(?<![\\w.{])(n|p|l|g|cg|ipg)\\s*[.:)]|length\\(");
+
+	private final Vertx vertx;
+	private final boolean xpRules;
+	private final XpCommunicationService xpCommunicationService;
+	private final int pageSize;
+	private final long reloadDelay;
+	private final int maxRefreshStructures;
+	private final double verifyRate;
+	private CommunicationGraph graph;
+	private boolean loading = false;
+	private boolean reloadRequested = false;
+	private long reloadTimer = -1L;
+	private long refreshTimer = -1L;
+	private final List<Runnable> pendingUpdates = new ArrayList<>();
+	private final Set<String> delayedStructures = new HashSet<>();
+	private long graphQueries = 0L;
+	private long cypherQueries = 0L;
+	private long verifications = 0L;
+	private long mismatches = 0L;
+
+	public GraphCommunicationService(Vertx vertx, JsonObject config) {
+		this(vertx, config, false);
+	}
+
+	/**
+	 * @param xpRules resolve visible users with the queries of {@link XpCommunicationService}
+	 */
+	public GraphCommunicationService(Vertx vertx, JsonObject config, boolean xpRules) {
+		this.vertx = vertx;
+		this.xpRules = xpRules;
+		this.xpCommunicationService = xpRules ? new XpCommunicationService() : null;
+		this.pageSize = config.getInteger("page-size", 10000);
+		this.reloadDelay = config.getLong("reload-delay", 30000L);
+		this.maxRefreshStructures = config.getInteger("max-refresh-structures", 50);
+		this.verifyRate = config.getDouble("verify-rate", 0d);
+		vertx.setPeriodic(config.getLong("refresh-delay", 3600000L), h -> reload());
+		vertx.eventBus().<JsonObject>consumer("user.repository", message -> {
+			if (message.body() != null) {
+				repositoryEvent(message.body());
+			}
+		});
+		reload();
+	}
+
+	public void reload() {
+		if (loading) {
+			reloadRequested = true;
+			return;
+		}
+		loading = true;
+		final long start = System.currentTimeMillis();
+		final CommunicationGraph g = new CommunicationGraph();
+		loadNodes(g, "User", "", users -> {
+			if (users.failed()) {
+				loaded(g, users, start);
+				return;
+			}
+			loadNodes(g, "Group", "", groups -> loaded(g, groups, start));
+		});
+	}
+
+	private void loaded(CommunicationGraph g, AsyncResult<Void> ar, long start) {
+		loading = false;
+		if (ar.succeeded()) {
+			graph = g;
+			log.info("Communication graph loaded in " + (System.currentTimeMillis() - start) + " ms : " +
+					g.nodes() + " nodes, " + g.relationships() + " relationships.");
+			// changes made while the graph was loading may be missing from the loaded pages
+			for (Runnable update : pendingUpdates) {
+				update.run();
+			}
+		} else {
+			log.error("Error loading communication graph : " + ar.cause().getMessage());
+		}
+		pendingUpdates.clear();
+		if (reloadRequested) {
+			reloadRequested = false;
+			reload();
+		}
+	}
+
+	private void loadNodes(CommunicationGraph g, String label, String lastId, Handler<AsyncResult<Void>> handler) {
+		final String query =
+				"MATCH (n:" + label + ") " +
+				"WHERE n.id > {lastId} " +
+				"WITH n " +
+				"ORDER BY n.id " +
+				"LIMIT {limit} " +
+				NODE_RELATIONSHIPS;
+		final JsonObject params = new JsonObject().put("lastId", lastId).put("limit", pageSize);
+		neo4j.execute(query, params, validResultHandler(res -> {
+			if (res.isLeft()) {
+				handler.handle(Future.failedFuture(res.left().getValue()));
+				return;
+			}
+			final JsonArray nodes = res.right().getValue();
+			setNodes(g, nodes);
+			if (nodes.size() < pageSize) {
+				handler.handle(Future.succeededFuture());
+			} else {
+				loadNodes(g, label, nodes.getJsonObject(nodes.size() - 1).getString("id"), handler);
+			}
+		}));
+	}
+
+	private void setNodes(CommunicationGraph g, JsonArray nodes) {
+		for (Object o : nodes) {
+			if (!(o instanceof JsonObject)) continue;
+			final JsonObject n = (JsonObject) o;
+			g.setNode(n.getString("id"), n.getBoolean("isGroup", false), n.getString("users"),
+					n.getJsonArray("communique"), n.getJsonArray("communiqueDirect"), n.getJsonArray("depends"),
+					n.getJsonArray("communiqueWith"));
+		}
+	}
+
+	private void scheduleReload() {
+		if (reloadTimer >= 0) return;
+		reloadTimer = vertx.setTimer(reloadDelay, t -> {
+			reloadTimer = -1L;
+			reload();
+		});
+	}
+
+	/**
+	 * Apply an update to the current graph, and again after the loading graph is loaded.
+	 */
+	private void update(Runnable update) {
+		if (loading) {
+			pendingUpdates.add(update);
+		}
+		if (graph != null) {
+			update.run();
+		}
+	}
+
+	private void refreshNodes(String query, JsonObject params, String description) {
+		update(() -> neo4j.execute(query, params, validResultHandler(res -> {
+			if (res.isRight()) {
+				if (graph != null) {
+					setNodes(graph, res.right().getValue());
+				}
+			} else {
+				log.error("Error refreshing communication graph " + description + " : " + res.left().getValue());
+			}
+		})));
+	}
+
+	private void refreshGroup(String groupId) {
+		if (groupId == null) return;
+		refreshNodes(GROUP_NODES, new JsonObject().put("groupId", groupId), "group " + groupId);
+	}
+
+	private void refreshUsers(JsonArray userIds) {
+		if (userIds == null || userIds.isEmpty()) return;
+		refreshNodes(USERS_NODES, new JsonObject().put("userIds", userIds), "users " + userIds.encode());
+	}
+
+	private void refreshStructure(String structureId) {
+		if (structureId == null) return;
+		refreshNodes(STRUCTURE_NODES, new JsonObject().put("structureId", structureId), "structure " + structureId);
+	}
+
+	private void removeNode(String id) {
+		if (id == null) return;
+		update(() -> graph.removeNode(id));
+	}
+
+	/**
+	 * Refresh structures after <code>reload-delay</code>, once their default rules transaction is committed.
+	 * Above <code>max-refresh-structures</code> (e.g. after a feeder import), the whole graph is reloaded.
+	 */
+	private void refreshStructuresLater(JsonArray structureIds) {
+		if (structureIds == null) return;
+		for (Object id : structureIds) {
+			if (id instanceof String) {
+				delayedStructures.add((String) id);
+			}
+		}
+		if (refreshTimer >= 0) return;
+		refreshTimer = vertx.setTimer(reloadDelay, t -> {
+			refreshTimer = -1L;
+			refreshStructures(new ArrayList<>(delayedStructures));
+			delayedStructures.clear();
+		});
+	}
+
+	private void refreshStructures(List<String> structureIds) {
+		if (structureIds.size() > maxRefreshStructures) {
+			scheduleReload();
+			return;
+		}
+		for (String structureId : structureIds) {
+			refreshStructure(structureId);
+		}
+	}
+
+	private void repositoryEvent(JsonObject event) {
+		switch (event.getString("action", "")) {
+			case "delete-users":
+				for (Object o : event.getJsonArray("old-users", new JsonArray())) {
+					if (o instanceof JsonObject) {
+						removeNode(((JsonObject) o).getString("id"));
+					}
+				}
+				break;
+			case "delete-groups":
+				for (Object o : event.getJsonArray("old-groups", new JsonArray())) {
+					if (o instanceof JsonObject) {
+						removeNode(((JsonObject) o).getString("group"));
+					}
+				}
+				break;
+			case "merge-users":
+				removeNode(event.getString("deletedUserId"));
+				if (event.getString("keepedUserId") != null) {
+					refreshUsers(new JsonArray().add(event.getString("keepedUserId")));
+				}
+				break;
+			case "users-classes-update":
+				final JsonArray userIds = new JsonArray();
+				for (Object o : event.getJsonArray("users-classes-update", new JsonArray())) {
+					if (o instanceof JsonObject && ((JsonObject) o).getString("userId") != null) {
+						userIds.add(((JsonObject) o).getString("userId"));
+					}
+				}
+				refreshUsers(userIds);
+				break;
+			case "transition":
+				final JsonObject structure = event.getJsonObject("structure");
+				if (structure != null) {
+					refreshStructure(structure.getString("id"));
+				}
+				break;
+		}
+	}
+
+	private Handler<Either<String, JsonObject>> refreshGroups(Handler<Either<String, JsonObject>> handler,
+			String... groupIds) {
+		return res -> {
+			if (res.isRight()) {
+				for (String groupId : groupIds) {
+					refreshGroup(groupId);
+				}
+			}
+			handler.handle(res);
+		};
+	}
+
+	private Handler<Either<String, JsonObject>> refreshStructures(Handler<Either<String, JsonObject>> handler,
+			JsonArray structureIds, Boolean commit) {
+		return res -> {
+			if (res.isRight() && structureIds != null) {
+				if (commit != null && !commit) {
+					refreshStructuresLater(structureIds);
+				} else {
+					final List<String> ids = new ArrayList<>();
+					for (Object id : structureIds) {
+						if (id instanceof String) {
+							ids.add((String) id);
+						}
+					}
+					refreshStructures(ids);
+				}
+			}
+			handler.handle(res);
+		};
+	}
+
+	@Override
+	public void addLink(String startGroupId, String endGroupId, Handler<Either<String, JsonObject>> handler) {
+		super.addLink(startGroupId, endGroupId, res -> {
+			if (res.isRight()) {
+				update(() -> graph.addLink(startGroupId, endGroupId));
+			}
+			handler.handle(res);
+		});
+	}
+
+	@Override
+	public void removeLink(String startGroupId, String endGroupId, Handler<Either<String, JsonObject>> handler) {
+		super.removeLink(startGroupId, endGroupId, res -> {
+			if (res.isRight()) {
+				update(() -> graph.removeLink(startGroupId, endGroupId));
+			}
+			handler.handle(res);
+		});
+	}
+
+	@Override
+	public void addLinkWithUsers(String groupId, Direction direction, Handler<Either<String, JsonObject>> handler) {
+		super.addLinkWithUsers(groupId, direction, refreshGroups(handler, groupId));
+	}
+
+	@Override
+	public void addLinkWithUsers(Map<String, Direction> params, Handler<Either<String, JsonObject>> handler) {
+		super.addLinkWithUsers(params, refreshGroups(handler,
+				params != null ? params.keySet().toArray(new String[0]) : new String[0]));
+	}
+
+	@Override
+	public void removeLinkWithUsers(String groupId, Direction direction, Handler<Either<String, JsonObject>> handler) {
+		super.removeLinkWithUsers(groupId, direction, refreshGroups(handler, groupId));
+	}
+
+	@Override
+	public void addLinkBetweenRelativeAndStudent(String groupId, Direction direction,
+			Handler<Either<String, JsonObject>> handler) {
+		super.addLinkBetweenRelativeAndStudent(groupId, direction, refreshGroups(handler, groupId));
+	}
+
+	@Override
+	public void removeLinkBetweenRelativeAndStudent(String groupId, Direction direction,
+			Handler<Either<String, JsonObject>> handler) {
+		super.removeLinkBetweenRelativeAndStudent(groupId, direction, refreshGroups(handler, groupId));
+	}
+
+	@Override
+	public void applyRules(String groupId, Handler<Either<String, JsonObject>> handler) {
+		super.applyRules(groupId, refreshGroups(handler, groupId));
+	}
+
+	@Override
+	public void initDefaultRules(JsonArray structureIds, JsonObject defaultRules, Integer transactionId,
+			Boolean commit, Handler<Either<String, JsonObject>> handler) {
+		super.initDefaultRules(structureIds, defaultRules, transactionId, commit,
+				refreshStructures(handler, structureIds, commit));
+	}
+
+	@Override
+	public void applyDefaultRules(JsonArray structureIds, Integer transactionId, Boolean commit,
+			Handler<Either<String, JsonObject>> handler) {
+		super.applyDefaultRules(structureIds, transactionId, commit, refreshStructures(handler, structureIds, commit));
+	}
+
+	@Override
+	public void removeRules(String structureId, Handler<Either<String, JsonObject>> handler) {
+		super.removeRules(structureId, res -> {
+			if (res.isRight()) {
+				if (structureId != null && !structureId.trim().isEmpty()) {
+					refreshStructure(structureId);
+				} else {
+					scheduleReload();
+				}
+			}
+			handler.handle(res);
+		});
+	}
+
+	@Override
+	public void visibleUsers(String userId, String structureId, JsonArray expectedTypes, boolean itSelf,
+			boolean myGroup, boolean profile, String preFilter, String customReturn, JsonObject additionnalParams,
+			String userProfile, final Handler<Either<String, JsonArray>> handler) {
+		final boolean direct = userProfile == null || "Student".equals(userProfile) || "Relative".equals(userProfile);
+		final List<List<String>> visibles = (graph != null && (structureId == null || structureId.trim().isEmpty()) &&
+				usableFilter(preFilter)) ? (xpRules ? graph.xpVisibleUsers(userId, itSelf, myGroup, direct) :
+				graph.visibleUsers(userId, itSelf, myGroup, direct)) : null;
+		if (visibles == null) {
+			cypherQueries++;
+			cypherVisibleUsers(userId, structureId, expectedTypes, itSelf, myGroup, profile, preFilter, customReturn,
+					additionnalParams, userProfile, handler);
+			return;
+		}
+		graphQueries++;
+		final StringBuilder query = new StringBuilder(
+				"MATCH (u:User) " +
+				"WHERE u.id IN {visibleUsers} " +
+				"WITH COLLECT(u) as users " +
+				"OPTIONAL MATCH (g:Group) " +
+				"WHERE g.id IN {visibleGroups} " +
+				"WITH users + COLLECT(g) as visibles " +
+				"UNWIND visibles as m " +
+				"WITH m " +
+				"WHERE (NOT(HAS(m.blocked)) OR m.blocked = false) AND (NOT(HAS(m.nbUsers)) OR m.nbUsers > 0) ");
+		if (preFilter != null) {
+			query.append(preFilter);
+		}
+		if (expectedTypes != null && expectedTypes.size() > 0) {
+			final StringBuilder types = new StringBuilder();
+			for (Object o : expectedTypes) {
+				if (!(o instanceof String)) continue;
+				types.append(" OR m:").append((String) o);
+			}
+			if (types.length() > 0) {
+				query.append("AND (").append(types.substring(4)).append(") ");
+			}
+		}
+		String pcr = " ";
+		String pr = "";
+		if (profile) {
+			query.append("OPTIONAL MATCH m-[:IN*0..1]->pgp-[:DEPENDS*0..1]->(pg:ProfileGroup)-[:HAS_PROFILE]->(profile:Profile) ");
+			pcr = ", profile ";
+			pr = "profile.name as type, ";
+		}
+		query.append("OPTIONAL MATCH (sub:Subject)<-[:TEACHES]-m ");
+		if (customReturn != null && !customReturn.trim().isEmpty()) {
+			query.append("WITH DISTINCT m as visibles, COLLECT(DISTINCT sub.label) AS subjects ").append(pcr);
+			query.append(customReturn);
+		} else {
+			query.append("RETURN distinct m.id as id, m.name as name, " +
+					"m.login as login, m.displayName as username, ").append(pr)
+					.append("m.lastName as lastName, m.firstName as firstName, m.profiles as profiles " +
+							"ORDER BY name, username ");
+		}
+		final JsonObject params = new JsonObject();
+		if (additionnalParams != null) {
+			params.mergeIn(additionnalParams);
+		}
+		params.put("userId", userId)
+				.put("visibleUsers", new JsonArray(visibles.get(0)))
+				.put("visibleGroups", new JsonArray(visibles.get(1)));
+		final Handler<Either<String, JsonArray>> h = verify() ? res -> {
+			handler.handle(res);
+			cypherVisibleUsers(userId, structureId, expectedTypes, itSelf, myGroup, profile, preFilter,
+					customReturn, additionnalParams, userProfile, cypher -> compare("visibleUsers", userId, res, cypher));
+		} : handler;
+		neo4j.execute(query.toString(), params, validResultHandler(h));
+	}
+
+	private void cypherVisibleUsers(String userId, String structureId, JsonArray expectedTypes, boolean itSelf,
+			boolean myGroup, boolean profile, String preFilter, String customReturn, JsonObject additionnalParams,
+			String userProfile, final Handler<Either<String, JsonArray>> handler) {
+		if (xpRules) {
+			xpCommunicationService.visibleUsers(userId, structureId, expectedTypes, itSelf, myGroup, profile,
+					preFilter, customReturn, additionnalParams, userProfile, handler);
+		} else {
+			super.visibleUsers(userId, structureId, expectedTypes, itSelf, myGroup, profile, preFilter, customReturn,
+					additionnalParams, userProfile, handler);
+		}
+	}
+
+	@Override
+	public void visibleProfilsGroups(String userId, String customReturn, JsonObject additionnalParams,
+			String preFilter, Handler<Either<String, JsonArray>> handler) {
+		final List<String> visibles = (graph != null && usableFilter(preFilter)) ?
+				graph.visibleProfilsGroups(userId) : null;
+		if (visibles == null) {
+			cypherQueries++;
+			super.visibleProfilsGroups(userId, customReturn, additionnalParams, preFilter, handler);
+			return;
+		}
+		graphQueries++;
+		final JsonObject original = additionnalParams != null ? additionnalParams.copy() : null;
+		final String r;
+		if (customReturn != null && !customReturn.trim().isEmpty()) {
+			r = "WITH gp as profileGroup, profile " + customReturn;
+		} else {
+			r = "RETURN distinct gp.id as id, gp.name as name, profile.name as type, " +
+				"gp.groupDisplayName as groupDisplayName " +
+				"ORDER BY type DESC, name ";
+		}
+		final JsonObject params = (additionnalParams != null) ? additionnalParams : new JsonObject();
+		params.put("userId", userId).put("visibleGroups", new JsonArray(visibles));
+		final boolean excludeEmptyGroups = params.getBoolean("excludeEmptyGroups", true);
+		final String query =
+				"MATCH (gp:Group) " +
+				"WHERE gp.id IN {visibleGroups} " +
+				(excludeEmptyGroups ? "AND (NOT(HAS(gp.nbUsers)) OR gp.nbUsers > 0) " : "") +
+				(preFilter != null ? preFilter : "") +
+				"OPTIONAL MATCH gp-[:DEPENDS*0..1]->(pg:ProfileGroup)-[:HAS_PROFILE]->(profile:Profile) " +
+				r;
+		final Handler<Either<String, JsonArray>> h = verify() ? res -> {
+			handler.handle(res);
+			super.visibleProfilsGroups(userId, customReturn, original, preFilter,
+					cypher -> compare("visibleProfilsGroups", userId, res, cypher));
+		} : handler;
+		neo4j.execute(query, params, validResultHandler(h));
+	}
+
+	private boolean usableFilter(String preFilter) {
+		return preFilter == null || !PATH_VARIABLES.matcher(preFilter).find();
+	}
+
+	private boolean verify() {
+		return verifyRate > 0d && ThreadLocalRandom.current().nextDouble() < verifyRate;
+	}
+
+	private void compare(String query, String userId, Either<String, JsonArray> graphResult,
+			Either<String, JsonArray> cypherResult) {
+		if (graphResult.isLeft() || cypherResult.isLeft()) return;
+		verifications++;
+		final Set<String> graphRows = rows(graphResult.right().getValue());
+		final Set<String> cypherRows = rows(cypherResult.right().getValue());
+		if (!graphRows.equals(cypherRows)) {
+			mismatches++;
+			final Set<String> missing = new HashSet<>(cypherRows);
+			missing.removeAll(graphRows);
+			final Set<String> unexpected = new HashSet<>(graphRows);
+			unexpected.removeAll(cypherRows);
+			log.warn("Communication graph " + query + " mismatch for user " + userId +
+					" : missing " + missing + ", unexpected " + unexpected);
+		}
+	}
+
+	private static Set<String> rows(JsonArray result) {
+		final Set<String> rows = new HashSet<>();
+		for (Object o : result) {
+			rows.add(o instanceof JsonObject ? ((JsonObject) o).encode() : String.valueOf(o));
+		}
+		return rows;
+	}
+
+	public JsonObject getMetrics() {
+		return new JsonObject()
+				.put("communication_graph_loaded", graph != null)
+				.put("communication_graph_nodes", graph != null ? graph.nodes() : 0)
+				.put("communication_graph_relationships", graph != null ? graph.relationships() : 0L)
+				.put("communication_graph_queries", graphQueries)
+				.put("communication_graph_cypher_queries", cypherQueries)
+				.put("communication_graph_verifications", verifications)
+				.put("communication_graph_mismatches", mismatches);
+	}
+
+}
@@ -0,0 +1,114 @@
+package org.entcore.communication.services.impl;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RunWith(VertxUnitRunner.class)
+public class CommunicationGraphTest {
+
+    private CommunicationGraph graph;
+
+    private static JsonArray ids(String... ids) {
+        final JsonArray a = new JsonArray();
+        for (String id : ids) {
+            a.add(id);
+        }
+        return a;
+    }
+
+    private static Set<String> set(List<String> ids) {
+        return new HashSet<>(ids);
+    }
+
+    @Before
+    public void prepare() {
+        // teacher -> class teachers group (BOTH) -> class students group (OUTGOING) -> students
+        // relative -> relatives group (INCOMING), student1 -[:COMMUNIQUE_DIRECT]-> relative
+        graph = new CommunicationGraph();
+        graph.setNode("teacher", false, null, ids("teachers"), null, null);
+        graph.setNode("teachers", true, "BOTH", ids("students", "teacher", "teacher2"), null, null);
+        graph.setNode("teacher2", false, null, ids("teachers"), null, null);
+        graph.setNode("students", true, "OUTGOING", ids("student1", "student2"), null, null);
+        graph.setNode("student1", false, null, ids(), ids("relative"), null);
+        graph.setNode("student2", false, null, ids(), null, null);
+        graph.setNode("relatives", true, "INCOMING", ids(), null, null);
+        graph.setNode("relative", false, null, ids("relatives"), null, null);
+        graph.setNode("subgroup", true, "BOTH", ids(), null, ids("students"));
+    }
+
+    @Test
+    public void testVisibleUsersShouldFollowCommunicationPaths(TestContext context) {
+        final List<List<String>> visibles = graph.visibleUsers("teacher", false, true, true);
+        context.assertEquals(set(ids("teacher2", "student1", "student2").getList()), set(visibles.get(0)));
+        context.assertEquals(set(ids("teachers", "students", "subgroup").getList()), set(visibles.get(1)));
+        context.assertTrue(graph.visibleUsers("teacher", true, true, true).get(0).contains("teacher"));
+        context.assertFalse(graph.visibleUsers("teacher", false, false, true).get(1).contains("teachers"));
+        context.assertNull(graph.visibleUsers("unknown", false, true, true));
+    }
+
+    @Test
+    public void testVisibleUsersShouldIncludeDirectRelationships(TestContext context) {
+        context.assertEquals(set(ids("relative").getList()), set(graph.visibleUsers("student1", false, true, true).get(0)));
+        context.assertTrue(graph.visibleUsers("student1", false, true, false).get(0).isEmpty());
+        context.assertTrue(graph.visibleUsers("relative", false, true, true).get(1).isEmpty());
+    }
+
+    @Test
+    public void testVisibleProfilsGroupsShouldApplyIncrementalUpdates(TestContext context) {
+        context.assertEquals(set(ids("teachers", "students", "subgroup").getList()),
+                set(graph.visibleProfilsGroups("teacher")));
+        graph.addLink("relatives", "teachers");
+        context.assertEquals(set(ids("teachers").getList()), set(graph.visibleProfilsGroups("relative")));
+        graph.removeLink("relatives", "teachers");
+        context.assertTrue(graph.visibleProfilsGroups("relative").isEmpty());
+        graph.setNode("subgroup", true, "BOTH", ids(), null, ids());
+        context.assertFalse(graph.visibleProfilsGroups("teacher").contains("subgroup"));
+    }
+
+    @Test
+    public void testXpVisibleUsersShouldFollowCommunicationGroups(TestContext context) {
+        // teachers group communicates with the students group, students are members of their group (users BOTH)
+        final CommunicationGraph xp = new CommunicationGraph();
+        xp.setNode("teacher", false, null, ids("teachers"), null, null);
+        xp.setNode("teachers", true, "INCOMING", ids("students"), null, null, ids("students"));
+        xp.setNode("students", true, "BOTH", ids("student1", "student2"), null, null, ids());
+        xp.setNode("student1", false, null, ids("students"), ids("relative"), null);
+        xp.setNode("student2", false, null, ids("students"), null, null);
+        xp.setNode("relative", false, null, ids(), null, null);
+        xp.setNode("subgroup", true, "BOTH", ids(), null, ids("students"), ids());
+        final List<List<String>> visibles = xp.xpVisibleUsers("teacher", false, true, true);
+        context.assertEquals(set(ids("student1", "student2").getList()), set(visibles.get(0)));
+        context.assertEquals(set(ids("students", "subgroup").getList()), set(visibles.get(1)));
+        // myGroup : groups of the user with users = 'BOTH'
+        context.assertEquals(set(ids("student2", "relative").getList()),
+                set(xp.xpVisibleUsers("student1", false, true, true).get(0)));
+        context.assertEquals(set(ids("student1", "student2").getList()),
+                set(xp.xpVisibleUsers("student1", true, true, false).get(0)));
+        context.assertTrue(xp.xpVisibleUsers("student1", false, false, false).get(0).isEmpty());
+        xp.removeLink("teachers", "students");
+        context.assertTrue(xp.xpVisibleUsers("teacher", false, true, true).get(0).isEmpty());
+        xp.addLink("teachers", "students");
+        context.assertEquals(2, xp.xpVisibleUsers("teacher", false, true, true).get(0).size());
+    }
+
+    @Test
+    public void testRemovedNodesShouldNotBeVisible(TestContext context) {
+        graph.removeNode("student2");
+        context.assertEquals(set(ids("teacher2", "student1").getList()),
+                set(graph.visibleUsers("teacher", false, true, true).get(0)));
+        graph.removeNode("students");
+        final List<List<String>> visibles = graph.visibleUsers("teacher", false, true, true);
+        context.assertEquals(set(ids("teacher2").getList()), set(visibles.get(0)));
+        context.assertEquals(set(ids("teachers").getList()), set(visibles.get(1)));
+        context.assertNull(graph.visibleUsers("student2", false, true, true));
+    }
+
+}
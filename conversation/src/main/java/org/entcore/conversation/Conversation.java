@@ -27,6 +27,9 @@ import org.entcore.conversation.controllers.ConversationController;
 import org.entcore.conversation.service.impl.ConversationRepositoryEvents;
 import org.entcore.conversation.service.impl.ConversationStorage;
 import org.entcore.conversation.service.impl.DeleteOrphan;
+import org.entcore.conversation.service.impl.ReconcileUnreadCounters;
+import org.entcore.conversation.service.impl.ResumeSendJobs;
+import org.entcore.conversation.service.impl.SqlConversationService;
 
 import java.text.ParseException;
 
@@ -57,6 +60,27 @@ public class Conversation extends BaseServer {
 				log.error("Invalid cron expression.", e);
 			}
 		}
+
+		final String reconcileUnreadCountersCron = config.getString("reconcileUnreadCountersCron");
+		if (reconcileUnreadCountersCron != null) {
+			try {
+				new CronTrigger(vertx, reconcileUnreadCountersCron).schedule(
+						new ReconcileUnreadCounters(config.getLong("reconcile-unread-counters-timeout", 600000L)));
+			} catch (ParseException e) {
+				log.error("Invalid cron expression.", e);
+			}
+		}
+
+		final String resumeSendJobsCron = config.getString("resumeSendJobsCron", "0 */5 * * * ? *");
+		try {
+			new CronTrigger(vertx, resumeSendJobsCron).schedule(new ResumeSendJobs(
+					new SqlConversationService(vertx, config.getString("db-schema", "conversation"))
+							.setSendTimeout(config.getInteger("send-timeout", SqlConversationService.DEFAULT_SENDTIMEOUT))
+							.setSendChunkSize(config.getInteger("send-chunk-size", SqlConversationService.DEFAULT_SEND_CHUNK_SIZE)),
+					config.getLong("send-jobs-resume-delay", SqlConversationService.DEFAULT_SEND_JOBS_RESUME_DELAY)));
+		} catch (ParseException e) {
+			log.error("Invalid cron expression.", e);
+		}
 	}
 
 }
@@ -113,7 +113,8 @@ public class ConversationController extends BaseController {
 				config.getString("app-name", Conversation.class.getSimpleName()));
 				*/
 		this.conversationService = new SqlConversationService(vertx, config.getString("db-schema", "conversation"))
-				.setSendTimeout(config.getInteger("send-timeout",SqlConversationService.DEFAULT_SENDTIMEOUT));
+				.setSendTimeout(config.getInteger("send-timeout",SqlConversationService.DEFAULT_SENDTIMEOUT))
+				.setSendChunkSize(config.getInteger("send-chunk-size", SqlConversationService.DEFAULT_SEND_CHUNK_SIZE));
 		this.neoConversationService = new Neo4jConversationService();
 		notification = new TimelineHelper(vertx, eb, config);
 		final EventStore eventStore = EventStoreFactory.getFactory().getEventStore(Conversation.class.getSimpleName());
@@ -529,6 +530,8 @@ public class ConversationController extends BaseController {
 			return;
 		}
 		final String p = Utils.getOrElse(request.params().get("page"), "0", false);
+		final String beforeDate = request.params().get("beforeDate");
+		final String beforeId = request.params().get("beforeId");
 		if (folder == null || folder.trim().isEmpty()) {
 			badRequest(request);
 			return;
@@ -545,7 +548,7 @@ public class ConversationController extends BaseController {
 					if (unread != null && !unread.isEmpty()) {
 						b = Boolean.valueOf(unread);
 					}
-					conversationService.list(folder, restrain, b, user, page, search, new Handler<Either<String, JsonArray>>() {
+					final Handler<Either<String, JsonArray>> listHandler = new Handler<Either<String, JsonArray>>() {
 						@Override
 						public void handle(Either<String, JsonArray> r) {
 							if (r.isRight()) {
@@ -562,7 +565,22 @@ public class ConversationController extends BaseController {
 								renderJson(request, error, 400);
 							}
 						}
-					});
+					};
+					if ((beforeDate != null && !beforeDate.isEmpty()) || (beforeId != null && !beforeId.isEmpty())) {
+						// keyset pagination from the last message of the previous page
+						final Long date;
+						try {
+							date = beforeDate != null && !beforeDate.isEmpty() ? Long.parseLong(beforeDate) : null;
+						} catch (NumberFormatException e) {
+							badRequest(request);
+							return;
+						}
+						conversationService.list(folder, restrain, b, user, date, beforeId, search, listHandler);
+					} else if ("true".equals(request.params().get("cursor"))) {
+						conversationService.list(folder, restrain, b, user, null, null, search, listHandler);
+					} else {
+						conversationService.list(folder, restrain, b, user, page, search, listHandler);
+					}
 				} else {
 					unauthorized(request);
 				}
@@ -61,6 +61,18 @@ public interface ConversationService {
 
 	void list(String folder, String restrain, Boolean unread, UserInfos user, int page, String searchWords, Handler<Either<String, JsonArray>> results);
 
+	/**
+	 * List the messages older than the last message of the previous page, ordered by date and id.
+	 * The total count is not computed, see {@link #count(String, String, Boolean, UserInfos, Handler)} whose totals
+	 * are cached for count-cache-ttl ms.
+	 * @param beforeDate date of the last message of the previous page, null for the first page
+	 * @param beforeId id of the last message of the previous page, only with beforeDate
+	 */
+	default void list(String folder, String restrain, Boolean unread, UserInfos user, Long beforeDate, String beforeId,
+			String searchWords, Handler<Either<String, JsonArray>> results) {
+		results.handle(new Either.Left<>("list.cursor.not.supported"));
+	}
+
 	void listThreads(UserInfos user, int page, Handler<Either<String, JsonArray>> results);
 
 	void listThreadMessages(String threadId, int page, UserInfos user, Handler<Either<String, JsonArray>> results);
@@ -235,7 +235,17 @@ public class ConversationRepositoryEvents extends SqlRepositoryEvents {
 					new SqlStatementsBuilder(), forceImportAsDuplication, done -> {
 					exportUserId.remove(userId);
 					uuidReplacement.remove(userId);
-					handler.handle(done);
+					// the archives exported before the date of the user messages don't have it
+					final String fillDates =
+						"UPDATE conversation.usermessages um SET date = m.date FROM conversation.messages m " +
+						"WHERE um.message_id = m.id AND um.user_id = ? AND um.date IS NULL";
+					sql.prepared(fillDates, new JsonArray().add(userId), SqlResult.validRowsResultHandler(res -> {
+						if (res.isLeft()) {
+							log.error(title + " : Failed to set the date of the imported user messages : " +
+									res.left().getValue());
+						}
+						handler.handle(done);
+					}));
 				});
 			}
 		});
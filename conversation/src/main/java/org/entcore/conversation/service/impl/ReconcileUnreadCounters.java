@@ -0,0 +1,84 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.conversation.service.impl;
+
+import fr.wseduc.webutils.Either;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.sql.Sql;
+import org.entcore.common.sql.SqlResult;
+
+/**
+ * Repair the unread counters changed outside of the conversation service (users deletion, imports...).
+ * The counters changed while the job runs can be overwritten, so it should run off-peak.
+ */
+public class ReconcileUnreadCounters implements Handler<Long> {
+
+	private static final Logger log = LoggerFactory.getLogger(ReconcileUnreadCounters.class);
+
+	private static final String RECONCILE_COUNTERS =
+			"WITH actual AS (" +
+				"SELECT um.user_id, COALESCE(um.folder_id, '" + SqlConversationService.INBOX_COUNTER + "') AS folder, " +
+				"count(*) AS nb_unread " +
+				"FROM conversation.usermessages um " +
+				"JOIN conversation.messages m on um.message_id = m.id " +
+				"WHERE " + SqlConversationService.UNREAD_COUNTER_CONDITION + " " +
+				"GROUP BY 1, 2" +
+			"), repaired AS (" +
+				"INSERT INTO conversation.unread_counters AS c (user_id, folder, nb_unread) " +
+				"SELECT user_id, folder, nb_unread FROM actual " +
+				"ON CONFLICT (user_id, folder) DO UPDATE SET nb_unread = EXCLUDED.nb_unread " +
+				"WHERE c.nb_unread <> EXCLUDED.nb_unread " +
+				"RETURNING c.user_id" +
+			"), removed AS (" +
+				"DELETE FROM conversation.unread_counters c " +
+				"WHERE c.nb_unread <> 0 AND NOT EXISTS (" +
+					"SELECT 1 FROM actual a WHERE a.user_id = c.user_id AND a.folder = c.folder) " +
+				"RETURNING c.user_id" +
+			") " +
+			"SELECT (SELECT count(*) FROM repaired) AS repaired, (SELECT count(*) FROM removed) AS removed";
+
+	private final long timeout;
+
+	public ReconcileUnreadCounters(long timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void handle(Long event) {
+		reconcile(res -> {
+			if (res.isRight()) {
+				log.info("Successful reconcile unread counters : " + res.right().getValue().encode());
+			} else {
+				log.error("Reconcile unread counters error : " + res.left().getValue());
+			}
+		});
+	}
+
+	public void reconcile(Handler<Either<String, JsonObject>> handler) {
+		Sql.getInstance().prepared(RECONCILE_COUNTERS, new JsonArray(), new DeliveryOptions().setSendTimeout(timeout),
+				SqlResult.validUniqueResultHandler(handler));
+	}
+
+}
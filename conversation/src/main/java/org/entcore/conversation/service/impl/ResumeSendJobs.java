@@ -0,0 +1,54 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.conversation.service.impl;
+
+import io.vertx.core.Handler;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Resume the chunked sends interrupted by a stopped instance, or by a failed chunk.
+ */
+public class ResumeSendJobs implements Handler<Long> {
+
+	private static final Logger log = LoggerFactory.getLogger(ResumeSendJobs.class);
+
+	private final SqlConversationService conversationService;
+	private final long resumeDelay;
+
+	public ResumeSendJobs(SqlConversationService conversationService, long resumeDelay) {
+		this.conversationService = conversationService;
+		this.resumeDelay = resumeDelay;
+	}
+
+	@Override
+	public void handle(Long event) {
+		conversationService.resumeSendJobs(resumeDelay, res -> {
+			if (res.isRight()) {
+				if (res.right().getValue().size() > 0) {
+					log.info("Resumed send jobs : " + res.right().getValue().size());
+				}
+			} else {
+				log.error("Resume send jobs error : " + res.left().getValue());
+			}
+		});
+	}
+
+}
@@ -23,8 +23,10 @@ import static fr.wseduc.webutils.Utils.isNotEmpty;
 import static org.entcore.common.user.UserUtils.findVisibles;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import io.vertx.core.DeploymentOptions;
@@ -44,6 +46,8 @@ import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 
 import fr.wseduc.webutils.Either;
 import fr.wseduc.webutils.Server;
@@ -52,6 +56,19 @@ import fr.wseduc.webutils.Either.Right;
 
 public class SqlConversationService implements ConversationService{
 	public static final int DEFAULT_SENDTIMEOUT = 15 * 60 * 1000;
+	public static final int DEFAULT_SEND_CHUNK_SIZE = 10000;
+	public static final int DEFAULT_SEND_MAX_ATTEMPTS = 5;
+	public static final long DEFAULT_SEND_RETRY_DELAY = 10000L;
+	public static final long DEFAULT_SEND_JOBS_RESUME_DELAY = 2L * DEFAULT_SENDTIMEOUT;
+	public static final String INBOX_COUNTER = "INBOX";
+	/**
+	 * Messages counted in the unread counters : the same as the unread count of the inbox and of the user folders.
+	 */
+	public static final String UNREAD_COUNTER_CONDITION =
+			"um.unread = true AND um.trashed = false AND m.state = 'SENT' AND " +
+			"(m.from <> um.user_id OR m.to @> to_jsonb(um.user_id) OR m.cc @> to_jsonb(um.user_id))";
+	private static final Logger log = LoggerFactory.getLogger(SqlConversationService.class);
+	private final Vertx vertx;
 	private final EventBus eb;
 	private final Sql sql;
 
@@ -62,10 +79,19 @@ public class SqlConversationService implements ConversationService{
 	private final String attachmentTable;
 	private final String userMessageTable;
 	private final String userMessageAttachmentTable;
+	private final String unreadCounterTable;
+	private final String sendJobTable;
 	private final boolean optimizedThreadList;
+	// the counters are maintained whatever the flag, which only switches the unread counts to them
+	private boolean unreadCounters;
 	private int sendTimeout = DEFAULT_SENDTIMEOUT;
+	private int sendChunkSize = DEFAULT_SEND_CHUNK_SIZE;
+	private final int sendMaxAttempts;
+	private final long sendRetryDelay;
+	private final TotalCountCache totalCountCache;
 
 	public SqlConversationService(Vertx vertx, String schema) {
+		this.vertx = vertx;
 		this.eb = Server.getEventBus(vertx);
 		this.sql = Sql.getInstance();
 		this.maxFolderDepth = Config.getConf().getInteger("max-folder-depth", Conversation.DEFAULT_FOLDER_DEPTH);
@@ -74,7 +100,15 @@ public class SqlConversationService implements ConversationService{
 		attachmentTable = schema + ".attachments";
 		userMessageTable = schema + ".usermessages";
 		userMessageAttachmentTable = schema + ".usermessagesattachments";
+		unreadCounterTable = schema + ".unread_counters";
+		sendJobTable = schema + ".send_jobs";
 		optimizedThreadList = vertx.getOrCreateContext().config().getBoolean("optimized-thread-list", false);
+		sendMaxAttempts = vertx.getOrCreateContext().config().getInteger("send-max-attempts", DEFAULT_SEND_MAX_ATTEMPTS);
+		sendRetryDelay = vertx.getOrCreateContext().config().getLong("send-retry-delay", DEFAULT_SEND_RETRY_DELAY);
+		unreadCounters = vertx.getOrCreateContext().config().getBoolean("unread-counters", false);
+		totalCountCache = new TotalCountCache(
+				vertx.getOrCreateContext().config().getLong("count-cache-ttl", TotalCountCache.DEFAULT_TTL),
+				vertx.getOrCreateContext().config().getInteger("count-cache-max-users", TotalCountCache.DEFAULT_MAX_USERS));
 	}
 
 	public SqlConversationService setSendTimeout(int sendTimeout) {
@@ -82,8 +116,19 @@ public class SqlConversationService implements ConversationService{
 		return this;
 	}
 
+	public SqlConversationService setSendChunkSize(int sendChunkSize) {
+		this.sendChunkSize = Math.max(1, sendChunkSize);
+		return this;
+	}
+
+	public SqlConversationService setUnreadCounters(boolean unreadCounters) {
+		this.unreadCounters = unreadCounters;
+		return this;
+	}
+
 	@Override
 	public void saveDraft(String parentMessageId, String threadId, JsonObject message, UserInfos user, Handler<Either<String, JsonObject>> result) {
+		invalidateTotals(user);
 		save(parentMessageId, threadId, message, user, result);
 	}
 
@@ -115,7 +160,8 @@ public class SqlConversationService implements ConversationService{
 		// 2 - Link message to the user
 		builder.insert(userMessageTable, new JsonObject()
 			.put("user_id", user.getUserId())
-			.put("message_id", message.getString("id")));
+			.put("message_id", message.getString("id"))
+			.put("date", message.getLong("date")));
 
 		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
 	}
@@ -152,7 +198,14 @@ public class SqlConversationService implements ConversationService{
 			"WHERE id = ? AND state = ?";
 		values.add(messageId).add("DRAFT");
 
-		sql.prepared(query, values, SqlResult.validUniqueResultHandler(result));
+		// the date of the list order is copied on the user message
+		SqlStatementsBuilder builder = new SqlStatementsBuilder();
+		builder.prepared(query, values);
+		builder.prepared(
+			"UPDATE " + userMessageTable + " um SET date = m.date FROM " + messageTable + " m " +
+			"WHERE um.message_id = m.id AND um.user_id = ? AND m.id = ? AND m.state = ?",
+			new fr.wseduc.webutils.collections.JsonArray().add(user.getUserId()).add(messageId).add("DRAFT"));
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
 	}
 
 	private void getSenderAttachments(String senderId, String messageId, Handler<Either<String, JsonObject>> handler){
@@ -172,6 +225,7 @@ public class SqlConversationService implements ConversationService{
 
 	@Override
 	public void send(final String parentMessageId, final String draftId, final JsonObject message, final UserInfos user, final Handler<Either<String, JsonObject>> result) {
+		invalidateTotals(user);
 		final String getThreadId = "SELECT thread_id FROM conversation.messages WHERE id = ? ";
 		sql.prepared(getThreadId, new JsonArray().add(draftId), SqlResult.validUniqueResultHandler(either -> {
 			if (either.isRight()) {
@@ -209,6 +263,8 @@ public class SqlConversationService implements ConversationService{
 						" WHERE user_id = ? AND message_id = ? ";
 				builder.prepared(updateMessage, new fr.wseduc.webutils.collections.JsonArray().add("SENT").add(draftId));
 				builder.prepared(updateUnread, new fr.wseduc.webutils.collections.JsonArray().add(user.getUserId()).add(draftId));
+				// the draft was not counted, the sender copy is counted if the sender is also a recipient
+				addUnreadCounters(builder, user.getUserId(), "um.message_id = ?", new JsonArray().add(draftId));
 
 				final String insertThread =
 						"INSERT INTO conversation.threads as t (" +
@@ -220,40 +276,181 @@ public class SqlConversationService implements ConversationService{
 						"WHERE t.id = EXCLUDED.id ";
 				builder.prepared(insertThread, new fr.wseduc.webutils.collections.JsonArray().add(draftId));
 
-				final String insertUserThread =
-						"INSERT INTO conversation.userthreads as ut (user_id,thread_id,nb_unread) VALUES (?,?,?) " +
-						"ON CONFLICT (user_id,thread_id) DO UPDATE SET nb_unread = ut.nb_unread + 1 " +
-						"WHERE ut.user_id = EXCLUDED.user_id AND ut.thread_id = EXCLUDED.thread_id";
 				if (threadId != null) {
-					builder.prepared(insertUserThread, new fr.wseduc.webutils.collections.JsonArray().add(user.getUserId()).add(threadId).add(0));
+					builder.prepared(
+							"INSERT INTO conversation.userthreads as ut (user_id,thread_id,nb_unread) VALUES (?,?,?) " +
+							"ON CONFLICT (user_id,thread_id) DO UPDATE SET nb_unread = ut.nb_unread + 1 " +
+							"WHERE ut.user_id = EXCLUDED.user_id AND ut.thread_id = EXCLUDED.thread_id",
+							new fr.wseduc.webutils.collections.JsonArray().add(user.getUserId()).add(threadId).add(0));
 				}
 
+				final Set<String> uniqueRecipients = new LinkedHashSet<>();
 				for(Object toObj : ids){
-					if(toObj.equals(user.getUserId()))
-						continue;
+					if(!toObj.equals(user.getUserId()))
+						uniqueRecipients.add(toObj.toString());
+				}
+				final List<String> recipients = new ArrayList<>(uniqueRecipients);
+				final int firstChunk = Math.min(recipients.size(), sendChunkSize);
+				addRecipients(builder, draftId, threadId, totalQuota, attachmentIds, recipients.subList(0, firstChunk));
+
+				if (firstChunk < recipients.size()) {
+					// the message is sent to the first recipients, the next ones are saved in a send job and added in background
+					builder.prepared(
+							"INSERT INTO " + sendJobTable + " (message_id, thread_id, total_quota, attachment_ids, recipients, sent) " +
+							"VALUES (?, ?, ?, CAST(? AS JSONB), CAST(? AS JSONB), ?)",
+							new fr.wseduc.webutils.collections.JsonArray().add(draftId).add(threadId).add(totalQuota)
+									.add((attachmentIds != null ? attachmentIds : new JsonArray()).encode())
+									.add(new fr.wseduc.webutils.collections.JsonArray(recipients).encode()).add(firstChunk));
+					sql.transaction(builder.build(), new DeliveryOptions().setSendTimeout(sendTimeout),
+							SqlResult.validUniqueResultHandler(0, sent -> {
+								result.handle(sent);
+								if (sent.isRight()) {
+									addRemainingRecipients(draftId, threadId, totalQuota, attachmentIds, recipients, firstChunk);
+								}
+							}));
+					return;
+				}
+				sql.transaction(builder.build(),new DeliveryOptions().setSendTimeout(sendTimeout), SqlResult.validUniqueResultHandler(0, result));
+			}
+		});
+	}
 
-					builder.insert(userMessageTable, new JsonObject()
-						.put("user_id", toObj.toString())
-						.put("message_id", draftId)
-						.put("total_quota", totalQuota)
-					);
+	/**
+	 * Link the message to the recipients with one statement per table, whatever the number of recipients.
+	 */
+	private void addRecipients(SqlStatementsBuilder builder, String messageId, String threadId, long totalQuota,
+			JsonArray attachmentIds, List<String> recipients) {
+		if (recipients.isEmpty()) {
+			return;
+		}
+		final String recipientIds = new fr.wseduc.webutils.collections.JsonArray(recipients).encode();
+		builder.prepared(
+				"INSERT INTO " + userMessageTable + " (user_id, message_id, total_quota, date) " +
+				"SELECT r.user_id, m.id, ?, m.date FROM " + messageTable + " m, " +
+				"json_array_elements_text(CAST(? AS JSON)) AS r(user_id) WHERE m.id = ?",
+				new fr.wseduc.webutils.collections.JsonArray().add(totalQuota).add(recipientIds).add(messageId));
+		// ordered to lock the counters in the same order in concurrent sends
+		builder.prepared(
+				"INSERT INTO " + unreadCounterTable + " AS c (user_id, folder, nb_unread) " +
+				"SELECT r.user_id, ?, 1 FROM json_array_elements_text(CAST(? AS JSON)) AS r(user_id) ORDER BY r.user_id " +
+				"ON CONFLICT (user_id, folder) DO UPDATE SET nb_unread = c.nb_unread + 1",
+				new fr.wseduc.webutils.collections.JsonArray().add(INBOX_COUNTER).add(recipientIds));
+		if (threadId != null) {
+			builder.prepared(
+					"INSERT INTO conversation.userthreads as ut (user_id,thread_id,nb_unread) " +
+					"SELECT r.user_id, ?, 1 FROM json_array_elements_text(CAST(? AS JSON)) AS r(user_id) " +
+					"ON CONFLICT (user_id,thread_id) DO UPDATE SET nb_unread = ut.nb_unread + 1",
+					new fr.wseduc.webutils.collections.JsonArray().add(threadId).add(recipientIds));
+		}
+		if (attachmentIds != null && attachmentIds.size() > 0) {
+			builder.prepared(
+					"INSERT INTO " + userMessageAttachmentTable + " (user_id, message_id, attachment_id) " +
+					"SELECT r.user_id, ?, a.attachment_id " +
+					"FROM json_array_elements_text(CAST(? AS JSON)) AS r(user_id) " +
+					"CROSS JOIN json_array_elements_text(CAST(? AS JSON)) AS a(attachment_id)",
+					new fr.wseduc.webutils.collections.JsonArray().add(messageId).add(recipientIds).add(attachmentIds.encode()));
+		}
+	}
 
-					if (threadId != null) {
-						builder.prepared(insertUserThread, new fr.wseduc.webutils.collections.JsonArray().add(toObj.toString()).add(threadId).add(1));
-					}
+	/**
+	 * Add the next chunk of recipients and save the progress of the send job in the same transaction.
+	 * The job is deleted with the last chunk.
+	 */
+	private void addRemainingRecipients(String messageId, String threadId, long totalQuota, JsonArray attachmentIds,
+			List<String> recipients, int from) {
+		final int to = Math.min(recipients.size(), from + sendChunkSize);
+		final SqlStatementsBuilder builder = new SqlStatementsBuilder();
+		addRecipients(builder, messageId, threadId, totalQuota, attachmentIds, recipients.subList(from, to));
+		if (to < recipients.size()) {
+			builder.prepared("UPDATE " + sendJobTable + " SET sent = ?, attempts = 0, error = NULL, modified = NOW() " +
+					"WHERE message_id = ?", new fr.wseduc.webutils.collections.JsonArray().add(to).add(messageId));
+		} else {
+			builder.prepared("DELETE FROM " + sendJobTable + " WHERE message_id = ?",
+					new fr.wseduc.webutils.collections.JsonArray().add(messageId));
+		}
+		sql.transaction(builder.build(), new DeliveryOptions().setSendTimeout(sendTimeout), SqlResult.validResultsHandler(event -> {
+			if (event.isLeft()) {
+				sendChunkFailed(messageId, from, to, recipients.size(), event.left().getValue());
+				return;
+			}
+			log.info("Message " + messageId + " sent to " + to + "/" + recipients.size() + " recipients");
+			if (to < recipients.size()) {
+				addRemainingRecipients(messageId, threadId, totalQuota, attachmentIds, recipients, to);
+			}
+		}));
+	}
 
-					for(Object attachmentId : attachmentIds){
-						builder.insert(userMessageAttachmentTable, new JsonObject()
-							.put("user_id", toObj.toString())
-							.put("message_id", draftId)
-							.put("attachment_id", attachmentId.toString())
-						);
-					}
-				}
+	/**
+	 * Save the error in the send job, and resume the job from its saved progress after a growing delay.
+	 * After send-max-attempts failures, the job is left with its error for the resume of the failed send jobs.
+	 */
+	private void sendChunkFailed(String messageId, int from, int to, int total, String error) {
+		final String query =
+				"UPDATE " + sendJobTable + " SET attempts = attempts + 1, error = ?, modified = NOW() " +
+				"WHERE message_id = ? RETURNING attempts";
+		sql.prepared(query, new fr.wseduc.webutils.collections.JsonArray().add(error).add(messageId),
+				SqlResult.validUniqueResultHandler(res -> {
+			final Integer attempts = res.isRight() ? res.right().getValue().getInteger("attempts") : null;
+			if (attempts == null) {
+				log.error("Error sending message " + messageId + " to recipients " + from + " to " + to + " of " +
+						total + " : " + error + ". The send job can't be updated : " +
+						(res.isLeft() ? res.left().getValue() : "not found"));
+			} else if (attempts < sendMaxAttempts) {
+				log.warn("Error sending message " + messageId + " to recipients " + from + " to " + to + " of " +
+						total + ", attempt " + attempts + "/" + sendMaxAttempts + " : " + error);
+				vertx.setTimer(sendRetryDelay * attempts, t -> resumeSendJob(messageId));
+			} else {
+				log.error("Error sending message " + messageId + " to recipients " + from + " to " + to + " of " +
+						total + " after " + attempts + " attempts : " + error + ". The remaining recipients are kept in " +
+						sendJobTable + ".");
+			}
+		}));
+	}
 
-				sql.transaction(builder.build(),new DeliveryOptions().setSendTimeout(sendTimeout), SqlResult.validUniqueResultHandler(0, result));
+	private void resumeSendJob(String messageId) {
+		sql.prepared("SELECT * FROM " + sendJobTable + " WHERE message_id = ?",
+				new fr.wseduc.webutils.collections.JsonArray().add(messageId),
+				SqlResult.validUniqueResultHandler(res -> {
+			if (res.isLeft()) {
+				log.error("Error loading send job of message " + messageId + " : " + res.left().getValue());
+			} else if (res.right().getValue().containsKey("message_id")) {
+				resumeSendJob(res.right().getValue());
 			}
-		});
+		}, "attachment_ids", "recipients"));
+	}
+
+	private void resumeSendJob(JsonObject job) {
+		final List<String> recipients = new ArrayList<>();
+		for (Object o : job.getJsonArray("recipients")) {
+			recipients.add(o.toString());
+		}
+		addRemainingRecipients(job.getString("message_id"), job.getString("thread_id"), job.getLong("total_quota"),
+				job.getJsonArray("attachment_ids"), recipients, job.getInteger("sent"));
+	}
+
+	/**
+	 * Resume the send jobs left by a stopped instance, or failed less than send-max-attempts times, which weren't
+	 * updated since resumeDelay ms. The resumed jobs are locked and touched first, so an other instance skips them.
+	 */
+	public void resumeSendJobs(long resumeDelay, Handler<Either<String, JsonArray>> handler) {
+		final String query =
+				"UPDATE " + sendJobTable + " SET modified = NOW() WHERE message_id IN (" +
+					"SELECT message_id FROM " + sendJobTable + " " +
+					"WHERE attempts < ? AND modified < NOW() - (? * INTERVAL '1 millisecond') " +
+					"ORDER BY modified LIMIT 100 FOR UPDATE SKIP LOCKED" +
+				") RETURNING *";
+		sql.prepared(query, new fr.wseduc.webutils.collections.JsonArray().add(sendMaxAttempts).add(resumeDelay),
+				SqlResult.validResultHandler(res -> {
+			if (res.isRight()) {
+				for (Object o : res.right().getValue()) {
+					final JsonObject job = (JsonObject) o;
+					log.info("Resume send job of message " + job.getString("message_id") + " from recipient " +
+							job.getInteger("sent") + " after " + job.getInteger("attempts") + " failed attempts");
+					resumeSendJob(job);
+				}
+			}
+			handler.handle(res);
+		}, "attachment_ids", "recipients"));
 	}
 
 	@Override
@@ -291,6 +488,48 @@ public class SqlConversationService implements ConversationService{
 		sql.prepared(query, values, SqlResult.validResultHandler(results, "attachments", "to", "toName", "cc", "ccName", "cci", "cciName", "displayNames"));
 	}
 
+	@Override
+	public void list(String folder, String restrain, Boolean unread, UserInfos user, Long beforeDate, String beforeId,
+			final String searchText, Handler<Either<String, JsonArray>> results)
+	{
+		if (validationError(user, results, folder))
+			return;
+		if (beforeId != null && beforeDate == null) {
+			results.handle(new Either.Left<String, JsonArray>("conversation.invalid.parameter"));
+			return;
+		}
+
+		// one row per user message : the response and attachment flags are looked up for the returned page only
+		JsonArray values = new fr.wseduc.webutils.collections.JsonArray().add("SENT");
+		String messageConditionUnread = addMessageConditionUnread(folder, values, unread, user);
+		String messagesFields = "m.id, m.subject, m.from, m.state, m.\"fromName\", m.to, m.\"toName\", m.cc, m.\"ccName\", m.cci, m.\"cciName\", m.\"displayNames\", m.date ";
+
+		values.add(user.getUserId());
+		String additionalWhere = addCompleteFolderCondition(values, restrain, unread, folder, user);
+
+		if(searchText != null){
+			additionalWhere += " AND m.text_searchable  @@ to_tsquery(m.language::regconfig, unaccent(?)) ";
+			values.add(StringUtils.join(checkAndComposeWordFromSearchText(searchText), " & "));
+		}
+		// the keyset is on the user message, ordered by the index on (user_id, folder_id, date, message_id)
+		if (beforeDate != null && beforeId != null) {
+			additionalWhere += " AND (um.date, um.message_id) < (?, ?) ";
+			values.add(beforeDate).add(beforeId);
+		} else if (beforeDate != null) {
+			additionalWhere += " AND um.date < ? ";
+			values.add(beforeDate);
+		}
+		String query = "SELECT "+messagesFields+", um.unread as unread, " +
+				"EXISTS (SELECT 1 FROM " + messageTable + " r WHERE r.parent_id = um.message_id AND r.from = um.user_id AND r.state = ?) AS response, " +
+				"EXISTS (SELECT 1 FROM " + userMessageAttachmentTable + " uma WHERE uma.user_id = um.user_id AND uma.message_id = um.message_id) AS \"hasAttachment\" " +
+				"FROM " + userMessageTable + " um JOIN " +
+				messageTable + " m ON (um.message_id = m.id" + messageConditionUnread + ") " +
+				"WHERE um.user_id = ? " + additionalWhere + " " +
+				"ORDER BY um.date DESC, um.message_id DESC LIMIT " + LIST_LIMIT;
+
+		sql.prepared(query, values, SqlResult.validResultHandler(results, "attachments", "to", "toName", "cc", "ccName", "cci", "cciName", "displayNames"));
+	}
+
 	//TODO : add to utils (similar function in SearchEngineController)
 	private List<String> checkAndComposeWordFromSearchText(final String searchText) {
 		List<String> searchWords = new ArrayList<>();
@@ -404,6 +643,7 @@ public class SqlConversationService implements ConversationService{
 
 	@Override
 	public void trash(List<String> messagesId, UserInfos user, Handler<Either<String, JsonObject>> result) {
+		invalidateTotals(user);
 		if (validationParamsError(user, result))
 			return;
 
@@ -435,13 +675,16 @@ public class SqlConversationService implements ConversationService{
 		final JsonArray values2 = new JsonArray().add(user.getUserId()).add(user.getUserId());
 
 		SqlStatementsBuilder builder = new SqlStatementsBuilder();
+		final int index = removeUnreadCounters(builder, user.getUserId(),
+				"um.message_id IN " + Sql.listPrepared(messagesId.toArray()), new JsonArray(messagesId));
 		builder.prepared(query.toString(), values);
 		builder.prepared(deleteUserThreads, values2);
-		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(index, result));
 	}
 
 	@Override
 	public void trashThread(List<String> threadIds, UserInfos user, Handler<Either<String, JsonObject>> result){
+		invalidateTotals(user);
 		JsonArray values = new fr.wseduc.webutils.collections.JsonArray();
 		StringBuilder query = new StringBuilder(
 				"UPDATE " + userMessageTable + " AS um  " +
@@ -459,15 +702,18 @@ public class SqlConversationService implements ConversationService{
 		final JsonArray values2 = new JsonArray(threadIds).add(user.getUserId());
 
 		SqlStatementsBuilder builder = new SqlStatementsBuilder();
+		final int index = removeUnreadCounters(builder, user.getUserId(),
+				"m.thread_id IN " + Sql.listPrepared(threadIds.toArray()), new JsonArray(threadIds));
 		builder.prepared(query.toString(), values);
 		builder.prepared(deleteUserThreads, values2);
-		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(index, result));
 
 	}
 
 
 	@Override
 	public void restore(List<String> messagesId, UserInfos user, Handler<Either<String, JsonObject>> result) {
+		invalidateTotals(user);
 		if(validationParamsError(user, result)) return;
 
 		JsonArray values = new fr.wseduc.webutils.collections.JsonArray();
@@ -490,14 +736,18 @@ public class SqlConversationService implements ConversationService{
 				"GROUP BY user_id, m.thread_id) ON CONFLICT (user_id,thread_id) DO NOTHING";
 		JsonArray values2 = new JsonArray(messagesId).add(user.getUserId());
 
+		final String rows = "um.message_id IN " + Sql.listPrepared(messagesId.toArray());
 		SqlStatementsBuilder builder = new SqlStatementsBuilder();
+		final int index = removeUnreadCounters(builder, user.getUserId(), rows, new JsonArray(messagesId));
 		builder.prepared(query.toString(), values);
 		builder.prepared(insertUserThread, values2);
-		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
+		addUnreadCounters(builder, user.getUserId(), rows, new JsonArray(messagesId));
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(index, result));
 	}
 
 	@Override
 	public void delete(List<String> messagesId, Boolean deleteAll, UserInfos user, Handler<Either<String, JsonArray>> result) {
+		invalidateTotals(user);
 		SqlStatementsBuilder builder = new SqlStatementsBuilder();
 
 		JsonArray values2 = new fr.wseduc.webutils.collections.JsonArray();
@@ -570,10 +820,12 @@ public class SqlConversationService implements ConversationService{
 			.add(messageId);
 
 		builder.prepared(decrUnreadThread, tValues);
+		// once read, the message is no longer counted
+		final int index = 2 + removeUnreadCounters(builder, user.getUserId(), "um.message_id = ?", new JsonArray().add(messageId));
 		builder.prepared(updateQuery, values);
 		builder.prepared(selectQuery, values);
 
-		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(2, result, "attachments", "to", "toName", "cc", "ccName", "displayNames", "cci", "cciName"));
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(index, result, "attachments", "to", "toName", "cc", "ccName", "displayNames", "cci", "cciName"));
 	}
 
 	@Override
@@ -581,6 +833,24 @@ public class SqlConversationService implements ConversationService{
 		if (validationParamsError(user, result, folder))
 			return;
 
+		if (unreadCounters && unread != null && unread && (restrain != null || INBOX_COUNTER.equalsIgnoreCase(folder))) {
+			final String counter = restrain != null ? folder : INBOX_COUNTER;
+			sql.prepared("SELECT COALESCE((SELECT nb_unread FROM " + unreadCounterTable + " WHERE user_id = ? AND folder = ?), 0) as count",
+					new JsonArray().add(user.getUserId()).add(counter), SqlResult.validUniqueResultHandler(result));
+			return;
+		}
+
+		// the totals of the keyset pages are served from the cache, the unread counts aren't cached
+		final boolean cachedTotal = totalCountCache.isEnabled() && !Boolean.TRUE.equals(unread);
+		final String folderKey = TotalCountCache.folderKey(folder, restrain);
+		if (cachedTotal) {
+			final JsonObject total = totalCountCache.get(user.getUserId(), folderKey);
+			if (total != null) {
+				result.handle(new Either.Right<String, JsonObject>(total));
+				return;
+			}
+		}
+
 		JsonArray values = new fr.wseduc.webutils.collections.JsonArray();
 
 		String messageConditionUnread = addMessageConditionUnread(folder, values, unread, user);
@@ -599,7 +869,21 @@ public class SqlConversationService implements ConversationService{
 			values.add(new fr.wseduc.webutils.collections.JsonArray().add(user.getUserId()).toString());
 		}
 
-		sql.prepared(query, values, SqlResult.validUniqueResultHandler(result));
+		sql.prepared(query, values, SqlResult.validUniqueResultHandler(res -> {
+			if (cachedTotal && res.isRight()) {
+				totalCountCache.put(user.getUserId(), folderKey, res.right().getValue());
+			}
+			result.handle(res);
+		}));
+	}
+
+	/**
+	 * Drop the cached totals of the user, before a change of its messages or folders.
+	 */
+	private void invalidateTotals(UserInfos user) {
+		if (user != null) {
+			totalCountCache.invalidate(user.getUserId());
+		}
 	}
 
 	@Override
@@ -708,7 +992,10 @@ public class SqlConversationService implements ConversationService{
 					values.add(id);
 				}
 
+				final String rows = "um.message_id IN " + Sql.listPrepared(messagesIds.toArray());
+				final int index = removeUnreadCounters(builder, user.getUserId(), rows, new JsonArray(messagesIds));
 				builder.prepared(query, values);
+				addUnreadCounters(builder, user.getUserId(), rows, new JsonArray(messagesIds));
 
 				final List<String> threadIds = new ArrayList<>();
 				for (Object row: either.right().getValue()) {
@@ -717,7 +1004,7 @@ public class SqlConversationService implements ConversationService{
 				}
 				recalculateNbUnreadInThreads(threadIds, user, builder);
 
-				sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
+				sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(index, result));
 			} else {
 				result.handle(new Either.Left<>(either.left().getValue()));
 			}
@@ -738,9 +1025,12 @@ public class SqlConversationService implements ConversationService{
 		query.append(" AND um.user_id = ? AND um.message_id = m.id ");
 		values.add(user.getUserId());
 
+		final String rows = "m.thread_id IN " + Sql.listPrepared(threadIds.toArray());
+		final int index = removeUnreadCounters(builder, user.getUserId(), rows, new JsonArray(threadIds));
 		builder.prepared(query.toString(), values);
+		addUnreadCounters(builder, user.getUserId(), rows, new JsonArray(threadIds));
 		recalculateNbUnreadInThreads(threadIds, user, builder);
-		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(0, result));
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(index, result));
 	}
 
 	private void recalculateNbUnreadInThreads(List<String> threadIds, UserInfos user, SqlStatementsBuilder builder) {
@@ -758,6 +1048,41 @@ public class SqlConversationService implements ConversationService{
 
 		builder.prepared(query, new JsonArray(threadIds).add(user.getUserId()));
 	}
+
+	/**
+	 * Remove the unread messages of the rows from the counters of the user. Added before the statements changing
+	 * these rows, and followed by addUnreadCounters on the same rows after them.
+	 * @return the number of statements added
+	 */
+	private int removeUnreadCounters(SqlStatementsBuilder builder, String userId, String rows, JsonArray rowsValues) {
+		final String query =
+				"UPDATE " + unreadCounterTable + " AS c " +
+				"SET nb_unread = GREATEST(c.nb_unread - d.nb, 0) " +
+				"FROM (" +
+					"SELECT COALESCE(um.folder_id, '" + INBOX_COUNTER + "') AS folder, count(*) AS nb " +
+					"FROM " + userMessageTable + " um " +
+					"JOIN " + messageTable + " m on um.message_id = m.id " +
+					"WHERE um.user_id = ? AND " + rows + " AND " + UNREAD_COUNTER_CONDITION + " " +
+					"GROUP BY 1" +
+				") AS d " +
+				"WHERE c.user_id = ? AND c.folder = d.folder ";
+		builder.prepared(query, new JsonArray().add(userId).addAll(rowsValues).add(userId));
+		return 1;
+	}
+
+	private int addUnreadCounters(SqlStatementsBuilder builder, String userId, String rows, JsonArray rowsValues) {
+		final String query =
+				"INSERT INTO " + unreadCounterTable + " AS c (user_id, folder, nb_unread) " +
+				"SELECT um.user_id, COALESCE(um.folder_id, '" + INBOX_COUNTER + "'), count(*) " +
+				"FROM " + userMessageTable + " um " +
+				"JOIN " + messageTable + " m on um.message_id = m.id " +
+				"WHERE um.user_id = ? AND " + rows + " AND " + UNREAD_COUNTER_CONDITION + " " +
+				"GROUP BY 1, 2 " +
+				"ON CONFLICT (user_id, folder) DO UPDATE SET nb_unread = c.nb_unread + EXCLUDED.nb_unread";
+		builder.prepared(query, new JsonArray().add(userId).addAll(rowsValues));
+		return 1;
+	}
+
 	private boolean isDuplicateError(String msg){
 		return msg.contains("violates unique constraint") || msg.contains("rompt la contrainte unique");
 	}
@@ -920,6 +1245,7 @@ public class SqlConversationService implements ConversationService{
 
 	@Override
 	public void moveToFolder(List<String> messageIds, String folderId, UserInfos user, Handler<Either<String, JsonObject>> result) {
+		invalidateTotals(user);
 		if(validationParamsError(user, result, folderId))
 			return;
 
@@ -936,11 +1262,12 @@ public class SqlConversationService implements ConversationService{
 
 		query += generateInVars(messageIds, values);
 
-		sql.prepared(query, values, SqlResult.validUniqueResultHandler(result));
+		updateWithUnreadCounters(query, values, messageIds, user, result);
 	}
 
 	@Override
 	public void backToSystemFolder(List<String> messageIds, UserInfos user, Handler<Either<String, JsonObject>> result) {
+		invalidateTotals(user);
 		if(validationParamsError(user, result))
 			return;
 
@@ -954,11 +1281,22 @@ public class SqlConversationService implements ConversationService{
 		values.add(user.getUserId());
 
 		query += generateInVars(messageIds, values);
-		sql.prepared(query, values, SqlResult.validUniqueResultHandler(result));
+		updateWithUnreadCounters(query, values, messageIds, user, result);
+	}
+
+	private void updateWithUnreadCounters(String query, JsonArray values, List<String> messageIds, UserInfos user,
+			Handler<Either<String, JsonObject>> result) {
+		final String rows = "um.message_id IN " + Sql.listPrepared(messageIds.toArray());
+		final SqlStatementsBuilder builder = new SqlStatementsBuilder();
+		final int index = removeUnreadCounters(builder, user.getUserId(), rows, new JsonArray(messageIds));
+		builder.prepared(query, values);
+		addUnreadCounters(builder, user.getUserId(), rows, new JsonArray(messageIds));
+		sql.transaction(builder.build(), SqlResult.validUniqueResultHandler(index, result));
 	}
 
 	@Override
 	public void trashFolder(String folderId, UserInfos user, Handler<Either<String, JsonObject>> result) {
+		invalidateTotals(user);
 		String query =
 			"UPDATE " + folderTable + " AS f " +
 			"SET trashed = ? " +
@@ -975,6 +1313,7 @@ public class SqlConversationService implements ConversationService{
 
 	@Override
 	public void restoreFolder(String folderId, UserInfos user, Handler<Either<String, JsonObject>> result) {
+		invalidateTotals(user);
 		String query =
 			"UPDATE " + folderTable + " AS f " +
 			"SET trashed = ? " +
@@ -991,6 +1330,7 @@ public class SqlConversationService implements ConversationService{
 
 	@Override
 	public void deleteFolder(String folderId, Boolean deleteAll, UserInfos user, Handler<Either<String, JsonArray>> result) {
+		invalidateTotals(user);
 		if (!deleteAll) {
 			if(validationError(user, result, folderId))
 				return;
@@ -1046,6 +1386,13 @@ public class SqlConversationService implements ConversationService{
 
 		builder.prepared(deleteFolder, values);
 
+		/* The messages of the deleted folders are deleted with them */
+
+		builder.prepared(
+				"DELETE FROM " + unreadCounterTable + " c " +
+				"WHERE c.user_id = ? AND c.folder <> ? AND NOT EXISTS (SELECT 1 FROM " + folderTable + " f WHERE f.id = c.folder)",
+				new JsonArray().add(user.getUserId()).add(INBOX_COUNTER));
+
 		/* Perform the transaction */
 
 		sql.transaction(builder.build(), SqlResult.validResultsHandler(result));
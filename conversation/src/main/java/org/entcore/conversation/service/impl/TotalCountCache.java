@@ -0,0 +1,94 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.conversation.service.impl;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Short-lived LRU of the message totals of the folders, for the keyset pages which don't count the messages.
+ * The totals of a user are dropped on the changes of the user, the ttl bounds the delay for the messages
+ * received or changed on an other instance.
+ */
+final class TotalCountCache {
+
+	static final long DEFAULT_TTL = 30000L;
+	static final int DEFAULT_MAX_USERS = 10000;
+
+	private final long ttl;
+	// totals by user then by folder, the least recently used users are removed first
+	private final Map<String, Map<String, Total>> totals;
+
+	private static final class Total {
+		private final JsonObject count;
+		private final long expire;
+
+		private Total(JsonObject count, long expire) {
+			this.count = count;
+			this.expire = expire;
+		}
+	}
+
+	TotalCountCache(long ttl, int maxUsers) {
+		this.ttl = ttl;
+		this.totals = new LinkedHashMap<String, Map<String, Total>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Map<String, Total>> eldest) {
+				return size() > maxUsers;
+			}
+		};
+	}
+
+	boolean isEnabled() {
+		return ttl > 0;
+	}
+
+	static String folderKey(String folder, String restrain) {
+		return folder + '|' + restrain;
+	}
+
+	synchronized JsonObject get(String userId, String folderKey) {
+		final Map<String, Total> userTotals = totals.get(userId);
+		final Total total = (userTotals != null) ? userTotals.get(folderKey) : null;
+		if (total == null) {
+			return null;
+		}
+		if (total.expire < System.currentTimeMillis()) {
+			userTotals.remove(folderKey);
+			return null;
+		}
+		return total.count.copy();
+	}
+
+	synchronized void put(String userId, String folderKey, JsonObject count) {
+		totals.computeIfAbsent(userId, k -> new HashMap<>())
+				.put(folderKey, new Total(count.copy(), System.currentTimeMillis() + ttl));
+	}
+
+	synchronized void invalidate(String userId) {
+		if (userId != null) {
+			totals.remove(userId);
+		}
+	}
+
+}
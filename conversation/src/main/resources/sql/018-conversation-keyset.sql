@@ -0,0 +1,7 @@
+ALTER TABLE conversation.usermessages ADD COLUMN "date" BIGINT;
+
+UPDATE conversation.usermessages um SET date = m.date
+FROM conversation.messages m
+WHERE um.message_id = m.id;
+
+CREATE INDEX idx_usermessages_user_folder_date ON conversation.usermessages (user_id, folder_id, date DESC, message_id DESC);
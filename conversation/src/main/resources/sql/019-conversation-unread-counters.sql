@@ -0,0 +1,14 @@
+CREATE TABLE conversation.unread_counters (
+    "user_id" VARCHAR(36) NOT NULL,
+    "folder" VARCHAR(36) NOT NULL,
+    "nb_unread" INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (user_id, folder)
+);
+
+INSERT INTO conversation.unread_counters (user_id, folder, nb_unread)
+SELECT um.user_id, COALESCE(um.folder_id, 'INBOX'), count(*)
+FROM conversation.usermessages um
+JOIN conversation.messages m on um.message_id = m.id
+WHERE um.unread = true AND um.trashed = false AND m.state = 'SENT' AND
+(m.from <> um.user_id OR m.to @> to_jsonb(um.user_id) OR m.cc @> to_jsonb(um.user_id))
+GROUP BY 1, 2;
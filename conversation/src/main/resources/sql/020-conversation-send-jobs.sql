@@ -0,0 +1,12 @@
+CREATE TABLE conversation.send_jobs (
+    "message_id" VARCHAR(36) NOT NULL PRIMARY KEY,
+    "thread_id" VARCHAR(36),
+    "total_quota" BIGINT NOT NULL DEFAULT 0,
+    "attachment_ids" JSONB NOT NULL,
+    "recipients" JSONB NOT NULL,
+    "sent" INTEGER NOT NULL DEFAULT 0,
+    "attempts" INTEGER NOT NULL DEFAULT 0,
+    "error" TEXT,
+    "modified" TIMESTAMP NOT NULL DEFAULT NOW(),
+    FOREIGN KEY(message_id) REFERENCES conversation.messages(id) ON DELETE CASCADE
+);
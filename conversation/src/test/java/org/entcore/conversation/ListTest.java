@@ -0,0 +1,214 @@
+package org.entcore.conversation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.entcore.common.sql.Sql;
+import org.entcore.common.sql.SqlResult;
+import org.entcore.common.user.UserInfos;
+import org.entcore.common.utils.Config;
+import org.entcore.conversation.service.ConversationService;
+import org.entcore.conversation.service.impl.SqlConversationService;
+import org.entcore.test.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+/**
+ * Latency of a deep page of a large inbox with offset pagination compared to keyset pagination.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ListTest {
+    private static final Logger log = LoggerFactory.getLogger(ListTest.class);
+    private static final TestHelper test = TestHelper.helper();
+    private static final int MESSAGES = 50000;
+    private static final int[] PAGES = { 1, 100, 1000, 1999 };
+    static final String schema = "conversation";
+    @ClassRule
+    public static PostgreSQLContainer<?> pgContainer = test.database().createPostgreSQLContainer();
+    static ConversationService conversationService;
+    static final UserInfos user = test.directory().generateUser("mailbox-owner");
+
+    @BeforeClass
+    public static void setUp(TestContext context) throws Exception {
+        Config.getInstance().setConfig(new JsonObject());
+        conversationService = new SqlConversationService(test.vertx(), schema);
+        final Async async = context.async();
+        test.database().initPostgreSQL(context, pgContainer, schema).handler(init -> {
+            // two messages per date to check the order on id
+            final String messages =
+                    "INSERT INTO conversation.messages (id, subject, body, \"from\", \"to\", date, state, thread_id) " +
+                    "SELECT 'message-' || i, 'Subject ' || i, '<p>Body</p>', 'sender-' || (i % 50), ?::jsonb, " +
+                    "1600000000000 + (i / 2) * 1000, 'SENT', 'message-' || i FROM generate_series(1, " + MESSAGES + ") i";
+            final String userMessages =
+                    "INSERT INTO conversation.usermessages (user_id, message_id, unread, date) " +
+                    "SELECT ?, 'message-' || i, i % 3 = 0, 1600000000000 + (i / 2) * 1000 FROM generate_series(1, " + MESSAGES + ") i";
+            Sql.getInstance().prepared(messages, new JsonArray().add(new JsonArray().add(user.getUserId()).encode()), r1 ->
+                Sql.getInstance().prepared(userMessages, new JsonArray().add(user.getUserId()), SqlResult.validRowsResultHandler(r2 -> {
+                    context.assertTrue(r2.isRight());
+                    Sql.getInstance().raw("ANALYZE conversation.messages; ANALYZE conversation.usermessages;", r3 -> async.complete());
+                })));
+        });
+    }
+
+    private Future<JsonArray> offsetPage(int page) {
+        final Future<JsonArray> future = Future.future();
+        conversationService.list("INBOX", null, null, user, page, null, res -> {
+            if (res.isRight()) {
+                future.complete(res.right().getValue());
+            } else {
+                future.fail(res.left().getValue());
+            }
+        });
+        return future;
+    }
+
+    private Future<JsonArray> keysetPage(Long beforeDate, String beforeId) {
+        final Future<JsonArray> future = Future.future();
+        conversationService.list("INBOX", null, null, user, beforeDate, beforeId, null, res -> {
+            if (res.isRight()) {
+                future.complete(res.right().getValue());
+            } else {
+                future.fail(res.left().getValue());
+            }
+        });
+        return future;
+    }
+
+    private static List<String> ids(JsonArray messages) {
+        final List<String> ids = new ArrayList<>();
+        for (Object o : messages) {
+            ids.add(((JsonObject) o).getString("id"));
+        }
+        return ids;
+    }
+
+    private Future<List<String>> expectedPage(int page) {
+        final Future<List<String>> future = Future.future();
+        Sql.getInstance().prepared("SELECT m.id FROM conversation.usermessages um JOIN conversation.messages m ON um.message_id = m.id " +
+                "WHERE um.user_id = ? ORDER BY m.date DESC, m.id DESC OFFSET ? LIMIT ?", new JsonArray()
+                .add(user.getUserId()).add(page * ConversationService.LIST_LIMIT).add(ConversationService.LIST_LIMIT),
+                SqlResult.validResultHandler(res -> {
+                    if (res.isRight()) {
+                        future.complete(ids(res.right().getValue()));
+                    } else {
+                        future.fail(res.left().getValue());
+                    }
+                }));
+        return future;
+    }
+
+    @Test
+    public void testKeysetPagesShouldFollowEachOther(TestContext context) {
+        final Async async = context.async();
+        keysetPage(null, null).compose(first -> expectedPage(0).compose(expectedFirst -> {
+            context.assertEquals(expectedFirst, ids(first));
+            final JsonObject last = first.getJsonObject(first.size() - 1);
+            return keysetPage(last.getLong("date"), last.getString("id")).compose(second -> expectedPage(1).map(expectedSecond -> {
+                context.assertEquals(expectedSecond, ids(second));
+                return null;
+            }));
+        })).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    private Future<Long> total(UserInfos owner) {
+        final Future<Long> future = Future.future();
+        conversationService.count("INBOX", null, null, owner, res -> {
+            if (res.isRight()) {
+                future.complete(res.right().getValue().getLong("count"));
+            } else {
+                future.fail(res.left().getValue());
+            }
+        });
+        return future;
+    }
+
+    private Future<JsonObject> receive(UserInfos owner, String id) {
+        return test.database().executeSqlWithUniqueResult(
+                "INSERT INTO conversation.messages (id, subject, body, \"from\", \"to\", date, state, thread_id) " +
+                "VALUES (?, 'Total', '<p>Body</p>', 'sender-0', ?::jsonb, 1700000000000, 'SENT', ?)",
+                new JsonArray().add(id).add(new JsonArray().add(owner.getUserId()).encode()).add(id)).compose(r ->
+                test.database().executeSqlWithUniqueResult("INSERT INTO conversation.usermessages " +
+                "(user_id, message_id, unread, date) VALUES (?, ?, true, 1700000000000)",
+                new JsonArray().add(owner.getUserId()).add(id)));
+    }
+
+    @Test
+    public void testTotalShouldBeCachedUntilChangedByUser(TestContext context) {
+        final Async async = context.async();
+        final UserInfos owner = test.directory().generateUser("total-owner");
+        receive(owner, "total-1").compose(r -> receive(owner, "total-2")).compose(r -> total(owner)).compose(total -> {
+            context.assertEquals(2L, total);
+            return receive(owner, "total-3");
+        }).compose(r -> total(owner)).compose(cached -> {
+            // received outside of the service : the cached total is served until the ttl
+            context.assertEquals(2L, cached);
+            final Future<JsonObject> trash = Future.future();
+            conversationService.trash(Arrays.asList("total-1"), owner, res -> {
+                if (res.isRight()) {
+                    trash.complete(res.right().getValue());
+                } else {
+                    trash.fail(res.left().getValue());
+                }
+            });
+            return trash;
+        }).compose(r -> total(owner)).setHandler(context.asyncAssertSuccess(total -> {
+            context.assertEquals(2L, total);
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testKeysetPageShouldRequireDateWithId(TestContext context) {
+        final Async async = context.async();
+        conversationService.list("INBOX", null, null, user, null, "message-1", null, res -> {
+            context.assertTrue(res.isLeft());
+            context.assertEquals("conversation.invalid.parameter", res.left().getValue());
+            async.complete();
+        });
+    }
+
+    @Test
+    public void testDeepPageLatency(TestContext context) {
+        final Async async = context.async();
+        Future<Void> chain = Future.succeededFuture();
+        for (int page : PAGES) {
+            chain = chain.compose(v -> {
+                // cursor of the page : last message of the previous page
+                final Future<JsonObject> cursor = test.database().executeSqlWithUniqueResult(
+                        "SELECT m.id, m.date FROM conversation.usermessages um JOIN conversation.messages m ON um.message_id = m.id " +
+                        "WHERE um.user_id = ? ORDER BY m.date DESC, m.id DESC OFFSET ? LIMIT 1",
+                        new JsonArray().add(user.getUserId()).add(page * ConversationService.LIST_LIMIT - 1));
+                return cursor.compose(c -> {
+                    final long startOffset = System.currentTimeMillis();
+                    return offsetPage(page).compose(offset -> {
+                        final long offsetTime = System.currentTimeMillis() - startOffset;
+                        final long startKeyset = System.currentTimeMillis();
+                        return keysetPage(c.getLong("date"), c.getString("id")).map(keyset -> {
+                            final long keysetTime = System.currentTimeMillis() - startKeyset;
+                            log.info("Inbox of " + MESSAGES + " messages, page " + page + " : offset " + offsetTime +
+                                    " ms, keyset " + keysetTime + " ms");
+                            context.assertEquals(ConversationService.LIST_LIMIT, keyset.size());
+                            context.assertEquals(offset.size(), keyset.size());
+                            return null;
+                        });
+                    });
+                });
+            });
+        }
+        chain.setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+}
@@ -0,0 +1,213 @@
+package org.entcore.conversation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.entcore.common.sql.Sql;
+import org.entcore.common.sql.SqlResult;
+import org.entcore.common.sql.SqlStatementsBuilder;
+import org.entcore.common.user.UserInfos;
+import org.entcore.common.utils.Config;
+import org.entcore.conversation.service.impl.SqlConversationService;
+import org.entcore.test.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+/**
+ * Send latency with one statement per recipient compared to the set-based statements.
+ */
+@RunWith(VertxUnitRunner.class)
+public class SendTest {
+    private static final Logger log = LoggerFactory.getLogger(SendTest.class);
+    private static final TestHelper test = TestHelper.helper();
+    private static final int[] RECIPIENTS = { 10, 500, 5000 };
+    static final String schema = "conversation";
+    @ClassRule
+    public static PostgreSQLContainer<?> pgContainer = test.database().createPostgreSQLContainer();
+    static SqlConversationService conversationService;
+    static SqlConversationService chunkedConversationService;
+
+    @BeforeClass
+    public static void setUp(TestContext context) throws Exception {
+        Config.getInstance().setConfig(new JsonObject());
+        conversationService = new SqlConversationService(test.vertx(), schema);
+        chunkedConversationService = new SqlConversationService(test.vertx(), schema).setSendChunkSize(1000);
+        test.database().initPostgreSQL(context, pgContainer, schema);
+    }
+
+    private JsonArray recipients(String prefix, int count) {
+        final JsonArray recipients = new JsonArray();
+        for (int i = 0; i < count; i++) {
+            recipients.add(prefix + i);
+        }
+        return recipients;
+    }
+
+    private Future<String> draft(UserInfos from, JsonArray recipients) {
+        final Future<String> future = Future.future();
+        final JsonObject message = new JsonObject().put("subject", "Sortie").put("body", "<p>Bonjour</p>")
+                .put("to", recipients);
+        conversationService.saveDraft(null, null, message, from, res -> {
+            if (res.isRight()) {
+                future.complete(message.getString("id"));
+            } else {
+                future.fail(res.left().getValue());
+            }
+        });
+        return future;
+    }
+
+    private Future<Long> sendPerRecipient(UserInfos from, JsonArray recipients) {
+        return draft(from, recipients).compose(id -> {
+            final Future<Long> future = Future.future();
+            final long start = System.currentTimeMillis();
+            final SqlStatementsBuilder builder = new SqlStatementsBuilder();
+            builder.prepared("UPDATE conversation.messages SET state = ? WHERE id = ?", new JsonArray().add("SENT").add(id));
+            builder.prepared("INSERT INTO conversation.threads (SELECT thread_id as id, date, subject, \"from\", \"to\", " +
+                    "cc, cci, \"displayNames\" FROM conversation.messages m WHERE m.id = ?)", new JsonArray().add(id));
+            for (Object to : recipients) {
+                builder.insert("conversation.usermessages", new JsonObject().put("user_id", to.toString())
+                        .put("message_id", id).put("total_quota", 0));
+                builder.prepared("INSERT INTO conversation.userthreads as ut (user_id,thread_id,nb_unread) VALUES (?,?,?) " +
+                        "ON CONFLICT (user_id,thread_id) DO UPDATE SET nb_unread = ut.nb_unread + 1",
+                        new JsonArray().add(to.toString()).add(id).add(1));
+            }
+            Sql.getInstance().transaction(builder.build(), SqlResult.validResultsHandler(res -> {
+                if (res.isRight()) {
+                    future.complete(System.currentTimeMillis() - start);
+                } else {
+                    future.fail(res.left().getValue());
+                }
+            }));
+            return future;
+        });
+    }
+
+    private Future<String> send(SqlConversationService service, UserInfos from, JsonArray recipients, long[] time) {
+        return draft(from, recipients).compose(id -> {
+            final Future<String> future = Future.future();
+            final long start = System.currentTimeMillis();
+            service.send(null, id, new JsonObject().put("allUsers", recipients), from, res -> {
+                time[0] = System.currentTimeMillis() - start;
+                if (res.isRight()) {
+                    future.complete(id);
+                } else {
+                    future.fail(res.left().getValue());
+                }
+            });
+            return future;
+        });
+    }
+
+    private Future<Long> count(String table, String column, String id) {
+        return test.database().executeSqlWithUniqueResult("SELECT count(*) AS nb FROM conversation." + table +
+                " WHERE " + column + " = ?", new JsonArray().add(id)).map(r -> r.getLong("nb"));
+    }
+
+    private Future<Void> awaitCount(String id, long expected, int retries) {
+        return count("usermessages", "message_id", id).compose(nb -> {
+            if (nb == expected || retries == 0) {
+                return Future.succeededFuture();
+            }
+            final Future<Void> future = Future.future();
+            test.vertx().setTimer(100L, t -> awaitCount(id, expected, retries - 1).setHandler(future));
+            return future;
+        });
+    }
+
+    @Test
+    public void testSendShouldWriteAllRecipientsWithSetBasedStatements(TestContext context) {
+        final Async async = context.async();
+        final UserInfos from = test.http().sessionUser();
+        Future<Void> chain = Future.succeededFuture();
+        for (int count : RECIPIENTS) {
+            final JsonArray recipients = recipients("r" + count + "-", count);
+            final long[] time = new long[1];
+            final List<Long> times = new ArrayList<>();
+            chain = chain.compose(v -> sendPerRecipient(from, recipients)).compose(perRecipient -> {
+                times.add(perRecipient);
+                return send(conversationService, from, recipients.copy().add(from.getUserId()).add(recipients.getString(0)), time);
+            }).compose(id -> {
+                log.info("Send to " + count + " recipients : one statement per recipient " + times.get(0) +
+                        " ms, set-based statements " + time[0] + " ms");
+                return count("usermessages", "message_id", id).compose(nb -> {
+                    context.assertEquals((long) count + 1, nb);
+                    return count("userthreads", "thread_id", id);
+                }).map(nb -> {
+                    context.assertEquals((long) count + 1, nb);
+                    return null;
+                });
+            });
+        }
+        chain.setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    @Test
+    public void testSendShouldAddRemainingRecipientsInBackground(TestContext context) {
+        final Async async = context.async();
+        final UserInfos from = test.http().sessionUser();
+        final JsonArray recipients = recipients("chunk-", 3500);
+        final long[] time = new long[1];
+        send(chunkedConversationService, from, recipients, time).compose(id -> {
+            log.info("Send to 3500 recipients by chunks of 1000 : first chunk sent in " + time[0] + " ms");
+            return awaitCount(id, 3501, 100).compose(v -> count("usermessages", "message_id", id)).compose(nb -> {
+                context.assertEquals(3501L, nb);
+                return count("send_jobs", "message_id", id);
+            });
+        }).setHandler(context.asyncAssertSuccess(nb -> {
+            context.assertEquals(0L, nb);
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testResumeSendJobsShouldAddRecipientsOfInterruptedSend(TestContext context) {
+        final Async async = context.async();
+        final UserInfos from = test.http().sessionUser();
+        final JsonArray recipients = recipients("resume-", 2500);
+        final long[] time = new long[1];
+        send(chunkedConversationService, from, recipients, time).compose(id -> awaitCount(id, 2501, 100).compose(v ->
+            // simulate a send interrupted after the first chunk
+            test.database().executeSqlWithUniqueResult("DELETE FROM conversation.usermessages WHERE message_id = ? " +
+                    "AND user_id IN (SELECT r FROM jsonb_array_elements_text(CAST(? AS JSONB)) WITH ORDINALITY AS t(r, i) " +
+                    "WHERE i > 1000)", new JsonArray().add(id).add(recipients.encode()))
+        ).compose(v -> test.database().executeSqlWithUniqueResult("INSERT INTO conversation.send_jobs " +
+                "(message_id, thread_id, total_quota, attachment_ids, recipients, sent, modified) " +
+                "SELECT id, thread_id, 0, '[]', CAST(? AS JSONB), 1000, NOW() - INTERVAL '1 hour' " +
+                "FROM conversation.messages WHERE id = ?", new JsonArray().add(recipients.encode()).add(id))
+        ).compose(v -> count("usermessages", "message_id", id)).compose(nb -> {
+            context.assertEquals(1001L, nb);
+            final Future<JsonArray> future = Future.future();
+            chunkedConversationService.resumeSendJobs(60000L, res -> {
+                if (res.isRight()) {
+                    future.complete(res.right().getValue());
+                } else {
+                    future.fail(res.left().getValue());
+                }
+            });
+            return future;
+        }).compose(resumed -> {
+            context.assertEquals(1, resumed.size());
+            return awaitCount(id, 2501, 100).compose(v -> count("usermessages", "message_id", id));
+        }).compose(nb -> {
+            context.assertEquals(2501L, nb);
+            return count("send_jobs", "message_id", id);
+        })).setHandler(context.asyncAssertSuccess(nb -> {
+            context.assertEquals(0L, nb);
+            async.complete();
+        }));
+    }
+
+}
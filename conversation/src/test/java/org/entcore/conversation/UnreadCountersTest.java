@@ -0,0 +1,222 @@
+package org.entcore.conversation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.entcore.common.user.UserInfos;
+import org.entcore.common.utils.Config;
+import org.entcore.conversation.service.impl.ReconcileUnreadCounters;
+import org.entcore.conversation.service.impl.SqlConversationService;
+import org.entcore.test.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import fr.wseduc.webutils.Either;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+/**
+ * Unread counts served by the counters compared to the counts computed from the messages, after each mutation.
+ */
+@RunWith(VertxUnitRunner.class)
+public class UnreadCountersTest {
+    private static final TestHelper test = TestHelper.helper();
+    static final String schema = "conversation";
+    @ClassRule
+    public static PostgreSQLContainer<?> pgContainer = test.database().createPostgreSQLContainer();
+    static SqlConversationService counters;
+    static SqlConversationService legacy;
+    static final UserInfos sender = test.directory().generateUser("counters-sender");
+    static final UserInfos alice = test.directory().generateUser("counters-alice");
+    static final UserInfos bob = test.directory().generateUser("counters-bob");
+
+    @BeforeClass
+    public static void setUp(TestContext context) throws Exception {
+        Config.getInstance().setConfig(new JsonObject());
+        counters = new SqlConversationService(test.vertx(), schema).setUnreadCounters(true);
+        legacy = new SqlConversationService(test.vertx(), schema).setUnreadCounters(false);
+        test.database().initPostgreSQL(context, pgContainer, schema);
+    }
+
+    private static <T> Handler<Either<String, T>> handler(Future<T> future) {
+        return res -> {
+            if (res.isRight()) {
+                future.complete(res.right().getValue());
+            } else {
+                future.fail(res.left().getValue());
+            }
+        };
+    }
+
+    private Future<String> send(UserInfos from, UserInfos... to) {
+        final JsonArray recipients = new JsonArray();
+        for (UserInfos user : to) {
+            recipients.add(user.getUserId());
+        }
+        final JsonObject message = new JsonObject().put("subject", "Réunion").put("body", "<p>Bonjour</p>")
+                .put("to", recipients);
+        final Future<JsonObject> draft = Future.future();
+        counters.saveDraft(null, null, message, from, handler(draft));
+        return draft.compose(d -> {
+            final Future<JsonObject> sent = Future.future();
+            counters.send(null, message.getString("id"), new JsonObject().put("allUsers", recipients), from, handler(sent));
+            return sent.map(s -> message.getString("id"));
+        });
+    }
+
+    private Future<Long> count(SqlConversationService service, UserInfos user, String folder, String restrain) {
+        final Future<JsonObject> future = Future.future();
+        service.count(folder, restrain, true, user, handler(future));
+        return future.map(r -> r.getLong("count"));
+    }
+
+    private Future<Long> assertCount(TestContext context, UserInfos user, String folder, long expected) {
+        final String restrain = "INBOX".equals(folder) ? null : "";
+        return count(legacy, user, folder, restrain).compose(computed -> count(counters, user, folder, restrain).map(counted -> {
+            context.assertEquals(expected, computed, user.getUserId() + " " + folder);
+            context.assertEquals(computed, counted, user.getUserId() + " " + folder);
+            return counted;
+        }));
+    }
+
+    private Future<Void> step(Future<?> mutation, TestContext context, UserInfos user, long inbox, String folder, long inFolder) {
+        return mutation.compose(r -> assertCount(context, user, "INBOX", inbox)).compose(r -> folder != null ?
+                assertCount(context, user, folder, inFolder) : Future.<Long>succeededFuture()).map(r -> null);
+    }
+
+    @Test
+    public void testCountersShouldFollowMutations(TestContext context) {
+        final Async async = context.async();
+        final String[] ids = new String[4];
+        final String[] folderId = new String[1];
+        send(sender, alice, bob).compose(id -> {
+            ids[0] = id;
+            return send(sender, alice, bob);
+        }).compose(id -> {
+            ids[1] = id;
+            return send(sender, alice, bob);
+        }).compose(id -> {
+            ids[2] = id;
+            // the sender copy is counted when the sender is a recipient
+            return send(sender, alice, sender);
+        }).compose(id -> {
+            ids[3] = id;
+            return step(Future.succeededFuture(), context, alice, 4, null, 0);
+        }).compose(v -> step(Future.succeededFuture(), context, bob, 3, null, 0)
+        ).compose(v -> step(Future.succeededFuture(), context, sender, 1, null, 0)
+        ).compose(v -> {
+            final Future<JsonObject> read = Future.future();
+            counters.get(ids[0], alice, handler(read));
+            return step(read, context, alice, 3, null, 0);
+        }).compose(v -> {
+            final Future<JsonObject> toggle = Future.future();
+            counters.toggleUnread(Arrays.asList(ids[0], ids[1]), false, alice, handler(toggle));
+            return step(toggle, context, alice, 2, null, 0);
+        }).compose(v -> {
+            final Future<JsonObject> toggle = Future.future();
+            counters.toggleUnread(Arrays.asList(ids[0]), true, alice, handler(toggle));
+            return step(toggle, context, alice, 3, null, 0);
+        }).compose(v -> {
+            final Future<JsonObject> folder = Future.future();
+            counters.createFolder("Archives", null, alice, handler(folder));
+            return folder;
+        }).compose(folder -> {
+            folderId[0] = folder.getString("id");
+            final Future<JsonObject> move = Future.future();
+            counters.moveToFolder(Arrays.asList(ids[0], ids[1], ids[2]), folderId[0], alice, handler(move));
+            return step(move, context, alice, 1, folderId[0], 2);
+        }).compose(v -> {
+            final Future<JsonObject> back = Future.future();
+            counters.backToSystemFolder(Arrays.asList(ids[2]), alice, handler(back));
+            return step(back, context, alice, 2, folderId[0], 1);
+        }).compose(v -> {
+            final Future<JsonObject> trash = Future.future();
+            counters.trash(Arrays.asList(ids[0], ids[2]), alice, handler(trash));
+            return step(trash, context, alice, 1, folderId[0], 0);
+        }).compose(v -> {
+            final Future<JsonObject> restore = Future.future();
+            counters.restore(Arrays.asList(ids[0], ids[2], ids[3]), alice, handler(restore));
+            return step(restore, context, alice, 2, folderId[0], 1);
+        }).compose(v -> {
+            final Future<JsonObject> toggle = Future.future();
+            counters.toggleUnreadThread(Arrays.asList(ids[1], ids[3]), true, alice, handler(toggle));
+            return step(toggle, context, alice, 2, folderId[0], 2);
+        }).compose(v -> {
+            final Future<JsonObject> trash = Future.future();
+            counters.trashThread(Arrays.asList(ids[3]), alice, handler(trash));
+            return step(trash, context, alice, 1, folderId[0], 2);
+        }).compose(v -> {
+            final Future<JsonArray> delete = Future.future();
+            counters.delete(Arrays.asList(ids[3]), false, alice, handler(delete));
+            return step(delete, context, alice, 1, folderId[0], 2);
+        }).compose(v -> {
+            final Future<JsonObject> trash = Future.future();
+            counters.trashFolder(folderId[0], alice, handler(trash));
+            return step(trash, context, alice, 1, folderId[0], 2);
+        }).compose(v -> {
+            final Future<JsonArray> delete = Future.future();
+            counters.deleteFolder(folderId[0], false, alice, handler(delete));
+            return step(delete, context, alice, 1, folderId[0], 0);
+        }).compose(v -> step(Future.succeededFuture(), context, bob, 3, null, 0)
+        ).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    @Test
+    public void testCountersShouldBeMaintainedWhileNotRead(TestContext context) {
+        final Async async = context.async();
+        final UserInfos erin = test.directory().generateUser("counters-erin");
+        final JsonArray recipients = new JsonArray().add(erin.getUserId());
+        final JsonObject message = new JsonObject().put("subject", "Sortie").put("body", "<p>Bonjour</p>")
+                .put("to", recipients);
+        final Future<JsonObject> draft = Future.future();
+        legacy.saveDraft(null, null, message, sender, handler(draft));
+        draft.compose(d -> {
+            final Future<JsonObject> sent = Future.future();
+            legacy.send(null, message.getString("id"), new JsonObject().put("allUsers", recipients), sender, handler(sent));
+            return step(sent, context, erin, 1, null, 0);
+        }).compose(v -> send(sender, erin)).compose(id -> {
+            final Future<JsonObject> toggle = Future.future();
+            legacy.toggleUnread(Arrays.asList(message.getString("id")), false, erin, handler(toggle));
+            return step(toggle, context, erin, 1, null, 0);
+        }).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    @Test
+    public void testReconcileShouldRepairCounters(TestContext context) {
+        final Async async = context.async();
+        final UserInfos carol = test.directory().generateUser("counters-carol");
+        final UserInfos dave = test.directory().generateUser("counters-dave");
+        final List<String> drift = Arrays.asList(
+                "UPDATE conversation.unread_counters SET nb_unread = 42 WHERE user_id = ?",
+                "INSERT INTO conversation.unread_counters (user_id, folder, nb_unread) VALUES (?, 'unknown-folder', 7)");
+        send(sender, carol).compose(id -> send(sender, carol)).compose(id -> {
+            Future<JsonObject> corrupt = Future.succeededFuture();
+            for (String query : drift) {
+                corrupt = corrupt.compose(r -> test.database().executeSqlWithUniqueResult(query,
+                        new JsonArray().add(carol.getUserId())));
+            }
+            return corrupt.compose(r -> test.database().executeSqlWithUniqueResult(
+                    "INSERT INTO conversation.unread_counters (user_id, folder, nb_unread) VALUES (?, 'INBOX', 3)",
+                    new JsonArray().add(dave.getUserId())));
+        }).compose(r -> count(counters, carol, "INBOX", null)).compose(corrupted -> {
+            context.assertEquals(42L, corrupted);
+            final Future<JsonObject> reconcile = Future.future();
+            new ReconcileUnreadCounters(60000L).reconcile(handler(reconcile));
+            return reconcile;
+        }).compose(result -> {
+            context.assertTrue(result.getLong("repaired") >= 1L);
+            context.assertTrue(result.getLong("removed") >= 2L);
+            return step(Future.succeededFuture(), context, carol, 2, "unknown-folder", 0);
+        }).compose(v -> step(Future.succeededFuture(), context, dave, 0, null, 0)
+        ).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+}
@@ -62,7 +62,7 @@ public class DefaultShareBookmarkService implements ShareBookmarkService {
 		params.put("userId", userId);
 		params.put("bookmark", new JsonArray().add(bookmark.getString("name"))
 				.addAll(getOrElse(bookmark.getJsonArray("members"), new JsonArray())));
-		neo4j.execute(query, params, validEmptyHandler(handler));
+		neo4j.execute(query, params, userId, validEmptyHandler(handler));
 	}
 
 	@Override
@@ -73,7 +73,7 @@ public class DefaultShareBookmarkService implements ShareBookmarkService {
 				"REMOVE sb." + cleanId;
 		JsonObject params = new JsonObject();
 		params.put("userId", userId);
-		neo4j.execute(query, params, validEmptyHandler(handler));
+		neo4j.execute(query, params, userId, validEmptyHandler(handler));
 	}
 
 	@Override
@@ -89,7 +89,7 @@ public class DefaultShareBookmarkService implements ShareBookmarkService {
 				"groupProfile : v.filter, nbUsers : v.nbUsers, profile : HEAD(v.profiles), activationCode : has(v.activationCode) }) as members;";
 		JsonObject params = new JsonObject();
 		params.put("userId", userId);
-		neo4j.execute(query, params, validUniqueResultHandler(handler));
+		neo4j.execute(query, params, userId, validUniqueResultHandler(handler));
 	}
 
 	@Override
@@ -97,7 +97,7 @@ public class DefaultShareBookmarkService implements ShareBookmarkService {
 		final String query = "MATCH (:User {id:{userId}})-[:HAS_SB]->(sb:ShareBookmark) return sb";
 		JsonObject params = new JsonObject();
 		params.put("userId", userId);
-		neo4j.execute(query, params, fullNodeMergeHandler("sb", node -> {
+		neo4j.execute(query, params, userId, fullNodeMergeHandler("sb", node -> {
 			if (node.isRight()) {
 				final JsonObject j = node.right().getValue();
 				final JsonArray result = new JsonArray();
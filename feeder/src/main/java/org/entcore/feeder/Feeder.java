@@ -30,6 +30,7 @@ import org.entcore.common.storage.Storage;
 import org.entcore.common.storage.StorageFactory;
 import org.entcore.common.utils.StringUtils;
 import org.entcore.feeder.aaf.AafFeeder;
+import org.entcore.feeder.aaf.BaseImportProcessing;
 import org.entcore.feeder.aaf1d.Aaf1dFeeder;
 import org.entcore.feeder.csv.CsvFeeder;
 import org.entcore.feeder.csv.CsvImportsLauncher;
@@ -95,6 +96,7 @@ public class Feeder extends BusModBase implements Handler<Message<JsonObject>> {
 		super.start();
 		storage = new StorageFactory(vertx, config).getStorage();
 		FeederLogger.init(config);
+		BaseImportProcessing.init(config);
 		String node = (String) vertx.sharedData().getLocalMap("server").get("node");
 		if (node == null) {
 			node = "";
@@ -166,6 +168,10 @@ public class Feeder extends BusModBase implements Handler<Message<JsonObject>> {
 		manual = new ManualFeeder(neo4j, eb);
 		duplicateUsers = new DuplicateUsers(config.getBoolean("timetable", true),
 				config.getBoolean("autoMergeOnlyInSameStructure", true), vertx.eventBus());
+		if (config.getBoolean("duplicates-index", false)) {
+			duplicateUsers.enableDuplicatesIndex(vertx, config.getInteger("duplicates-index-page-size", 50000),
+					config.getInteger("duplicates-batch-size", 1000));
+		}
 		postImport = new PostImport(vertx, duplicateUsers, config);
 		vertx.eventBus().consumer(
 				config.getString("address", FEEDER_ADDRESS), this);
@@ -20,6 +20,7 @@
 package org.entcore.feeder.aaf;
 
 import org.entcore.feeder.utils.JsonUtil;
+import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.xml.sax.Attributes;
@@ -40,13 +41,22 @@ public final class AAFHandler extends DefaultHandler {
 	private JsonObject currentStructure;
 	private final JsonObject mapping;
 	private final ImportProcessing processing;
+	private final Handler<JsonObject> sink;
 	private final List<String> allowEmptyUpdate = Arrays.asList(
 			"ENTAuxEnsClassesPrincipal", "mobile", "ENTPersonMobileSMS", "ENTPersonAdresse",
 			"ENTPersonCodePostal", "ENTPersonVille", "ENTPersonPays", "ENTAuxEnsMEF", "ENTEleveMEF",
 			"ENTEleveLibelleMEF", "ENTEleveCodeEnseignements", "ENTEleveEnseignements");
 
 	public AAFHandler(ImportProcessing processing) {
+		this(processing, processing::process);
+	}
+
+	/**
+	 * @param sink receives the parsed objects instead of the processing
+	 */
+	public AAFHandler(ImportProcessing processing, Handler<JsonObject> sink) {
 		this.processing = processing;
+		this.sink = sink;
 		this.mapping = JsonUtil.loadFromResource(processing.getMappingResource());
 		this.s = new StringBuilder();
 	}
@@ -76,7 +86,7 @@ public final class AAFHandler extends DefaultHandler {
 		currentTag = "";
 		switch (localName) {
 			case "addRequest" :
-				processing.process(currentStructure);
+				sink.handle(currentStructure);
 				break;
 			case "attr" :
 				currentAttribute = "";
@@ -86,7 +96,7 @@ public final class AAFHandler extends DefaultHandler {
 
 	@Override
 	public void characters(char[] ch, int start, int length) throws SAXException {
-		s.append(new String(ch, start, length));
+		s.append(ch, start, length);
 	}
 
 	private void addValueInAttribute(String s) throws SAXException {
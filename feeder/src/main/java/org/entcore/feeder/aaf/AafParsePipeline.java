@@ -0,0 +1,202 @@
+/* Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ *
+ */
+
+package org.entcore.feeder.aaf;
+
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.EntityResolver2;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Parse the AAF files of a directory by streaming, up to <code>parallelism</code> files at once.
+ * Each file is unescaped on the fly and SAX parsed from the file stream by a parser thread, which converts
+ * the <code>addRequest</code> elements into records pushed in a bounded queue.
+ * The consumer takes the records of the files in order, so the import sees them exactly as with a sequential parse,
+ * and the parsers block when their queue is full, so the heap used does not depend on the files size.
+ */
+final class AafParsePipeline {
+
+	private static final Object END = new Object();
+	private final List<String> files;
+	private final String path;
+	private final ImportProcessing processing;
+	private final int parallelism;
+	private final int queueSize;
+	private final ExecutorService executor;
+	private final Map<Integer, FileParse> parses = new HashMap<>();
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+	private final class FileParse implements Runnable {
+		private final String file;
+		private final BlockingQueue<Object> records = new ArrayBlockingQueue<>(queueSize);
+		private volatile boolean cancelled;
+
+		private FileParse(String file) {
+			this.file = file;
+		}
+
+		@Override
+		public void run() {
+			try (Reader reader = new AafUnescapeReader(new InputStreamReader(
+					new FileInputStream(file), StandardCharsets.UTF_8))) {
+				final XMLReader xr = createXMLReader(new AAFHandler(processing, this::push));
+				xr.parse(new InputSource(reader));
+				push(END);
+			} catch (ParseCancelledException e) {
+				// consumer closed
+			} catch (Exception | OutOfMemoryError e) {
+				try {
+					push(e);
+				} catch (ParseCancelledException e1) {
+					// consumer closed
+				}
+			}
+		}
+
+		private void push(Object record) {
+			try {
+				while (!records.offer(record, 100, TimeUnit.MILLISECONDS)) {
+					if (cancelled || closed.get()) {
+						throw new ParseCancelledException();
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ParseCancelledException();
+			}
+		}
+	}
+
+	private static final class ParseCancelledException extends RuntimeException {
+		private ParseCancelledException() {
+			super(null, null, false, false);
+		}
+	}
+
+	AafParsePipeline(List<String> files, String path, ImportProcessing processing, int parallelism, int queueSize) {
+		this.files = files;
+		this.path = path;
+		this.processing = processing;
+		this.parallelism = Math.max(1, parallelism);
+		this.queueSize = Math.max(1, queueSize);
+		this.executor = Executors.newFixedThreadPool(this.parallelism, r -> {
+			final Thread t = new Thread(r, "aaf-parser");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	/**
+	 * Give the records of the file to the consumer, in the order of the file, on the calling thread.
+	 * The next files are parsed meanwhile.
+	 * @param retry parse the file again
+	 * @throws Exception the parsing error of the file
+	 */
+	void consume(int index, boolean retry, Handler<JsonObject> consumer) throws Exception {
+		if (retry) {
+			final FileParse previous = parses.remove(index);
+			if (previous != null) {
+				previous.cancelled = true;
+			}
+		}
+		for (int i = index; i < Math.min(files.size(), index + parallelism); i++) {
+			if (!parses.containsKey(i)) {
+				final FileParse parse = new FileParse(files.get(i));
+				parses.put(i, parse);
+				executor.execute(parse);
+			}
+		}
+		final FileParse parse = parses.remove(index);
+		try {
+			for (;;) {
+				final Object record = parse.records.take();
+				if (record == END) {
+					return;
+				} else if (record instanceof Exception) {
+					throw (Exception) record;
+				} else if (record instanceof OutOfMemoryError) {
+					throw (OutOfMemoryError) record;
+				}
+				consumer.handle((JsonObject) record);
+			}
+		} catch (Exception | Error e) {
+			close();
+			throw e;
+		}
+	}
+
+	void close() {
+		if (closed.compareAndSet(false, true)) {
+			for (FileParse parse : parses.values()) {
+				parse.cancelled = true;
+			}
+			parses.clear();
+			executor.shutdown();
+		}
+	}
+
+	private XMLReader createXMLReader(AAFHandler handler) throws SAXException {
+		final XMLReader xr = XMLReaderFactory.createXMLReader();
+		xr.setContentHandler(handler);
+		xr.setEntityResolver(new EntityResolver2() {
+			@Override
+			public InputSource getExternalSubset(String name, String baseURI) throws SAXException, IOException {
+				return null;
+			}
+
+			@Override
+			public InputSource resolveEntity(String name, String publicId, String baseURI, String systemId) throws SAXException, IOException {
+				return resolveEntity(publicId, systemId);
+			}
+
+			@Override
+			public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+				if (systemId.equals("ficAlimMENESR.dtd")) {
+					Reader reader = new FileReader(path + File.separator + "ficAlimMENESR.dtd");
+					return new InputSource(reader);
+				} else {
+					return null;
+				}
+			}
+		});
+		return xr;
+	}
+
+}
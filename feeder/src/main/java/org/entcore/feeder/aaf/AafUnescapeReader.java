@@ -0,0 +1,148 @@
+/* Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ *
+ */
+
+package org.entcore.feeder.aaf;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Apply {@link BaseImportProcessing#UNESCAPE_AAF} on the fly.
+ * All the translated entities start with '&amp;' and end with ';', so the text is translated by segments
+ * starting at an '&amp;' and ending at the next ';' or '&amp;', which gives the same result as translating the whole
+ * content at once without loading it in memory.
+ */
+final class AafUnescapeReader extends FilterReader {
+
+	private static final int MAX_ENTITY_LENGTH = 32;
+	private final char[] buffer = new char[8192];
+	private int pos;
+	private int limit;
+	private boolean eof;
+	private String pending;
+	private int pendingPos;
+
+	AafUnescapeReader(Reader in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		final char[] c = new char[1];
+		return read(c, 0, 1) == -1 ? -1 : c[0];
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		int n = 0;
+		while (n < len) {
+			if (pending != null) {
+				final int l = Math.min(len - n, pending.length() - pendingPos);
+				pending.getChars(pendingPos, pendingPos + l, cbuf, off + n);
+				n += l;
+				pendingPos += l;
+				if (pendingPos >= pending.length()) {
+					pending = null;
+				}
+				continue;
+			}
+			if (pos >= limit && !fill(1)) {
+				break;
+			}
+			if (buffer[pos] != '&') {
+				int end = pos;
+				while (end < limit && buffer[end] != '&' && end - pos < len - n) {
+					end++;
+				}
+				System.arraycopy(buffer, pos, cbuf, off + n, end - pos);
+				n += end - pos;
+				pos = end;
+			} else {
+				fill(MAX_ENTITY_LENGTH);
+				int end = pos + 1;
+				while (end < limit && end - pos < MAX_ENTITY_LENGTH && buffer[end] != ';' && buffer[end] != '&') {
+					end++;
+				}
+				if (end < limit && buffer[end] == ';') {
+					end++;
+				}
+				pending = BaseImportProcessing.UNESCAPE_AAF.translate(new String(buffer, pos, end - pos));
+				pendingPos = 0;
+				pos = end;
+			}
+		}
+		return (n == 0) ? -1 : n;
+	}
+
+	/**
+	 * Read until at least <code>min</code> chars are available or the end of the stream.
+	 * @return false if no char is available
+	 */
+	private boolean fill(int min) throws IOException {
+		if (limit - pos >= min || eof) {
+			return limit > pos;
+		}
+		if (pos > 0) {
+			System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+			limit -= pos;
+			pos = 0;
+		}
+		while (limit - pos < min) {
+			final int r = in.read(buffer, limit, buffer.length - limit);
+			if (r < 0) {
+				eof = true;
+				break;
+			}
+			limit += r;
+		}
+		return limit > pos;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		final char[] skipped = new char[(int) Math.min(n, buffer.length)];
+		final int r = read(skipped, 0, skipped.length);
+		return Math.max(r, 0);
+	}
+
+	@Override
+	public boolean ready() throws IOException {
+		return pending != null || limit > pos || in.ready();
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public void mark(int readAheadLimit) throws IOException {
+		throw new IOException("mark() not supported");
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("reset() not supported");
+	}
+
+}
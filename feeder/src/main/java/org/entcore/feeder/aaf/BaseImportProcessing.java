@@ -29,18 +29,10 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.XMLReader;
-import org.xml.sax.ext.EntityResolver2;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 import java.io.*;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
-import java.util.function.Function;
 import java.util.regex.Pattern;
 
 public abstract class BaseImportProcessing implements ImportProcessing {
@@ -60,6 +52,8 @@ public abstract class BaseImportProcessing implements ImportProcessing {
 					new NumericEntityUnescaper()
 			);
 	private static final int MAX_DEADLOCK_RETRIES = 1;
+	private static int parseParallelism = 2;
+	private static int parseQueueSize = 1000;
 
 	protected BaseImportProcessing(String path, Vertx vertx) {
 		this.path = path;
@@ -67,6 +61,11 @@ public abstract class BaseImportProcessing implements ImportProcessing {
 		log = new FeederLogger(e-> getTag(), e-> "academy: "+ academyPrefix);
 	}
 
+	public static void init(JsonObject config) {
+		parseParallelism = config.getInteger("aaf-parse-parallelism", 2);
+		parseQueueSize = config.getInteger("aaf-parse-queue-size", 1000);
+	}
+
 	protected String getTag(){
 		return getClass().getSimpleName();
 	}
@@ -77,15 +76,17 @@ public abstract class BaseImportProcessing implements ImportProcessing {
 		initAcademyPrefix(path);
 		final List<String> files = vertx.fileSystem()
 				.readDirBlocking(path, getFileRegex());
+		Collections.sort(files);
+		final AafParsePipeline pipeline = new AafParsePipeline(files, path, this, parseParallelism, parseQueueSize);
 		final Handler[] handlers = new Handler[files.size() + 1];
 		handlers[handlers.length -1] = new Handler<Integer>() {
 			@Override
 			public void handle(Integer v) {
+				pipeline.close();
 				log.info(e -> "SUCCEED parsing directory : " + path);
 				next(handler, importProcessing);
 			}
 		};
-		Collections.sort(files);
 		for (int i = files.size() - 1; i >= 0; i--) {
 			final int j = i;
 			handlers[i] = new Handler<Integer>() {
@@ -95,34 +96,7 @@ public abstract class BaseImportProcessing implements ImportProcessing {
 					try {
 						log.info(e -> "START parsing file : " + file, true);
 						importer.getReport().loadedFile(file);
-						byte[] encoded = Files.readAllBytes(Paths.get(file));
-						String content = UNESCAPE_AAF.translate(new String(encoded, "UTF-8"));
-						InputSource in = new InputSource(new StringReader(content));
-						AAFHandler sh = new AAFHandler(BaseImportProcessing.this);
-						XMLReader xr = XMLReaderFactory.createXMLReader();
-						xr.setContentHandler(sh);
-						xr.setEntityResolver(new EntityResolver2() {
-							@Override
-							public InputSource getExternalSubset(String name, String baseURI) throws SAXException, IOException {
-								return null;
-							}
-
-							@Override
-							public InputSource resolveEntity(String name, String publicId, String baseURI, String systemId) throws SAXException, IOException {
-								return resolveEntity(publicId, systemId);
-							}
-
-							@Override
-							public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
-								if (systemId.equals("ficAlimMENESR.dtd")) {
-									Reader reader = new FileReader(path + File.separator + "ficAlimMENESR.dtd");
-									return new InputSource(reader);
-								} else {
-									return null;
-								}
-							}
-						});
-						xr.parse(in);
+						pipeline.consume(j, nbRetries > 0, BaseImportProcessing.this::process);
 						log.info(e -> "START peristing file : " + file);
 						importer.persist(new Handler<Message<JsonObject>>() {
 							@Override
@@ -141,15 +115,18 @@ public abstract class BaseImportProcessing implements ImportProcessing {
 									}
 									else
 									{
+										pipeline.close();
 										error(message, handler);
 									}
 								}
 							}
 						});
 					} catch (Exception e) {
+						pipeline.close();
 						error(e, handler);
 						log.error(t -> "FAILED parsing file : " + file, e);
 					} catch (OutOfMemoryError err) { // badly catch Error to unlock importer
+						pipeline.close();
 						log.error(t -> "FAILED parsing file (OOM) : " + file, err);
 						error(new Exception("OOM"), handler);
 					}
@@ -19,7 +19,6 @@
 
 package org.entcore.feeder.csv;
 
-import com.opencsv.CSVReader;
 import org.entcore.feeder.Feed;
 import org.entcore.feeder.ManualFeeder;
 import org.entcore.feeder.dictionary.structures.DefaultFunctions;
@@ -48,7 +47,7 @@ import static fr.wseduc.webutils.Utils.getOrElse;
 import static org.entcore.feeder.dictionary.structures.DefaultProfiles.*;
 import static org.entcore.feeder.dictionary.structures.DefaultProfiles.GUEST_PROFILE;
 import static org.entcore.feeder.utils.CSVUtil.emptyLine;
-import static org.entcore.feeder.utils.CSVUtil.getCsvReader;
+import static org.entcore.feeder.utils.CSVUtil.getCsvLines;
 
 public class CsvFeeder implements Feed {
 
@@ -221,7 +220,6 @@ public class CsvFeeder implements Feed {
 			CSVUtil.getCharset(vertx, file, new Handler<String>() {
 				@Override
 				public void handle(String charset) {
-					CSVReader csvReader = null;
 					try {
 						final String profile = file.substring(file.lastIndexOf(File.separator) + 1).replaceFirst(".csv", "");
 						if(columnsMapper.profileExists(profile) == false)
@@ -232,10 +230,9 @@ public class CsvFeeder implements Feed {
 							}
 							return;
 						}
-						csvReader = getCsvReader(file, charset);
-						String[] strings;
+						final List<String[]> csvLines = getCsvLines(file, charset);
 						int i = 0;
-						while ((strings = csvReader.readNext()) != null) {
+						for (String[] strings : csvLines) {
 							if (i == 0) {
 								columnsMapper.getColumsNames(profile, strings, columns, handler);
 								if (columns.isEmpty()) {
@@ -259,14 +256,6 @@ public class CsvFeeder implements Feed {
 					} catch (Exception e) {
 						handler.handle(new ResultMessage().error("csv.exception"));
 						log.error("csv.exception", e);
-					} finally {
-						if(csvReader!=null) {
-							try {
-								csvReader.close();
-							} catch (Exception e) {
-								log.error("Could not close parser", e);
-							}
-						}
 					}
 				}
 			});
@@ -319,14 +308,12 @@ public class CsvFeeder implements Feed {
 //			handler.handle(new ResultMessage().error("invalid.structure"));
 //			return;
 //		}
-		CSVReader csvParser = null;
 		try {
-			csvParser = getCsvReader(file, charset);
+			final List<String[]> csvLines = getCsvLines(file, charset);
 			final List<String> columns = new ArrayList<>();
 			int nbColumns = 0;
-			String[] strings;
 			int i = 0;
-			csvParserWhile : while ((strings = csvParser.readNext()) != null) {
+			csvParserWhile : for (String[] strings : csvLines) {
 				if (i == 0) {
 					columnsMapper.getColumsNames(profile, strings, columns, handler);
 					nbColumns = columns.size();
@@ -660,14 +647,6 @@ public class CsvFeeder implements Feed {
 		} catch (Exception e) {
 			handler.handle(new ResultMessage().error("csv.exception"));
 			log.error("csv.exception", e);
-		} finally {
-			if(csvParser!=null) {
-				try {
-					csvParser.close();
-				} catch (Exception e) {
-					log.error("Could not close parser", e);
-				}
-			}
 		}
 //		importer.markMissingUsers(structure.getExternalId(), new Handler<Void>() {
 //			@Override
@@ -19,7 +19,6 @@
 
 package org.entcore.feeder.csv;
 
-import com.opencsv.CSVWriter;
 import fr.wseduc.webutils.DefaultAsyncResult;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
@@ -192,13 +191,13 @@ public class CsvReport extends Report {
 				return;
 			}
 
-			final CSVWriter fileOut = CSVUtil.getCsvWriter(dirPath + File.separator + file, "UTF-8");
+			final List<String[]> fileLines = new ArrayList<>(lines.size() + 1);
 
 			final String[] headerStrings = new ArrayList<String>(header.getList()).toArray(new String[header.size()]);
 			final List<String> columns = new ArrayList<>();
 
 			// Write the header to the new file
-			fileOut.writeNext(headerStrings);
+			fileLines.add(headerStrings);
 
 			columnsMapper.getMappedColumsNames(file, headerStrings, columns);
 			
@@ -211,9 +210,9 @@ public class CsvReport extends Report {
 					continue;
 				}
 
-				fileOut.writeNext(jsonLineToFile(line, headerStrings.length, columns));
+				fileLines.add(jsonLineToFile(line, headerStrings.length, columns));
 			}
-			fileOut.close();
+			CSVUtil.writeCsv(dirPath + File.separator + file, "UTF-8", fileLines);
 		}
 	}
 
@@ -19,7 +19,6 @@
 
 package org.entcore.feeder.csv;
 
-import com.opencsv.CSVReader;
 import io.vertx.core.Future;
 import org.entcore.common.neo4j.Neo4j;
 import org.entcore.feeder.exceptions.TransactionException;
@@ -48,7 +47,7 @@ import static fr.wseduc.webutils.Utils.isEmpty;
 import static fr.wseduc.webutils.Utils.isNotEmpty;
 import static org.entcore.feeder.csv.CsvFeeder.*;
 import static org.entcore.feeder.utils.CSVUtil.emptyLine;
-import static org.entcore.feeder.utils.CSVUtil.getCsvReader;
+import static org.entcore.feeder.utils.CSVUtil.getCsvLines;
 import static org.entcore.feeder.utils.Validator.removeAccents;
 
 public class CsvValidator extends CsvReport implements ImportValidator {
@@ -338,17 +337,15 @@ public class CsvValidator extends CsvReport implements ImportValidator {
 	}
 
 	private void checkClassesMapping(String path, String profile, String charset, Handler<JsonObject> handler) {
-		CSVReader csvParser = null;
 		try {
-			csvParser = getCsvReader(path, charset);
+			final List<String[]> csvLines = getCsvLines(path, charset);
 
-			String[] strings;
 			final List<String> columns = new ArrayList<>();
 			final List<Integer> classesIdx = new ArrayList<>();
 			final Set<String> mapping = new HashSet<>();
 			profilesClassesMapping.put(profile, mapping);
 			int i = 0;
-			while ((strings = csvParser.readNext()) != null) {
+			for (String[] strings : csvLines) {
 				if (i == 0) {
 					JsonArray invalidColumns = columnsMapper.getMappedColumsNames(profile, strings, columns);
 					if (invalidColumns.size() > 0 ) {
@@ -380,25 +377,16 @@ public class CsvValidator extends CsvReport implements ImportValidator {
 			log.error("csv.exception", e);
 		} finally {
 			handler.handle(result);
-			if(csvParser!=null) {
-				try {
-					csvParser.close();
-				} catch (Exception e) {
-					log.error("Could not close parser", e);
-				}
-			}
 		}
 	}
 
 	private void checkColumnsMapping(String path, String profile, String charset, Handler<JsonObject> handler) {
-		CSVReader csvParser = null;
 		try {
-			csvParser = getCsvReader(path, charset);
+			final List<String[]> csvLines = getCsvLines(path, charset);
 
-			String[] strings;
 			int columnsNumber = -1;
 			int i = 0;
-			while ((strings = csvParser.readNext()) != null) {
+			for (String[] strings : csvLines) {
 				if (i == 0) {
 					JsonObject mapping = columnsMapper.getColumsMapping(profile, strings);
 					if (mapping != null) {
@@ -417,13 +405,6 @@ public class CsvValidator extends CsvReport implements ImportValidator {
 			addError(profile, "csv.exception");
 			log.error("csv.exception", e);
 		} finally {
-			if(csvParser!=null) {
-				try {
-					csvParser.close();
-				} catch (Exception e) {
-					log.error("Could not close parser", e);
-				}
-			}
 			handler.handle(result);
 		}
 	}
@@ -433,13 +414,11 @@ public class CsvValidator extends CsvReport implements ImportValidator {
 		final List<String> columns = new ArrayList<>();
 		final AtomicInteger filterExternalId = new AtomicInteger(-1);
 		final Set<String> externalIds = new HashSet<>();
-		CSVReader csvParser = null;
 		try {
-			csvParser = getCsvReader(path, charset);
+			final List<String[]> csvLines = getCsvLines(path, charset);
 
-			String[] strings;
 			int i = 0;
-			while ((strings = csvParser.readNext()) != null) {
+			for (String[] strings : csvLines) {
 				if (i == 0) {
 					List<String> stringsHeader = new ArrayList<>(Arrays.asList(strings));
 					if (stringsHeader.contains("R1_NOM")) {
@@ -487,14 +466,6 @@ public class CsvValidator extends CsvReport implements ImportValidator {
 			log.error("csv.exception", e);
 			handler.handle(result);
 			return;
-		} finally {
-			if(csvParser!=null) {
-				try {
-					csvParser.close();
-				} catch (Exception e) {
-					log.error("Could not close parser", e);
-				}
-			}
 		}
 		if (filterExternalId.get() >= 0) {
 			filterExternalIdExists(admlStructures, profile, externalIds, ar -> {
@@ -642,14 +613,12 @@ public class CsvValidator extends CsvReport implements ImportValidator {
 				}
 				final JsonObject checkChildExists = new JsonObject();
 //				setStructureExternalIdIfAbsent(structure.getExternalId());
-				CSVReader csvParser = null;
 				try {
 					final JsonObject classMapping = getClassesMapping(profile);
-					csvParser = getCsvReader(path, charset, 1);
+					final List<String[]> csvLines = getCsvLines(path, charset, 1);
 					final int nbColumns = columns.size();
-					String[] strings;
 					int i = 1;
-					csvParserWhile : while ((strings = csvParser.readNext()) != null) {
+					csvParserWhile : for (String[] strings : csvLines) {
 						if (emptyLine(strings)) {
 							i++;
 							continue;
@@ -1016,14 +985,6 @@ public class CsvValidator extends CsvReport implements ImportValidator {
 				} catch (Exception e) {
 					addError(profile, "csv.exception");
 					log.error("csv.exception", e);
-				} finally {
-					if(csvParser!=null) {
-						try {
-							csvParser.close();
-						} catch (Exception e) {
-							log.error("Could not close parser", e);
-						}
-					}
 				}
 				if (!checkChildExists.isEmpty()) {
 					final String query =
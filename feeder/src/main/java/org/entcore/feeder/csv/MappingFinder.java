@@ -19,8 +19,6 @@
 
 package org.entcore.feeder.csv;
 
-import com.opencsv.CSVReader;
-import com.opencsv.CSVWriter;
 import org.entcore.feeder.exceptions.TransactionException;
 import org.entcore.feeder.utils.TransactionHelper;
 import org.entcore.feeder.utils.TransactionManager;
@@ -40,8 +38,8 @@ import java.util.List;
 import java.util.regex.Matcher;
 
 import static org.entcore.feeder.utils.CSVUtil.emptyLine;
-import static org.entcore.feeder.utils.CSVUtil.getCsvReader;
-import static org.entcore.feeder.utils.CSVUtil.getCsvWriter;
+import static org.entcore.feeder.utils.CSVUtil.getCsvLines;
+import static org.entcore.feeder.utils.CSVUtil.writeCsv;
 import static org.entcore.feeder.utils.Validator.sanitize;
 
 public class MappingFinder {
@@ -89,13 +87,11 @@ public class MappingFinder {
 			handler.handle(errors);
 			return;
 		}
-		CSVReader csvReader = null;
 		try {
-			csvReader = getCsvReader(path, charset);
+			final List<String[]> csvLines = getCsvLines(path, charset);
 			final int nbColumns = columns.size();
-			String[] values;
 			int rowIdx = 0;
-			while ((values = csvReader.readNext()) != null) {
+			for (String[] values : csvLines) {
 				if (emptyLine(values)) {
 					rowIdx++;
 					continue;
@@ -161,14 +157,6 @@ public class MappingFinder {
 		} catch (Exception e) {
 			addError(errors, "error.read.file", path);
 			handler.handle(errors);
-		} finally {
-			if(csvReader!=null) {
-				try {
-					csvReader.close();
-				} catch (Exception e) {
-					log.error("Could not close reader", e);
-				}
-			}
 		}
 		tx.commit(new Handler<Message<JsonObject>>() {
 			@Override
@@ -183,21 +171,11 @@ public class MappingFinder {
 						}
 					}
 					vertx.fileSystem().deleteBlocking(path);
-					CSVWriter writer = null;
 					try {
-						writer = getCsvWriter(path, charset);
-						writer.writeAll(lines);
+						writeCsv(path, charset, lines);
 					} catch (IOException e) {
 						log.error("Error writing file.", e);
 						addError(errors, "error.write.file", path);
-					}finally{
-						if(writer!=null) {
-							try {
-								writer.close();
-							} catch (Exception e) {
-								log.error("Could not close writer", e);
-							}
-						}
 					}
 					if ("Relative".equals(profile) && columns.contains("childLastName") && !columns.contains("childExternalId")) {
 						if (additionalColumn) {
@@ -260,12 +238,10 @@ public class MappingFinder {
 			handler.handle(errors);
 			return;
 		}
-		CSVReader csvReader = null;
 		try {
-			csvReader = getCsvReader(path, charset);
-			String[] values;
+			final List<String[]> csvLines = getCsvLines(path, charset);
 			int rowIdx = 0;
-			while ((values = csvReader.readNext()) != null) {
+			for (String[] values : csvLines) {
 				if (emptyLine(values)) {
 					continue;
 				}
@@ -327,14 +303,6 @@ public class MappingFinder {
 		} catch (Exception e) {
 			addError(errors, "error.read.file", path);
 			handler.handle(errors);
-		}finally{
-			if(csvReader!=null) {
-				try {
-					csvReader.close();
-				} catch (Exception e) {
-					log.error("Could not close parser", e);
-				}
-			}
 		}
 		tx.commit(new Handler<Message<JsonObject>>() {
 			@Override
@@ -358,21 +326,11 @@ public class MappingFinder {
 						}
 					}
 					vertx.fileSystem().deleteBlocking(path);
-					CSVWriter writer = null;
 					try {
-						writer = getCsvWriter(path, charset);
-						writer.writeAll(lines);
+						writeCsv(path, charset, lines);
 					} catch (IOException e) {
 						log.error("Error writing file.", e);
 						addError(errors, "error.write.file", path);
-					}finally{
-						if(writer!=null) {
-							try {
-								writer.close();
-							} catch (Exception e) {
-								log.error("Could not close writer", e);
-							}
-						}
 					}
 					handler.handle(errors);
 				} else {
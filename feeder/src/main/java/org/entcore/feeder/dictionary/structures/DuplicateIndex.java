@@ -0,0 +1,218 @@
+/* Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ *
+ */
+
+package org.entcore.feeder.dictionary.structures;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.entcore.common.validation.StringValidation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In memory index of the users of a profile, to find the duplicates of the modified users
+ * without sending one Lucene query per user.
+ * A duplicate is kept only with a score greater than 3, so at least two of the last name, first name, birth date
+ * and email of the users are equal once cleaned : the users are indexed by each pair of these attributes and the
+ * candidates of a user are the users sharing one of its keys. The candidates are then filtered with the fuzzy
+ * names condition of the Lucene query and scored with the rules of {@link DuplicateUsers}.
+ */
+final class DuplicateIndex {
+
+	private static final float NAME_SIMILARITY = 0.6f;
+	private static final int MAX_EDITS = 2;
+	private final List<Candidate> users = new ArrayList<>();
+	private final Map<String, int[]> blocks = new HashMap<>();
+
+	static final class Candidate {
+		final String id;
+		final String lastName;
+		final String firstName;
+		final String birthDate;
+		final String email;
+		final String source;
+		final boolean disappeared;
+		private final String[] lastNameTerms;
+		private final String[] firstNameTerms;
+
+		Candidate(JsonObject user) {
+			id = user.getString("id");
+			lastName = DuplicateUsers.cleanAttribute(user.getString("lastName"));
+			firstName = DuplicateUsers.cleanAttribute(user.getString("firstName"));
+			birthDate = DuplicateUsers.cleanAttribute(user.getString("birthDate"));
+			email = DuplicateUsers.cleanAttribute(user.getString("email"));
+			source = user.getString("source");
+			disappeared = user.getLong("disappearanceDate") != null;
+			lastNameTerms = terms(user.getString("lastName"), false);
+			firstNameTerms = terms(user.getString("firstName"), false);
+		}
+
+		private List<String> keys() {
+			final String[] attributes = { lastName, firstName, birthDate, email };
+			final List<String> keys = new ArrayList<>(6);
+			for (int i = 0; i < attributes.length; i++) {
+				for (int j = i + 1; j < attributes.length; j++) {
+					if (attributes[i] != null && attributes[j] != null) {
+						keys.add(i + "" + j + "\t" + attributes[i] + "\t" + attributes[j]);
+					}
+				}
+			}
+			return keys;
+		}
+	}
+
+	void add(JsonObject user) {
+		final Candidate candidate = new Candidate(user);
+		final int index = users.size();
+		users.add(candidate);
+		for (String key : candidate.keys()) {
+			int[] block = blocks.get(key);
+			if (block == null) {
+				block = new int[2];
+			} else if (block[0] + 1 == block.length) {
+				block = Arrays.copyOf(block, block.length * 2);
+			}
+			block[++block[0]] = index;
+			blocks.put(key, block);
+		}
+	}
+
+	int size() {
+		return users.size();
+	}
+
+	/**
+	 * Find and score the duplicates of the searched users, in parallel.
+	 * @return the duplicates as <code>{sId, dId, score}</code>, one per pair of users
+	 */
+	List<JsonObject> findDuplicates(JsonArray search) {
+		final List<JsonObject> searchUsers = new ArrayList<>(search.size());
+		for (Object o : search) {
+			if (o instanceof JsonObject) {
+				searchUsers.add((JsonObject) o);
+			}
+		}
+		final Map<String, JsonObject> duplicates = new ConcurrentHashMap<>();
+		searchUsers.parallelStream().forEach(json -> {
+			final String[] lastNameQuery = terms(json.getString("lastName"), true);
+			final String[] firstNameQuery = terms(json.getString("firstName"), true);
+			if (lastNameQuery.length == 0 || firstNameQuery.length == 0) {
+				return;
+			}
+			final Candidate searchUser = new Candidate(json);
+			final Set<Integer> seen = new HashSet<>();
+			for (String key : searchUser.keys()) {
+				final int[] block = blocks.get(key);
+				if (block == null) continue;
+				for (int i = 1; i <= block[0]; i++) {
+					if (!seen.add(block[i])) continue;
+					final Candidate u = users.get(block[i]);
+					if (u.id == null || u.id.equals(searchUser.id)) continue;
+					final int score = DuplicateUsers.score(searchUser, u);
+					if (score > 0 && fuzzyMatch(lastNameQuery, u.lastNameTerms) &&
+							fuzzyMatch(firstNameQuery, u.firstNameTerms)) {
+						final String pair = (searchUser.id.compareTo(u.id) < 0) ?
+								searchUser.id + "\t" + u.id : u.id + "\t" + searchUser.id;
+						duplicates.putIfAbsent(pair, new JsonObject()
+								.put("sId", searchUser.id).put("dId", u.id).put("score", score));
+					}
+				}
+			}
+		});
+		return new ArrayList<>(duplicates.values());
+	}
+
+	/**
+	 * Terms of a name. The query terms are built like the Lucene query of {@link DuplicateUsers} (accents
+	 * and punctuation removed, short terms of a composed name ignored). The indexed terms are built like the
+	 * fulltext legacy index of Neo4j, which only splits the value on whitespaces and lower cases it.
+	 */
+	static String[] terms(String value, boolean query) {
+		if (value == null || value.trim().isEmpty()) {
+			return new String[0];
+		}
+		if (!query) {
+			return value.trim().toLowerCase().split("\\s+");
+		}
+		final String[] values = StringValidation.removeAccents(value).split("\\s+");
+		final List<String> terms = new ArrayList<>(values.length);
+		for (String v : values) {
+			if (v.startsWith("-")) {
+				v = v.replaceFirst("-+", "");
+			}
+			v = v.replaceAll("\\W+", "");
+			if (v.isEmpty() || (v.length() < 4 && values.length > 1)) continue;
+			terms.add(v.toLowerCase());
+		}
+		return terms.toArray(new String[terms.size()]);
+	}
+
+	/**
+	 * Same condition as the Lucene fuzzy query <code>(term1~0.6 OR term2~0.6)</code> of the Lucene version
+	 * embedded by Neo4j 3 : the similarity is converted to a maximum of
+	 * <code>min(2, (int) (0.4 * query term length))</code> edits, a transposition being one edit.
+	 */
+	static boolean fuzzyMatch(String[] query, String[] terms) {
+		for (String q : query) {
+			final int maxEdits = Math.min((int) ((1D - NAME_SIMILARITY) * q.length()), MAX_EDITS);
+			for (String t : terms) {
+				if (maxEdits == 0 ? q.equals(t) : distance(q, t, maxEdits) <= maxEdits) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Levenshtein distance with the transpositions of adjacent characters, or maxEdits + 1 if the lengths
+	 * of the terms are too different.
+	 */
+	private static int distance(String s, String t, int maxEdits) {
+		if (Math.abs(s.length() - t.length()) > maxEdits) {
+			return maxEdits + 1;
+		}
+		final int[][] d = new int[s.length() + 1][t.length() + 1];
+		for (int i = 0; i <= s.length(); i++) {
+			d[i][0] = i;
+		}
+		for (int j = 0; j <= t.length(); j++) {
+			d[0][j] = j;
+		}
+		for (int i = 1; i <= s.length(); i++) {
+			final char c = s.charAt(i - 1);
+			for (int j = 1; j <= t.length(); j++) {
+				d[i][j] = Math.min(Math.min(d[i - 1][j], d[i][j - 1]) + 1,
+						d[i - 1][j - 1] + (c == t.charAt(j - 1) ? 0 : 1));
+				if (i > 1 && j > 1 && c == t.charAt(j - 2) && s.charAt(i - 2) == t.charAt(j - 1)) {
+					d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+				}
+			}
+		}
+		return d[s.length()][t.length()];
+	}
+
+}
@@ -36,6 +36,7 @@ import org.entcore.feeder.utils.TransactionManager;
 import org.entcore.feeder.utils.Validator;
 import org.joda.time.DateTime;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.eventbus.Message;
 import io.vertx.core.json.JsonArray;
@@ -92,11 +93,20 @@ public class DuplicateUsers {
 			"WHERE NOT(HAS(u1.IDPN)) AND NOT(IDPN IS NULL) " +
 			"SET u1.IDPN = IDPN " +
 			"RETURN DISTINCT oldId, u1.id as id, HEAD(u1.profiles) as profile ";
-	private final List<String> notDeduplicateSource = Arrays.asList("AAF", "AAF1D");
+	private static final String MERGE_DUPLICATES_QUERY =
+			"UNWIND {duplicates} as p " +
+			"MATCH (u:User {id : p.sId}), (d:User {id : p.dId}) " +
+			"WHERE NOT(p.dId IN coalesce(u.ignoreDuplicates, [])) AND NOT(p.sId IN coalesce(d.ignoreDuplicates, [])) " +
+			"AND (has(u.activationCode) OR has(d.activationCode)) " +
+			"MERGE u-[:DUPLICATE {score:p.score}]-d ";
+	private static final List<String> notDeduplicateSource = Arrays.asList("AAF", "AAF1D");
 	private final Map<String, Integer> sourcePriority = new HashMap<>();
 	private final boolean updateCourses;
 	private final boolean autoMergeOnlyInSameStructure;
 	private final EventBus eb;
+	private Vertx vertx;
+	private int duplicatesIndexPageSize;
+	private int duplicatesBatchSize;
 	private EventStore eventStore = EventStoreFactory.getFactory().getEventStore(Feeder.class.getSimpleName());
 	public static final JsonArray defaultSourcesOrder = new JsonArray()
 			.add("AAF").add("AAF1D").add("CSV").add("EDT").add("UDT").add("MANUAL");
@@ -119,6 +129,16 @@ public class DuplicateUsers {
 		this.autoMergeOnlyInSameStructure = autoMergeOnlyInSameStructure;
 	}
 
+	/**
+	 * Find the duplicates of the modified users with an in memory index of the users of each profile,
+	 * instead of one Lucene query per user.
+	 */
+	public void enableDuplicatesIndex(Vertx vertx, int pageSize, int batchSize) {
+		this.vertx = vertx;
+		this.duplicatesIndexPageSize = pageSize;
+		this.duplicatesBatchSize = batchSize;
+	}
+
 	public void markDuplicates(Handler<JsonObject> handler) {
 		markDuplicates(null, handler);
 	}
@@ -578,7 +598,11 @@ public class DuplicateUsers {
 			public void handle(Message<JsonObject> event) {
 				JsonArray result = event.body().getJsonArray("result");
 				if ("ok".equals(event.body().getString("status")) && result != null && result.size() > 0) {
-					scoreDuplicates(profile, result, handler);
+					if (vertx != null) {
+						indexDuplicates(profile, result, handler);
+					} else {
+						scoreDuplicates(profile, result, handler);
+					}
 				} else {
 					if ("ok".equals(event.body().getString("status"))) {
 						log.info("No users findings for search duplicates");
@@ -608,12 +632,8 @@ public class DuplicateUsers {
 		final JsonArray result = new fr.wseduc.webutils.collections.JsonArray();
 		for (int i = 0; i < search.size(); i++) {
 			final JsonObject json = search.getJsonObject(i);
-			final String firstNameAttr = luceneAttribute("firstName", json.getString("firstName"), 0.6);
-			final String lastNameAttr = luceneAttribute("lastName", json.getString("lastName"), 0.6);
-			String luceneQuery;
-			if (firstNameAttr != null && lastNameAttr != null &&
-					!firstNameAttr.trim().isEmpty() && !lastNameAttr.trim().isEmpty()) {
-				luceneQuery = firstNameAttr + " AND " + lastNameAttr;
+			final String luceneQuery = luceneQuery(json);
+			if (luceneQuery != null) {
 				result.add(json);
 				tx.add(query, params.copy().put("luceneQuery", luceneQuery).put("id", json.getString("id")));
 			}
@@ -665,7 +685,97 @@ public class DuplicateUsers {
 		});
 	}
 
-	private String luceneAttribute(String attributeName, String value, double distance) {
+	private void indexDuplicates(final String profile, final JsonArray search, final Handler<Void> handler) {
+		final long start = System.currentTimeMillis();
+		loadDuplicatesIndex(profile, "", new DuplicateIndex(), index -> {
+			if (index == null) {
+				handler.handle(null);
+				return;
+			}
+			vertx.<List<JsonObject>>executeBlocking(f -> f.complete(index.findDuplicates(search)), false, ar -> {
+				if (ar.failed()) {
+					log.error("Error scoring duplicates in profile " + profile, ar.cause());
+					handler.handle(null);
+					return;
+				}
+				final List<JsonObject> duplicates = ar.result();
+				log.info("Duplicates index of profile " + profile + " : " + index.size() + " users, " +
+						search.size() + " searched, " + duplicates.size() + " duplicates found in " +
+						(System.currentTimeMillis() - start) + " ms.");
+				if (duplicates.isEmpty()) {
+					log.info("No duplicate user with score > 3 found in profile " + profile);
+					handler.handle(null);
+					return;
+				}
+				TransactionHelper tx;
+				try {
+					tx = TransactionManager.getTransaction();
+					tx.setAutoSend(false);
+				} catch (TransactionException e) {
+					log.error("Error when score duplicate users.", e);
+					handler.handle(null);
+					return;
+				}
+				for (int i = 0; i < duplicates.size(); i += duplicatesBatchSize) {
+					tx.add(MERGE_DUPLICATES_QUERY, new JsonObject().put("duplicates", new fr.wseduc.webutils.collections.JsonArray(
+							duplicates.subList(i, Math.min(duplicates.size(), i + duplicatesBatchSize)))));
+				}
+				tx.commit(event -> {
+					if ("ok".equals(event.body().getString("status"))) {
+						log.info("Mark duplicates " + profile + " finished.");
+					} else {
+						log.error("Error marking duplicates : " + event.body().getString("message"));
+					}
+					handler.handle(null);
+				});
+			});
+		});
+	}
+
+	private void loadDuplicatesIndex(final String profile, final String lastId, final DuplicateIndex index,
+			final Handler<DuplicateIndex> handler) {
+		final String query =
+				"MATCH (u:User) " +
+				"WHERE HEAD(u.profiles) = {profile} AND u.id > {lastId} AND NOT(HAS(u.deleteDate)) " +
+				"RETURN u.id as id, u.firstName as firstName, u.lastName as lastName, " +
+				"u.birthDate as birthDate, u.email as email, u.source as source, u.disappearanceDate as disappearanceDate " +
+				"ORDER BY u.id LIMIT {limit}";
+		final JsonObject params = new JsonObject().put("profile", profile).put("lastId", lastId)
+				.put("limit", duplicatesIndexPageSize);
+		TransactionManager.getNeo4jHelper().execute(query, params, event -> {
+			final JsonArray result = event.body().getJsonArray("result");
+			if (!"ok".equals(event.body().getString("status")) || result == null) {
+				log.error("Error loading users of duplicates index : " + event.body().getString("message"));
+				handler.handle(null);
+				return;
+			}
+			for (Object o : result) {
+				if (o instanceof JsonObject) {
+					index.add((JsonObject) o);
+				}
+			}
+			if (result.size() < duplicatesIndexPageSize) {
+				handler.handle(index);
+			} else {
+				loadDuplicatesIndex(profile, result.getJsonObject(result.size() - 1).getString("id"), index, handler);
+			}
+		});
+	}
+
+	/**
+	 * @return the Lucene query of the users with a first name and a last name similar to the user's,
+	 * or null if one of them is empty
+	 */
+	static String luceneQuery(JsonObject user) {
+		final String firstNameAttr = luceneAttribute("firstName", user.getString("firstName"), 0.6);
+		final String lastNameAttr = luceneAttribute("lastName", user.getString("lastName"), 0.6);
+		if (firstNameAttr.trim().isEmpty() || lastNameAttr.trim().isEmpty()) {
+			return null;
+		}
+		return firstNameAttr + " AND " + lastNameAttr;
+	}
+
+	private static String luceneAttribute(String attributeName, String value, double distance) {
 		if (value == null || value.trim().isEmpty() || attributeName == null || attributeName.trim().isEmpty()) {
 			return "";
 		}
@@ -698,34 +808,40 @@ public class DuplicateUsers {
 				"AND (has(u.activationCode) OR has(d.activationCode)) " +
 				"MERGE u-[:DUPLICATE {score:{score}}]-d ";
 		JsonObject params = new JsonObject().put("sId", searchUser.getString("id"));
-
-		final String lastName = cleanAttribute(searchUser.getString("lastName"));
-		final String firstName = cleanAttribute(searchUser.getString("firstName"));
-		final String birthDate = cleanAttribute(searchUser.getString("birthDate"));
-		final String email = cleanAttribute(searchUser.getString("email"));
-		final String source = searchUser.getString("source");
-		final Long disappearanceDate = searchUser.getLong("disappearanceDate");
+		final DuplicateIndex.Candidate s = new DuplicateIndex.Candidate(searchUser);
 
 		for (int i = 0; i < findUsers.size(); i++) {
-			int score = 2;
 			JsonObject fu = findUsers.getJsonObject(i);
-			score += exactMatch(lastName, cleanAttribute(fu.getString("lastName")));
-			score += exactMatch(firstName, cleanAttribute(fu.getString("firstName")));
-			score += exactMatch(birthDate, cleanAttribute(fu.getString("birthDate")));
-			score += exactMatch(email, cleanAttribute(fu.getString("email")));
-			if (score > 3 && ((!source.equals(fu.getString("source")) &&
-					(notDeduplicateSource.contains(source) ^ notDeduplicateSource.contains(fu.getString("source")))) ||
-					disappearanceDate != null || fu.getLong("disappearanceDate") != null)) {
+			final int score = score(s, new DuplicateIndex.Candidate(fu));
+			if (score > 0) {
 				tx.add(query, params.copy().put("dId", fu.getString("id")).put("score", score));
 			}
 		}
 	}
 
-	private int exactMatch(String attribute0, String attribute1) {
+	/**
+	 * @return the duplicate score of the users, or 0 if they must not be marked as duplicates
+	 */
+	static int score(DuplicateIndex.Candidate searchUser, DuplicateIndex.Candidate findUser) {
+		int score = 2;
+		score += exactMatch(searchUser.lastName, findUser.lastName);
+		score += exactMatch(searchUser.firstName, findUser.firstName);
+		score += exactMatch(searchUser.birthDate, findUser.birthDate);
+		score += exactMatch(searchUser.email, findUser.email);
+		final String source = searchUser.source;
+		if (score > 3 && ((source != null && !source.equals(findUser.source) &&
+				(notDeduplicateSource.contains(source) ^ notDeduplicateSource.contains(findUser.source))) ||
+				searchUser.disappeared || findUser.disappeared)) {
+			return score;
+		}
+		return 0;
+	}
+
+	private static int exactMatch(String attribute0, String attribute1) {
 		return (attribute0 == null || attribute1 == null || !attribute0.equals(attribute1)) ? 0 : 1;
 	}
 
-	private String cleanAttribute(String attribute) {
+	static String cleanAttribute(String attribute) {
 		if (attribute == null || attribute.trim().isEmpty()) {
 			return null;
 		}
@@ -21,19 +21,23 @@ package org.entcore.feeder.utils;
 
 import com.opencsv.CSVReader;
 import com.opencsv.CSVWriter;
-import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
-import io.vertx.core.buffer.Buffer;
-import io.vertx.core.file.AsyncFile;
-import io.vertx.core.file.OpenOptions;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import org.mozilla.universalchardet.UniversalDetector;
 
 import java.io.*;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import static fr.wseduc.webutils.Utils.isNotEmpty;
 
@@ -41,6 +45,31 @@ public class CSVUtil {
 
 	public static final String UTF8_BOM = "\uFEFF";
 	private static final Logger log = LoggerFactory.getLogger(CSVUtil.class);
+	private static final int CSV_CACHE_SIZE = 16;
+	private static final Map<String, SoftReference<CsvContent>> csvCache = Collections.synchronizedMap(
+			new LinkedHashMap<String, SoftReference<CsvContent>>(CSV_CACHE_SIZE, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, SoftReference<CsvContent>> eldest) {
+					return size() > CSV_CACHE_SIZE;
+				}
+			});
+
+	/**
+	 * Parsed lines of a csv file, valid while the file is not modified.
+	 */
+	private static final class CsvContent {
+		private final String charset;
+		private final long lastModified;
+		private final long length;
+		private final List<String[]> lines;
+
+		private CsvContent(File file, String charset, List<String[]> lines) {
+			this.charset = charset;
+			this.lastModified = file.lastModified();
+			this.length = file.length();
+			this.lines = Collections.unmodifiableList(lines);
+		}
+	}
 
 	private CSVUtil() {}
 
@@ -65,27 +94,27 @@ public class CSVUtil {
 		return structure;
 	}
 
+	/**
+	 * Detect the charset of the file. The file is parsed with the detected charset in the same read and the lines
+	 * are cached, so the next {@link #getCsvLines(String, String)} does not read the file again.
+	 */
 	public static void getCharset(Vertx vertx, String path, final Handler<String> handler) {
-		vertx.fileSystem().open(path, new OpenOptions(), new Handler<AsyncResult<AsyncFile>>() {
-			@Override
-			public void handle(final AsyncResult<AsyncFile> event) {
-				if (event.succeeded()) {
-					event.result().read(Buffer.buffer(4), 0, 0, 4, new Handler<AsyncResult<Buffer>>() {
-						@Override
-						public void handle(AsyncResult<Buffer> ar) {
-							event.result().close();
-							if (ar.succeeded() && ar.result().toString("UTF-8").startsWith(UTF8_BOM)) {
-								handler.handle("UTF-8");
-							} else {
-								handler.handle(detectCharset(path));
-							}
-						}
-					});
-				} else {
-					handler.handle("ISO-8859-1");
-				}
+		final CsvContent content = getCachedContent(path, null);
+		if (content != null) {
+			handler.handle(content.charset);
+			return;
+		}
+		vertx.<String>executeBlocking(future -> {
+			try {
+				final byte[] bytes = Files.readAllBytes(Paths.get(path));
+				final String charset = detectCharset(bytes);
+				parseCsv(path, bytes, charset);
+				future.complete(charset);
+			} catch (IOException e) {
+				log.error("Error when detect charset", e);
+				future.complete("ISO-8859-1");
 			}
-		});
+		}, false, ar -> handler.handle(ar.succeeded() ? ar.result() : "ISO-8859-1"));
 	}
 
 	public static String getCharsetSync(String path) {
@@ -108,31 +137,17 @@ public class CSVUtil {
 		return "ISO-8859-1";
 	}
 
-	private static String detectCharset(String path) {
-		FileInputStream fis = null;
-		try {
-			final byte[] buf = new byte[4096];
-			final UniversalDetector detector = new UniversalDetector(null);
-			fis = new FileInputStream(path);
-			int nread;
-			while ((nread = fis.read(buf)) > 0 && !detector.isDone()) {
-				detector.handleData(buf, 0, nread);
-			}
-			detector.dataEnd();
-			final String charset = detector.getDetectedCharset();
-			return charset != null ? charset : "ISO-8859-1";
-		} catch (IOException e) {
-			log.error("Error when detect charset", e);
-			return "ISO-8859-1";
-		} finally {
-			if (fis != null) {
-				try {
-					fis.close();
-				} catch (IOException e) {
-					log.error("Error close file to detect charset", e);
-				}
-			}
+	private static String detectCharset(byte[] bytes) {
+		if (bytes.length >= 3 && (bytes[0] & 0xFF) == 0xEF && (bytes[1] & 0xFF) == 0xBB && (bytes[2] & 0xFF) == 0xBF) {
+			return "UTF-8";
+		}
+		final UniversalDetector detector = new UniversalDetector(null);
+		for (int off = 0; off < bytes.length && !detector.isDone(); off += 4096) {
+			detector.handleData(bytes, off, Math.min(4096, bytes.length - off));
 		}
+		detector.dataEnd();
+		final String charset = detector.getDetectedCharset();
+		return charset != null ? charset : "ISO-8859-1";
 	}
 
 	public static CSVReader getCsvReader(String file, String charset)
@@ -145,6 +160,78 @@ public class CSVUtil {
 		return new CSVReader(new InputStreamReader(new FileInputStream(file), charset), ';', '"', skipLines);
 	}
 
+	/**
+	 * @return the lines of the csv file, from the cache if the file was already parsed with this charset
+	 */
+	public static List<String[]> getCsvLines(String file, String charset) throws IOException {
+		final CsvContent content = getCachedContent(file, charset);
+		if (content != null) {
+			return content.lines;
+		}
+		return parseCsv(file, Files.readAllBytes(Paths.get(file)), charset).lines;
+	}
+
+	public static List<String[]> getCsvLines(String file, String charset, int skipLines) throws IOException {
+		final List<String[]> lines = getCsvLines(file, charset);
+		return lines.subList(Math.min(skipLines, lines.size()), lines.size());
+	}
+
+	/**
+	 * Write the lines in the file and cache them as they will be read.
+	 */
+	public static void writeCsv(String file, String charset, List<String[]> lines) throws IOException {
+		boolean cacheable = true;
+		final List<String[]> readLines = new ArrayList<>(lines.size());
+		try (CSVWriter writer = getCsvWriter(file, charset)) {
+			for (String[] line : lines) {
+				writer.writeNext(line);
+				final String[] readLine = new String[line.length];
+				for (int i = 0; i < line.length; i++) {
+					readLine[i] = (line[i] != null) ? line[i] : "";
+					// backslash is the escape char of the reader but not of the writer
+					cacheable &= readLine[i].indexOf('\\') < 0;
+				}
+				readLines.add(readLine);
+			}
+		}
+		if (cacheable && "UTF-8".equals(charset) && !readLines.isEmpty() && readLines.get(0).length > 0) {
+			readLines.get(0)[0] = UTF8_BOM + readLines.get(0)[0];
+		}
+		if (cacheable) {
+			csvCache.put(file, new SoftReference<>(new CsvContent(new File(file), charset, readLines)));
+		} else {
+			csvCache.remove(file);
+		}
+	}
+
+	private static CsvContent getCachedContent(String file, String charset) {
+		final SoftReference<CsvContent> ref = csvCache.get(file);
+		final CsvContent content = (ref != null) ? ref.get() : null;
+		if (content == null) {
+			return null;
+		}
+		final File f = new File(file);
+		if (content.lastModified != f.lastModified() || content.length != f.length() ||
+				(charset != null && !charset.equals(content.charset))) {
+			return null;
+		}
+		return content;
+	}
+
+	private static CsvContent parseCsv(String file, byte[] bytes, String charset) throws IOException {
+		final List<String[]> lines;
+		try (CSVReader reader = new CSVReader(new InputStreamReader(new ByteArrayInputStream(bytes), charset),
+				';', '"', 0)) {
+			lines = reader.readAll();
+		}
+		final File f = new File(file);
+		final CsvContent content = new CsvContent(f, charset, lines);
+		if (f.length() == bytes.length) {
+			csvCache.put(file, new SoftReference<>(content));
+		}
+		return content;
+	}
+
 	public static CSVWriter getCsvWriter(String file, String charset) throws IOException {
 		FileOutputStream fos = new FileOutputStream(file);
 		if ("UTF-8".equals(charset)) {
@@ -0,0 +1,211 @@
+package org.entcore.feeder.aaf;
+
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLReaderFactory;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+@RunWith(VertxUnitRunner.class)
+public class AafParsePipelineTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AafParsePipelineTest.class);
+    private static final int FILES = 4;
+    private static final int STUDENTS_PER_FILE = 10000;
+    private static final String[] NAMES = { "Fran&ccedil;ois", "H&eacute;l&egrave;ne", "No&#235;l", "L&apos;Hermite",
+            "O&#x27;Brien", "Chlo&eacute; &amp; Zo&eacute;", "Beno&icirc;t", "&Eacute;lodie", "Ma&euml;lys" };
+
+    private static File folder;
+    private static List<String> files;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        folder = Files.createTempDirectory("aaf").toFile();
+        Files.copy(Paths.get(AafParsePipelineTest.class.getResource("/aaf/test/ficAlimMENESR.dtd").toURI()),
+                new File(folder, "ficAlimMENESR.dtd").toPath());
+        files = new ArrayList<>();
+        for (int f = 0; f < FILES; f++) {
+            final File file = new File(folder, "ENT_Complet_20200101_Eleve_000" + f + ".xml");
+            generate(file, f * STUDENTS_PER_FILE);
+            files.add(file.getAbsolutePath());
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        for (File f : folder.listFiles()) {
+            f.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void testUnescapeReaderShouldMatchTranslator(TestContext context) throws Exception {
+        final Random random = new Random(42);
+        final String[] parts = { "abc", "&eacute;", "&", "&;", "&#233;", "&#xE9;", "&quot;", "&apos;", "&amp;",
+                "&unknown;", "&eacute", ";", " ", "&&eacute;", "&#12345678901234567890123456789012345;", "<v>" };
+        for (int i = 0; i < 200; i++) {
+            final StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < 2000; j++) {
+                sb.append(parts[random.nextInt(parts.length)]);
+            }
+            final String content = sb.toString();
+            final AafUnescapeReader reader = new AafUnescapeReader(new StringReader(content));
+            final StringBuilder out = new StringBuilder();
+            final char[] buf = new char[1 + random.nextInt(64)];
+            int r;
+            while ((r = reader.read(buf, 0, buf.length)) != -1) {
+                out.append(buf, 0, r);
+            }
+            context.assertEquals(BaseImportProcessing.UNESCAPE_AAF.translate(content), out.toString());
+        }
+    }
+
+    @Test
+    public void testStreamingParseShouldMatchInMemoryParse(TestContext context) throws Exception {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        final CountingProcessing inMemory = new CountingProcessing();
+        System.gc();
+        final HeapSampler inMemoryHeap = new HeapSampler(memory);
+        long start = System.currentTimeMillis();
+        for (String file : files) {
+            final String content = BaseImportProcessing.UNESCAPE_AAF.translate(
+                    new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8));
+            final XMLReader xr = XMLReaderFactory.createXMLReader();
+            xr.setContentHandler(new AAFHandler(inMemory));
+            xr.setEntityResolver((publicId, systemId) ->
+                    new InputSource(new FileReader(new File(folder, "ficAlimMENESR.dtd"))));
+            xr.parse(new InputSource(new StringReader(content)));
+        }
+        final long inMemoryTime = System.currentTimeMillis() - start;
+        final long inMemoryPeak = inMemoryHeap.stop();
+
+        final CountingProcessing streaming = new CountingProcessing();
+        System.gc();
+        final HeapSampler streamingHeap = new HeapSampler(memory);
+        start = System.currentTimeMillis();
+        final AafParsePipeline pipeline = new AafParsePipeline(files, folder.getAbsolutePath(), streaming, 2, 1000);
+        for (int i = 0; i < files.size(); i++) {
+            pipeline.consume(i, false, streaming::process);
+        }
+        pipeline.close();
+        final long streamingTime = System.currentTimeMillis() - start;
+        final long streamingPeak = streamingHeap.stop();
+
+        log.info("AAF parse of " + FILES + " files of " + (new File(files.get(0)).length() >> 20) + " MB : in memory " +
+                inMemoryTime + " ms, peak heap " + (inMemoryPeak >> 20) + " MB, streaming pipeline " + streamingTime +
+                " ms, peak heap " + (streamingPeak >> 20) + " MB");
+        context.assertEquals((long) FILES * STUDENTS_PER_FILE, streaming.count);
+        context.assertEquals(inMemory.count, streaming.count);
+        context.assertEquals(inMemory.checksum, streaming.checksum);
+    }
+
+    private static void generate(File file, int offset) throws Exception {
+        try (PrintWriter w = new PrintWriter(file, "UTF-8")) {
+            w.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            w.println("<!DOCTYPE ficAlimMENESR SYSTEM \"ficAlimMENESR.dtd\">");
+            w.println("<ficAlimMENESR>");
+            for (int i = offset; i < offset + STUDENTS_PER_FILE; i++) {
+                final String name = NAMES[i % NAMES.length];
+                w.println("<addRequest>");
+                w.println("<operationalAttributes><attr name=\"categoriePersonne\"><value>Eleve</value></attr></operationalAttributes>");
+                w.println("<identifier><id>" + i + "</id></identifier><attributes>");
+                w.println("<attr name=\"ENTPersonJointure\"><value>" + i + "</value></attr>");
+                w.println("<attr name=\"ENTEleveINE\"><value>" + (100000000 + i) + "AA</value></attr>");
+                w.println("<attr name=\"ENTPersonDateNaissance\"><value>01/01/2010</value></attr>");
+                w.println("<attr name=\"ENTPersonNomPatro\"><value>NOM " + name + "</value></attr>");
+                w.println("<attr name=\"sn\"><value>NOM " + name + "</value></attr>");
+                w.println("<attr name=\"givenName\"><value>" + name + "</value></attr>");
+                w.println("<attr name=\"ENTPersonAutresPrenoms\"><value>" + name + "</value><value>Autre</value></attr>");
+                w.println("<attr name=\"ENTPersonAdresse\"><value>" + i + " rue de l&apos;&Eacute;glise$$$</value></attr>");
+                w.println("<attr name=\"ENTPersonCodePostal\"><value>16730</value></attr>");
+                w.println("<attr name=\"ENTPersonVille\"><value>LINARS</value></attr>");
+                w.println("<attr name=\"ENTEleveEnseignements\"><value>ANGLAIS LV1</value><value>FRAN&Ccedil;AIS</value></attr>");
+                w.println("<attr name=\"ENTEleveClasses\"><value>3000$1AQUA</value></attr>");
+                w.println("</attributes></addRequest>");
+            }
+            w.println("</ficAlimMENESR>");
+        }
+    }
+
+    private static final class CountingProcessing implements ImportProcessing {
+        private long count;
+        private long checksum;
+
+        @Override
+        public void start(Handler<Message<JsonObject>> handler) {}
+
+        @Override
+        public String getMappingResource() {
+            return "dictionary/mapping/aaf/Eleve.json";
+        }
+
+        @Override
+        public void process(JsonObject object) {
+            count++;
+            checksum = 31 * checksum + object.encode().hashCode();
+        }
+
+        @Override
+        public String getAcademyPrefix() {
+            return "";
+        }
+    }
+
+    private static final class HeapSampler implements Runnable {
+        private final MemoryMXBean memory;
+        private final AtomicLong peak = new AtomicLong();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        private HeapSampler(MemoryMXBean memory) {
+            this.memory = memory;
+            this.thread = new Thread(this, "heap-sampler");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                peak.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                    Thread.sleep(5L);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        private long stop() throws InterruptedException {
+            running = false;
+            thread.join();
+            return peak.get();
+        }
+    }
+
+}
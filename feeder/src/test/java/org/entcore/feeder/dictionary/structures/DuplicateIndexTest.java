@@ -0,0 +1,159 @@
+package org.entcore.feeder.dictionary.structures;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.test.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.Neo4jContainer;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compare the duplicates found with the index to the duplicates found with the Lucene queries on the
+ * fulltext node_auto_index of Neo4j, for a fixed set of users.
+ */
+@RunWith(VertxUnitRunner.class)
+public class DuplicateIndexTest {
+
+    private static final TestHelper test = TestHelper.helper();
+    @ClassRule
+    public static Neo4jContainer<?> neo4jContainer = test.database().createNeo4jContainer()
+            .withNeo4jConfig("dbms.auto_index.nodes.enabled", "true")
+            .withNeo4jConfig("dbms.auto_index.nodes.keys", "firstName,lastName");
+
+    private static final String LUCENE_QUERY =
+            "START u=node:node_auto_index({luceneQuery}) " +
+            "WHERE HEAD(u.profiles) = 'Student' AND u.id <> {id} AND NOT(HAS(u.deleteDate)) " +
+            "RETURN u.id as id, u.firstName as firstName, u.lastName as lastName, " +
+            "u.birthDate as birthDate, u.email as email, u.source as source, u.disappearanceDate as disappearanceDate";
+
+    // id, firstName, lastName, birthDate, email, source, disappeared
+    private static final Object[][] USERS = {
+            { "u01", "Marie", "Dupont", "2010-01-05", null, "AAF", false },
+            { "u02", "MARIE", "Dupont", "2010-01-05", null, "CSV", false },
+            { "u03", "Marie", "Dupond", "2010-01-05", null, "MANUAL", false },
+            { "u04", "Marie", "Dupo", "2010-01-05", null, "CSV", false },
+            { "u05", "Hélène", "Martin", "2011-03-12", "helene.martin@test.fr", "AAF", false },
+            { "u06", "Helene", "Martin", "2012-07-01", "helene.martin@test.fr", "CSV", false },
+            { "u07", "Hélène", "Matrin", "2011-03-12", null, "MANUAL", false },
+            { "u08", "Jean-Pierre", "Le Goff", "2009-11-30", null, "AAF1D", false },
+            { "u09", "Jean Pierre", "Le Goff", "2009-11-30", null, "MANUAL", false },
+            { "u10", "Jeanpierre", "Le Goff", "2009-11-30", null, "CSV", false },
+            { "u11", "Léa", "Bernard", "2010-06-21", null, "AAF", false },
+            { "u12", "Lea", "Bernard", "2010-06-21", null, "CSV", false },
+            { "u13", "Lou", "Bernard", "2010-06-21", null, "MANUAL", false },
+            { "u14", "Anne Sophie", "De La Fontaine", "2008-02-14", null, "AAF", false },
+            { "u15", "Anne-Sophie", "Fontaine", "2008-02-14", null, "CSV", false },
+            { "u16", "Sophie", "De La Fontaine", "2008-02-14", "asdlf@test.fr", "MANUAL", false },
+            { "u17", "Mathéo", "Petit", "2012-09-09", "matheo@test.fr", "AAF", false },
+            { "u18", "Matteo", "Petit", "2012-09-09", "matheo@test.fr", "AAF", false },
+            { "u19", "Matteo", "Petit", "2012-09-09", null, "CSV", true },
+            { "u20", "Noé", "Roux", "2011-12-01", null, "CSV", false },
+            { "u21", "Noe", "Roux", "2011-12-01", null, "MANUAL", true },
+            { "u22", "Noah", "Roux", "2011-12-01", null, "AAF", false },
+            { "u23", "Clément", "D'Arc", "2010-10-10", "clement@test.fr", "AAF", false },
+            { "u24", "Clement", "Darc", "2010-10-10", "clement@test.fr", "CSV", false },
+            { "u25", "Zoé", "Li", "2013-04-04", null, "AAF", false },
+            { "u26", "Zoe", "Li", "2013-04-04", null, "CSV", false },
+            { "u27", "Zoé", "Lu", "2013-04-04", null, "CSV", false },
+            { "u28", "Inès", "Moreau", "2009-05-17", null, "AAF", false },
+            { "u29", "Ines", "Moerau", "2009-05-17", null, "CSV", false },
+            { "u30", "Ines", "Moreau", "2010-05-17", "ines@test.fr", "MANUAL", false },
+            { "u31", "Hugo", "Garcia", "2010-08-08", "hugo@test.fr", "AAF", false },
+            { "u32", "Hugo", "Garcia", "2011-08-08", "hugo@test.fr", "CSV", false },
+            { "u33", "Ugo", "Garcia", "2010-08-08", "hugo@test.fr", "MANUAL", false },
+            { "u34", "Sarah", "Lefebvre", "2012-01-30", null, "AAF", false },
+            { "u35", "Sara", "Lefèbvre", "2012-01-30", null, "CSV", false },
+            { "u36", "Sarah", "Lefevre", "2012-01-30", null, "MANUAL", false },
+    };
+
+    private static final List<JsonObject> users = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        test.database().initNeo4j(context, neo4jContainer);
+        for (Object[] u : USERS) {
+            final JsonObject user = new JsonObject().put("id", u[0]).put("firstName", u[1]).put("lastName", u[2])
+                    .put("birthDate", u[3]).put("source", u[5]).put("profiles", new JsonArray().add("Student"));
+            if (u[4] != null) {
+                user.put("email", u[4]);
+            }
+            if ((Boolean) u[6]) {
+                user.put("disappearanceDate", 1577836800000L);
+            }
+            users.add(user);
+        }
+        final Async async = context.async();
+        // node_auto_index must be a fulltext index before the users are indexed, like the legacy-indexes of infra
+        final URI uri = URI.create(neo4jContainer.getHttpUrl());
+        final HttpClient client = test.vertx().createHttpClient();
+        client.post(uri.getPort(), uri.getHost(), "/db/data/index/node", response -> {
+            context.assertEquals(201, response.statusCode());
+            client.close();
+            test.database().executeNeo4j("UNWIND {users} as user CREATE (u:User) SET u = user",
+                    new JsonObject().put("users", new JsonArray(users))).setHandler(context.asyncAssertSuccess(r ->
+                    async.complete()));
+        }).putHeader("Content-Type", "application/json").end(new JsonObject().put("name", "node_auto_index")
+                .put("config", new JsonObject().put("type", "fulltext").put("provider", "lucene")).encode());
+    }
+
+    @Test
+    public void testIndexShouldFindSameDuplicatesAsLuceneSearch(TestContext context) {
+        final DuplicateIndex index = new DuplicateIndex();
+        users.forEach(index::add);
+        final Set<String> indexed = new HashSet<>();
+        for (JsonObject d : index.findDuplicates(new JsonArray(users))) {
+            indexed.add(pair(d.getString("sId"), d.getString("dId"), d.getInteger("score")));
+        }
+
+        final List<Future> searches = new ArrayList<>();
+        final Set<String> lucene = new HashSet<>();
+        for (JsonObject user : users) {
+            final String luceneQuery = DuplicateUsers.luceneQuery(user);
+            if (luceneQuery == null) continue;
+            final Promise<Void> promise = Promise.promise();
+            searches.add(promise.future());
+            test.database().executeNeo4j(LUCENE_QUERY, new JsonObject().put("luceneQuery", luceneQuery)
+                    .put("id", user.getString("id"))).setHandler(ar -> {
+                if (ar.failed()) {
+                    promise.fail(ar.cause());
+                    return;
+                }
+                final DuplicateIndex.Candidate s = new DuplicateIndex.Candidate(user);
+                for (Object o : ar.result()) {
+                    final DuplicateIndex.Candidate u = new DuplicateIndex.Candidate((JsonObject) o);
+                    final int score = DuplicateUsers.score(s, u);
+                    if (score > 0) {
+                        synchronized (lucene) {
+                            lucene.add(pair(s.id, u.id, score));
+                        }
+                    }
+                }
+                promise.complete();
+            });
+        }
+        CompositeFuture.all(searches).setHandler(context.asyncAssertSuccess(r -> {
+            context.assertTrue(lucene.contains(pair("u01", "u02", 5)));
+            context.assertEquals(lucene, indexed);
+        }));
+    }
+
+    private static String pair(String id1, String id2, int score) {
+        return (id1.compareTo(id2) < 0 ? id1 + ":" + id2 : id2 + ":" + id1) + ":" + score;
+    }
+
+}
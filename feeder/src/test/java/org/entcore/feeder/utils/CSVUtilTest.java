@@ -0,0 +1,145 @@
+package org.entcore.feeder.utils;
+
+import com.opencsv.CSVReader;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mozilla.universalchardet.UniversalDetector;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(VertxUnitRunner.class)
+public class CSVUtilTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CSVUtilTest.class);
+    private static final int ROWS = 50000;
+    // charset detection, columns check, validation and import
+    private static final int READS = 4;
+
+    private Vertx vertx;
+    private File folder;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        folder = Files.createTempDirectory("csv").toFile();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+        for (File f : folder.listFiles()) {
+            f.delete();
+        }
+        folder.delete();
+    }
+
+    @Test
+    public void testCachedLinesShouldMatchFileReads(TestContext context) throws Exception {
+        final File file = new File(folder, "Student");
+        generate(file);
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        System.gc();
+        long heap = memory.getHeapMemoryUsage().getUsed();
+        long start = System.currentTimeMillis();
+        final UniversalDetector detector = new UniversalDetector(null);
+        try (InputStream in = new FileInputStream(file)) {
+            final byte[] buf = new byte[4096];
+            int r;
+            while ((r = in.read(buf)) > 0 && !detector.isDone()) {
+                detector.handleData(buf, 0, r);
+            }
+        }
+        detector.dataEnd();
+        final String charset = detector.getDetectedCharset() != null ? detector.getDetectedCharset() : "ISO-8859-1";
+        final List<String[]> fileLines = new ArrayList<>();
+        for (int i = 0; i < READS; i++) {
+            fileLines.clear();
+            try (CSVReader reader = CSVUtil.getCsvReader(file.getAbsolutePath(), charset)) {
+                String[] line;
+                while ((line = reader.readNext()) != null) {
+                    fileLines.add(line);
+                }
+            }
+        }
+        final long readerTime = System.currentTimeMillis() - start;
+        final long readerHeap = memory.getHeapMemoryUsage().getUsed() - heap;
+
+        System.gc();
+        heap = memory.getHeapMemoryUsage().getUsed();
+        start = System.currentTimeMillis();
+        final Async async = context.async();
+        CSVUtil.getCharset(vertx, file.getAbsolutePath(), detected -> {
+            try {
+                context.assertEquals(charset, detected);
+                List<String[]> lines = null;
+                for (int i = 0; i < READS; i++) {
+                    lines = CSVUtil.getCsvLines(file.getAbsolutePath(), detected);
+                }
+                final long cacheTime = System.currentTimeMillis() - start;
+                log.info("Csv of " + ROWS + " rows read " + READS + " times : " + readerTime + " ms, " +
+                        (readerHeap >> 20) + " MB allocated, parsed once and cached : " + cacheTime + " ms, " +
+                        ((memory.getHeapMemoryUsage().getUsed() - heap) >> 20) + " MB allocated");
+                assertSameLines(context, fileLines, lines);
+                context.assertEquals(ROWS - 1, CSVUtil.getCsvLines(file.getAbsolutePath(), detected, 1).size());
+                async.complete();
+            } catch (Exception e) {
+                context.fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testWrittenLinesShouldBeReadFromCache(TestContext context) throws Exception {
+        final String path = new File(folder, "Relative").getAbsolutePath();
+        final List<String[]> lines = Arrays.asList(
+                new String[] { "Nom", "Prénom", "Classe" },
+                new String[] { "Dupont", null, "6A" },
+                new String[] { "Lévêque", "\"Jo\";", "multi\nline" });
+        CSVUtil.writeCsv(path, "UTF-8", lines);
+        final List<String[]> cached = CSVUtil.getCsvLines(path, "UTF-8");
+
+        final File file = new File(path);
+        context.assertTrue(file.setLastModified(file.lastModified() + 2000L));
+        final List<String[]> parsed = CSVUtil.getCsvLines(path, "UTF-8");
+        context.assertFalse(cached == parsed);
+        assertSameLines(context, parsed, cached);
+        context.assertEquals(CSVUtil.UTF8_BOM + "Nom", cached.get(0)[0]);
+        context.assertEquals("", cached.get(1)[1]);
+    }
+
+    private static void assertSameLines(TestContext context, List<String[]> expected, List<String[]> actual) {
+        context.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            context.assertTrue(Arrays.equals(expected.get(i), actual.get(i)), "line " + i);
+        }
+    }
+
+    private static void generate(File file) throws Exception {
+        try (PrintWriter w = new PrintWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), "ISO-8859-1"))) {
+            w.println("Nom;Prénom;Date de naissance;Classe;Identifiant");
+            for (int i = 1; i < ROWS; i++) {
+                w.println("Nom" + i + ";Hélène;0" + (1 + i % 9) + "/01/2010;6" + (char) ('A' + i % 5) + ";\"id;" + i + "\"");
+            }
+        }
+    }
+
+}
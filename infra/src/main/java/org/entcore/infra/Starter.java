@@ -111,6 +111,18 @@ public class Starter extends BaseServer {
 			if (oauthCache != null) {
 				serverMap.put("oauthCache", oauthCache.encode());
 			}
+			JsonObject sessionNearCache = config.getJsonObject("sessionNearCache");
+			if (sessionNearCache != null) {
+				serverMap.put("sessionNearCache", sessionNearCache.encode());
+			}
+			JsonObject authorizationCache = config.getJsonObject("authorizationCache");
+			if (authorizationCache != null) {
+				serverMap.put("authorizationCache", authorizationCache.encode());
+			}
+			JsonObject sqlDirect = config.getJsonObject("sqlDirect");
+			if (sqlDirect != null) {
+				serverMap.put("sqlDirect", sqlDirect.encode());
+			}
 			serverMap.put("cache-enabled", config.getBoolean("cache-enabled", false));
 			final String csp = config.getString("content-security-policy");
 			if (isNotEmpty(csp)) {
@@ -26,10 +26,13 @@ import fr.wseduc.security.SecuredAction;
 import fr.wseduc.webutils.http.BaseController;
 import fr.wseduc.webutils.http.Renders;
 import io.vertx.core.shareddata.LocalMap;
+import org.entcore.common.events.impl.PostgresqlEventBatchWriter;
 import org.entcore.common.http.filter.AdminFilter;
+import org.entcore.common.http.filter.AuthorizationDecisionCache;
 import org.entcore.common.http.filter.ResourceFilter;
 import org.entcore.common.neo4j.Neo4j;
 import org.entcore.common.sql.Sql;
+import org.entcore.common.user.UserUtils;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.Message;
@@ -48,6 +51,9 @@ public class MonitoringController extends BaseController {
 	private boolean postgresql;
 	private long dbCheckTimeout;
 	private boolean enableNeo4jMetrics;
+	private boolean enableSessionCacheMetrics;
+	private boolean enableAuthorizationCacheMetrics;
+	private boolean enableEventStoreMetrics;
 
 	@Override
 	public void init(Vertx vertx, JsonObject config, RouteMatcher rm, Map<String, fr.wseduc.webutils.security.SecuredAction> securedActions) {
@@ -55,6 +61,9 @@ public class MonitoringController extends BaseController {
 		dbCheckTimeout = config.getLong("dbCheckTimeout", 5000l);
 		postgresql = config.getBoolean("sql", true);
 		enableNeo4jMetrics = config.getBoolean("neo4jMetricsEnable", false);
+		enableSessionCacheMetrics = config.getBoolean("sessionCacheMetricsEnable", false);
+		enableAuthorizationCacheMetrics = config.getBoolean("authorizationCacheMetricsEnable", false);
+		enableEventStoreMetrics = config.getBoolean("eventStoreMetricsEnable", false);
 	}
 
 	@Get("/monitoring/db")
@@ -99,6 +108,57 @@ public class MonitoringController extends BaseController {
 		}
 	}
 
+	@Get("/monitoring/session/cache/metrics")
+	public void sessionCacheMetrics(final HttpServerRequest request) {
+		if(enableSessionCacheMetrics){
+			final JsonObject metrics = UserUtils.getSessionNearCacheMetrics();
+			final StringBuilder text = new StringBuilder();
+			for(final String key : metrics.fieldNames()){
+				text.append(key).append(" ").append(metrics.getValue(key).toString()).append("\n");
+			}
+			request.response().putHeader("content-type", "text/plain");
+			request.response().putHeader("Cache-Control", "no-cache, must-revalidate");
+			request.response().putHeader("Expires", "-1");
+			request.response().end(text.toString());
+		}else{
+			notFound(request);
+		}
+	}
+
+	@Get("/monitoring/authorization/cache/metrics")
+	public void authorizationCacheMetrics(final HttpServerRequest request) {
+		if(enableAuthorizationCacheMetrics){
+			final JsonObject metrics = AuthorizationDecisionCache.metrics();
+			final StringBuilder text = new StringBuilder();
+			for(final String key : metrics.fieldNames()){
+				text.append(key).append(" ").append(metrics.getValue(key).toString()).append("\n");
+			}
+			request.response().putHeader("content-type", "text/plain");
+			request.response().putHeader("Cache-Control", "no-cache, must-revalidate");
+			request.response().putHeader("Expires", "-1");
+			request.response().end(text.toString());
+		}else{
+			notFound(request);
+		}
+	}
+
+	@Get("/monitoring/events/store/metrics")
+	public void eventStoreMetrics(final HttpServerRequest request) {
+		if(enableEventStoreMetrics){
+			final JsonObject metrics = PostgresqlEventBatchWriter.metrics();
+			final StringBuilder text = new StringBuilder();
+			for(final String key : metrics.fieldNames()){
+				text.append(key).append(" ").append(metrics.getValue(key).toString()).append("\n");
+			}
+			request.response().putHeader("content-type", "text/plain");
+			request.response().putHeader("Cache-Control", "no-cache, must-revalidate");
+			request.response().putHeader("Expires", "-1");
+			request.response().end(text.toString());
+		}else{
+			notFound(request);
+		}
+	}
+
 	@Get("/monitoring/versions/all")
 	@SecuredAction(value = "",  type = ActionType.RESOURCE)
 	@ResourceFilter(AdminFilter.class)
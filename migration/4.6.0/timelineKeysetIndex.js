@@ -0,0 +1,2 @@
+db.timeline.createIndex( { "recipients.userId" : 1, "created" : -1, "_id" : -1 }, { background: true } );
+db.timelineMobile.createIndex( { "recipients.userId" : 1, "created" : -1, "_id" : -1 }, { background: true } );
@@ -23,6 +23,7 @@ import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import org.entcore.common.user.SessionNearCache;
 
 public abstract class AbstractSessionStore implements SessionStore {
 
@@ -31,6 +32,7 @@ public abstract class AbstractSessionStore implements SessionStore {
     protected final long prolongedSessionTimeout;
     protected final Vertx vertx;
     protected ActivityManager inactivity;
+    protected SessionExpiryWheel expiryWheel;
 
     public AbstractSessionStore(Vertx vertx, JsonObject config, Boolean cluster) {
         this.vertx = vertx;
@@ -59,6 +61,13 @@ public abstract class AbstractSessionStore implements SessionStore {
 		} else {
 			this.prolongedSessionTimeout = 20 * DEFAULT_SESSION_TIMEOUT;
 		}
+        final JsonObject wheelConfig = config.getJsonObject("expiry-wheel");
+        if (wheelConfig != null && wheelConfig.getBoolean("enabled", false)) {
+            final long tick = wheelConfig.getLong("tick", SessionExpiryWheel.DEFAULT_TICK);
+            expiryWheel = new SessionExpiryWheel(tick, System.currentTimeMillis(), this::sessionExpired);
+            vertx.setPeriodic(tick, timerId -> expiryWheel.advance(System.currentTimeMillis()));
+            logger.info("Session expiry wheel enabled with tick " + tick + " ms.");
+        }
     }
 
     protected long setTimer(final String userId, final String sessionId, final boolean secureLocation) {
@@ -72,36 +81,55 @@ public abstract class AbstractSessionStore implements SessionStore {
         return setTimer(userId, sessionId, sessionTimeout, secureLocation);
     }
 
+    /**
+     * @return the Vert.x timer id, or -1 if the expiry is indexed by the expiry wheel
+     */
     protected long setTimer(final String userId, final String sessionId, final long sessionTimeout,
             final boolean secureLocation) {
-        return vertx.setTimer(sessionTimeout, timerId -> {
-            if (inactivityEnabled()) {
-                inactivity.getLastActivity(sessionId, secureLocation, ar -> {
-                    if (ar.succeeded()) {
-                        final Long lastActivity = ar.result();
-                        if (lastActivity != null) {
-                            final long timeoutTimestamp = lastActivity
-                                    + (secureLocation ? prolongedSessionTimeout : sessionTimeout);
-                            final long now = System.currentTimeMillis();
-                            if (timeoutTimestamp > now) {
-                                final long tId = setTimer(userId, sessionId, (timeoutTimestamp - now), secureLocation);
+        if (expiryWheel != null) {
+            expiryWheel.schedule(userId, sessionId, sessionTimeout, secureLocation, System.currentTimeMillis());
+            return -1L;
+        }
+        return vertx.setTimer(sessionTimeout, timerId -> sessionExpired(userId, sessionId, secureLocation));
+    }
+
+    protected void cancelTimer(final String sessionId, final long timerId) {
+        if (expiryWheel != null) {
+            expiryWheel.cancel(sessionId);
+        } else {
+            vertx.cancelTimer(timerId);
+        }
+    }
+
+    private void sessionExpired(final String userId, final String sessionId, final boolean secureLocation) {
+        if (inactivityEnabled()) {
+            inactivity.getLastActivity(sessionId, secureLocation, ar -> {
+                if (ar.succeeded()) {
+                    final Long lastActivity = ar.result();
+                    if (lastActivity != null) {
+                        final long timeoutTimestamp = lastActivity
+                                + (secureLocation ? prolongedSessionTimeout : sessionTimeout);
+                        final long now = System.currentTimeMillis();
+                        if (timeoutTimestamp > now) {
+                            final long tId = setTimer(userId, sessionId, (timeoutTimestamp - now), secureLocation);
+                            if (expiryWheel == null) {
                                 updateTimerId(userId, sessionId, tId);
-                            } else {
-                                dropSession(sessionId, null);
                             }
                         } else {
-                            logger.warn("Null last activity with session " + sessionId);
                             dropSession(sessionId, null);
                         }
                     } else {
-                        logger.error("Error getting last activity with session " + sessionId, ar.cause());
+                        logger.warn("Null last activity with session " + sessionId);
                         dropSession(sessionId, null);
                     }
-                });
-            } else {
-                removeCacheSession(userId, sessionId);
-            }
-        });
+                } else {
+                    logger.error("Error getting last activity with session " + sessionId, ar.cause());
+                    dropSession(sessionId, null);
+                }
+            });
+        } else {
+            removeCacheSession(userId, sessionId);
+        }
     }
 
     @Override
@@ -113,6 +141,31 @@ public abstract class AbstractSessionStore implements SessionStore {
 
     protected abstract void updateTimerId(String userId, String sessionId, long timerId);
 
+    @Override
+    public void touchSession(String sessionId, String userId, boolean secureLocation) {
+        if (inactivityEnabled()) {
+            inactivity.updateLastActivity(sessionId, userId, secureLocation, ar -> {
+                if (ar.failed()) {
+                    logger.error("Error when update last activity with session " + sessionId, ar.cause());
+                }
+            });
+        }
+    }
+
+    /**
+     * Notify modules near caches that a session (or all sessions of a user when sessionId is null) changed.
+     */
+    protected void invalidateNearCache(String userId, String sessionId) {
+        final JsonObject message = new JsonObject();
+        if (userId != null) {
+            message.put("userId", userId);
+        }
+        if (sessionId != null) {
+            message.put("sessionId", sessionId);
+        }
+        vertx.eventBus().publish(SessionNearCache.INVALIDATION_ADDRESS, message);
+    }
+
     protected void dropMongoDbSession(String sessionId) {
         MongoDb.getInstance().delete(AuthManager.SESSIONS_COLLECTION, new JsonObject().put("_id", sessionId));
     }
@@ -48,11 +48,51 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 	public static final String OAUTH_ACCESS_TOKEN_COLLECTION = "tokens";
 	public static final String CAS_COLLECTION = "authcas";
 
+	private static final String AUTHORIZED_ACTIONS_RETURN =
+			"RETURN DISTINCT COLLECT(distinct [a.name,a.displayName,a.type]) as authorizedActions, " +
+			"COLLECT(distinct [app.name,app.address,app.icon,app.target,app.displayName,app.display,app.prefix,app.casType,app.scope,app:External]) as apps";
+	private static final String AUTHORIZED_ACTIONS_QUERY =
+			"MATCH (n:User {id : {id}})-[:IN]->()-[:AUTHORIZED]->(:Role)-[:AUTHORIZE]->(a:Action)" +
+			"<-[:PROVIDE]-(app:Application) " +
+			"WHERE HAS(n.login) " + AUTHORIZED_ACTIONS_RETURN;
+	private static final String GROUPS_AUTHORIZED_ACTIONS_QUERY =
+			"MATCH (g:Group)-[:AUTHORIZED]->(:Role)-[:AUTHORIZE]->(a:Action)<-[:PROVIDE]-(app:Application) " +
+			"WHERE g.id IN {groupIds} " + AUTHORIZED_ACTIONS_RETURN;
+	private static final String WIDGETS_CONDITION_RETURN =
+			"AND ( NOT(w<-[:HAS_WIDGET]-(:Application)-[:PROVIDE]->(:WorkflowAction)) " +
+			"XOR w<-[:HAS_WIDGET]-(:Application)-[:PROVIDE]->(:WorkflowAction)<-[:AUTHORIZE]-(:Role)<-[:AUTHORIZED]-g )  " +
+			"OPTIONAL MATCH (w)<-[:HAS_WIDGET]-(app:Application) " +
+			"WITH w, app, collect(auth) as authorizations " +
+			"RETURN DISTINCT COLLECT({" +
+				"id: w.id, name: w.name, " +
+				"path: coalesce(app.address, '') + w.path, " +
+				"js: coalesce(app.address, '') + w.js, "+
+				"i18n: coalesce(app.address, '') + w.i18n, "+
+				"application: app.name, " +
+				"mandatory: ANY(a IN authorizations WHERE HAS(a.mandatory) AND a.mandatory = true)"+
+			"}) as widgets";
+	private static final String WIDGETS_QUERY =
+			"MATCH (u:User {id: {id}})-[:IN]->(g:Group)-[auth:AUTHORIZED]->(w:Widget) " +
+			"WHERE HAS(u.login) " + WIDGETS_CONDITION_RETURN;
+	private static final String GROUPS_WIDGETS_QUERY =
+			"MATCH (g:Group)-[auth:AUTHORIZED]->(w:Widget) " +
+			"WHERE g.id IN {groupIds} " + WIDGETS_CONDITION_RETURN;
+	// only the structures of the user AAF functions are needed to map the functions scopes
+	private static final String STRUCTURES_MAPPING_QUERY =
+			"MATCH (u:User {id: {id}}) WHERE HAS(u.functions) " +
+			"UNWIND u.functions as aafFunction " +
+			"WITH DISTINCT head(split(aafFunction, '$')) as externalId " +
+			"MATCH (s:Structure {externalId: externalId}) " +
+			"RETURN s.id as id, s.externalId as externalId";
+	private static final String PREFERENCES_QUERY =
+			"MATCH (u:User {id: {id}})-[:PREFERS]->(uac:UserAppConf) RETURN uac AS preferences";
+
 	protected MongoDb mongo;
 	protected Neo4j neo4j;
 	protected SessionStore sessionStore;
 	protected CacheService OAuthCacheService;
 	protected Boolean cluster;
+	private SessionReferenceCache referenceCache;
 
 	public void start() {
 		super.start();
@@ -69,6 +109,12 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 
 		sessionStore = new MapSessionStore(vertx, cluster, config);
 
+		final JsonObject referenceCacheConfig = config.getJsonObject("reference-cache");
+		if (referenceCacheConfig != null && referenceCacheConfig.getBoolean("enabled", false)) {
+			referenceCache = new SessionReferenceCache(referenceCacheConfig);
+			referenceCache.listenInvalidations(vertx.eventBus());
+		}
+
 		try
 		{
 			Object oauthCacheConf = server.get("oauthCache");
@@ -134,11 +180,23 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 		case "sessionNumber":
 			doSessionNumber(message);
 			break;
+		case "touch":
+			doTouch(message);
+			break;
 		default:
 			sendError(message, "Invalid action: " + action);
 		}
 	}
 
+	private void doTouch(Message<JsonObject> message) {
+		final String sessionId = message.body().getString("sessionId");
+		final String userId = message.body().getString("userId");
+		if (sessionId == null || userId == null) {
+			return;
+		}
+		sessionStore.touchSession(sessionId, userId, getOrElse(message.body().getBoolean("secureLocation"), false));
+	}
+
 	private void doSessionNumber(Message<JsonObject> message) {
 		sessionStore.getSessionsNumber(ar -> {
 			if (ar.succeeded()) {
@@ -675,197 +733,216 @@ public class AuthManager extends BusModBase implements Handler<Message<JsonObjec
 				"COLLECT(distinct [child.id, child.lastName, child.firstName]) as childrenInfo, has(n.password) as hasPw, " +
 				"COLLECT(distinct [s.id, s.name, s.UAI, s.hasApp]) as structures, COLLECT(distinct [f.externalId, rf.scope]) as functions, " +
 				"COLLECT(distinct gp.id) as groupsIds, n.federatedIDP as federatedIDP, n.functions as aafFunctions, " +
+				"COLLECT(distinct CASE WHEN gp:ProfileGroup THEN gp.id END) as profileGroupsIds, " +
+				"COLLECT(distinct CASE WHEN gp:ProfileGroup THEN c.id END) as profileClassesIds, " +
 				"REDUCE(acc=[], pRed IN COLLECT(COALESCE(s.optionEnabled, [])) | pRed+acc ) as optionEnabled";
-		final String query2 =
-				"MATCH (n:User {id : {id}})-[:IN]->()-[:AUTHORIZED]->(:Role)-[:AUTHORIZE]->(a:Action)" +
-				"<-[:PROVIDE]-(app:Application) " +
-				"WHERE HAS(n.login) " +
-				"RETURN DISTINCT COLLECT(distinct [a.name,a.displayName,a.type]) as authorizedActions, " +
-				"COLLECT(distinct [app.name,app.address,app.icon,app.target,app.displayName,app.display,app.prefix,app.casType,app.scope,app:External]) as apps";
-		final String query3 =
-				"MATCH (u:User {id: {id}})-[:IN]->(g:Group)-[auth:AUTHORIZED]->(w:Widget) " +
-				"WHERE HAS(u.login) " +
-				"AND ( NOT(w<-[:HAS_WIDGET]-(:Application)-[:PROVIDE]->(:WorkflowAction)) " +
-				"XOR w<-[:HAS_WIDGET]-(:Application)-[:PROVIDE]->(:WorkflowAction)<-[:AUTHORIZE]-(:Role)<-[:AUTHORIZED]-g )  " +
-				"OPTIONAL MATCH (w)<-[:HAS_WIDGET]-(app:Application) " +
-				"WITH w, app, collect(auth) as authorizations " +
-				"RETURN DISTINCT COLLECT({" +
-					"id: w.id, name: w.name, " +
-					"path: coalesce(app.address, '') + w.path, " +
-					"js: coalesce(app.address, '') + w.js, "+
-					"i18n: coalesce(app.address, '') + w.i18n, "+
-					"application: app.name, " +
-					"mandatory: ANY(a IN authorizations WHERE HAS(a.mandatory) AND a.mandatory = true)"+
-				"}) as widgets";
-		final String query4 = "MATCH (s:Structure) return s.id as id, s.externalId as externalId";
-		final String query5 = "MATCH (u:User {id: {id}})-[:PREFERS]->(uac:UserAppConf) RETURN uac AS preferences";
-		JsonObject params = new JsonObject();
-		params.put("id", userId);
-		JsonArray statements = new fr.wseduc.webutils.collections.JsonArray()
-				.add(new JsonObject().put("statement", query).put("parameters", params))
-				.add(new JsonObject().put("statement", query2).put("parameters", params))
-				.add(new JsonObject().put("statement", query3).put("parameters", params))
-				.add(new JsonObject().put("statement", query4))
-				.add(new JsonObject().put("statement", query5).put("parameters", params));
-		neo4j.executeTransaction(statements, null, true, false, true,
-				new Handler<Message<JsonObject>>() {
-
+		final JsonObject params = new JsonObject().put("id", userId);
+		final JsonArray statements = new fr.wseduc.webutils.collections.JsonArray()
+				.add(new JsonObject().put("statement", query).put("parameters", params));
+		if (referenceCache == null) {
+			statements
+					.add(new JsonObject().put("statement", AUTHORIZED_ACTIONS_QUERY).put("parameters", params))
+					.add(new JsonObject().put("statement", WIDGETS_QUERY).put("parameters", params));
+		}
+		statements
+				.add(new JsonObject().put("statement", STRUCTURES_MAPPING_QUERY).put("parameters", params))
+				.add(new JsonObject().put("statement", PREFERENCES_QUERY).put("parameters", params));
+		final long generation = (referenceCache != null) ? referenceCache.generation() : 0L;
+		neo4j.executeTransaction(statements, null, true, false, true, new Handler<Message<JsonObject>>() {
 			@Override
 			public void handle(Message<JsonObject> message) {
-				JsonArray results = message.body().getJsonArray("results");
-				if ("ok".equals(message.body().getString("status")) && results != null && results.size() == 5 &&
-						results.getJsonArray(0).size() > 0 && results.getJsonArray(1).size() > 0) {
-					JsonObject j = results.getJsonArray(0).getJsonObject(0);
-					JsonObject j2 = results.getJsonArray(1).getJsonObject(0);
-					JsonObject j3 = results.getJsonArray(2).getJsonObject(0);
-					JsonObject structureMapping = new JsonObject();
-					for (Object o : results.getJsonArray(3)) {
-						if (!(o instanceof JsonObject)) continue;
-						JsonObject jsonObject = (JsonObject) o;
-						structureMapping.put(jsonObject.getString("externalId"), jsonObject.getString("id"));
-					}
-					j.put("userId", userId);
-					JsonObject functions = new JsonObject();
-					JsonArray actions = new fr.wseduc.webutils.collections.JsonArray();
-					JsonArray apps = new fr.wseduc.webutils.collections.JsonArray();
-					for (Object o : getOrElse(j2.getJsonArray("authorizedActions"), new fr.wseduc.webutils.collections.JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						JsonArray a = (JsonArray) o;
-						actions.add(new JsonObject()
-								.put("name", a.getString(0))
-								.put("displayName", a.getString(1))
-								.put("type", a.getString(2)));
-					}
-					for (Object o : getOrElse(j2.getJsonArray("apps"), new fr.wseduc.webutils.collections.JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						JsonArray a = (JsonArray) o;
-						apps.add(new JsonObject()
-										.put("name", (String) a.getString(0))
-										.put("address", (String) a.getString(1))
-										.put("icon", (String) a.getString(2))
-										.put("target", (String) a.getString(3))
-										.put("displayName", (String) a.getString(4))
-										.put("display", ((a.getValue(5) == null) || a.getBoolean(5)))
-										.put("prefix", (String) a.getString(6))
-										.put("casType", (String) a.getString(7))
-										.put("scope", (JsonArray) a.getJsonArray(8))
-										.put("isExternal", a.getBoolean(9))
-						);
-					}
-					for (Object o : getOrElse(j.getJsonArray("aafFunctions"), new fr.wseduc.webutils.collections.JsonArray())) {
-						if (o == null) continue;
-						String [] sf = o.toString().split("\\$");
-						if (sf.length == 5) {
-							JsonObject jo = functions.getJsonObject(sf[1]);
-							if (jo == null) {
-								jo = new JsonObject().put("code", sf[1])
-										.put("functionName", sf[2])
-										.put("scope", new fr.wseduc.webutils.collections.JsonArray())
-										.put("structureExternalIds", new fr.wseduc.webutils.collections.JsonArray())
-										.put("subjects", new JsonObject());
-								functions.put(sf[1], jo);
-							}
-							JsonObject subject = jo.getJsonObject("subjects").getJsonObject(sf[3]);
-							if (subject == null) {
-								subject = new JsonObject()
-										.put("subjectCode", sf[3])
-										.put("subjectName", sf[4])
-										.put("scope", new fr.wseduc.webutils.collections.JsonArray())
-										.put("structureExternalIds", new fr.wseduc.webutils.collections.JsonArray());
-								jo.getJsonObject("subjects").put(sf[3], subject);
-							}
-							jo.getJsonArray("structureExternalIds").add(sf[0]);
-							subject.getJsonArray("structureExternalIds").add(sf[0]);
-							String sid = structureMapping.getString(sf[0]);
-							if (sid != null) {
-								jo.getJsonArray("scope").add(sid);
-								subject.getJsonArray("scope").add(sid);
-							}
-						}
+				final JsonArray results = message.body().getJsonArray("results");
+				if (!"ok".equals(message.body().getString("status")) || results == null ||
+						results.size() != statements.size() || results.getJsonArray(0).size() == 0) {
+					handler.handle(null);
+				} else if (referenceCache == null) {
+					if (results.getJsonArray(1).size() > 0) {
+						handler.handle(buildSessionInfos(userId, results.getJsonArray(0).getJsonObject(0),
+								results.getJsonArray(1).getJsonObject(0), results.getJsonArray(2).getJsonObject(0),
+								results.getJsonArray(3), results.getJsonArray(4)));
+					} else {
+						handler.handle(null);
 					}
-					j.remove("aafFunctions");
-					for (Object o : getOrElse(j.getJsonArray("functions"), new fr.wseduc.webutils.collections.JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						JsonArray a = (JsonArray) o;
-						String code = a.getString(0);
-						if (code != null) {
-							functions.put(code, new JsonObject()
-									.put("code", code)
-									.put("scope", a.getJsonArray(1))
-							);
-						}
+				} else {
+					final JsonObject j = results.getJsonArray(0).getJsonObject(0);
+					final JsonArray groupsIds = getOrElse(j.getJsonArray("groupsIds"), new JsonArray());
+					final String key = SessionReferenceCache.key(groupsIds);
+					final JsonObject[] cached = referenceCache.get(key);
+					if (cached != null) {
+						handler.handle(buildSessionInfos(userId, j, cached[0], cached[1],
+								results.getJsonArray(1), results.getJsonArray(2)));
+						return;
 					}
-					final JsonObject children = new JsonObject();
-					final List<String> childrenIds = new ArrayList<String>();
-					for (Object o : getOrElse(j.getJsonArray("childrenInfo"), new fr.wseduc.webutils.collections.JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						final JsonArray a = (JsonArray) o;
-						final String childId = a.getString(0);
-						if (childId != null) {
-							childrenIds.add(childId);
-							JsonObject jo = children.getJsonObject(childId);
-							if (jo == null) {
-								jo = new JsonObject()
-										.put("lastName", a.getString(1))
-										.put("firstName", a.getString(2));
-								children.put(childId, jo);
+					final JsonObject groupParams = new JsonObject().put("groupIds", groupsIds);
+					final JsonArray groupStatements = new fr.wseduc.webutils.collections.JsonArray()
+							.add(new JsonObject().put("statement", GROUPS_AUTHORIZED_ACTIONS_QUERY).put("parameters", groupParams))
+							.add(new JsonObject().put("statement", GROUPS_WIDGETS_QUERY).put("parameters", groupParams));
+					neo4j.executeTransaction(groupStatements, null, true, false, true, new Handler<Message<JsonObject>>() {
+						@Override
+						public void handle(Message<JsonObject> groupMessage) {
+							final JsonArray groupResults = groupMessage.body().getJsonArray("results");
+							if ("ok".equals(groupMessage.body().getString("status")) && groupResults != null &&
+									groupResults.size() == 2 && groupResults.getJsonArray(0).size() > 0) {
+								final JsonObject j2 = groupResults.getJsonArray(0).getJsonObject(0);
+								final JsonObject j3 = groupResults.getJsonArray(1).getJsonObject(0);
+								referenceCache.put(key, j2, j3, generation);
+								handler.handle(buildSessionInfos(userId, j, j2, j3,
+										results.getJsonArray(1), results.getJsonArray(2)));
+							} else {
+								handler.handle(null);
 							}
 						}
-					}
-					j.remove("childrenInfo");
-					final List<String> classesIds = new ArrayList<String>();
-					final List<String> classesNames = new ArrayList<String>() ;
-					for (Object o : getOrElse(j.getJsonArray("classes"), new fr.wseduc.webutils.collections.JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						final JsonArray c = (JsonArray) o;
-						if (c.getString(0) != null) {
-							classesIds.add(c.getString(0));
-							classesNames.add(c.getString(1));
-						}
-					}
-					j.remove("classes");
-					final List<String> structureIds = new ArrayList<>();
-					final List<String> structureNames = new ArrayList<>();
-					final Set<String> uai = new HashSet<>();
-					boolean hasApp = false;
-					for (Object o : getOrElse(j.getJsonArray("structures"), new fr.wseduc.webutils.collections.JsonArray())) {
-						if (!(o instanceof JsonArray)) continue;
-						final JsonArray s = (JsonArray) o;
-						if (s.getString(0) != null) {
-							structureIds.add(s.getString(0));
-							structureNames.add(StringUtils.trimToBlank(s.getString(1)));
-							if (!StringUtils.isEmpty(s.getString(2)))
-								uai.add(s.getString(2));
-							if(getOrElse(s.getBoolean(3), false) && !hasApp)
-								hasApp = true;
-						}
-					}
-					j.remove("structures");
-					j.put("structures", new fr.wseduc.webutils.collections.JsonArray(structureIds));
-					j.put("structureNames", new fr.wseduc.webutils.collections.JsonArray(structureNames));
-					j.put("uai", new fr.wseduc.webutils.collections.JsonArray(new ArrayList<>(uai)));
-					j.put("hasApp", hasApp);
-					j.put("classes", new fr.wseduc.webutils.collections.JsonArray(classesIds));
-					j.put("realClassesNames", new fr.wseduc.webutils.collections.JsonArray(classesNames));
-					j.put("functions", functions);
-					j.put("authorizedActions", actions);
-					j.put("apps", apps);
-					j.put("childrenIds", new fr.wseduc.webutils.collections.JsonArray(childrenIds));
-					j.put("children", children);
-					final JsonObject cache = (results.getJsonArray(4) != null && results.getJsonArray(4).size() > 0 &&
-							results.getJsonArray(4).getJsonObject(0) != null) ? results.getJsonArray(4).getJsonObject(0) : new JsonObject();
-					j.put("cache", cache);
-					j.put("widgets", getOrElse(j3.getJsonArray("widgets"), new fr.wseduc.webutils.collections.JsonArray()));
-					//return unique options
-					Set<String> uniquOption = new HashSet<>(j.getJsonArray("optionEnabled", new JsonArray()).getList());
-					j.put("optionEnabled", new JsonArray(new ArrayList(uniquOption)));
-					//
-					handler.handle(j);
-				} else {
-					handler.handle(null);
+					});
 				}
 			}
 		});
 	}
 
+	private JsonObject buildSessionInfos(String userId, JsonObject j, JsonObject j2, JsonObject j3,
+			JsonArray structures, JsonArray preferences) {
+		JsonObject structureMapping = new JsonObject();
+		for (Object o : structures) {
+			if (!(o instanceof JsonObject)) continue;
+			JsonObject jsonObject = (JsonObject) o;
+			structureMapping.put(jsonObject.getString("externalId"), jsonObject.getString("id"));
+		}
+		j.put("userId", userId);
+		JsonObject functions = new JsonObject();
+		JsonArray actions = new fr.wseduc.webutils.collections.JsonArray();
+		JsonArray apps = new fr.wseduc.webutils.collections.JsonArray();
+		for (Object o : getOrElse(j2.getJsonArray("authorizedActions"), new fr.wseduc.webutils.collections.JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			JsonArray a = (JsonArray) o;
+			actions.add(new JsonObject()
+					.put("name", a.getString(0))
+					.put("displayName", a.getString(1))
+					.put("type", a.getString(2)));
+		}
+		for (Object o : getOrElse(j2.getJsonArray("apps"), new fr.wseduc.webutils.collections.JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			JsonArray a = (JsonArray) o;
+			apps.add(new JsonObject()
+							.put("name", (String) a.getString(0))
+							.put("address", (String) a.getString(1))
+							.put("icon", (String) a.getString(2))
+							.put("target", (String) a.getString(3))
+							.put("displayName", (String) a.getString(4))
+							.put("display", ((a.getValue(5) == null) || a.getBoolean(5)))
+							.put("prefix", (String) a.getString(6))
+							.put("casType", (String) a.getString(7))
+							.put("scope", (JsonArray) a.getJsonArray(8))
+							.put("isExternal", a.getBoolean(9))
+			);
+		}
+		for (Object o : getOrElse(j.getJsonArray("aafFunctions"), new fr.wseduc.webutils.collections.JsonArray())) {
+			if (o == null) continue;
+			String [] sf = o.toString().split("\\$");
+			if (sf.length == 5) {
+				JsonObject jo = functions.getJsonObject(sf[1]);
+				if (jo == null) {
+					jo = new JsonObject().put("code", sf[1])
+							.put("functionName", sf[2])
+							.put("scope", new fr.wseduc.webutils.collections.JsonArray())
+							.put("structureExternalIds", new fr.wseduc.webutils.collections.JsonArray())
+							.put("subjects", new JsonObject());
+					functions.put(sf[1], jo);
+				}
+				JsonObject subject = jo.getJsonObject("subjects").getJsonObject(sf[3]);
+				if (subject == null) {
+					subject = new JsonObject()
+							.put("subjectCode", sf[3])
+							.put("subjectName", sf[4])
+							.put("scope", new fr.wseduc.webutils.collections.JsonArray())
+							.put("structureExternalIds", new fr.wseduc.webutils.collections.JsonArray());
+					jo.getJsonObject("subjects").put(sf[3], subject);
+				}
+				jo.getJsonArray("structureExternalIds").add(sf[0]);
+				subject.getJsonArray("structureExternalIds").add(sf[0]);
+				String sid = structureMapping.getString(sf[0]);
+				if (sid != null) {
+					jo.getJsonArray("scope").add(sid);
+					subject.getJsonArray("scope").add(sid);
+				}
+			}
+		}
+		j.remove("aafFunctions");
+		for (Object o : getOrElse(j.getJsonArray("functions"), new fr.wseduc.webutils.collections.JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			JsonArray a = (JsonArray) o;
+			String code = a.getString(0);
+			if (code != null) {
+				functions.put(code, new JsonObject()
+						.put("code", code)
+						.put("scope", a.getJsonArray(1))
+				);
+			}
+		}
+		final JsonObject children = new JsonObject();
+		final List<String> childrenIds = new ArrayList<String>();
+		for (Object o : getOrElse(j.getJsonArray("childrenInfo"), new fr.wseduc.webutils.collections.JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			final JsonArray a = (JsonArray) o;
+			final String childId = a.getString(0);
+			if (childId != null) {
+				childrenIds.add(childId);
+				JsonObject jo = children.getJsonObject(childId);
+				if (jo == null) {
+					jo = new JsonObject()
+							.put("lastName", a.getString(1))
+							.put("firstName", a.getString(2));
+					children.put(childId, jo);
+				}
+			}
+		}
+		j.remove("childrenInfo");
+		final List<String> classesIds = new ArrayList<String>();
+		final List<String> classesNames = new ArrayList<String>() ;
+		for (Object o : getOrElse(j.getJsonArray("classes"), new fr.wseduc.webutils.collections.JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			final JsonArray c = (JsonArray) o;
+			if (c.getString(0) != null) {
+				classesIds.add(c.getString(0));
+				classesNames.add(c.getString(1));
+			}
+		}
+		j.remove("classes");
+		final List<String> structureIds = new ArrayList<>();
+		final List<String> structureNames = new ArrayList<>();
+		final Set<String> uai = new HashSet<>();
+		boolean hasApp = false;
+		for (Object o : getOrElse(j.getJsonArray("structures"), new fr.wseduc.webutils.collections.JsonArray())) {
+			if (!(o instanceof JsonArray)) continue;
+			final JsonArray s = (JsonArray) o;
+			if (s.getString(0) != null) {
+				structureIds.add(s.getString(0));
+				structureNames.add(StringUtils.trimToBlank(s.getString(1)));
+				if (!StringUtils.isEmpty(s.getString(2)))
+					uai.add(s.getString(2));
+				if(getOrElse(s.getBoolean(3), false) && !hasApp)
+					hasApp = true;
+			}
+		}
+		j.remove("structures");
+		j.put("structures", new fr.wseduc.webutils.collections.JsonArray(structureIds));
+		j.put("structureNames", new fr.wseduc.webutils.collections.JsonArray(structureNames));
+		j.put("uai", new fr.wseduc.webutils.collections.JsonArray(new ArrayList<>(uai)));
+		j.put("hasApp", hasApp);
+		j.put("classes", new fr.wseduc.webutils.collections.JsonArray(classesIds));
+		j.put("realClassesNames", new fr.wseduc.webutils.collections.JsonArray(classesNames));
+		j.put("functions", functions);
+		j.put("authorizedActions", actions);
+		j.put("apps", apps);
+		j.put("childrenIds", new fr.wseduc.webutils.collections.JsonArray(childrenIds));
+		j.put("children", children);
+		final JsonObject cache = (preferences != null && preferences.size() > 0 &&
+				preferences.getJsonObject(0) != null) ? preferences.getJsonObject(0) : new JsonObject();
+		j.put("cache", cache);
+		j.put("widgets", getOrElse(j3.getJsonArray("widgets"), new fr.wseduc.webutils.collections.JsonArray()));
+		//return unique options
+		Set<String> uniquOption = new HashSet<>(j.getJsonArray("optionEnabled", new JsonArray()).getList());
+		j.put("optionEnabled", new JsonArray(new ArrayList(uniquOption)));
+		//
+		return j;
+	}
+
 }
@@ -1,7 +1,10 @@
 package org.entcore.session;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
@@ -19,8 +22,13 @@ public class MapActivityManager implements ActivityManager {
 
     protected static final Logger logger = LoggerFactory.getLogger(MapActivityManager.class);
     private Map<String, Long> activity = null;
+    // last activity written by this node, to write the shared map at most once per writeDelay without reading it
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    private final long writeDelay;
+    private final AtomicLong writes = new AtomicLong();
 
     public MapActivityManager(Vertx vertx, JsonObject config, Boolean cluster) {
+        this.writeDelay = config.getLong("activity-write-delay", LAST_ACTIVITY_DELAY);
         if (Boolean.TRUE.equals(cluster)) {
             final ClusterManager cm = ((VertxInternal) vertx).getClusterManager();
             if (getOrElse(config.getBoolean("inactivity"), false)) {
@@ -32,14 +40,19 @@ public class MapActivityManager implements ActivityManager {
                 activity = new HashMap<>();
             }
         }
+        if (activity != null) {
+            vertx.setPeriodic(writeDelay, timerId -> purgeLastWrites(System.currentTimeMillis()));
+        }
     }
 
     @Override
     public void updateLastActivity(String sessionId, String userId, boolean secureLocation, Handler<AsyncResult<Void>> handler) {
         final long now = System.currentTimeMillis();
-        final Long lastActivity = activity.get(sessionId);
-        if (lastActivity == null || (lastActivity + LAST_ACTIVITY_DELAY) < now) {
+        final Long lastWrite = lastWrites.get(sessionId);
+        if (lastWrite == null || (lastWrite + writeDelay) < now) {
+            lastWrites.put(sessionId, now);
             activity.put(sessionId, now);
+            writes.incrementAndGet();
         }
         handler.handle(Future.succeededFuture());
     }
@@ -51,10 +64,24 @@ public class MapActivityManager implements ActivityManager {
 
     @Override
     public void removeLastActivity(String sessionId, Handler<AsyncResult<Void>> handler) {
+        lastWrites.remove(sessionId);
         activity.remove(sessionId);
         handler.handle(Future.succeededFuture());
     }
 
+    void purgeLastWrites(long now) {
+        final Iterator<Long> it = lastWrites.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() + writeDelay < now) {
+                it.remove();
+            }
+        }
+    }
+
+    long writes() {
+        return writes.get();
+    }
+
     @Override
     public boolean isEnabled() {
         return activity != null;
@@ -173,6 +173,7 @@ public class MapSessionStore extends AbstractSessionStore {
         try {
             sessions.put(sessionId, infos.encode());
             addLoginInfo(userId, timerId, sessionId);
+            invalidateNearCache(userId, sessionId);
             handler.handle(Future.succeededFuture());
         } catch (Exception e) {
             logger.error("Error putting session in hazelcast map");
@@ -223,12 +224,14 @@ public class MapSessionStore extends AbstractSessionStore {
                 final String userId = s.getString("userId");
                 LoginInfo info = removeLoginInfo(sessionId, userId);
                 if (info != null) {
-                    vertx.cancelTimer(info.timerId);
+                    cancelTimer(sessionId, info.timerId);
                 }
+                invalidateNearCache(userId, sessionId);
                 if (handler != null) {
                     handler.handle(Future.succeededFuture(s));
                 }
             } else {
+                invalidateNearCache(session.getString("userId"), sessionId);
                 if (handler != null) {
                     handler.handle(Future.succeededFuture(session));
                 }
@@ -330,6 +333,7 @@ public class MapSessionStore extends AbstractSessionStore {
         session.getJsonObject("cache").put(key, value);
         try {
             sessions.put(sessionId, session.encode());
+            invalidateNearCache(session.getString("userId"), sessionId);
             handler.handle(Future.succeededFuture());
         } catch (Exception e) {
             logger.error("Error putting session in hazelcast map : " + sessionId, e);
@@ -353,6 +357,7 @@ public class MapSessionStore extends AbstractSessionStore {
 
         try {
             updateCacheAttributeByUserId(userId, key, value);
+            invalidateNearCache(userId, null);
             handler.handle(Future.succeededFuture());
         } catch (SessionException e) {
             handler.handle(Future.failedFuture(new SessionException("Session not found when update add attribute: " + userId)));
@@ -369,6 +374,7 @@ public class MapSessionStore extends AbstractSessionStore {
 
 		try {
             removeCacheAttributeByUserId(userId, key);
+            invalidateNearCache(userId, null);
             handler.handle(Future.succeededFuture());
         } catch (SessionException e) {
             handler.handle(Future.failedFuture(new SessionException("Session not found when update drop attribute: " + userId)));
@@ -379,6 +385,7 @@ public class MapSessionStore extends AbstractSessionStore {
     protected void removeCacheSession(String userId, String sessionId) {
         logins.remove(userId);
         sessions.remove(sessionId);
+        invalidateNearCache(userId, sessionId);
     }
 
     @Override
@@ -0,0 +1,163 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.session;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel indexing the sessions expiry of the node.
+ * Three levels of 64 slots cover 64, 64^2 and 64^3 ticks, longer delays are parked in the last level
+ * and cascaded again until their deadline. A single periodic timer calls {@link #advance(long)},
+ * instead of one Vert.x timer per session. Cancelled entries are removed lazily when their slot is reached.
+ */
+class SessionExpiryWheel {
+
+    static final long DEFAULT_TICK = 1000L;
+    private static final int LEVELS = 3;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_TICKS = 1L << (SLOT_BITS * LEVELS);
+
+    interface ExpiryHandler {
+        void expired(String userId, String sessionId, boolean secureLocation);
+    }
+
+    private static final class Entry {
+        private final String userId;
+        private final String sessionId;
+        private final boolean secureLocation;
+        private final long deadlineTick;
+        private boolean cancelled;
+
+        private Entry(String userId, String sessionId, boolean secureLocation, long deadlineTick) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.secureLocation = secureLocation;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final long tick;
+    private final ExpiryHandler handler;
+    private final List<List<Entry>> slots = new ArrayList<>();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long currentTick;
+    private long expired;
+
+    SessionExpiryWheel(long tick, long now, ExpiryHandler handler) {
+        this.tick = tick;
+        this.handler = handler;
+        this.currentTick = now / tick;
+        for (int i = 0; i < LEVELS * SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedule the expiry of a session, replacing its previous schedule.
+     */
+    synchronized void schedule(String userId, String sessionId, long delay, boolean secureLocation, long now) {
+        final Entry previous = entries.get(sessionId);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        final Entry entry = new Entry(userId, sessionId, secureLocation, (now + delay + tick - 1) / tick);
+        entries.put(sessionId, entry);
+        add(entry);
+    }
+
+    synchronized void cancel(String sessionId) {
+        final Entry entry = entries.remove(sessionId);
+        if (entry != null) {
+            entry.cancelled = true;
+        }
+    }
+
+    /**
+     * Process the ticks elapsed until <code>now</code> and call the handler for the expired sessions,
+     * outside the wheel lock.
+     */
+    void advance(long now) {
+        final List<Entry> expiredEntries = new ArrayList<>();
+        synchronized (this) {
+            final long nowTick = now / tick;
+            while (currentTick < nowTick) {
+                currentTick++;
+                for (int level = LEVELS - 1; level > 0; level--) {
+                    if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                        cascade(level);
+                    }
+                }
+                final List<Entry> slot = slots.get((int) (currentTick & SLOT_MASK));
+                if (slot.isEmpty()) continue;
+                final List<Entry> current = new ArrayList<>(slot);
+                slot.clear();
+                for (Entry entry : current) {
+                    if (entry.cancelled) continue;
+                    if (entry.deadlineTick <= currentTick) {
+                        entries.remove(entry.sessionId);
+                        expiredEntries.add(entry);
+                    } else {
+                        add(entry);
+                    }
+                }
+            }
+            expired += expiredEntries.size();
+        }
+        for (Entry entry : expiredEntries) {
+            handler.expired(entry.userId, entry.sessionId, entry.secureLocation);
+        }
+    }
+
+    private void cascade(int level) {
+        final List<Entry> slot = slots.get(level * SLOTS + (int) ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK));
+        if (slot.isEmpty()) return;
+        final List<Entry> current = new ArrayList<>(slot);
+        slot.clear();
+        for (Entry entry : current) {
+            if (!entry.cancelled) {
+                add(entry);
+            }
+        }
+    }
+
+    private void add(Entry entry) {
+        final long ticks = Math.max(1L, Math.min(entry.deadlineTick - currentTick, MAX_TICKS - 1));
+        final long targetTick = currentTick + ticks;
+        int level = 0;
+        while (level < LEVELS - 1 && ticks >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        slots.get(level * SLOTS + (int) ((targetTick >> (SLOT_BITS * level)) & SLOT_MASK)).add(entry);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long expired() {
+        return expired;
+    }
+
+}
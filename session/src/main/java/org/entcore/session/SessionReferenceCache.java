@@ -0,0 +1,126 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+
+ */
+
+package org.entcore.session;
+
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.entcore.common.appregistry.AppRegistryEvents.APP_REGISTRY_PUBLISH_ADDRESS;
+import static org.entcore.common.appregistry.AppRegistryEvents.USER_GROUP_UPDATED;
+
+/**
+ * Authorized actions, applications and widgets of a set of groups, shared by the sessions
+ * of the users in the same groups.
+ * The cache is cleared by the app-registry events (authorizations, applications or widgets update,
+ * import) except the users groups updates, which change the group set of the users, not the
+ * authorizations of a group set. The ttl bounds the delay for the updates without event.
+ */
+class SessionReferenceCache {
+
+	static final long DEFAULT_TTL = 60000L;
+	static final int DEFAULT_MAX_SIZE = 2000;
+
+	private final long ttl;
+	private final int maxSize;
+	private final Map<String, Entry> entries;
+	private long generation;
+
+	private static final class Entry {
+		private final JsonObject authorizations;
+		private final JsonObject widgets;
+		private final long expire;
+
+		private Entry(JsonObject authorizations, JsonObject widgets, long expire) {
+			this.authorizations = authorizations;
+			this.widgets = widgets;
+			this.expire = expire;
+		}
+	}
+
+	SessionReferenceCache(JsonObject config) {
+		this.ttl = config.getLong("ttl", DEFAULT_TTL);
+		this.maxSize = config.getInteger("max-size", DEFAULT_MAX_SIZE);
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > SessionReferenceCache.this.maxSize;
+			}
+		};
+	}
+
+	void listenInvalidations(EventBus eb) {
+		eb.<JsonObject>consumer(APP_REGISTRY_PUBLISH_ADDRESS, message -> {
+			if (message.body() != null && !USER_GROUP_UPDATED.equals(message.body().getString("type"))) {
+				clear();
+			}
+		});
+	}
+
+	static String key(JsonArray groupsIds) {
+		final List<String> ids = new ArrayList<>();
+		if (groupsIds != null) {
+			for (Object o : groupsIds) {
+				if (o instanceof String) {
+					ids.add((String) o);
+				}
+			}
+		}
+		Collections.sort(ids);
+		return String.join(",", ids);
+	}
+
+	/**
+	 * @return copies of the authorized actions and apps (index 0) and the widgets (index 1) results
+	 * of the group set, or null
+	 */
+	synchronized JsonObject[] get(String key) {
+		final Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.expire < System.currentTimeMillis()) {
+			entries.remove(key);
+			return null;
+		}
+		return new JsonObject[] { entry.authorizations.copy(), entry.widgets.copy() };
+	}
+
+	synchronized long generation() {
+		return generation;
+	}
+
+	synchronized void put(String key, JsonObject authorizations, JsonObject widgets, long generation) {
+		if (generation != this.generation) return;
+		entries.put(key, new Entry(authorizations.copy(), widgets.copy(), System.currentTimeMillis() + ttl));
+	}
+
+	synchronized void clear() {
+		generation++;
+		entries.clear();
+	}
+
+}
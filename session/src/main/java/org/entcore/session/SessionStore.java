@@ -47,6 +47,8 @@ public interface SessionStore {
 
     void getSessionsNumber(Handler<AsyncResult<Long>> handler);
 
+    void touchSession(String sessionId, String userId, boolean secureLocation);
+
     boolean inactivityEnabled();
 
 }
@@ -0,0 +1,323 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+ *
+ */
+
+package org.entcore.session;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class SessionExpiryWheelTest {
+    private static final Logger log = LoggerFactory.getLogger(SessionExpiryWheelTest.class);
+    private static final long TICK = 1000L;
+    private static final int LOAD_SESSIONS = 20000;
+    private static final long LOAD_TIMEOUT = 1000L;
+    private static final long LOAD_TICK = 100L;
+    private static final long ACTIVITY_PERIOD = 20L;
+    private static final int ACTIVITY_STEPS = 75;
+    private static Vertx vertx;
+
+    @BeforeClass
+    public static void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        vertx.close();
+    }
+
+    @Test
+    public void testExpiryAndCancel(TestContext context) {
+        final long start = 0L;
+        final Map<String, Long> expired = new HashMap<>();
+        final long[] now = { start };
+        final SessionExpiryWheel wheel = new SessionExpiryWheel(TICK, start,
+                (userId, sessionId, secureLocation) -> expired.put(sessionId, now[0]));
+        wheel.schedule("u1", "short", 5000L, false, start);
+        wheel.schedule("u2", "long", 10 * 3600 * 1000L, true, start);
+        wheel.schedule("u3", "beyond", 100 * 3600 * 1000L, false, start);
+        wheel.schedule("u4", "cancelled", 5000L, false, start);
+        wheel.schedule("u5", "rescheduled", 5000L, false, start);
+        wheel.cancel("cancelled");
+        wheel.schedule("u5", "rescheduled", 70000L, false, start);
+        for (now[0] = start; now[0] <= start + 101 * 3600 * 1000L; now[0] += TICK) {
+            wheel.advance(now[0]);
+        }
+        context.assertEquals(5000L, expired.get("short"));
+        context.assertEquals(70000L, expired.get("rescheduled"));
+        context.assertEquals(10 * 3600 * 1000L, expired.get("long"));
+        context.assertEquals(100 * 3600 * 1000L, expired.get("beyond"));
+        context.assertFalse(expired.containsKey("cancelled"));
+        context.assertEquals(0, wheel.size());
+    }
+
+    /**
+     * Counters of a load run.
+     */
+    private static final class LoadRun {
+        private final String name;
+        private long start;
+        private long end;
+        private long gcCount;
+        private long gcTime;
+        private long liveTimers;
+        private long peakTimers;
+        private long writes;
+        private int expired;
+
+        private LoadRun(String name) {
+            this.name = name;
+        }
+
+        private void begin() {
+            start = System.currentTimeMillis();
+            gcCount = gcCount();
+            gcTime = gcTime();
+        }
+
+        private void finish() {
+            end = System.currentTimeMillis();
+            gcCount = gcCount() - gcCount;
+            gcTime = gcTime() - gcTime;
+        }
+
+        private void armed() {
+            peakTimers = Math.max(peakTimers, ++liveTimers);
+        }
+
+        private void fired() {
+            liveTimers--;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-22s | peak live timers %6d | gc %3d collections %5d ms | map writes %7d (%8.0f/s)",
+                    name, peakTimers, gcCount, gcTime, writes, writes * 1000.0 / Math.max(1L, end - start));
+        }
+    }
+
+    /**
+     * Activity of the load runs, the same for both : every ACTIVITY_PERIOD, one session of ten is read by a
+     * request. The driver timer isn't counted.
+     */
+    private void activityLoad(Consumer<String> getSession) {
+        final int[] step = { 0 };
+        vertx.setPeriodic(ACTIVITY_PERIOD, timerId -> {
+            for (int i = step[0] % 10; i < LOAD_SESSIONS; i += 10) {
+                getSession.accept("s" + i);
+            }
+            if (++step[0] >= ACTIVITY_STEPS) {
+                vertx.cancelTimer(timerId);
+            }
+        });
+    }
+
+    private Future<LoadRun> awaitExpired(LoadRun run, Runnable stop) {
+        final Future<LoadRun> future = Future.future();
+        vertx.setPeriodic(LOAD_TICK, timerId -> {
+            if (run.expired >= LOAD_SESSIONS) {
+                vertx.cancelTimer(timerId);
+                run.finish();
+                stop.run();
+                future.complete(run);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Before the wheel : one Vert.x timer per session, re-armed with the last activity when it fires,
+     * and one activity map write per getSession.
+     */
+    private Future<LoadRun> timerPerSessionRun() {
+        final LoadRun run = new LoadRun("timer per session");
+        final Map<String, Long> activity = new HashMap<>();
+        final Future<LoadRun> result = Future.future();
+        vertx.runOnContext(v -> {
+            run.begin();
+            for (int i = 0; i < LOAD_SESSIONS; i++) {
+                activity.put("s" + i, run.start);
+                sessionTimer(run, activity, "s" + i, LOAD_TIMEOUT);
+            }
+            activityLoad(sessionId -> {
+                if (activity.get(sessionId) != null) {
+                    activity.put(sessionId, System.currentTimeMillis());
+                    run.writes++;
+                }
+            });
+            awaitExpired(run, () -> {}).setHandler(result);
+        });
+        return result;
+    }
+
+    private void sessionTimer(LoadRun run, Map<String, Long> activity, String sessionId, long delay) {
+        run.armed();
+        vertx.setTimer(delay, timerId -> {
+            run.fired();
+            // getLastActivity of the session store
+            final long timeout = activity.get(sessionId) + LOAD_TIMEOUT;
+            final long now = System.currentTimeMillis();
+            if (timeout > now) {
+                sessionTimer(run, activity, sessionId, timeout - now);
+            } else {
+                activity.remove(sessionId);
+                run.expired++;
+            }
+        });
+    }
+
+    /**
+     * With the wheel : one periodic timer, and the activity writes coalesced by MapActivityManager.
+     */
+    private Future<LoadRun> wheelRun() {
+        final LoadRun run = new LoadRun("expiry wheel");
+        final MapActivityManager activityManager = new MapActivityManager(vertx, new JsonObject()
+                .put("inactivity", true).put("activity-write-delay", 400L), false);
+        final Future<LoadRun> result = Future.future();
+        vertx.runOnContext(v -> {
+            run.begin();
+            final SessionExpiryWheel[] wheel = new SessionExpiryWheel[1];
+            wheel[0] = new SessionExpiryWheel(LOAD_TICK, run.start, (userId, sessionId, secureLocation) ->
+                activityManager.getLastActivity(sessionId, false, ar -> {
+                    final long timeout = ar.result() + LOAD_TIMEOUT;
+                    final long now = System.currentTimeMillis();
+                    if (timeout > now) {
+                        wheel[0].schedule(userId, sessionId, timeout - now, false, now);
+                    } else {
+                        activityManager.removeLastActivity(sessionId, r -> {});
+                        run.expired++;
+                    }
+                }));
+            // the tick timer and the purge timer of the activity manager
+            run.armed();
+            run.armed();
+            final long tickTimer = vertx.setPeriodic(LOAD_TICK, t -> wheel[0].advance(System.currentTimeMillis()));
+            for (int i = 0; i < LOAD_SESSIONS; i++) {
+                activityManager.updateLastActivity("s" + i, "u" + i, false, ar -> {});
+                wheel[0].schedule("u" + i, "s" + i, LOAD_TIMEOUT, false, run.start);
+            }
+            final long initialWrites = activityManager.writes();
+            activityLoad(sessionId -> activityManager.updateLastActivity(sessionId, null, false, ar -> {}));
+            awaitExpired(run, () -> {
+                vertx.cancelTimer(tickTimer);
+                run.writes = activityManager.writes() - initialWrites;
+            }).setHandler(result);
+        });
+        return result;
+    }
+
+    /**
+     * Load test : one periodic timer for all the sessions instead of one Vert.x timer per session
+     * and one shared map write per session and write delay instead of one write per request.
+     * The same sessions and activity are run with one timer per session, then with the wheel.
+     */
+    @Test
+    public void testLoad(TestContext context) {
+        final int sessions = 200000;
+        final Random random = new Random(42L);
+        final long start = System.currentTimeMillis();
+        final long gcCount = gcCount();
+        final long gcTime = gcTime();
+        final int[] expired = { 0 };
+        final int[] early = { 0 };
+        final long[] now = { start };
+        final Map<String, Long> deadlines = new HashMap<>();
+        final SessionExpiryWheel wheel = new SessionExpiryWheel(TICK, start, (userId, sessionId, secureLocation) -> {
+            expired[0]++;
+            if (now[0] < deadlines.get(sessionId)) {
+                early[0]++;
+            }
+        });
+        for (int i = 0; i < sessions; i++) {
+            final long delay = 60000L + random.nextInt(2 * 3600 * 1000);
+            deadlines.put("s" + i, start + delay);
+            wheel.schedule("u" + i, "s" + i, delay, false, start);
+        }
+        final long scheduled = System.currentTimeMillis();
+        for (now[0] = start; now[0] <= start + 3 * 3600 * 1000L; now[0] += TICK) {
+            wheel.advance(now[0]);
+        }
+        log.info("Expiry wheel : " + sessions + " sessions with 1 periodic timer (" + sessions +
+                " Vert.x timers without the wheel), schedule " + (scheduled - start) + " ms, 3h of ticks " +
+                (System.currentTimeMillis() - scheduled) + " ms, gc " + (gcCount() - gcCount) + " collections " +
+                (gcTime() - gcTime) + " ms");
+        context.assertEquals(sessions, expired[0]);
+        context.assertEquals(0, early[0]);
+
+        final MapActivityManager activityManager = new MapActivityManager(vertx,
+                new JsonObject().put("inactivity", true), false);
+        final int activeSessions = 10000;
+        final int requests = 100;
+        final long activityStart = System.currentTimeMillis();
+        for (int r = 0; r < requests; r++) {
+            for (int i = 0; i < activeSessions; i++) {
+                activityManager.updateLastActivity("s" + i, "u" + i, false, ar -> {});
+            }
+        }
+        log.info("Activity : " + activityManager.writes() + " map writes for " + (activeSessions * requests) +
+                " requests in " + (System.currentTimeMillis() - activityStart) + " ms");
+        context.assertEquals((long) activeSessions, activityManager.writes());
+
+        final Async async = context.async();
+        timerPerSessionRun().compose(before -> wheelRun().map(after -> {
+            log.info("Load of " + LOAD_SESSIONS + " sessions, timeout " + LOAD_TIMEOUT + " ms, " + ACTIVITY_STEPS +
+                    " activity steps :\n  before : " + before + "\n  after  : " + after);
+            context.assertEquals(2L, after.peakTimers);
+            context.assertTrue(before.peakTimers >= LOAD_SESSIONS);
+            context.assertTrue(after.writes < before.writes);
+            return null;
+        })).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+}
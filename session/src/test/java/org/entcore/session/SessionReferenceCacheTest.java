@@ -0,0 +1,130 @@
+/*
+ * Copyright © "Open Digital Education", 2022
+ *
+ * This program is published by "Open Digital Education".
+ * You must indicate the name of the software and the company in any production /contribution
+ * using the software and indicate on the home page of the software industry in question,
+ * "powered by Open Digital Education" with a reference to the website: https://opendigitaleducation.com/.
+ *
+ * This program is free software, licensed under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation, version 3 of the License.
+ *
+ * You can redistribute this application and/or modify it since you respect the terms of the GNU Affero General Public License.
+ * If you modify the source code and then use this modified source code in your creation, you must make available the source code of your modifications.
+ *
+ * You should have received a copy of the GNU Affero General Public License along with the software.
+ * If not, please see : <http://www.gnu.org/licenses/>. Full compliance requires reading the terms of this license and following its directives.
+ *
+ */
+
+package org.entcore.session;
+
+import static org.entcore.common.appregistry.AppRegistryEvents.APP_REGISTRY_PUBLISH_ADDRESS;
+import static org.entcore.common.appregistry.AppRegistryEvents.USER_GROUP_UPDATED;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+
+@RunWith(VertxUnitRunner.class)
+public class SessionReferenceCacheTest {
+    private static Vertx vertx;
+
+    @BeforeClass
+    public static void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        vertx.close();
+    }
+
+    private static JsonObject authorizations(String action) {
+        return new JsonObject().put("authorizedActions", new JsonArray().add(new JsonArray().add(action)))
+                .put("apps", new JsonArray());
+    }
+
+    private static JsonObject widgets() {
+        return new JsonObject().put("widgets", new JsonArray().add(new JsonObject().put("name", "w1")));
+    }
+
+    @Test
+    public void testKeyShouldNotDependOnGroupsOrder(TestContext context) {
+        context.assertEquals(SessionReferenceCache.key(new JsonArray().add("g2").add("g1")),
+                SessionReferenceCache.key(new JsonArray().add("g1").add("g2")));
+        context.assertEquals("", SessionReferenceCache.key(null));
+    }
+
+    @Test
+    public void testGetShouldReturnCopies(TestContext context) {
+        final SessionReferenceCache cache = new SessionReferenceCache(new JsonObject());
+        final JsonObject authorizations = authorizations("a1");
+        cache.put("g1", authorizations, widgets(), cache.generation());
+        authorizations.getJsonArray("authorizedActions").add(new JsonArray().add("a2"));
+        final JsonObject[] first = cache.get("g1");
+        context.assertEquals(1, first[0].getJsonArray("authorizedActions").size());
+        first[0].getJsonArray("authorizedActions").clear();
+        first[1].getJsonArray("widgets").clear();
+        final JsonObject[] second = cache.get("g1");
+        context.assertEquals(authorizations("a1"), second[0]);
+        context.assertEquals(widgets(), second[1]);
+    }
+
+    @Test
+    public void testEntriesShouldExpire(TestContext context) throws Exception {
+        final SessionReferenceCache cache = new SessionReferenceCache(new JsonObject().put("ttl", 1L));
+        cache.put("g1", authorizations("a1"), widgets(), cache.generation());
+        Thread.sleep(5L);
+        context.assertNull(cache.get("g1"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryShouldBeEvicted(TestContext context) {
+        final SessionReferenceCache cache = new SessionReferenceCache(new JsonObject().put("max-size", 2));
+        cache.put("g1", authorizations("a1"), widgets(), cache.generation());
+        cache.put("g2", authorizations("a2"), widgets(), cache.generation());
+        context.assertNotNull(cache.get("g1"));
+        cache.put("g3", authorizations("a3"), widgets(), cache.generation());
+        context.assertNotNull(cache.get("g1"));
+        context.assertNull(cache.get("g2"));
+        context.assertNotNull(cache.get("g3"));
+    }
+
+    @Test
+    public void testResultQueriedBeforeClearShouldNotBeCached(TestContext context) {
+        final SessionReferenceCache cache = new SessionReferenceCache(new JsonObject());
+        final long generation = cache.generation();
+        cache.clear();
+        cache.put("g1", authorizations("a1"), widgets(), generation);
+        context.assertNull(cache.get("g1"));
+        cache.put("g1", authorizations("a1"), widgets(), cache.generation());
+        context.assertNotNull(cache.get("g1"));
+    }
+
+    @Test
+    public void testAppRegistryEventsShouldClearCacheExceptUserGroupUpdates(TestContext context) {
+        final SessionReferenceCache cache = new SessionReferenceCache(new JsonObject());
+        cache.listenInvalidations(vertx.eventBus());
+        cache.put("g1", authorizations("a1"), widgets(), cache.generation());
+        final Async async = context.async();
+        vertx.eventBus().publish(APP_REGISTRY_PUBLISH_ADDRESS, new JsonObject().put("type", USER_GROUP_UPDATED));
+        vertx.setTimer(50L, t1 -> {
+            context.assertNotNull(cache.get("g1"));
+            vertx.eventBus().publish(APP_REGISTRY_PUBLISH_ADDRESS, new JsonObject().put("type", "ROLES_UPDATED"));
+            vertx.setTimer(50L, t2 -> {
+                context.assertNull(cache.get("g1"));
+                async.complete();
+            });
+        });
+    }
+
+}
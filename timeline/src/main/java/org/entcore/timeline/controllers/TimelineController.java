@@ -40,6 +40,7 @@ import fr.wseduc.webutils.http.BaseController;
 import fr.wseduc.webutils.request.RequestUtils;
 import io.vertx.core.shareddata.LocalMap;
 import org.entcore.common.cache.CacheService;
+import org.entcore.common.cache.RedisCacheService;
 import org.entcore.common.http.filter.AdminFilter;
 import org.entcore.common.http.filter.AdmlOfStructures;
 import org.entcore.common.http.filter.ResourceFilter;
@@ -121,6 +122,10 @@ public class TimelineController extends BaseController {
 		refreshTypesCache = config.getBoolean("refreshTypesCache", false);
 		if(config.getBoolean("cache", false)){
 			final CacheService cacheService = CacheService.create(vertx, config);
+			if (cacheService instanceof RedisCacheService) {
+				((RedisCacheService) cacheService).setListsBatchSize(
+						config.getInteger("cache-batch-size", RedisCacheService.DEFAULT_LISTS_BATCH_SIZE));
+			}
 			final Integer cacheLen = config.getInteger("cache-size", PAGELIMIT);
 			store = new CachedTimelineEventStore(store, cacheService, cacheLen, configService, registeredNotifications);
 		}
@@ -288,7 +293,7 @@ public class TimelineController extends BaseController {
 								offset = PAGELIMIT * Integer.parseInt(page);
 							} catch (NumberFormatException e) {}
 
-							store.get(user, types, offset, PAGELIMIT, notifs.right().getValue(), mine, both, version, new Handler<JsonObject>() {
+							final Handler<JsonObject> eventsHandler = new Handler<JsonObject>() {
 								public void handle(final JsonObject res) {
 									if (res != null && "ok".equals(res.getString("status"))) {
 										if ("2.0".equals(version)) {
@@ -344,7 +349,24 @@ public class TimelineController extends BaseController {
 										renderError(request, res);
 									}
 								}
-							});
+							};
+							final String beforeDate = request.params().get("beforeDate");
+							if (beforeDate != null && !beforeDate.isEmpty()) {
+								// keyset pagination from the last event of the previous page
+								final Long date;
+								try {
+									date = Long.parseLong(beforeDate);
+								} catch (NumberFormatException e) {
+									badRequest(request);
+									return;
+								}
+								store.get(user, types, date, request.params().get("beforeId"), PAGELIMIT,
+										notifs.right().getValue(), mine, both, version, eventsHandler);
+							} else if ("true".equals(request.params().get("cursor"))) {
+								store.get(user, types, null, null, PAGELIMIT, notifs.right().getValue(), mine, both, version, eventsHandler);
+							} else {
+								store.get(user, types, offset, PAGELIMIT, notifs.right().getValue(), mine, both, version, eventsHandler);
+							}
 						}
 					});
 
@@ -3,7 +3,6 @@ package org.entcore.timeline.events;
 import fr.wseduc.mongodb.MongoDb;
 import fr.wseduc.mongodb.MongoQueryBuilder;
 import fr.wseduc.webutils.Either;
-import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.JsonArray;
@@ -108,38 +107,18 @@ public class CachedTimelineEventStore implements TimelineEventStore {
             copy.put("created", copy.getJsonObject("date"));
             copy.put("_id", resOriginal.getString("_id", ""));
             shouldAddToCache(copy).setHandler(resShouldAdd -> {
-                final List<Future> futures = new ArrayList<>();
                 if(resShouldAdd.succeeded() && resShouldAdd.result()){
+                    final List<String> keys = new ArrayList<>(recipients.size());
                     for (Object recipient : recipients) {
                         final JsonObject recipientJson = (JsonObject) recipient;
-                        final Future<Void> future = Future.future();
-                        futures.add(future);
-                        final String key = getKey(recipientJson.getString("userId"));
-                        cacheService.prependToList(key, copy.encode(), res -> {
-                            if (res.succeeded()) {
-                                if (res.result().intValue() > this.pageSize) {
-                                    cacheService.removeLastFromList(key, resRemove -> {
-                                        if (resRemove.succeeded()) {
-                                            future.complete(null);
-                                        } else {
-                                            future.fail(resRemove.cause());
-                                        }
-                                    });
-                                } else {
-                                    future.complete(null);
-                                }
-                            } else {
-                                future.fail(res.cause());
-                            }
-                        });
+                        keys.add(getKey(recipientJson.getString("userId")));
                     }
+                    cacheService.prependToLists(keys, CacheEntry.encode(copy), this.pageSize, res -> {
+                        if (res.failed()) {
+                            logger.error("Failed to add event:", res.cause());
+                        }
+                    });
                 }
-                //call original store
-                CompositeFuture.all(futures).setHandler(res -> {
-                    if (!res.succeeded()) {
-                        logger.error("Failed to add event:", res.cause());
-                    }
-                });
             });
         });
     }
@@ -149,47 +128,73 @@ public class CachedTimelineEventStore implements TimelineEventStore {
         original.delete(resource, result);
     }
 
-    private Future<List<JsonObject>> getListFiltered(String userId, List<String> types){
-        Future<List<JsonObject>> future = Future.future();
+    /**
+     * Cached form of an event : its id, type and date before the json, so that the entries can be deduplicated
+     * and filtered without decoding them. Entries cached as plain json by older versions are still read.
+     */
+    static final class CacheEntry {
+        private static final char SEPARATOR = '\t';
+        final String raw;
+        final String id;
+        final String type;
+        final long date;
+        private final int jsonStart;
+
+        private CacheEntry(String raw) {
+            this.raw = raw;
+            if (raw.startsWith("{")) {
+                final JsonObject json = new JsonObject(raw);
+                id = json.getString("_id");
+                type = json.getString("type", "");
+                date = json.getJsonObject("date", new JsonObject()).getLong("$date", -1L);
+                jsonStart = 0;
+            } else {
+                final int typeStart = raw.indexOf(SEPARATOR) + 1;
+                final int dateStart = raw.indexOf(SEPARATOR, typeStart) + 1;
+                jsonStart = raw.indexOf(SEPARATOR, dateStart) + 1;
+                id = raw.substring(0, typeStart - 1);
+                type = raw.substring(typeStart, dateStart - 1);
+                final String d = raw.substring(dateStart, jsonStart - 1);
+                date = d.isEmpty() ? -1L : Long.parseLong(d);
+            }
+        }
+
+        static CacheEntry decode(String raw) {
+            return new CacheEntry(raw);
+        }
+
+        static String encode(JsonObject event) {
+            final Long date = event.getJsonObject("date", new JsonObject()).getLong("$date");
+            return event.getString("_id", "") + SEPARATOR + event.getString("type", "") + SEPARATOR +
+                    (date != null ? date.toString() : "") + SEPARATOR + event.encode();
+        }
+
+        JsonObject toJson() {
+            return new JsonObject(jsonStart == 0 ? raw : raw.substring(jsonStart));
+        }
+    }
+
+    private Future<List<CacheEntry>> getListFiltered(String userId, List<String> types){
+        Future<List<CacheEntry>> future = Future.future();
         cacheService.getList(getKey(userId), res -> {
             if (res.succeeded()) {
                 final List<String> all = res.result();
                 final Set<String> uniqIds = new HashSet<>();
                 final long now = System.currentTimeMillis();
-                final List<JsonObject> allJson = all.stream().map(json -> new JsonObject(json)).filter(json -> {
-                    final String id = json.getString("_id");
-                    final boolean alreadyAdded = uniqIds.contains(id);
-                    if(alreadyAdded) return false;
-                    uniqIds.add(id);
+                final List<CacheEntry> entries = all.stream().map(CacheEntry::decode).filter(entry -> {
+                    if(!uniqIds.add(entry.id)) return false;
                     //date filter
-                    final long date = json.getJsonObject("date", new JsonObject()).getLong("$date", now);
-                    if(date > now){
+                    if(entry.date > now){
                         return false;
                     }
                     //
                     if (types != null && types.size() > 0) {
-                        final String type = json.getString("type", "");
-                        return types.contains(type);
+                        return types.contains(entry.type);
                     } else {
                         return true;
                     }
                 }).collect(Collectors.toList());
-                future.complete(allJson);
-            } else {
-                future.fail(res.cause());
-            }
-        });
-        return future;
-    }
-
-    private Future<List<JsonObject>> getListUnfiltered(String userId){
-        Future<List<JsonObject>> future = Future.future();
-        cacheService.getList(getKey(userId), res -> {
-            if (res.succeeded()) {
-                final List<String> all = res.result();
-                final Set<String> uniqIds = new HashSet<>();
-                final List<JsonObject> allJson = all.stream().map(json -> new JsonObject(json)).collect(Collectors.toList());
-                future.complete(allJson);
+                future.complete(entries);
             } else {
                 future.fail(res.cause());
             }
@@ -206,7 +211,8 @@ public class CachedTimelineEventStore implements TimelineEventStore {
             if(offset == 0){
                 getListFiltered(userId, types).setHandler(resJson ->{
                     if(resJson.succeeded()){
-                        final List<JsonObject> allJson = resJson.result();
+                        final List<JsonObject> allJson = resJson.result().stream()
+                                .map(CacheEntry::toJson).collect(Collectors.toList());
                         final JsonObject payload = new JsonObject();
                         payload.put("number", allJson.size());
                         payload.put("results", new JsonArray(allJson));
@@ -240,6 +246,23 @@ public class CachedTimelineEventStore implements TimelineEventStore {
         }
     }
 
+    @Override
+    public void get(UserInfos recipient, List<String> types, Long beforeDate, String beforeId, int limit, JsonObject restrictionFilter, boolean mine, boolean both, String version, Handler<JsonObject> result) {
+        if (beforeDate == null && !"2.0".equals(version) && !both && !mine) {
+            // the first page is the cached one, the next ones start after its last event
+            get(recipient, types, 0, limit, restrictionFilter, mine, both, version, res -> {
+                final JsonArray results = res.getJsonArray("results");
+                if ("ok".equals(res.getString("status")) && results != null && !results.isEmpty() &&
+                        results.getJsonObject(results.size() - 1).containsKey("created")) {
+                    res.put("cursor", DefaultTimelineEventStore.cursor(results.getJsonObject(results.size() - 1)));
+                }
+                result.handle(res);
+            });
+        } else {
+            original.get(recipient, types, beforeDate, beforeId, limit, restrictionFilter, mine, both, version, result);
+        }
+    }
+
     @Override
     public void deleteSubResource(String resource, Handler<JsonObject> result) {
         original.deleteSubResource(resource, result);
@@ -276,13 +299,11 @@ public class CachedTimelineEventStore implements TimelineEventStore {
     }
 
     protected void removeFromCache(String recipient, String id){
-        getListUnfiltered(recipient).setHandler(res->{
+        cacheService.getList(getKey(recipient), res->{
             if(res.succeeded()){
-                final List<JsonObject> jsons = res.result();
-                for(int i = 0 ; i < jsons.size(); i ++){
-                    final JsonObject current = jsons.get(i);
-                    if(id.equals(current.getString("_id"))){
-                        cacheService.removeFromList(getKey(recipient), current.encode(), resR->{});
+                for(final String raw : res.result()){
+                    if(id.equals(CacheEntry.decode(raw).id)){
+                        cacheService.removeFromList(getKey(recipient), raw, resR->{});
                     }
                 }
             }
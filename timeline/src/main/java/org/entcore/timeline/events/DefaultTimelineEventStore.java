@@ -32,13 +32,17 @@ import io.vertx.core.json.JsonObject;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 
 public class DefaultTimelineEventStore implements TimelineEventStore {
 
 	public static final String TIMELINE_COLLECTION = "timeline";
+	private static final int SCAN_FACTOR = 2;
+	private static final int MAX_SCANS = 5;
 
 	protected MongoDb mongo = MongoDb.getInstance();
 
@@ -82,110 +86,212 @@ public class DefaultTimelineEventStore implements TimelineEventStore {
 					boolean mine, boolean both, String version, final Handler<JsonObject> result) {
 		final String recipient = user.getUserId();
 		if (recipient != null && !recipient.trim().isEmpty()) {
-			// 1. Common trunk (literally)
 			JsonObject sort = new JsonObject().put("created", -1);
-			JsonObject keys = new JsonObject()
-					.put("message", 1)
-					.put("params", 1)
-					.put("date", 1)
-					.put("sender", 1)
-					.put("comments", 1)
-					.put("type", 1)
-					.put("event-type", 1)
-					.put("resource", 1)
-					.put("sub-resource", 1)
-					.put("add-comment", 1);
-			final JsonObject typesQuery = new JsonObject();
-			final JsonObject filtersQuery = new JsonObject();
-			// 1.a Not deleted or future items
-			final JsonObject query = new JsonObject()
-					.put("deleted", new JsonObject()
-							.put("$exists", false))
-					.put("date", new JsonObject().put("$lt", MongoDb.now()));
-			// 1.b Filter by types
-			query.put("reportAction.action", new JsonObject().put("$ne", "DELETE"));
-			if (types != null && !types.isEmpty()) {
-				if (types.size() == 1) {
-					typesQuery.put("type", types.get(0));
-				} else {
-					JsonArray typesFilter = new fr.wseduc.webutils.collections.JsonArray();
-					for (String t: types) {
-						typesFilter.add(new JsonObject().put("type", t));
+			final JsonObject keys = keys();
+			final JsonObject query = query(user, types, restrictionFilter, mine, both, version, keys);
+			mongo.find(timelineCollection, query, sort, keys,
+					offset, limit, 100, new Handler<Message<JsonObject>>() {
+						@Override
+						public void handle(Message<JsonObject> message) {
+							result.handle(message.body());
+						}
+					});
+		} else {
+			result.handle(invalidArguments());
+		}
+	}
+
+	/**
+	 * Page on (created, _id) : the scan starts at the cursor in the recipients.userId / created / _id index instead of
+	 * skipping the previous pages. The restricted types are filtered out of the scanned events rather than with a $nor,
+	 * and the scan goes on by batches until the page is full.
+	 */
+	@Override
+	public void get(final UserInfos user, List<String> types, Long beforeDate, String beforeId, int limit,
+			JsonObject restrictionFilter, boolean mine, boolean both, String version, final Handler<JsonObject> result) {
+		final String recipient = user.getUserId();
+		if (recipient != null && !recipient.trim().isEmpty() && limit > 0) {
+			final JsonObject keys = keys();
+			final JsonObject query = query(user, types, null, mine, both, version, keys);
+			final Set<String> restricted = new HashSet<>();
+			if (restrictionFilter != null) {
+				for (String type : restrictionFilter.fieldNames()) {
+					for (Object eventType : restrictionFilter.getJsonArray(type, new JsonArray())) {
+						restricted.add(type + "." + eventType);
 					}
-					typesQuery.put("$or", typesFilter);
 				}
 			}
-			// 1.c Restriction filter
-			if(restrictionFilter != null && restrictionFilter.size() > 0){
-				JsonArray nor = new fr.wseduc.webutils.collections.JsonArray();
-				for(String type : restrictionFilter.getMap().keySet()){
-					for(Object eventType : restrictionFilter.getJsonArray(type, new fr.wseduc.webutils.collections.JsonArray())){
-						nor.add(new JsonObject()
-								.put("type", type)
-								.put("event-type", eventType.toString()));
-					}
-					typesQuery.put("$nor", nor);
+			scan(query, keys, beforeDate, beforeId, limit, restricted, new JsonArray(), MAX_SCANS, result);
+		} else {
+			result.handle(invalidArguments());
+		}
+	}
+
+	private void scan(final JsonObject query, final JsonObject keys, Long beforeDate, String beforeId, final int limit,
+			final Set<String> restricted, final JsonArray results, final int scans, final Handler<JsonObject> result) {
+		final JsonObject q = query.copy();
+		if (beforeDate != null) {
+			final JsonObject date = new JsonObject().put("$date", beforeDate);
+			if (beforeId != null) {
+				q.put("created", new JsonObject().put("$lte", date));
+				q.put("$nor", new JsonArray().add(new JsonObject()
+						.put("created", date).put("_id", new JsonObject().put("$gte", beforeId))));
+			} else {
+				q.put("created", new JsonObject().put("$lt", date));
+			}
+		}
+		final JsonObject sort = new JsonObject().put("created", -1).put("_id", -1);
+		final int batch = restricted.isEmpty() ? limit - results.size() : (limit - results.size()) * SCAN_FACTOR;
+		mongo.find(timelineCollection, q, sort, keys, 0, batch, batch, message -> {
+			final JsonArray events = message.body().getJsonArray("results");
+			if (!"ok".equals(message.body().getString("status")) || events == null) {
+				result.handle(message.body());
+				return;
+			}
+			JsonObject last = null;
+			for (Object o : events) {
+				if (!(o instanceof JsonObject)) continue;
+				final JsonObject event = (JsonObject) o;
+				last = event;
+				if (!restricted.contains(event.getString("type") + "." + event.getString("event-type"))) {
+					results.add(event);
+					if (results.size() == limit) break;
 				}
 			}
-
-			// 2 Theirs / Mine (history) / Both
-			if (!"3.0".equals(version)) {
-				if (mine) { query.put("sender", recipient); }
-				else if (both) {
-					query.put("$and", new JsonArray()
-							.add(new JsonObject().put(
-									"$or", new JsonArray()
-											.add(new JsonObject().put("sender", recipient))
-											.add(new JsonObject().put("recipients.userId", recipient))
-							))
-					);
-					keys.put("recipients", new JsonObject()
-							.put("$elemMatch", new JsonObject()
-									.put("userId", user.getUserId())));
-					keys.put("reporters", new JsonObject()
-							.put("$elemMatch", new JsonObject()
-									.put("userId", user.getUserId())));
-				} else { query.put("recipients.userId", recipient); }
+			final boolean more = last != null && (results.size() == limit || events.size() == batch);
+			if (results.size() < limit && more && scans > 1) {
+				scan(query, keys, createdTime(last), last.getString("_id"), limit, restricted, results, scans - 1, result);
+				return;
+			}
+			final JsonObject payload = new JsonObject()
+					.put("status", "ok")
+					.put("number", results.size())
+					.put("results", results);
+			if (more) {
+				payload.put("cursor", cursor(last));
 			}
+			result.handle(payload);
+		});
+	}
+
+	static long createdTime(JsonObject event) {
+		final JsonObject created = event.getJsonObject("created", new JsonObject());
+		final Object date = created.getValue("$date");
+		if (date instanceof Number) {
+			return ((Number) date).longValue();
+		}
+		return MongoDb.parseIsoDate(created).getTime();
+	}
+
+	/**
+	 * @return the cursor of the page following the event
+	 */
+	static JsonObject cursor(JsonObject event) {
+		return new JsonObject()
+				.put("beforeDate", createdTime(event))
+				.put("beforeId", event.getString("_id"));
+	}
+
+	private JsonObject keys() {
+		return new JsonObject()
+				.put("message", 1)
+				.put("params", 1)
+				.put("date", 1)
+				.put("created", 1)
+				.put("sender", 1)
+				.put("comments", 1)
+				.put("type", 1)
+				.put("event-type", 1)
+				.put("resource", 1)
+				.put("sub-resource", 1)
+				.put("add-comment", 1);
+	}
 
-			// 3. Include only notifications with preview
-			if ("2.0".equals(version)) {
-				filtersQuery.put("preview", new JsonObject().put("$exists", true));
-				keys.put("preview", 1);
+	private JsonObject query(final UserInfos user, List<String> types, JsonObject restrictionFilter,
+			boolean mine, boolean both, String version, JsonObject keys) {
+		final String recipient = user.getUserId();
+		// 1. Common trunk (literally)
+		final JsonObject typesQuery = new JsonObject();
+		final JsonObject filtersQuery = new JsonObject();
+		// 1.a Not deleted or future items
+		final JsonObject query = new JsonObject()
+				.put("deleted", new JsonObject()
+						.put("$exists", false))
+				.put("date", new JsonObject().put("$lt", MongoDb.now()));
+		// 1.b Filter by types
+		query.put("reportAction.action", new JsonObject().put("$ne", "DELETE"));
+		if (types != null && !types.isEmpty()) {
+			if (types.size() == 1) {
+				typesQuery.put("type", types.get(0));
+			} else {
+				JsonArray typesFilter = new fr.wseduc.webutils.collections.JsonArray();
+				for (String t: types) {
+					typesFilter.add(new JsonObject().put("type", t));
+				}
+				typesQuery.put("$or", typesFilter);
 			}
+		}
+		// 1.c Restriction filter
+		if(restrictionFilter != null && restrictionFilter.size() > 0){
+			JsonArray nor = new fr.wseduc.webutils.collections.JsonArray();
+			for(String type : restrictionFilter.getMap().keySet()){
+				for(Object eventType : restrictionFilter.getJsonArray(type, new fr.wseduc.webutils.collections.JsonArray())){
+					nor.add(new JsonObject()
+							.put("type", type)
+							.put("event-type", eventType.toString()));
+				}
+				typesQuery.put("$nor", nor);
+			}
+		}
 
-			// 4. Include all received and sent ones that have a preview
-			if ("3.0".equals(version)) {
-				filtersQuery.put("$or", new JsonArray()
-					.add(new JsonObject().put("recipients", new JsonObject()
-							.put("$elemMatch", new JsonObject()
-									.put("userId", user.getUserId()))))
-					.add(new JsonObject().put("$and", new JsonArray()
-						.add(new JsonObject().put("sender", recipient))
-						.add(new JsonObject().put("preview", new JsonObject().put("$exists", true)))))
+		// 2 Theirs / Mine (history) / Both
+		if (!"3.0".equals(version)) {
+			if (mine) { query.put("sender", recipient); }
+			else if (both) {
+				query.put("$and", new JsonArray()
+						.add(new JsonObject().put(
+								"$or", new JsonArray()
+										.add(new JsonObject().put("sender", recipient))
+										.add(new JsonObject().put("recipients.userId", recipient))
+						))
 				);
 				keys.put("recipients", new JsonObject()
 						.put("$elemMatch", new JsonObject()
 								.put("userId", user.getUserId())));
-				keys.put("preview", 1);
-			}
+				keys.put("reporters", new JsonObject()
+						.put("$elemMatch", new JsonObject()
+								.put("userId", user.getUserId())));
+			} else { query.put("recipients.userId", recipient); }
+		}
 
-			// 5. Compose final query
-			final JsonArray and = new JsonArray();
-			and.add(typesQuery);
-			if (filtersQuery.size() > 0) and.add(filtersQuery);
-			query.put("$and", and);
+		// 3. Include only notifications with preview
+		if ("2.0".equals(version)) {
+			filtersQuery.put("preview", new JsonObject().put("$exists", true));
+			keys.put("preview", 1);
+		}
 
-			mongo.find(timelineCollection, query, sort, keys,
-					offset, limit, 100, new Handler<Message<JsonObject>>() {
-						@Override
-						public void handle(Message<JsonObject> message) {
-							result.handle(message.body());
-						}
-					});
-		} else {
-			result.handle(invalidArguments());
+		// 4. Include all received and sent ones that have a preview
+		if ("3.0".equals(version)) {
+			filtersQuery.put("$or", new JsonArray()
+				.add(new JsonObject().put("recipients", new JsonObject()
+						.put("$elemMatch", new JsonObject()
+								.put("userId", user.getUserId()))))
+				.add(new JsonObject().put("$and", new JsonArray()
+					.add(new JsonObject().put("sender", recipient))
+					.add(new JsonObject().put("preview", new JsonObject().put("$exists", true)))))
+			);
+			keys.put("recipients", new JsonObject()
+					.put("$elemMatch", new JsonObject()
+							.put("userId", user.getUserId())));
+			keys.put("preview", 1);
 		}
+
+		// 5. Compose final query
+		final JsonArray and = new JsonArray();
+		and.add(typesQuery);
+		if (filtersQuery.size() > 0) and.add(filtersQuery);
+		query.put("$and", and);
+		return query;
 	}
 
 	@Override
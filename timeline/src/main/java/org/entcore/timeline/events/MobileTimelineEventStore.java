@@ -53,6 +53,17 @@ public class MobileTimelineEventStore extends DefaultTimelineEventStore {
         });
     }
 
+    @Override
+    public void get(final UserInfos user, final List<String> types, final Long beforeDate, final String beforeId,
+            final int limit, final JsonObject restrictionFilter, final boolean mine, final boolean both,
+            final String version, final Handler<JsonObject> result) {
+        if (!"2.0".equals(version)) {
+            this.original.get(user, types, beforeDate, beforeId, limit, restrictionFilter, mine, both, version, result);
+            return;
+        }
+        super.get(user, types, beforeDate, beforeId, limit, restrictionFilter, mine, both, version, result);
+    }
+
     @Override
     public void get(final UserInfos user, final List<String> types, final int offset, final int limit,
             final JsonObject restrictionFilter, final boolean mine, final boolean both, final String version,
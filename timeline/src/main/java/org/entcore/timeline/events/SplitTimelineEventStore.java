@@ -151,6 +151,12 @@ public class SplitTimelineEventStore implements TimelineEventStore {
         original.get(recipient, types, offset, limit, restrictionFilter, mine, both, version, result);
     }
 
+    @Override
+    public void get(UserInfos recipient, List<String> types, Long beforeDate, String beforeId, int limit,
+            JsonObject restrictionFilter, boolean mine, boolean both, String version, Handler<JsonObject> result) {
+        original.get(recipient, types, beforeDate, beforeId, limit, restrictionFilter, mine, both, version, result);
+    }
+
     @Override
     public void deleteSubResource(String resource, Handler<JsonObject> result) {
         original.deleteSubResource(resource, result);
@@ -48,6 +48,15 @@ public interface TimelineEventStore {
 	void get(UserInfos recipient, List<String> types, int offset, int limit,
 			JsonObject restrictionFilter, boolean mine, boolean both, String version, Handler<JsonObject> result);
 
+	/**
+	 * Events created before the cursor (beforeDate, beforeId) of the previous page, or first page when beforeDate is null.
+	 * The result holds the cursor of the next page when there may be more events.
+	 */
+	default void get(UserInfos recipient, List<String> types, Long beforeDate, String beforeId, int limit,
+			JsonObject restrictionFilter, boolean mine, boolean both, String version, Handler<JsonObject> result) {
+		result.handle(new JsonObject().put("status", "error").put("message", "cursor.not.supported"));
+	}
+
 	void deleteSubResource(String resource, Handler<JsonObject> result);
 
 	void listTypes(Handler<JsonArray> result);
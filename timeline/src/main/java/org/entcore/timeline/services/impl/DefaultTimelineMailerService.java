@@ -55,6 +55,7 @@ import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static fr.wseduc.webutils.Utils.getOrElse;
@@ -71,6 +72,9 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 	private final EmailSender emailSender;
 	private final int USERS_LIMIT;
 	private final long QUERY_TIMEOUT;
+	private final int MAILS_CONCURRENCY;
+	private final boolean DIGEST_CHECKPOINTS;
+	private static final String DIGEST_CHECKPOINTS_COLLECTION = "timelineMailerCheckpoints";
 	private final MongoDb mongo = MongoDb.getInstance();
 	private final Neo4j neo4j = Neo4j.getInstance();
 
@@ -81,6 +85,8 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 		emailSender = emailFactory.getSenderWithPriority(EmailFactory.PRIORITY_VERY_LOW);
 		USERS_LIMIT = config.getInteger("users-loop-limit", 25);
 		QUERY_TIMEOUT = config.getLong("query-timeout", 300000L);
+		MAILS_CONCURRENCY = Math.max(1, config.getInteger("mails-concurrency", 16));
+		DIGEST_CHECKPOINTS = config.getBoolean("digest-checkpoints", false);
 		super.init(vertx, config);
 	}
 
@@ -269,9 +275,6 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 	}
 
 	protected void sendDailyMails(Optional<Date> forDate, int dayDelta, final Handler<Either<String, JsonObject>> handler){
-		final HttpServerRequest request = new JsonHttpServerRequest(new JsonObject());
-		final AtomicInteger userPagination = new AtomicInteger(0);
-		final AtomicInteger endPage = new AtomicInteger(0);
 		final Calendar dayDate = Calendar.getInstance();
 		if(forDate.isPresent()) dayDate.setTime(forDate.get());
 		dayDate.add(Calendar.DAY_OF_MONTH, dayDelta);
@@ -288,187 +291,7 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 		weekEndDate.set(Calendar.SECOND, 0);
 		weekEndDate.set(Calendar.MILLISECOND, 0);
 
-		final JsonObject results = new JsonObject()
-				.put("mails.sent", 0)
-				.put("users.ko", 0);
-		final JsonObject notificationsDefaults = new JsonObject();
-		final List<String> notifiedUsers = new ArrayList<>();
-
-		final Handler<Boolean> userContinuationHandler = new Handler<Boolean>() {
-
-			private final Handler<Boolean> continuation = this;
-			private final Handler<JsonArray> usersHandler = new Handler<JsonArray>() {
-				public void handle(final JsonArray users) {
-					final int nbUsers = users.size();
-					if(nbUsers == 0){
-						log.info("[DailyMails] Page0 : " + userPagination.get() + "/" + endPage.get());
-						continuation.handle(userPagination.get() != endPage.get());
-						return;
-					}
-					final AtomicInteger usersCountdown = new AtomicInteger(nbUsers);
-
-					final Handler<Void> usersEndHandler = new Handler<Void>() {
-						public void handle(Void v) {
-							if(usersCountdown.decrementAndGet() <= 0){
-								log.info("[DailyMails] Page : " + userPagination.get() + "/" + endPage.get());
-								continuation.handle(userPagination.get() != endPage.get());
-							}
-						}
-					};
-
-					final JsonArray userIds = new fr.wseduc.webutils.collections.JsonArray();
-					for(Object userObj : users)
-						userIds.add(((JsonObject) userObj).getString("id", ""));
-					NotificationUtils.getUsersPreferences(eb, userIds, "language: uac.language, displayName: u.displayName", new Handler<JsonArray>(){
-						public void handle(JsonArray preferences) {
-							for(Object userObj : preferences){
-								final JsonObject userPrefs = (JsonObject) userObj;
-								final String userDomain = userPrefs.getString("lastDomain", I18n.DEFAULT_DOMAIN);
-								final String userScheme = userPrefs.getString("lastScheme", "http");
-								String mutableUserLanguage = "fr";
-								try {
-									mutableUserLanguage = getOrElse(new JsonObject(getOrElse(userPrefs.getString("language"), "{}", false)).getString("default-domain"), "fr", false);
-								} catch(Exception e) {
-									log.error("UserId [" + userPrefs.getString("userId", "") + "] - Bad language preferences format");
-								}
-								final String userLanguage = mutableUserLanguage;
-								final String userDisplayName = getOrElse(userPrefs.getString("displayName"), "", true);
-
-								getUserNotifications(userPrefs.getString("userId", ""), dayDate.getTime(), weekEndDate.getTime(), new Handler<JsonArray>(){
-									public void handle(JsonArray notifications) {
-										if(notifications.size() == 0){
-											usersEndHandler.handle(null);
-											return;
-										}
-
-										SimpleDateFormat formatter = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss", Locale.forLanguageTag(userLanguage));
-										final JsonArray dates = new fr.wseduc.webutils.collections.JsonArray();
-										final JsonArray templates = new fr.wseduc.webutils.collections.JsonArray();
-
-										for(Object notificationObj : notifications){
-											JsonObject notification = (JsonObject) notificationObj;
-											final String notificationName =
-													notification.getString("type","").toLowerCase() + "." +
-															notification.getString("event-type", "").toLowerCase();
-											if(notificationsDefaults.getJsonObject(notificationName) == null)
-												continue;
-
-											JsonObject notificationPreference = userPrefs
-													.getJsonObject("preferences", new JsonObject())
-													.getJsonObject("config", new JsonObject())
-													.getJsonObject(notificationName, new JsonObject());
-											if(TimelineNotificationsLoader.Frequencies.DAILY.name().equals(
-													notificationPrefsMixin("defaultFrequency", notificationPreference, notificationsDefaults.getJsonObject(notificationName))) &&
-													!TimelineNotificationsLoader.Restrictions.INTERNAL.name().equals(
-															notificationPrefsMixin("restriction", notificationPreference, notificationsDefaults.getJsonObject(notificationName))) &&
-													!TimelineNotificationsLoader.Restrictions.HIDDEN.name().equals(
-															notificationPrefsMixin("restriction", notificationPreference, notificationsDefaults.getJsonObject(notificationName)))){
-												templates.add(new JsonObject()
-														.put("template", notificationsDefaults.getJsonObject(notificationName, new JsonObject()).getString("template", ""))
-														.put("params", notification.getJsonObject("params", new JsonObject())));
-												dates.add(formatter.format(MongoDb.parseIsoDate(notification.getJsonObject("date"))));
-											}
-										}
-										if(templates.size() > 0){
-
-											JsonObject templateParams = new JsonObject()
-													.put("nestedTemplatesArray", templates)
-													.put("notificationDates", dates)
-													.put("displayName", userDisplayName);
-
-											processTimelineTemplate(templateParams, "", "notifications/daily-mail.html",
-													userDomain, userScheme, userLanguage, false, new Handler<String>() {
-														public void handle(final String processedTemplate) {
-															//On completion : log
-															final Handler<AsyncResult<Message<JsonObject>>> completionHandler = event -> {
-																if(event.failed() || "error".equals(event.result().body().getString("status", "error"))){
-																	log.error("[Timeline daily emails] Error while sending mail : ", event.cause());
-																	results.put("users.ko", results.getInteger("users.ko") + 1);
-																} else {
-																	results.put("mails.sent", results.getInteger("mails.sent") + 1);
-																}
-																usersEndHandler.handle(null);
-															};
-
-															//Translate mail title
-															JsonArray keys = new fr.wseduc.webutils.collections.JsonArray()
-																	.add("timeline.daily.mail.subject.header");
-															translateTimeline(keys, userDomain, userLanguage, new Handler<JsonArray>() {
-																public void handle(JsonArray translations) {
-																	//Send mail containing the "daily" notifications
-																	emailSender.sendEmail(request,
-																			userPrefs.getString("userMail", ""),
-																			null,
-																			null,
-																			translations.getString(0),
-																			processedTemplate,
-																			null,
-																			false,
-																			completionHandler);
-																}
-															});
-														}
-													});
-										} else {
-											usersEndHandler.handle(null);
-										}
-
-									}
-								});
-							}
-						}
-					});
-				}
-			};
-
-			public void handle(Boolean continuation) {
-				if(continuation){
-					getImpactedUsers(notifiedUsers, userPagination.getAndIncrement(), new Handler<Either<String,JsonArray>>() {
-						public void handle(Either<String, JsonArray> event) {
-							if(event.isLeft()){
-								log.error("[sendDailyMails] Error while retrieving impacted users : " + event.left().getValue());
-								handler.handle(new Either.Left<String, JsonObject>(event.left().getValue()));
-							} else {
-								JsonArray users = event.right().getValue();
-								usersHandler.handle(users);
-							}
-						}
-					});
-				} else {
-					handler.handle(new Either.Right<String, JsonObject>(results));
-				}
-			}
-		};
-
-		getRecipientsUsers(dayDate.getTime(), weekEndDate.getTime(), new Handler<JsonArray>() {
-			@Override
-			public void handle(JsonArray event) {
-				if (event != null && event.size() > 0) {
-					notifiedUsers.addAll(event.getList());
-					endPage.set((event.size() / USERS_LIMIT) + (event.size() % USERS_LIMIT != 0 ? 1 : 0));
-					results.put("users.recipients", notifiedUsers.size());
-					results.put("users.pages", endPage.get());
-				} else {
-					results.put("users.recipients", 0);
-					results.put("users.pages", 0);
-					handler.handle(new Either.Right<String, JsonObject>(results));
-					return;
-				}
-				getNotificationsDefaults(new Handler<JsonArray>() {
-					public void handle ( final JsonArray notifications){
-						if (notifications == null) {
-							log.error("[sendDailyMails] Error while retrieving notifications defaults.");
-						} else {
-							for (Object notifObj : notifications) {
-								final JsonObject notif = (JsonObject) notifObj;
-								notificationsDefaults.put(notif.getString("key", ""), notif);
-							}
-							userContinuationHandler.handle(true);
-						}
-					}
-				});
-			}
-		});
+		new DigestRun(TimelineNotificationsLoader.Frequencies.DAILY, dayDate.getTime(), weekEndDate.getTime(), handler).start();
 	}
 
 	@Override
@@ -482,9 +305,6 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 	}
 
 	protected void sendWeeklyMails(Optional<Date> forDate, int dayDelta, final Handler<Either<String, JsonObject>> handler) {
-		final HttpServerRequest request = new JsonHttpServerRequest(new JsonObject());
-		final AtomicInteger userPagination = new AtomicInteger(0);
-		final AtomicInteger endPage = new AtomicInteger(0);
 		final Calendar weekDate = Calendar.getInstance();
 		if(forDate.isPresent()) weekDate.setTime(forDate.get());
 		weekDate.add(Calendar.DAY_OF_MONTH, dayDelta - 6);
@@ -501,207 +321,351 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 		weekEndDate.set(Calendar.SECOND, 0);
 		weekEndDate.set(Calendar.MILLISECOND, 0);
 
-		final JsonObject results = new JsonObject()
+		new DigestRun(TimelineNotificationsLoader.Frequencies.WEEKLY, weekDate.getTime(), weekEndDate.getTime(), handler).start();
+	}
+
+	/**
+	 * Daily or weekly mails, sent by pages of recipients.
+	 * The notifications of the users of a page are fetched with one aggregation grouped by recipient,
+	 * then the mails of the page are rendered and sent with at most <code>MAILS_CONCURRENCY</code> mails in progress.
+	 * The subjects and date formats are computed once per language. When checkpoints are enabled, the next page
+	 * and the results are saved after each page so an interrupted run resumes where it stopped.
+	 */
+	private class DigestRun {
+		private final TimelineNotificationsLoader.Frequencies frequency;
+		private final String name;
+		private final Date from;
+		private final Date to;
+		private final Handler<Either<String, JsonObject>> handler;
+		private final HttpServerRequest request = new JsonHttpServerRequest(new JsonObject());
+		private final JsonObject results = new JsonObject()
 				.put("mails.sent", 0)
 				.put("users.ko", 0);
-		final JsonObject notificationsDefaults = new JsonObject();
-		final List<String> notifiedUsers = new ArrayList<>();
-
-		final Handler<Boolean> userContinuationHandler = new Handler<Boolean>() {
-
-			private final Handler<Boolean> continuation = this;
-			private final Handler<JsonArray> usersHandler = new Handler<JsonArray>() {
-				public void handle(final JsonArray users) {
-					final int nbUsers = users.size();
-					if (nbUsers == 0) {
-						log.info("[WeeklyMails] Page0 : " + userPagination.get() + "/" + endPage.get());
-						continuation.handle(userPagination.get() != endPage.get());
+		private final JsonObject notificationsDefaults = new JsonObject();
+		private final List<String> notifiedUsers = new ArrayList<>();
+		private final Map<String, String> subjects = new HashMap<>();
+		private final Map<String, SimpleDateFormat> formatters = new HashMap<>();
+		private int endPage;
+
+		private DigestRun(TimelineNotificationsLoader.Frequencies frequency, Date from, Date to,
+				Handler<Either<String, JsonObject>> handler) {
+			this.frequency = frequency;
+			this.name = frequency == TimelineNotificationsLoader.Frequencies.DAILY ? "DailyMails" : "WeeklyMails";
+			this.from = from;
+			this.to = to;
+			this.handler = handler;
+		}
+
+		private void start() {
+			getRecipientsUsers(from, to, new Handler<JsonArray>() {
+				@Override
+				public void handle(JsonArray event) {
+					if (event != null && event.size() > 0) {
+						notifiedUsers.addAll(event.getList());
+						// same pages on each run of the period to resume from a checkpoint
+						Collections.sort(notifiedUsers);
+						endPage = (notifiedUsers.size() / USERS_LIMIT) + (notifiedUsers.size() % USERS_LIMIT != 0 ? 1 : 0);
+					} else {
+						results.put("users.recipients", 0);
+						results.put("users.pages", 0);
+						handler.handle(new Either.Right<String, JsonObject>(results));
 						return;
 					}
-					final AtomicInteger usersCountdown = new AtomicInteger(nbUsers);
-
-					final Handler<Void> usersEndHandler = new Handler<Void>() {
-						public void handle(Void v) {
-							if (usersCountdown.decrementAndGet() <= 0) {
-								log.info("[WeeklyMails] Page : " + userPagination.get() + "/" + endPage.get());
-								continuation.handle(userPagination.get() != endPage.get());
+					getNotificationsDefaults(new Handler<JsonArray>() {
+						public void handle(final JsonArray notifications) {
+							if (notifications == null) {
+								log.error("[" + name + "] Error while retrieving notifications defaults.");
+								handler.handle(new Either.Left<String, JsonObject>("notifications.defaults.error"));
+								return;
+							}
+							for (Object notifObj : notifications) {
+								final JsonObject notif = (JsonObject) notifObj;
+								notificationsDefaults.put(notif.getString("key", ""), notif);
 							}
+							getCheckpoint(checkpoint -> {
+								results.mergeIn(checkpoint.getJsonObject("results", new JsonObject()));
+								results.put("users.recipients", notifiedUsers.size());
+								results.put("users.pages", endPage);
+								if (checkpoint.getBoolean("done", false)) {
+									log.info("[" + name + "] Already sent : " + checkpointId());
+									handler.handle(new Either.Right<String, JsonObject>(results));
+								} else {
+									sendPage(checkpoint.getInteger("page", 0));
+								}
+							});
 						}
-					};
+					});
+				}
+			});
+		}
 
+		private void sendPage(final int page) {
+			if (page >= endPage) {
+				saveCheckpoint(page, true, v -> handler.handle(new Either.Right<String, JsonObject>(results)));
+				return;
+			}
+			getImpactedUsers(notifiedUsers, page, new Handler<Either<String, JsonArray>>() {
+				public void handle(Either<String, JsonArray> event) {
+					if (event.isLeft()) {
+						log.error("[" + name + "] Error while retrieving impacted users : " + event.left().getValue());
+						handler.handle(new Either.Left<String, JsonObject>(event.left().getValue()));
+						return;
+					}
+					final JsonArray users = event.right().getValue();
+					final Handler<Void> nextPage = v -> {
+						log.info("[" + name + "] Page : " + (page + 1) + "/" + endPage);
+						saveCheckpoint(page + 1, false, v2 -> sendPage(page + 1));
+					};
+					if (users.size() == 0) {
+						nextPage.handle(null);
+						return;
+					}
 					final JsonArray userIds = new fr.wseduc.webutils.collections.JsonArray();
 					for (Object userObj : users)
 						userIds.add(((JsonObject) userObj).getString("id", ""));
 					NotificationUtils.getUsersPreferences(eb, userIds, "language: uac.language, displayName: u.displayName", new Handler<JsonArray>() {
-						public void handle(JsonArray preferences) {
-							for (Object userObj : preferences) {
-								final JsonObject userPrefs = (JsonObject) userObj;
-								final String userDomain = userPrefs.getString("lastDomain", I18n.DEFAULT_DOMAIN);
-								final String userScheme = userPrefs.getString("lastScheme", "http");
-								String mutableUserLanguage = "fr";
-								try {
-									mutableUserLanguage = getOrElse(new JsonObject(getOrElse(userPrefs.getString("language"), "{}", false)).getString("default-domain"), "fr", false);
-								} catch (Exception e) {
-									log.error("UserId [" + userPrefs.getString("userId", "") + "] - Bad language preferences format");
+						public void handle(final JsonArray preferences) {
+							if (preferences == null) {
+								log.error("[" + name + "] Issue while retrieving users preferences.");
+								nextPage.handle(null);
+								return;
+							}
+							final Map<String, JsonArray> notifications = new HashMap<>();
+							fetchNotificationsByRecipient(mongo, userIds.getList(), ids ->
+									frequency == TimelineNotificationsLoader.Frequencies.DAILY ?
+											usersNotificationsCommand(ids, from, to) :
+											usersAggregatedNotificationsCommand(ids, from, to),
+									new DeliveryOptions().setSendTimeout(QUERY_TIMEOUT), notifications, error -> {
+								if (error != null) {
+									log.error("[" + name + "] Error while retrieving notifications : " + error);
+									notifications.clear();
 								}
-								final String userLanguage = mutableUserLanguage;
-								final String userDisplayName = getOrElse(userPrefs.getString("displayName"), "", true);
-
-								getAggregatedUserNotifications(userPrefs.getString("userId", ""), weekDate.getTime(), weekEndDate.getTime(), new Handler<JsonArray>() {
-									public void handle(JsonArray notifications) {
-										if (notifications.size() == 0) {
-											usersEndHandler.handle(null);
-											return;
-										}
-
-										final JsonArray weeklyNotifications = new fr.wseduc.webutils.collections.JsonArray();
-
-										for (Object notificationObj : notifications) {
-											JsonObject notification = (JsonObject) notificationObj;
-											final String notificationName =
-													notification.getString("type", "").toLowerCase() + "." +
-															notification.getString("event-type", "").toLowerCase();
-											if (notificationsDefaults.getJsonObject(notificationName) == null)
-												continue;
-
-											JsonObject notificationPreference = userPrefs
-													.getJsonObject("preferences", new JsonObject())
-													.getJsonObject("config", new JsonObject())
-													.getJsonObject(notificationName, new JsonObject());
-											if (TimelineNotificationsLoader.Frequencies.WEEKLY.name().equals(
-													notificationPrefsMixin("defaultFrequency", notificationPreference, notificationsDefaults.getJsonObject(notificationName))) &&
-													!TimelineNotificationsLoader.Restrictions.INTERNAL.name().equals(
-															notificationPrefsMixin("restriction", notificationPreference, notificationsDefaults.getJsonObject(notificationName))) &&
-													!TimelineNotificationsLoader.Restrictions.HIDDEN.name().equals(
-															notificationPrefsMixin("restriction", notificationPreference, notificationsDefaults.getJsonObject(notificationName)))) {
-												notification.put("notificationName", notificationName);
-												weeklyNotifications.add(notification);
-											}
-										}
-
-										final JsonObject weeklyNotificationsObj = new JsonObject();
-										final JsonArray weeklyNotificationsGroupedArray = new fr.wseduc.webutils.collections.JsonArray();
-										for (Object notif : weeklyNotifications) {
-											JsonObject notification = (JsonObject) notif;
-											if (!weeklyNotificationsObj.containsKey(notification.getString("type").toLowerCase()))
-												weeklyNotificationsObj.put(notification.getString("type").toLowerCase(), new JsonObject()
-														.put("link", notificationsDefaults
-																.getJsonObject(notification.getString("notificationName")).getString("app-address", ""))
-														.put("event-types", new fr.wseduc.webutils.collections.JsonArray()));
-											weeklyNotificationsObj
-													.getJsonObject(notification.getString("type").toLowerCase())
-													.getJsonArray(("event-types"), new fr.wseduc.webutils.collections.JsonArray())
-													.add(notification);
-										}
-
-										for (String key : weeklyNotificationsObj.getMap().keySet()) {
-											weeklyNotificationsGroupedArray.add(new JsonObject()
-													.put("type", key)
-													.put("link", weeklyNotificationsObj.getJsonObject(key).getString("link", ""))
-													.put("event-types", weeklyNotificationsObj.getJsonObject(key).getJsonArray("event-types")));
-										}
-
-										if (weeklyNotifications.size() > 0) {
-
-											JsonObject templateParams = new JsonObject().put("notifications", weeklyNotificationsGroupedArray);
-											templateParams.put("displayName", userDisplayName);
-
-											processTimelineTemplate(templateParams, "", "notifications/weekly-mail.html",
-													userDomain, userScheme, userLanguage, false, new Handler<String>() {
-														public void handle(final String processedTemplate) {
-															//On completion : log
-															final Handler<AsyncResult<Message<JsonObject>>> completionHandler = event -> {
-																if (event.failed() || "error".equals(event.result().body().getString("status", "error"))) {
-																	log.error("[Timeline weekly emails] Error while sending mail : ", event.cause());
-																	results.put("users.ko", results.getInteger("users.ko") + 1);
-																} else {
-																	results.put("mails.sent", results.getInteger("mails.sent") + 1);
-																}
-																usersEndHandler.handle(null);
-															};
-
-															//Translate mail title
-															JsonArray keys = new fr.wseduc.webutils.collections.JsonArray()
-																	.add("timeline.weekly.mail.subject.header");
-															translateTimeline(keys, userDomain, userLanguage, new Handler<JsonArray>() {
-																public void handle(JsonArray translations) {
-																	//Send mail containing the "weekly" notifications
-																	emailSender.sendEmail(request,
-																			userPrefs.getString("userMail", ""),
-																			null,
-																			null,
-																			translations.getString(0),
-																			processedTemplate,
-																			null,
-																			false,
-																			completionHandler);
-																}
-															});
-														}
-													});
-										} else {
-											usersEndHandler.handle(null);
-										}
+								sendMails(preferences, notifications, nextPage);
+							});
+						}
+					});
+				}
+			});
+		}
 
-									}
-								});
-							}
+		private void sendMails(JsonArray preferences, Map<String, JsonArray> notifications, Handler<Void> endHandler) {
+			final List<JsonObject> users = new ArrayList<>();
+			for (Object userObj : preferences) {
+				final JsonObject userPrefs = (JsonObject) userObj;
+				final JsonArray userNotifications = notifications.get(userPrefs.getString("userId", ""));
+				if (userNotifications != null && userNotifications.size() > 0) {
+					users.add(userPrefs);
+				}
+			}
+			if (users.isEmpty()) {
+				endHandler.handle(null);
+				return;
+			}
+			final AtomicInteger next = new AtomicInteger(0);
+			final AtomicInteger remaining = new AtomicInteger(users.size());
+			final Handler<Void> sendNext = new Handler<Void>() {
+				public void handle(Void v) {
+					final int index = next.getAndIncrement();
+					if (index >= users.size()) {
+						return;
+					}
+					final JsonObject userPrefs = users.get(index);
+					sendMail(userPrefs, notifications.get(userPrefs.getString("userId", "")), sent -> {
+						if (remaining.decrementAndGet() == 0) {
+							endHandler.handle(null);
+						} else {
+							handle(null);
 						}
 					});
 				}
 			};
+			for (int i = 0; i < Math.min(MAILS_CONCURRENCY, users.size()); i++) {
+				sendNext.handle(null);
+			}
+		}
 
-			public void handle(Boolean continuation) {
-				if (continuation) {
-					getImpactedUsers(notifiedUsers, userPagination.getAndIncrement(), new Handler<Either<String, JsonArray>>() {
-						public void handle(Either<String, JsonArray> event) {
-							if (event.isLeft()) {
-								log.error("[sendWeeklyMails] Error while retrieving impacted users : " + event.left().getValue());
-								handler.handle(new Either.Left<String, JsonObject>(event.left().getValue()));
-							} else {
-								JsonArray users = event.right().getValue();
-								usersHandler.handle(users);
-							}
+		private void sendMail(final JsonObject userPrefs, JsonArray notifications, final Handler<Void> sentHandler) {
+			final String userDomain = userPrefs.getString("lastDomain", I18n.DEFAULT_DOMAIN);
+			final String userScheme = userPrefs.getString("lastScheme", "http");
+			String mutableUserLanguage = "fr";
+			try {
+				mutableUserLanguage = getOrElse(new JsonObject(getOrElse(userPrefs.getString("language"), "{}", false)).getString("default-domain"), "fr", false);
+			} catch(Exception e) {
+				log.error("UserId [" + userPrefs.getString("userId", "") + "] - Bad language preferences format");
+			}
+			final String userLanguage = mutableUserLanguage;
+			final String userDisplayName = getOrElse(userPrefs.getString("displayName"), "", true);
+
+			final JsonObject templateParams = frequency == TimelineNotificationsLoader.Frequencies.DAILY ?
+					dailyTemplateParams(userPrefs, userLanguage, notifications) :
+					weeklyTemplateParams(userPrefs, notifications);
+			if (templateParams == null) {
+				sentHandler.handle(null);
+				return;
+			}
+			templateParams.put("displayName", userDisplayName);
+			final String template = frequency == TimelineNotificationsLoader.Frequencies.DAILY ?
+					"notifications/daily-mail.html" : "notifications/weekly-mail.html";
+			processTimelineTemplate(templateParams, "", template, userDomain, userScheme, userLanguage, false, new Handler<String>() {
+				public void handle(final String processedTemplate) {
+					//On completion : log
+					final Handler<AsyncResult<Message<JsonObject>>> completionHandler = event -> {
+						if(event.failed() || "error".equals(event.result().body().getString("status", "error"))){
+							log.error("[Timeline " + frequency.name().toLowerCase() + " emails] Error while sending mail : ", event.cause());
+							results.put("users.ko", results.getInteger("users.ko") + 1);
+						} else {
+							results.put("mails.sent", results.getInteger("mails.sent") + 1);
 						}
-					});
-				} else {
-					handler.handle(new Either.Right<String, JsonObject>(results));
+						sentHandler.handle(null);
+					};
+					getSubject(userDomain, userLanguage, subject ->
+						emailSender.sendEmail(request,
+								userPrefs.getString("userMail", ""),
+								null,
+								null,
+								subject,
+								processedTemplate,
+								null,
+								false,
+								completionHandler));
+				}
+			});
+		}
+
+		private JsonObject dailyTemplateParams(JsonObject userPrefs, String userLanguage, JsonArray notifications) {
+			SimpleDateFormat formatter = formatters.get(userLanguage);
+			if (formatter == null) {
+				formatter = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss", Locale.forLanguageTag(userLanguage));
+				formatters.put(userLanguage, formatter);
+			}
+			final JsonArray dates = new fr.wseduc.webutils.collections.JsonArray();
+			final JsonArray templates = new fr.wseduc.webutils.collections.JsonArray();
+
+			for(Object notificationObj : notifications){
+				JsonObject notification = (JsonObject) notificationObj;
+				final String notificationName = notificationName(notification);
+				if(isDigestNotification(userPrefs, notificationName)){
+					templates.add(new JsonObject()
+							.put("template", notificationsDefaults.getJsonObject(notificationName, new JsonObject()).getString("template", ""))
+							.put("params", notification.getJsonObject("params", new JsonObject())));
+					dates.add(formatter.format(MongoDb.parseIsoDate(notification.getJsonObject("date"))));
 				}
 			}
-		};
-		getRecipientsUsers(weekDate.getTime(), weekEndDate.getTime(), new Handler<JsonArray>() {
-			@Override
-			public void handle(JsonArray event) {
-				if (event != null && event.size() > 0) {
-					notifiedUsers.addAll(event.getList());
-					endPage.set((event.size() / USERS_LIMIT) + (event.size() % USERS_LIMIT != 0 ? 1 : 0));
-					results.put("users.recipients", notifiedUsers.size());
-					results.put("users.pages", endPage.get());
+			if (templates.size() == 0) {
+				return null;
+			}
+			return new JsonObject()
+					.put("nestedTemplatesArray", templates)
+					.put("notificationDates", dates);
+		}
+
+		private JsonObject weeklyTemplateParams(JsonObject userPrefs, JsonArray notifications) {
+			final JsonObject weeklyNotificationsObj = new JsonObject();
+			for (Object notificationObj : notifications) {
+				JsonObject notification = (JsonObject) notificationObj;
+				final String notificationName = notificationName(notification);
+				if (!isDigestNotification(userPrefs, notificationName))
+					continue;
+				notification.put("notificationName", notificationName);
+				final String type = notification.getString("type", "").toLowerCase();
+				if (!weeklyNotificationsObj.containsKey(type))
+					weeklyNotificationsObj.put(type, new JsonObject()
+							.put("link", notificationsDefaults.getJsonObject(notificationName).getString("app-address", ""))
+							.put("event-types", new fr.wseduc.webutils.collections.JsonArray()));
+				weeklyNotificationsObj.getJsonObject(type).getJsonArray("event-types").add(notification);
+			}
+			if (weeklyNotificationsObj.size() == 0) {
+				return null;
+			}
+			final JsonArray weeklyNotificationsGroupedArray = new fr.wseduc.webutils.collections.JsonArray();
+			for (String key : weeklyNotificationsObj.getMap().keySet()) {
+				weeklyNotificationsGroupedArray.add(new JsonObject()
+						.put("type", key)
+						.put("link", weeklyNotificationsObj.getJsonObject(key).getString("link", ""))
+						.put("event-types", weeklyNotificationsObj.getJsonObject(key).getJsonArray("event-types")));
+			}
+			return new JsonObject().put("notifications", weeklyNotificationsGroupedArray);
+		}
+
+		private String notificationName(JsonObject notification) {
+			return notification.getString("type", "").toLowerCase() + "." +
+					notification.getString("event-type", "").toLowerCase();
+		}
+
+		private boolean isDigestNotification(JsonObject userPrefs, String notificationName) {
+			final JsonObject defaults = notificationsDefaults.getJsonObject(notificationName);
+			if (defaults == null) {
+				return false;
+			}
+			final JsonObject notificationPreference = userPrefs
+					.getJsonObject("preferences", new JsonObject())
+					.getJsonObject("config", new JsonObject())
+					.getJsonObject(notificationName, new JsonObject());
+			final String restriction = notificationPrefsMixin("restriction", notificationPreference, defaults);
+			return frequency.name().equals(notificationPrefsMixin("defaultFrequency", notificationPreference, defaults)) &&
+					!TimelineNotificationsLoader.Restrictions.INTERNAL.name().equals(restriction) &&
+					!TimelineNotificationsLoader.Restrictions.HIDDEN.name().equals(restriction);
+		}
+
+		private void getSubject(String domain, String language, Handler<String> subjectHandler) {
+			final String key = domain + ":" + language;
+			final String subject = subjects.get(key);
+			if (subject != null) {
+				subjectHandler.handle(subject);
+				return;
+			}
+			//Translate mail title
+			final JsonArray keys = new fr.wseduc.webutils.collections.JsonArray()
+					.add("timeline." + frequency.name().toLowerCase() + ".mail.subject.header");
+			translateTimeline(keys, domain, language, new Handler<JsonArray>() {
+				public void handle(JsonArray translations) {
+					subjects.put(key, translations.getString(0));
+					subjectHandler.handle(translations.getString(0));
+				}
+			});
+		}
+
+		private String checkpointId() {
+			return name + ":" + from.getTime() + ":" + to.getTime();
+		}
+
+		private void getCheckpoint(Handler<JsonObject> checkpointHandler) {
+			if (!DIGEST_CHECKPOINTS) {
+				checkpointHandler.handle(new JsonObject());
+				return;
+			}
+			mongo.findOne(DIGEST_CHECKPOINTS_COLLECTION, new JsonObject().put("_id", checkpointId()), message -> {
+				final JsonObject checkpoint = message.body().getJsonObject("result");
+				if ("ok".equals(message.body().getString("status")) && checkpoint != null) {
+					log.info("[" + name + "] Resume from page " + checkpoint.getInteger("page", 0) + " : " + checkpointId());
+					checkpointHandler.handle(checkpoint);
 				} else {
-					results.put("users.recipients", 0);
-					results.put("users.pages", 0);
-					handler.handle(new Either.Right<String, JsonObject>(results));
-					return;
+					checkpointHandler.handle(new JsonObject());
 				}
-				getNotificationsDefaults(new Handler<JsonArray>() {
-					public void handle(final JsonArray notifications) {
-						if (notifications == null) {
-							log.error("[sendWeeklyMails] Error while retrieving notifications defaults.");
-						} else {
-							for (Object notifObj : notifications) {
-								final JsonObject notif = (JsonObject) notifObj;
-								notificationsDefaults.put(notif.getString("key", ""), notif);
-							}
-							userContinuationHandler.handle(true);
-						}
-					}
-				});
+			});
+		}
 
+		private void saveCheckpoint(int page, boolean done, Handler<Void> next) {
+			if (!DIGEST_CHECKPOINTS) {
+				next.handle(null);
+				return;
 			}
-		});
+			final JsonObject checkpoint = new JsonObject()
+					.put("page", page)
+					.put("done", done)
+					.put("results", results.copy())
+					.put("modified", MongoDb.now());
+			mongo.update(DIGEST_CHECKPOINTS_COLLECTION, new JsonObject().put("_id", checkpointId()),
+					new JsonObject().put("$set", checkpoint), true, false, message -> {
+				if (!"ok".equals(message.body().getString("status"))) {
+					log.error("[" + name + "] Error while saving checkpoint : " + message.body().getString("message"));
+				}
+				next.handle(null);
+			});
+		}
 	}
 
-		@Override
+	@Override
 	public void getNotificationsDefaults(final Handler<JsonArray> handler) {
 		configService.list(new Handler<Either<String, JsonArray>>() {
 			public void handle(Either<String, JsonArray> event) {
@@ -733,35 +697,164 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 	}
 
 	/**
-	 * Retrieves all timeline notifications from mongodb for a single user, from a specific date in the past.
+	 * Aggregation of the timeline notifications of a page of users, grouped by recipient.
 	 *
-	 * @param userId : Userid
+	 * @param userIds : Users of the page
 	 * @param from : The starting date
-	 * @param handler : Handles the notifications
+	 * @param to : End date used to filter notifications
+	 * @return the aggregate command, see {@link #notificationsByRecipient(JsonObject)}
 	 */
-	private void getUserNotifications(String userId, Date from, Date to, final Handler<JsonArray> handler){
-		JsonObject matcher = MongoQueryBuilder.build(
-				QueryBuilder
-						.start("recipients").elemMatch(QueryBuilder.start("userId").is(userId).get())
-						.and("date").greaterThanEquals(from).lessThan(to));
-
-		JsonObject keys = new JsonObject()
-				.put("_id", 0)
+	static JsonObject usersNotificationsCommand(List<?> userIds, Date from, Date to) {
+		final JsonArray pipeline = recipientsPipeline(userIds, from, to, new JsonObject()
 				.put("type", 1)
 				.put("event-type", 1)
 				.put("params", 1)
-				.put("date", 1);
-		mongo.find("timeline", matcher, null, keys, new Handler<Message<JsonObject>>() {
-			public void handle(Message<JsonObject> event) {
-				if("error".equals(event.body().getString("status", "error"))){
-					handler.handle(new fr.wseduc.webutils.collections.JsonArray());
-				} else {
-					handler.handle(event.body().getJsonArray("results"));
+				.put("date", 1));
+		pipeline.add(new JsonObject().put("$group", new JsonObject()
+				.put("_id", "$recipients")
+				.put("notifications", new JsonObject().put("$push", new JsonObject()
+						.put("type", "$type")
+						.put("event-type", "$event-type")
+						.put("params", "$params")
+						.put("date", "$date")))));
+		return aggregateCommand(pipeline);
+	}
+
+	/**
+	 * Aggregation of the timeline notifications of a page of users, counted by type & event-type and
+	 * grouped by recipient.
+	 *
+	 * @param userIds : Users of the page
+	 * @param from : Starting date in the past
+	 * @param to : End date used to filter notifications
+	 * @return the aggregate command, see {@link #notificationsByRecipient(JsonObject)}
+	 */
+	static JsonObject usersAggregatedNotificationsCommand(List<?> userIds, Date from, Date to) {
+		final JsonArray pipeline = recipientsPipeline(userIds, from, to, new JsonObject()
+				.put("type", 1)
+				.put("event-type", 1));
+		pipeline.add(new JsonObject().put("$group", new JsonObject()
+				.put("_id", new JsonObject()
+						.put("userId", "$recipients")
+						.put("type", "$type")
+						.put("event-type", "$event-type"))
+				.put("count", new JsonObject().put("$sum", 1))));
+		pipeline.add(new JsonObject().put("$group", new JsonObject()
+				.put("_id", "$_id.userId")
+				.put("notifications", new JsonObject().put("$push", new JsonObject()
+						.put("type", "$_id.type")
+						.put("event-type", "$_id.event-type")
+						.put("count", "$count")))));
+		return aggregateCommand(pipeline);
+	}
+
+	private static JsonArray recipientsPipeline(List<?> userIds, Date from, Date to, JsonObject projection) {
+		final JsonArray ids = new fr.wseduc.webutils.collections.JsonArray(new ArrayList<>(userIds));
+		final JsonObject matcher = MongoQueryBuilder.build(
+				QueryBuilder
+						.start("recipients.userId").in(userIds)
+						.and("date").greaterThanEquals(from).lessThan(to));
+		// keep only the distinct recipients of the page before unwinding
+		projection
+				.put("_id", 0)
+				.put("recipients", new JsonObject().put("$setIntersection", new fr.wseduc.webutils.collections.JsonArray()
+						.add("$recipients.userId").add(ids)));
+		return new fr.wseduc.webutils.collections.JsonArray()
+				.add(new JsonObject().put("$match", matcher))
+				.add(new JsonObject().put("$project", projection))
+				.add(new JsonObject().put("$unwind", "$recipients"));
+	}
+
+	private static JsonObject aggregateCommand(JsonArray pipeline) {
+		return new JsonObject()
+				.put("aggregate", "timeline")
+				.put("allowDiskUse", true)
+				.put("pipeline", pipeline)
+				.put("cursor", new JsonObject().put("batchSize", Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Run the aggregation of the notifications of a page of users and add them to <code>notifications</code>.
+	 * The first batch of the cursor is capped at 16 MB : when the cursor isn't exhausted, the recipients
+	 * missing from the batch are fetched again, by halves of the users when the batch had none of them.
+	 * The cursors left open are closed by the cursor timeout of Mongo.
+	 *
+	 * @param userIds : Users of the page
+	 * @param command : Aggregate command of the notifications of the users
+	 * @param endHandler : Handles null, or the error which stopped the fetch
+	 */
+	static void fetchNotificationsByRecipient(MongoDb mongo, List<?> userIds, Function<List<?>, JsonObject> command,
+			DeliveryOptions options, Map<String, JsonArray> notifications, Handler<String> endHandler) {
+		if (userIds.isEmpty()) {
+			endHandler.handle(null);
+			return;
+		}
+		mongo.command(command.apply(userIds).encode(), options, message -> {
+			if ("error".equals(message.body().getString("status", "error"))) {
+				endHandler.handle(message.body().encode());
+				return;
+			}
+			final Map<String, JsonArray> batch = notificationsByRecipient(message.body());
+			notifications.putAll(batch);
+			if (cursorId(message.body()) == 0L) {
+				endHandler.handle(null);
+				return;
+			}
+			final List<Object> missing = new ArrayList<>();
+			for (Object userId : userIds) {
+				if (!batch.containsKey(userId) && !notifications.containsKey(userId)) {
+					missing.add(userId);
 				}
 			}
+			if (missing.size() < userIds.size()) {
+				fetchNotificationsByRecipient(mongo, missing, command, options, notifications, endHandler);
+			} else if (userIds.size() > 1) {
+				final int half = userIds.size() / 2;
+				fetchNotificationsByRecipient(mongo, userIds.subList(0, half), command, options, notifications, error -> {
+					if (error != null) {
+						endHandler.handle(error);
+					} else {
+						fetchNotificationsByRecipient(mongo, userIds.subList(half, userIds.size()), command, options,
+								notifications, endHandler);
+					}
+				});
+			} else {
+				endHandler.handle("Notifications of user " + userIds.get(0) + " exceed the batch size.");
+			}
 		});
 	}
 
+	/**
+	 * @return the id of the cursor of an aggregation result, 0 if the cursor is exhausted
+	 */
+	static long cursorId(JsonObject body) {
+		final Object id = body.getJsonObject("result", new JsonObject())
+				.getJsonObject("cursor", new JsonObject()).getValue("id");
+		if (id instanceof Number) {
+			return ((Number) id).longValue();
+		} else if (id instanceof JsonObject && ((JsonObject) id).getString("$numberLong") != null) {
+			return Long.parseLong(((JsonObject) id).getString("$numberLong"));
+		}
+		return 0L;
+	}
+
+	/**
+	 * @param body : Result of an aggregation of the users notifications
+	 * @return the notifications by recipient id of the first batch
+	 */
+	static Map<String, JsonArray> notificationsByRecipient(JsonObject body) {
+		final Map<String, JsonArray> notifications = new HashMap<>();
+		final JsonArray result = body.getJsonObject("result", new JsonObject())
+				.getJsonObject("cursor", new JsonObject())
+				.getJsonArray("firstBatch", new fr.wseduc.webutils.collections.JsonArray());
+		for (Object o : result) {
+			final JsonObject recipient = (JsonObject) o;
+			notifications.put(recipient.getString("_id"),
+					recipient.getJsonArray("notifications", new fr.wseduc.webutils.collections.JsonArray()));
+		}
+		return notifications;
+	}
+
 	/**
 	 * Returns either user preferences or defaults when the user has not chosen specific values.
 	 *
@@ -832,51 +925,6 @@ public class DefaultTimelineMailerService extends Renders implements TimelineMai
 		neo4j.execute(query, params, Neo4jResult.validResultHandler(handler));
 	}
 
-	/**
-	 * Retrieves an aggregated list of notifications from mongodb for a single user.
-	 *
-	 *  Notifications are grouped by type & event-type.
-	 * @param userId : Userid
-	 * @param from : Starting date in the past
-	 * @param to : End date used to filter notifications
-	 * @param handler: Handles the notifications
-	 */
-	private void getAggregatedUserNotifications(String userId, Date from, Date to, final Handler<JsonArray> handler){
-		final JsonObject aggregation = new JsonObject();
-		JsonArray pipeline = new fr.wseduc.webutils.collections.JsonArray();
-		aggregation
-				.put("aggregate", "timeline")
-				.put("allowDiskUse", true)
-				.put("pipeline", pipeline)
-				.put("cursor", new JsonObject().put("batchSize", Integer.MAX_VALUE));
-
-		JsonObject matcher = MongoQueryBuilder.build(
-				QueryBuilder
-						.start("recipients").elemMatch(QueryBuilder.start("userId").is(userId).get())
-						.and("date").greaterThanEquals(from).lessThan(to));
-		JsonObject grouper = new JsonObject("{ \"_id\" : { \"type\": \"$type\", \"event-type\": \"$event-type\"}, \"count\": { \"$sum\": 1 } }");
-		JsonObject transformer = new JsonObject("{ \"type\": \"$_id.type\", \"event-type\": \"$_id.event-type\", \"count\": 1, \"_id\": 0 }");
-
-		pipeline.add(new JsonObject().put("$match", matcher));
-		pipeline.add(new JsonObject().put("$group", grouper));
-		pipeline.add(new JsonObject().put("$project", transformer));
-
-		mongo.command(aggregation.toString(), new Handler<Message<JsonObject>>() {
-			@Override
-			public void handle(Message<JsonObject> event) {
-				if("error".equals(event.body().getString("status", "error"))){
-					handler.handle(new fr.wseduc.webutils.collections.JsonArray());
-				} else {
-					handler.handle(
-							event.body().getJsonObject("result", new JsonObject())
-									.getJsonObject("cursor", new JsonObject())
-									.getJsonArray("firstBatch", new fr.wseduc.webutils.collections.JsonArray()));
-				}
-			}
-
-		});
-	}
-
 	public void setConfigService(TimelineConfigService configService) {
 		this.configService = configService;
 	}
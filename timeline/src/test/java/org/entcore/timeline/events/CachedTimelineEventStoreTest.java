@@ -0,0 +1,152 @@
+package org.entcore.timeline.events;
+
+import fr.wseduc.mongodb.MongoDb;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.cache.RedisCacheService;
+import org.entcore.common.redis.Redis;
+import org.entcore.test.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.GenericContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fan-out of a timeline event to the cached lists of its recipients : one prepend and one removal per recipient
+ * compared to the batched script.
+ */
+@RunWith(VertxUnitRunner.class)
+public class CachedTimelineEventStoreTest {
+    private static final Logger log = LoggerFactory.getLogger(CachedTimelineEventStoreTest.class);
+    private static final TestHelper test = TestHelper.helper();
+    private static final int PAGE_SIZE = 25;
+    private static final int[] RECIPIENTS = { 10, 1000, 10000 };
+    @ClassRule
+    public static GenericContainer redisContainer = test.database().createRedisContainer().withExposedPorts(6379);
+    static RedisCacheService cacheService;
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        Redis.getInstance().init(test.vertx(), new JsonObject()
+                .put("host", redisContainer.getContainerIpAddress())
+                .put("port", redisContainer.getMappedPort(6379)));
+        cacheService = new RedisCacheService(Redis.getClient());
+    }
+
+    private JsonObject event(String id, long date) {
+        return new JsonObject().put("_id", id).put("type", "BLOG").put("event-type", "BLOG_POST_PUBLISH")
+                .put("message", "<p>Nouveau billet\tde \"blog\"</p>").put("params", new JsonObject().put("uri", "/blog"))
+                .put("date", new JsonObject().put("$date", date));
+    }
+
+    private List<String> keys(String prefix, int count) {
+        final List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add("timeline:" + prefix + i);
+        }
+        return keys;
+    }
+
+    private Future<Long> fanOutPerRecipient(List<String> keys, String value) {
+        final Future<Long> future = Future.future();
+        final long start = System.currentTimeMillis();
+        final AtomicInteger remaining = new AtomicInteger(keys.size());
+        for (String key : keys) {
+            cacheService.prependToList(key, value, res -> {
+                if (res.failed()) {
+                    future.tryFail(res.cause());
+                } else if (res.result() > PAGE_SIZE) {
+                    cacheService.removeLastFromList(key, resRemove -> {
+                        if (remaining.decrementAndGet() == 0) future.tryComplete(System.currentTimeMillis() - start);
+                    });
+                } else if (remaining.decrementAndGet() == 0) {
+                    future.tryComplete(System.currentTimeMillis() - start);
+                }
+            });
+        }
+        return future;
+    }
+
+    private Future<Long> fanOutBatched(List<String> keys, String value) {
+        final Future<Long> future = Future.future();
+        final long start = System.currentTimeMillis();
+        cacheService.prependToLists(keys, value, PAGE_SIZE, res -> {
+            if (res.succeeded()) {
+                future.complete(System.currentTimeMillis() - start);
+            } else {
+                future.fail(res.cause());
+            }
+        });
+        return future;
+    }
+
+    private Future<Void> benchmark(TestContext context, int index) {
+        if (index >= RECIPIENTS.length) {
+            return Future.succeededFuture();
+        }
+        final int count = RECIPIENTS[index];
+        final List<String> perRecipientKeys = keys("single" + count + ":", count);
+        final List<String> batchedKeys = keys("batch" + count + ":", count);
+        final String value = CachedTimelineEventStore.CacheEntry.encode(event("e" + count, System.currentTimeMillis()));
+        // fill the lists beyond the page size to include the trim in the measure
+        Future<Long> fill = Future.succeededFuture(0L);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            fill = fill.compose(r -> fanOutBatched(perRecipientKeys, value))
+                    .compose(r -> fanOutBatched(batchedKeys, value));
+        }
+        return fill.compose(r -> fanOutPerRecipient(perRecipientKeys, value)).compose(perRecipient ->
+                fanOutBatched(batchedKeys, value).compose(batched -> {
+                    log.info("Timeline cache fan-out to " + count + " recipients : per recipient " + perRecipient +
+                            " ms, batched " + batched + " ms");
+                    final Future<Void> check = Future.future();
+                    cacheService.getListLength(batchedKeys.get(count - 1), len -> {
+                        context.assertTrue(len.succeeded());
+                        context.assertEquals((long) PAGE_SIZE, len.result());
+                        check.complete();
+                    });
+                    return check;
+                })).compose(v -> benchmark(context, index + 1));
+    }
+
+    @Test
+    public void testBatchedFanOutShouldTrimLists(TestContext context) {
+        final Async async = context.async();
+        benchmark(context, 0).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    @Test
+    public void testCacheEntryShouldFilterWithoutDecoding(TestContext context) {
+        final long now = System.currentTimeMillis();
+        final JsonObject event = event("abc", now);
+        final CachedTimelineEventStore.CacheEntry entry =
+                CachedTimelineEventStore.CacheEntry.decode(CachedTimelineEventStore.CacheEntry.encode(event));
+        context.assertEquals("abc", entry.id);
+        context.assertEquals("BLOG", entry.type);
+        context.assertEquals(now, entry.date);
+        context.assertEquals(event, entry.toJson());
+
+        final CachedTimelineEventStore.CacheEntry legacy = CachedTimelineEventStore.CacheEntry.decode(event.encode());
+        context.assertEquals("abc", legacy.id);
+        context.assertEquals("BLOG", legacy.type);
+        context.assertEquals(now, legacy.date);
+        context.assertEquals(event, legacy.toJson());
+
+        final JsonObject noDate = event("def", now);
+        noDate.remove("date");
+        context.assertEquals(-1L, CachedTimelineEventStore.CacheEntry.decode(
+                CachedTimelineEventStore.CacheEntry.encode(noDate)).date);
+        context.assertTrue(CachedTimelineEventStore.CacheEntry.decode(
+                CachedTimelineEventStore.CacheEntry.encode(event.put("date", MongoDb.now()))).date > 0);
+    }
+
+}
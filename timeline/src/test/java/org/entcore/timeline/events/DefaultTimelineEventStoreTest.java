@@ -0,0 +1,194 @@
+package org.entcore.timeline.events;
+
+import fr.wseduc.mongodb.MongoDb;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.common.user.UserInfos;
+import org.entcore.test.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Latency (p99) of the first and deep pages of a large news feed with offset pagination compared to the
+ * (created, _id) cursor. Raise NOTIFICATIONS to reproduce the production volumes.
+ */
+@RunWith(VertxUnitRunner.class)
+public class DefaultTimelineEventStoreTest {
+    private static final Logger log = LoggerFactory.getLogger(DefaultTimelineEventStoreTest.class);
+    private static final TestHelper test = TestHelper.helper();
+    private static final int NOTIFICATIONS = 100000;
+    private static final int PAGE_SIZE = 25;
+    private static final int[] PAGES = { 0, 10, 100, 1000, 3000 };
+    private static final int SAMPLES = 20;
+    private static final String[] TYPES = { "BLOG", "WORKSPACE", "MESSAGERIE", "HIDDEN" };
+    @ClassRule
+    public static MongoDBContainer mongoContainer = test.database().createMongoContainer();
+    static DefaultTimelineEventStore store;
+    static final UserInfos reader = test.directory().generateUser("timeline-reader");
+    static final JsonObject restriction = new JsonObject().put("HIDDEN", new JsonArray().add("HIDDEN_EVENT"));
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        final Async async = context.async();
+        test.database().initMongo(context, mongoContainer).handler(init -> insertNotifications(context, async));
+    }
+
+    private static void insertNotifications(TestContext context, Async async) {
+        store = new DefaultTimelineEventStore();
+        final MongoDb mongo = MongoDb.getInstance();
+        final Random random = new Random(23);
+        final long now = System.currentTimeMillis();
+        final JsonObject index = new JsonObject().put("createIndexes", "timeline").put("indexes", new JsonArray()
+                .add(new JsonObject().put("name", "recipients.userId_1_created_-1__id_-1").put("key", new JsonObject()
+                        .put("recipients.userId", 1).put("created", -1).put("_id", -1))));
+        Future<Void> insert = Future.future();
+        mongo.command(index.encode(), res -> insert.complete());
+        for (int b = 0; b < NOTIFICATIONS; b += 1000) {
+            final JsonArray documents = new JsonArray();
+            for (int i = b; i < b + 1000; i++) {
+                final JsonArray recipients = new JsonArray().add(new JsonObject().put("userId", reader.getUserId()).put("unread", 1));
+                for (int r = 0; r < 5; r++) {
+                    recipients.add(new JsonObject().put("userId", "user" + random.nextInt(10000)).put("unread", 1));
+                }
+                final String type = TYPES[random.nextInt(TYPES.length)];
+                // distinct dates so that the offset order is deterministic
+                final JsonObject date = new JsonObject().put("$date", now - (i + 1) * 1000L);
+                documents.add(new JsonObject()
+                        .put("_id", String.format("notification-%08d", i))
+                        .put("type", type)
+                        .put("event-type", "HIDDEN".equals(type) ? "HIDDEN_EVENT" : "EVENT")
+                        .put("params", new JsonObject().put("uri", "/resource/" + i).put("username", "Jean Dupont"))
+                        .put("date", date)
+                        .put("created", date)
+                        .put("recipients", recipients));
+            }
+            final Future<Void> previous = insert;
+            final Future<Void> next = Future.future();
+            previous.setHandler(v -> mongo.command(new JsonObject().put("insert", "timeline")
+                    .put("documents", documents).encode(), res -> {
+                context.assertEquals("ok", res.body().getString("status"));
+                next.complete();
+            }));
+            insert = next;
+        }
+        insert.setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    private Future<JsonObject> offsetPage(int page) {
+        final Future<JsonObject> future = Future.future();
+        store.get(reader, null, page * PAGE_SIZE, PAGE_SIZE, restriction, false, false, "", res -> {
+            if ("ok".equals(res.getString("status"))) {
+                future.complete(res);
+            } else {
+                future.fail(res.encode());
+            }
+        });
+        return future;
+    }
+
+    private Future<JsonObject> keysetPage(Long beforeDate, String beforeId) {
+        final Future<JsonObject> future = Future.future();
+        store.get(reader, null, beforeDate, beforeId, PAGE_SIZE, restriction, false, false, "", res -> {
+            if ("ok".equals(res.getString("status"))) {
+                future.complete(res);
+            } else {
+                future.fail(res.encode());
+            }
+        });
+        return future;
+    }
+
+    private static List<String> ids(JsonObject page) {
+        final List<String> ids = new ArrayList<>();
+        for (Object o : page.getJsonArray("results")) {
+            final JsonObject event = (JsonObject) o;
+            ids.add(event.getString("_id"));
+        }
+        return ids;
+    }
+
+    private static long p99(List<Long> samples) {
+        Collections.sort(samples);
+        return samples.get((int) Math.ceil(samples.size() * 0.99) - 1);
+    }
+
+    private Future<Void> measure(TestContext context, int page) {
+        // cursor of the page : last event of the previous page
+        final Future<JsonObject> cursor = page == 0 ? Future.succeededFuture(new JsonObject()) :
+                offsetPage(page - 1).map(previous -> DefaultTimelineEventStore.cursor(
+                        previous.getJsonArray("results").getJsonObject(PAGE_SIZE - 1)));
+        return cursor.compose(c -> offsetPage(page).compose(expected -> {
+            final List<Long> offsetTimes = new ArrayList<>();
+            final List<Long> keysetTimes = new ArrayList<>();
+            Future<Void> samples = Future.succeededFuture();
+            for (int i = 0; i < SAMPLES; i++) {
+                samples = samples.compose(v -> {
+                    final long startOffset = System.currentTimeMillis();
+                    return offsetPage(page).compose(offset -> {
+                        offsetTimes.add(System.currentTimeMillis() - startOffset);
+                        final long startKeyset = System.currentTimeMillis();
+                        return keysetPage(c.getLong("beforeDate"), c.getString("beforeId")).map(keyset -> {
+                            keysetTimes.add(System.currentTimeMillis() - startKeyset);
+                            context.assertEquals(ids(expected), ids(keyset), "page " + page);
+                            context.assertTrue(keyset.containsKey("cursor"));
+                            return null;
+                        });
+                    });
+                });
+            }
+            return samples.map(v -> {
+                log.info("Feed of " + NOTIFICATIONS + " notifications, page " + page + " : offset p99 " +
+                        p99(offsetTimes) + " ms, keyset p99 " + p99(keysetTimes) + " ms");
+                return null;
+            });
+        }));
+    }
+
+    @Test
+    public void testKeysetPagesShouldMatchOffsetPages(TestContext context) {
+        final Async async = context.async();
+        Future<Void> chain = Future.succeededFuture();
+        for (int page : PAGES) {
+            chain = chain.compose(v -> measure(context, page));
+        }
+        chain.setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    @Test
+    public void testKeysetShouldFollowTheCursor(TestContext context) {
+        final Async async = context.async();
+        final List<String> walked = new ArrayList<>();
+        keysetPage(null, null).compose(first -> {
+            walked.addAll(ids(first));
+            final JsonObject cursor = first.getJsonObject("cursor");
+            return keysetPage(cursor.getLong("beforeDate"), cursor.getString("beforeId"));
+        }).compose(second -> {
+            walked.addAll(ids(second));
+            return offsetPage(0);
+        }).compose(first -> offsetPage(1).map(second -> {
+            final List<String> expected = new ArrayList<>(ids(first));
+            expected.addAll(ids(second));
+            context.assertEquals(2 * PAGE_SIZE, walked.size());
+            context.assertEquals(expected, walked);
+            for (Object o : second.getJsonArray("results")) {
+                context.assertNotEquals("HIDDEN", ((JsonObject) o).getString("type"));
+            }
+            return null;
+        })).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+}
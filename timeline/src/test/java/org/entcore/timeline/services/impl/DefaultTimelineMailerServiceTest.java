@@ -0,0 +1,262 @@
+package org.entcore.timeline.services.impl;
+
+import com.mongodb.QueryBuilder;
+import fr.wseduc.mongodb.MongoDb;
+import fr.wseduc.mongodb.MongoQueryBuilder;
+import io.vertx.core.Future;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.entcore.test.TestHelper;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.MongoDBContainer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Notifications of the daily mails fetched with one query per user compared to one aggregation per page of users.
+ */
+@RunWith(VertxUnitRunner.class)
+public class DefaultTimelineMailerServiceTest {
+    private static final Logger log = LoggerFactory.getLogger(DefaultTimelineMailerServiceTest.class);
+    private static final TestHelper test = TestHelper.helper();
+    private static final int USERS = 2000;
+    private static final int NOTIFICATIONS = 20000;
+    private static final int PAGE_SIZE = 100;
+    private static final String[] TYPES = { "BLOG", "WORKSPACE", "MESSAGERIE", "SCHOOLBOOK" };
+    private static final int BIG_USERS = 3;
+    private static final int BIG_NOTIFICATIONS = 12;
+    @ClassRule
+    public static MongoDBContainer mongoContainer = test.database().createMongoContainer();
+    static MongoDb mongo;
+    static final long now = System.currentTimeMillis();
+    static final Date from = new Date(now - 24 * 3600 * 1000L);
+    static final Date to = new Date(now + 60000L);
+
+    @BeforeClass
+    public static void setUp(TestContext context) {
+        final Async async = context.async();
+        test.database().initMongo(context, mongoContainer).handler(init -> insertNotifications(context, async));
+    }
+
+    private static void insertNotifications(TestContext context, Async async) {
+        mongo = MongoDb.getInstance();
+        final Random random = new Random(19);
+        Future<Void> insert = Future.succeededFuture();
+        for (int b = 0; b < NOTIFICATIONS; b += 1000) {
+            final JsonArray documents = new JsonArray();
+            for (int i = b; i < b + 1000; i++) {
+                final JsonArray recipients = new JsonArray();
+                final int count = 1 + random.nextInt(30);
+                for (int r = 0; r < count; r++) {
+                    recipients.add(new JsonObject().put("userId", "user" + random.nextInt(USERS)).put("unread", 1));
+                }
+                // duplicated recipients and a few notifications outside of the period are ignored
+                final long date = i % 10 == 0 ? from.getTime() - 3600000L : now - random.nextInt(23 * 3600 * 1000);
+                documents.add(new JsonObject()
+                        .put("type", TYPES[random.nextInt(TYPES.length)])
+                        .put("event-type", "EVENT" + random.nextInt(3))
+                        .put("params", new JsonObject().put("uri", "/resource/" + i).put("username", "Jean Dupont"))
+                        .put("date", new JsonObject().put("$date", date))
+                        .put("recipients", recipients));
+            }
+            insert = insert.compose(v -> {
+                final Future<Void> future = Future.future();
+                mongo.command(new JsonObject().put("insert", "timeline").put("documents", documents).encode(), res -> {
+                    context.assertEquals("ok", res.body().getString("status"));
+                    future.complete();
+                });
+                return future;
+            });
+        }
+        insert.setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    private static List<List<Object>> pages() {
+        final List<List<Object>> pages = new ArrayList<>();
+        for (int p = 0; p < USERS; p += PAGE_SIZE) {
+            final List<Object> page = new ArrayList<>();
+            for (int i = p; i < Math.min(USERS, p + PAGE_SIZE); i++) {
+                page.add("user" + i);
+            }
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    private Future<Map<String, Integer>> perUser(List<Object> userIds) {
+        final Future<Map<String, Integer>> future = Future.future();
+        final Map<String, Integer> counts = new HashMap<>();
+        final AtomicInteger remaining = new AtomicInteger(userIds.size());
+        for (Object userId : userIds) {
+            final JsonObject matcher = MongoQueryBuilder.build(
+                    QueryBuilder
+                            .start("recipients").elemMatch(QueryBuilder.start("userId").is(userId).get())
+                            .and("date").greaterThanEquals(from).lessThan(to));
+            final JsonObject keys = new JsonObject().put("_id", 0).put("type", 1).put("event-type", 1)
+                    .put("params", 1).put("date", 1);
+            mongo.find("timeline", matcher, null, keys, res -> {
+                final int size = res.body().getJsonArray("results", new JsonArray()).size();
+                if (size > 0) {
+                    counts.put((String) userId, size);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    future.complete(counts);
+                }
+            });
+        }
+        return future;
+    }
+
+    private Future<Map<String, Integer>> perPage(List<Object> userIds, boolean aggregated) {
+        final Future<Map<String, Integer>> future = Future.future();
+        final JsonObject command = aggregated ?
+                DefaultTimelineMailerService.usersAggregatedNotificationsCommand(userIds, from, to) :
+                DefaultTimelineMailerService.usersNotificationsCommand(userIds, from, to);
+        mongo.command(command.encode(), res -> {
+            if (!"ok".equals(res.body().getString("status"))) {
+                future.fail(res.body().encode());
+                return;
+            }
+            final Map<String, Integer> counts = new HashMap<>();
+            for (Map.Entry<String, JsonArray> e : DefaultTimelineMailerService.notificationsByRecipient(res.body()).entrySet()) {
+                int count = 0;
+                for (Object n : e.getValue()) {
+                    final JsonObject notification = (JsonObject) n;
+                    if (!aggregated) {
+                        final long date = MongoDb.parseIsoDate(notification.getJsonObject("date")).getTime();
+                        if (date < from.getTime() || date >= to.getTime()) {
+                            future.fail("Notification out of period : " + notification.encode());
+                            return;
+                        }
+                    }
+                    count += aggregated ? notification.getInteger("count") : 1;
+                }
+                counts.put(e.getKey(), count);
+            }
+            future.complete(counts);
+        });
+        return future;
+    }
+
+    private Future<Long> run(int mode, Map<String, Integer> counts) {
+        final long start = System.currentTimeMillis();
+        Future<Void> chain = Future.succeededFuture();
+        for (List<Object> page : pages()) {
+            chain = chain.compose(v -> (mode == 0 ? perUser(page) : perPage(page, mode == 2)).map(c -> {
+                counts.putAll(c);
+                return null;
+            }));
+        }
+        return chain.map(v -> System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Notifications of about 1 MB for a few users : the aggregation of the page is over the 16 MB
+     * of the first batch.
+     */
+    private Future<Void> insertBigNotifications() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1024 * 1024; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        final String body = sb.toString();
+        Future<Void> insert = Future.succeededFuture();
+        for (int u = 0; u < BIG_USERS; u++) {
+            for (int b = 0; b < BIG_NOTIFICATIONS; b += 4) {
+                final JsonArray documents = new JsonArray();
+                for (int i = b; i < b + 4; i++) {
+                    documents.add(new JsonObject()
+                            .put("type", "BLOG")
+                            .put("event-type", "EVENT0")
+                            .put("params", new JsonObject().put("uri", "/big/" + i).put("body", body))
+                            .put("date", new JsonObject().put("$date", now - 3600000L))
+                            .put("recipients", new JsonArray().add(new JsonObject().put("userId", "big" + u).put("unread", 1))));
+                }
+                insert = insert.compose(v -> {
+                    final Future<Void> future = Future.future();
+                    mongo.command(new JsonObject().put("insert", "timeline").put("documents", documents).encode(), res -> {
+                        if ("ok".equals(res.body().getString("status"))) {
+                            future.complete();
+                        } else {
+                            future.fail(res.body().encode());
+                        }
+                    });
+                    return future;
+                });
+            }
+        }
+        return insert;
+    }
+
+    @Test
+    public void testPageOverBatchLimitShouldFetchAllRecipients(TestContext context) {
+        final Async async = context.async();
+        final List<Object> page = Arrays.asList("big0", "big1", "big2", "user0");
+        insertBigNotifications().compose(v -> {
+            final Future<JsonObject> firstBatch = Future.future();
+            mongo.command(DefaultTimelineMailerService.usersNotificationsCommand(page, from, to).encode(),
+                    res -> firstBatch.complete(res.body()));
+            return firstBatch;
+        }).compose(body -> {
+            // the first batch alone misses recipients
+            context.assertNotEquals(0L, DefaultTimelineMailerService.cursorId(body));
+            context.assertTrue(DefaultTimelineMailerService.notificationsByRecipient(body).size() < page.size());
+            final Future<Map<String, JsonArray>> future = Future.future();
+            final Map<String, JsonArray> notifications = new HashMap<>();
+            DefaultTimelineMailerService.fetchNotificationsByRecipient(mongo, page,
+                    ids -> DefaultTimelineMailerService.usersNotificationsCommand(ids, from, to),
+                    new DeliveryOptions().setSendTimeout(120000L), notifications, error -> {
+                        if (error != null) {
+                            future.fail(error);
+                        } else {
+                            future.complete(notifications);
+                        }
+                    });
+            return future;
+        }).compose(notifications -> perUser(page.subList(BIG_USERS, page.size())).map(expected -> {
+            for (int u = 0; u < BIG_USERS; u++) {
+                context.assertEquals(BIG_NOTIFICATIONS, notifications.get("big" + u).size());
+            }
+            context.assertEquals(expected.get("user0"), notifications.get("user0").size());
+            return null;
+        })).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+
+    @Test
+    public void testPageAggregationShouldMatchPerUserQueries(TestContext context) {
+        final Async async = context.async();
+        final Map<String, Integer> perUser = new TreeMap<>();
+        final Map<String, Integer> perPage = new TreeMap<>();
+        final Map<String, Integer> perPageAggregated = new TreeMap<>();
+        run(0, perUser).setHandler(context.asyncAssertSuccess(perUserTime ->
+            run(1, perPage).setHandler(context.asyncAssertSuccess(perPageTime ->
+                run(2, perPageAggregated).setHandler(context.asyncAssertSuccess(aggregatedTime -> {
+                    log.info("Notifications of " + USERS + " users (" + NOTIFICATIONS + " notifications) : " +
+                            "one query per user " + perUserTime + " ms (" + (USERS * 1000L / Math.max(1, perUserTime)) +
+                            " users/s), one aggregation per page of " + PAGE_SIZE + " users " + perPageTime + " ms (" +
+                            (USERS * 1000L / Math.max(1, perPageTime)) + " users/s), weekly counts " + aggregatedTime + " ms");
+                    context.assertTrue(perUser.size() > 0);
+                    context.assertEquals(perUser, perPage);
+                    context.assertEquals(perUser, perPageAggregated);
+                    async.complete();
+                }))))));
+    }
+
+}
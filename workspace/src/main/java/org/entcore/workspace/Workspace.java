@@ -108,6 +108,7 @@ public class Workspace extends BaseServer {
 
 		final PdfGenerator pdfGenerator = new PdfFactory(vertx, config).getPdfGenerator();
 		workspaceService.setAllowDuplicate(config.getBoolean("allowDuplicate", false));
+		workspaceService.setStreamingZip(config.getBoolean("streaming-zip", false));
 		WorkspaceController workspaceController = new WorkspaceController(storage, workspaceService, shareService,pdfGenerator, MongoDb.getInstance(), folderManagerWithQuota);
 		addController(workspaceController);
 		//